@@ -2,6 +2,8 @@ plugins {
     java
     id("org.springframework.boot") version "3.4.5"
     id("io.spring.dependency-management") version "1.1.7"
+    id("me.champeau.jmh") version "0.7.3"
+    id("org.graalvm.buildtools.native") version "0.10.6" apply false
 }
 
 group = "org.kfru.pse.cars"
@@ -13,6 +15,16 @@ java {
     }
 }
 
+// Fast start: "gradle build -PfastStart" adds Spring AOT processing (bean definitions generated at build
+// time, run with -Dspring.aot.enabled=true) and a CDS archive, see cdsArchive below
+val fastStart = providers.gradleProperty("fastStart").isPresent
+if (fastStart) {
+    // Only for its processAot task, no native image is built
+    apply(plugin = "org.graalvm.buildtools.native")
+}
+
+val startup by sourceSets.creating
+
 configurations {
     compileOnly {
         extendsFrom(configurations.annotationProcessor.get())
@@ -24,17 +36,81 @@ repositories {
 }
 
 dependencies {
+    implementation("org.springframework.boot:spring-boot-starter-actuator")
     implementation("org.springframework.boot:spring-boot-starter-data-jpa")
     implementation("org.springframework.boot:spring-boot-starter-web")
     implementation("org.springdoc:springdoc-openapi-starter-webmvc-ui:2.8.9")
     compileOnly("org.projectlombok:lombok")
+    runtimeOnly("io.micrometer:micrometer-registry-prometheus")
     runtimeOnly("org.postgresql:postgresql")
     annotationProcessor("org.projectlombok:lombok")
     testImplementation("org.springframework.boot:spring-boot-starter-test")
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
     testImplementation("com.h2database:h2")
+    "startupRuntimeOnly"("com.h2database:h2")
 }
 
 tasks.withType<Test> {
     useJUnitPlatform()
 }
+
+// Microbenchmarks in src/jmh, run with "gradle jmh" (not part of build)
+jmh {
+    jmhVersion = "1.37"
+    warmupIterations = 3
+    iterations = 5
+    fork = 1
+}
+
+// Class data sharing: the boot jar is extracted to build/cds and a training run (context refresh without
+// database, profiles fast and training) writes the classes it loaded to build/cds/application.jsa.
+// Start with: java -XX:SharedArchiveFile=application.jsa -jar application.jar (from build/cds, same JDK)
+val cdsDirectory = layout.buildDirectory.dir("cds")
+
+val cdsExtract by tasks.registering(JavaExec::class) {
+    group = "build"
+    description = "Extracts the boot jar to build/cds."
+    val bootJar = tasks.bootJar.flatMap { it.archiveFile }
+    inputs.file(bootJar)
+    outputs.dir(cdsDirectory)
+    classpath(bootJar)
+    mainClass = "org.springframework.boot.loader.launch.JarLauncher"
+    jvmArgs("-Djarmode=tools")
+    args("extract", "--force", "--application-filename", "application.jar",
+        "--destination", cdsDirectory.get().asFile.path)
+}
+
+val cdsArchive by tasks.registering(JavaExec::class) {
+    group = "build"
+    description = "Creates the CDS archive build/cds/application.jsa with a training run."
+    dependsOn(cdsExtract)
+    inputs.property("aot", fastStart)
+    inputs.files(cdsExtract)
+    outputs.file(cdsDirectory.map { it.file("application.jsa") })
+    workingDir(cdsDirectory)
+    classpath(cdsDirectory.map { it.file("application.jar") })
+    mainClass = "org.kfru.pse.cars.configurator.ConfiguratorApplication"
+    jvmArgs("-XX:ArchiveClassesAtExit=application.jsa", "-Dspring.context.exit=onRefresh",
+        "-Dspring.aot.enabled=$fastStart")
+    args("--spring.profiles.active=fast,training", "--configurator.previews.cache-dir=$temporaryDir")
+}
+
+if (fastStart) {
+    tasks.assemble {
+        dependsOn(cdsArchive)
+    }
+}
+
+// Time from JVM start to the first non-empty /offered-cars response, default vs. fast start, on a file H2
+// database; "gradle startupBenchmark -PfastStart [-PstartupRuns=5]", results are appended to
+// build/results/startup/startup.csv
+tasks.register<JavaExec>("startupBenchmark") {
+    group = "verification"
+    description = "Measures the time to the first /offered-cars response with and without fast start."
+    dependsOn(cdsArchive)
+    classpath = startup.runtimeClasspath
+    mainClass = "org.kfru.pse.cars.configurator.StartupBenchmark"
+    args(cdsDirectory.get().asFile.path,
+        layout.buildDirectory.file("results/startup/startup.csv").get().asFile.path,
+        providers.gradleProperty("startupRuns").getOrElse("5"))
+}
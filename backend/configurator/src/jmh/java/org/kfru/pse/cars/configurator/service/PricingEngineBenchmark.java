@@ -0,0 +1,74 @@
+package org.kfru.pse.cars.configurator.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.kfru.pse.cars.configurator.model.CarFeature;
+import org.kfru.pse.cars.configurator.model.ConfigurationEvaluation;
+import org.kfru.pse.cars.configurator.model.OfferedCar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation of random configurations of the first priced car in offered-cars.json, as the configurator
+ * requests it on every click. Compilation is measured separately since it only runs on reload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PricingEngineBenchmark {
+
+  private static final int CONFIGURATIONS = 1024;
+
+  private OfferedCar car;
+  private JsonNode pricing;
+  private PricingEngine.CompiledCar compiled;
+  private byte[][] configurations;
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException {
+    ObjectMapper objectMapper = new ObjectMapper();
+    try (InputStream in = PricingEngineBenchmark.class.getResourceAsStream("/data/offered-cars.json")) {
+      for (JsonNode carJson : objectMapper.readTree(in)) {
+        if (carJson.has("pricing")) {
+          car = objectMapper.treeToValue(carJson, OfferedCar.class);
+          pricing = carJson.get("pricing");
+          break;
+        }
+      }
+    }
+    compiled = PricingEngine.compile(car, pricing);
+
+    List<CarFeature> features = car.getFeatures().stream().sorted(Comparator.comparingInt(CarFeature::getId)).toList();
+    SplittableRandom random = new SplittableRandom(42);
+    configurations = new byte[CONFIGURATIONS][features.size()];
+    for (byte[] configuration : configurations) {
+      for (int f = 0; f < configuration.length; f++) {
+        configuration[f] = (byte) random.nextInt(features.get(f).getVariants().size() + 1);
+      }
+    }
+  }
+
+  @Benchmark
+  public ConfigurationEvaluation evaluate() {
+    byte[] configuration = configurations[next++ & (CONFIGURATIONS - 1)];
+    return compiled.evaluate(configuration);
+  }
+
+  @Benchmark
+  public PricingEngine.CompiledCar compile() {
+    return PricingEngine.compile(car, pricing);
+  }
+}
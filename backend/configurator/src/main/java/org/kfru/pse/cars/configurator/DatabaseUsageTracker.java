@@ -0,0 +1,118 @@
+package org.kfru.pse.cars.configurator;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Counts the database work of each request to a controller: repository calls, rows (entities or
+ * projection rows) they returned, and SQL statements Hibernate sent, including lazy loads. Recorded per
+ * request as configurator.request.repository.calls, .rows and .statements, tagged with method and uri -
+ * many statements for few repository calls point to N+1 loading.
+ * <p>
+ * Registered in {@link MetricsConfig} as handler interceptor, as advice of every repository and as
+ * Hibernate statement inspector; work outside of requests (seeding, scheduled jobs) is not counted.
+ */
+@Component
+public class DatabaseUsageTracker implements HandlerInterceptor, MethodInterceptor, StatementInspector {
+
+  private static final ThreadLocal<Usage> CURRENT = new ThreadLocal<>();
+
+  private final MeterRegistry meterRegistry;
+
+  @Autowired
+  DatabaseUsageTracker(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+    if (handler instanceof HandlerMethod) {
+      CURRENT.set(new Usage());
+    }
+    return true;
+  }
+
+  @Override
+  public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                              Exception ex) {
+    Usage usage = CURRENT.get();
+    if (usage == null) {
+      return;
+    }
+    CURRENT.remove();
+    Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+    String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+    summary("configurator.request.repository.calls", "Repository calls per request", null, request, uri)
+        .record(usage.repositoryCalls);
+    summary("configurator.request.rows", "Rows returned by repositories per request", "rows", request, uri)
+        .record(usage.rows);
+    summary("configurator.request.statements", "SQL statements sent by Hibernate per request", null, request, uri)
+        .record(usage.statements);
+  }
+
+  private DistributionSummary summary(String name, String description, String baseUnit, HttpServletRequest request,
+                                      String uri) {
+    return DistributionSummary.builder(name)
+        .description(description)
+        .baseUnit(baseUnit)
+        .tag("method", request.getMethod())
+        .tag("uri", uri)
+        .register(meterRegistry);
+  }
+
+  @Override
+  public Object invoke(MethodInvocation invocation) throws Throwable {
+    Object result = invocation.proceed();
+    Usage usage = CURRENT.get();
+    if (usage != null) {
+      usage.repositoryCalls++;
+      usage.rows += rows(result);
+    }
+    return result;
+  }
+
+  private static long rows(Object result) {
+    if (result == null || result instanceof Number || result instanceof Boolean) {
+      return 0;
+    }
+    if (result instanceof Collection<?> collection) {
+      return collection.size();
+    }
+    if (result instanceof Slice<?> slice) {
+      return slice.getNumberOfElements();
+    }
+    if (result instanceof Optional<?> optional) {
+      return optional.isPresent() ? 1 : 0;
+    }
+    return 1;
+  }
+
+  @Override
+  public String inspect(String sql) {
+    Usage usage = CURRENT.get();
+    if (usage != null) {
+      usage.statements++;
+    }
+    return sql;
+  }
+
+  private static final class Usage {
+    int repositoryCalls;
+    long rows;
+    int statements;
+  }
+}
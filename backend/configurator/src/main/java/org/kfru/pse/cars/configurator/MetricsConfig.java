@@ -0,0 +1,54 @@
+package org.kfru.pse.cars.configurator;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Hooks {@link DatabaseUsageTracker} into requests, repositories and Hibernate. Request timings
+ * (http.server.requests) come from Spring Boot, see management.metrics in application.yaml.
+ */
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+
+  private final DatabaseUsageTracker databaseUsageTracker;
+
+  @Autowired
+  MetricsConfig(DatabaseUsageTracker databaseUsageTracker) {
+    this.databaseUsageTracker = databaseUsageTracker;
+  }
+
+  @Override
+  public void addInterceptors(InterceptorRegistry registry) {
+    registry.addInterceptor(databaseUsageTracker);
+  }
+
+  @Bean
+  HibernatePropertiesCustomizer statementCounting() {
+    return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, databaseUsageTracker);
+  }
+
+  /**
+   * Adds the tracker as advice to every repository proxy.
+   */
+  @Bean
+  static BeanPostProcessor repositoryCallCounting(ObjectProvider<DatabaseUsageTracker> databaseUsageTracker) {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> repositoryFactoryBean) {
+          repositoryFactoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+              (proxyFactory, repositoryInformation) -> proxyFactory.addAdvice(databaseUsageTracker.getObject())));
+        }
+        return bean;
+      }
+    };
+  }
+}
@@ -1,41 +1,91 @@
 package org.kfru.pse.cars.configurator.controller;
 
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.kfru.pse.cars.configurator.model.ChosenCarFeature;
+import org.kfru.pse.cars.configurator.model.ConfigurationEvaluation;
 import org.kfru.pse.cars.configurator.model.OfferedCar;
-import org.kfru.pse.cars.configurator.repository.OfferedCarRepository;
+import org.kfru.pse.cars.configurator.service.ConfigurationCodec;
+import org.kfru.pse.cars.configurator.service.OfferedCarRegistry;
+import org.kfru.pse.cars.configurator.service.PricingEngine;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
-import java.util.Optional;
 
+/**
+ * Offered cars are answered from {@link OfferedCarRegistry} with pre-serialized JSON and an ETag;
+ * a matching If-None-Match gets 304.
+ */
 @CrossOrigin
 @RequestMapping("/offered-cars")
 @RestController
 public class OfferedCarsController {
 
 
-  private final OfferedCarRepository offeredCarRepository;
+  private final OfferedCarRegistry offeredCarRegistry;
+  private final ConfigurationCodec configurationCodec;
+  private final PricingEngine pricingEngine;
 
   @Autowired
-  public OfferedCarsController(OfferedCarRepository offeredCarRepository) {
-    this.offeredCarRepository = offeredCarRepository;
+  public OfferedCarsController(OfferedCarRegistry offeredCarRegistry, ConfigurationCodec configurationCodec,
+                               PricingEngine pricingEngine) {
+    this.offeredCarRegistry = offeredCarRegistry;
+    this.configurationCodec = configurationCodec;
+    this.pricingEngine = pricingEngine;
   }
 
-  @GetMapping
-  public List<OfferedCar> getAllOfferedCars() {
-    return offeredCarRepository.findAll();
+  @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+  @ApiResponse(responseCode = "200", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+      array = @ArraySchema(schema = @Schema(implementation = OfferedCar.class))))
+  public ResponseEntity<byte[]> getAllOfferedCars(WebRequest request) {
+    return toResponse(offeredCarRegistry.getAllJson(), request);
   }
 
-  @GetMapping("/{id}")
-  public OfferedCar getOfferedCarById(@PathVariable Integer id) {
-    Optional<OfferedCar> desiredCar = offeredCarRepository.findById(id);
-    if (desiredCar.isPresent()) {
-      return desiredCar.get();
-    } else {
-      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Car not found");
+  @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+  @ApiResponse(responseCode = "200", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+      schema = @Schema(implementation = OfferedCar.class)))
+  public ResponseEntity<byte[]> getOfferedCarById(@PathVariable Integer id, WebRequest request) {
+    OfferedCarRegistry.Json desiredCar = offeredCarRegistry.getJsonById(id)
+        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Car not found"));
+    return toResponse(desiredCar, request);
+  }
+
+  /**
+   * Price and availability of the given choices, cheap enough to be called on every change in the configurator.
+   */
+  @PostMapping("/{id}/evaluation")
+  public ConfigurationEvaluation evaluateConfiguration(@PathVariable Integer id,
+                                                       @RequestBody List<ChosenCarFeature> features) {
+    OfferedCar offeredCar = offeredCarRegistry.findById(id)
+        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Car not found"));
+    byte[] configuration;
+    try {
+      configuration = configurationCodec.pack(offeredCar, features);
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+    return pricingEngine.evaluate(id, configuration)
+        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "No pricing for car"));
+  }
+
+  private static ResponseEntity<byte[]> toResponse(OfferedCarRegistry.Json json, WebRequest request) {
+    if (request.checkNotModified(json.eTag())) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(json.eTag()).cacheControl(CacheControl.noCache()).build();
     }
+    return ResponseEntity.ok()
+        .eTag(json.eTag())
+        .cacheControl(CacheControl.noCache())
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(json.body());
   }
 
 }
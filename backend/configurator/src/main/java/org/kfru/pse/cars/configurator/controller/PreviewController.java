@@ -0,0 +1,70 @@
+package org.kfru.pse.cars.configurator.controller;
+
+import org.kfru.pse.cars.configurator.model.OfferedCar;
+import org.kfru.pse.cars.configurator.model.SavedCar;
+import org.kfru.pse.cars.configurator.service.ConfigurationCodec;
+import org.kfru.pse.cars.configurator.service.OfferedCarRegistry;
+import org.kfru.pse.cars.configurator.service.PreviewCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Preview images of shareable configuration codes, see {@link PreviewCache}.
+ */
+@CrossOrigin
+@RequestMapping("/previews")
+@RestController
+public class PreviewController {
+
+  private final ConfigurationCodec configurationCodec;
+  private final OfferedCarRegistry offeredCarRegistry;
+  private final PreviewCache previewCache;
+
+  @Autowired
+  public PreviewController(ConfigurationCodec configurationCodec, OfferedCarRegistry offeredCarRegistry,
+                           PreviewCache previewCache) {
+    this.configurationCodec = configurationCodec;
+    this.offeredCarRegistry = offeredCarRegistry;
+    this.previewCache = previewCache;
+  }
+
+  @GetMapping(value = "/{code}.png", produces = MediaType.IMAGE_PNG_VALUE)
+  public ResponseEntity<Resource> getPreview(@PathVariable String code, @RequestParam(required = false) Integer width,
+                                             WebRequest request) throws IOException {
+    int previewWidth = width == null ? previewCache.getDefaultWidth() : width;
+    if (!previewCache.isSupportedWidth(previewWidth)) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported width");
+    }
+    SavedCar configuration;
+    try {
+      configuration = configurationCodec.fromCode(code);
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+    }
+    OfferedCar offeredCar = offeredCarRegistry.findById(configuration.getOfferedCarId())
+        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Car not found"));
+    PreviewCache.Preview preview = previewCache.get(offeredCar, configuration.getConfiguration(), previewWidth)
+        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "No preview for car"));
+
+    CacheControl cacheControl = CacheControl.maxAge(Duration.ofDays(1)).cachePublic();
+    if (request.checkNotModified(preview.eTag())) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(preview.eTag()).cacheControl(cacheControl).build();
+    }
+    return ResponseEntity.ok()
+        .eTag(preview.eTag())
+        .cacheControl(cacheControl)
+        .contentType(MediaType.IMAGE_PNG)
+        .body(new FileSystemResource(preview.file()));
+  }
+}
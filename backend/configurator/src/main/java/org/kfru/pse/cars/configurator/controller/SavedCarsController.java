@@ -1,11 +1,26 @@
 package org.kfru.pse.cars.configurator.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import jakarta.servlet.http.HttpServletResponse;
+import org.kfru.pse.cars.configurator.model.BulkResult;
 import org.kfru.pse.cars.configurator.model.SavedCar;
+import org.kfru.pse.cars.configurator.model.SavedCarPage;
 import org.kfru.pse.cars.configurator.repository.SavedCarRepository;
+import org.kfru.pse.cars.configurator.service.ConfigurationCodec;
+import org.kfru.pse.cars.configurator.service.PopularityStatistics;
+import org.kfru.pse.cars.configurator.service.SavedCarBulkService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 @CrossOrigin
@@ -13,27 +28,152 @@ import java.util.List;
 @RestController
 public class SavedCarsController {
 
+  static final int DEFAULT_PAGE_SIZE = 50;
+  static final int MAX_PAGE_SIZE = 200;
+  static final int EXPORT_PAGE_SIZE = 500;
+  static final int MAX_BULK_ITEMS = 10_000;
+  static final String NDJSON = "application/x-ndjson";
+
   SavedCarRepository savedCarRepository;
+  ConfigurationCodec configurationCodec;
+  ObjectMapper objectMapper;
+  PopularityStatistics popularityStatistics;
+  SavedCarBulkService savedCarBulkService;
 
   @Autowired
-  SavedCarsController(SavedCarRepository savedCarRepository) {
+  SavedCarsController(SavedCarRepository savedCarRepository, ConfigurationCodec configurationCodec,
+                      ObjectMapper objectMapper, PopularityStatistics popularityStatistics,
+                      SavedCarBulkService savedCarBulkService) {
     this.savedCarRepository = savedCarRepository;
+    this.configurationCodec = configurationCodec;
+    this.objectMapper = objectMapper;
+    this.popularityStatistics = popularityStatistics;
+    this.savedCarBulkService = savedCarBulkService;
   }
 
+  /**
+   * All saved cars (of one offered car) at once - prefer {@link #getSavedCarsPage} or {@link #exportSavedCars}.
+   */
   @GetMapping
-  public List<SavedCar> getAllSavedCars() {
-    return savedCarRepository.findAll();
+  public List<SavedCar> getAllSavedCars(@RequestParam(required = false) Integer offeredCarId) {
+    List<SavedCar> savedCars = offeredCarId == null
+        ? savedCarRepository.findAll()
+        : savedCarRepository.findByOfferedCarId(offeredCarId);
+    savedCars.forEach(configurationCodec::decode);
+    return savedCars;
+  }
+
+  /**
+   * Saved cars ordered by id, limit (at most 200) per page. Pass the returned nextCursor as cursor to get
+   * the next page; each page is one index range query, also for deep pages.
+   */
+  @GetMapping("/page")
+  public SavedCarPage getSavedCarsPage(@RequestParam(required = false) Integer offeredCarId,
+                                       @RequestParam(required = false) String cursor,
+                                       @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+    if (limit < 1) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be positive");
+    }
+    int pageSize = Math.min(limit, MAX_PAGE_SIZE);
+    // One more than requested tells whether there is a next page
+    List<SavedCar> savedCars = loadPage(offeredCarId, cursor, pageSize + 1);
+    String nextCursor = null;
+    if (savedCars.size() > pageSize) {
+      savedCars = savedCars.subList(0, pageSize);
+      nextCursor = savedCars.get(pageSize - 1).getId();
+    }
+    savedCars.forEach(configurationCodec::decode);
+    return new SavedCarPage(savedCars, nextCursor);
+  }
+
+  /**
+   * All saved cars (of one offered car) as newline-delimited JSON, written page by page while reading,
+   * so neither side has to hold the whole list.
+   */
+  @GetMapping(value = "/export", produces = NDJSON)
+  @ApiResponse(responseCode = "200", content = @Content(mediaType = NDJSON, schema = @Schema(implementation = SavedCar.class)))
+  public void exportSavedCars(@RequestParam(required = false) Integer offeredCarId, HttpServletResponse response)
+      throws IOException {
+    response.setContentType(NDJSON);
+    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    OutputStream out = response.getOutputStream();
+    String cursor = null;
+    List<SavedCar> savedCars;
+    do {
+      savedCars = loadPage(offeredCarId, cursor, EXPORT_PAGE_SIZE);
+      for (SavedCar savedCar : savedCars) {
+        out.write(objectMapper.writeValueAsBytes(configurationCodec.decode(savedCar)));
+        out.write('\n');
+        cursor = savedCar.getId();
+      }
+      out.flush();
+    } while (savedCars.size() == EXPORT_PAGE_SIZE);
+  }
+
+  /**
+   * The configuration behind a shareable code, as an unsaved car.
+   */
+  @GetMapping("/shared/{code}")
+  public SavedCar getSharedConfiguration(@PathVariable String code) {
+    try {
+      return configurationCodec.fromCode(code);
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+    }
   }
 
   @PostMapping
   public SavedCar saveCar(@RequestBody SavedCar carToSave) {
-    return savedCarRepository.save(carToSave);
+    try {
+      configurationCodec.encode(carToSave);
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+    SavedCar savedCar = savedCarRepository.save(carToSave);
+    popularityStatistics.recordSaved(savedCar);
+    return configurationCodec.decode(savedCar);
   }
 
   @ResponseStatus(HttpStatus.NO_CONTENT)
   @DeleteMapping("/{id}")
   public void deleteSavedCar(@PathVariable String id) {
-    savedCarRepository.deleteById(id);
+    savedCarBulkService.delete(id);
+  }
+
+  /**
+   * Saves up to 10000 cars as new saved cars, chunk by chunk; the result of each car is at its index.
+   */
+  @PostMapping("/bulk")
+  public List<BulkResult> saveCars(@RequestBody List<SavedCar> carsToSave) {
+    checkBulkSize(carsToSave.size());
+    return savedCarBulkService.saveAll(carsToSave);
+  }
+
+  /**
+   * Deletes the saved cars with up to 10000 ids, chunk by chunk; the result of each id is at its index.
+   */
+  @PostMapping("/bulk-delete")
+  public List<BulkResult> deleteSavedCars(@RequestBody List<String> ids) {
+    checkBulkSize(ids.size());
+    return savedCarBulkService.deleteAll(ids);
+  }
+
+  private static void checkBulkSize(int size) {
+    if (size > MAX_BULK_ITEMS) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_BULK_ITEMS + " items per request");
+    }
+  }
+
+  private List<SavedCar> loadPage(Integer offeredCarId, String cursor, int size) {
+    Limit limit = Limit.of(size);
+    if (offeredCarId == null) {
+      return cursor == null
+          ? savedCarRepository.findByOrderByIdAsc(limit)
+          : savedCarRepository.findByIdGreaterThanOrderByIdAsc(cursor, limit);
+    }
+    return cursor == null
+        ? savedCarRepository.findByOfferedCarIdOrderByIdAsc(offeredCarId, limit)
+        : savedCarRepository.findByOfferedCarIdAndIdGreaterThanOrderByIdAsc(offeredCarId, cursor, limit);
   }
 
 }
@@ -0,0 +1,63 @@
+package org.kfru.pse.cars.configurator.controller;
+
+import org.kfru.pse.cars.configurator.model.CarStatistics;
+import org.kfru.pse.cars.configurator.service.PopularityStatistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Optional;
+
+@CrossOrigin
+@RequestMapping("/statistics")
+@RestController
+public class StatisticsController {
+
+  static final int MAX_TOP = 50;
+
+  PopularityStatistics popularityStatistics;
+
+  @Autowired
+  StatisticsController(PopularityStatistics popularityStatistics) {
+    this.popularityStatistics = popularityStatistics;
+  }
+
+  /**
+   * How often each variant of each feature of the offered car is chosen, in variant order.
+   */
+  @GetMapping("/offered-cars/{offeredCarId}")
+  public CarStatistics getVariantDistribution(@PathVariable int offeredCarId) {
+    return found(popularityStatistics.distribution(offeredCarId));
+  }
+
+  /**
+   * The limit (at most 50) most chosen variants of each feature of the offered car, most chosen first.
+   */
+  @GetMapping("/offered-cars/{offeredCarId}/top")
+  public CarStatistics getTopVariants(@PathVariable int offeredCarId, @RequestParam(defaultValue = "3") int limit) {
+    if (limit < 1 || limit > MAX_TOP) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_TOP);
+    }
+    return found(popularityStatistics.top(offeredCarId, limit));
+  }
+
+  /**
+   * Recounts all saved cars in the background, e.g. after saved cars were changed in the database directly.
+   */
+  @ResponseStatus(HttpStatus.ACCEPTED)
+  @PostMapping("/recompute")
+  public void recompute() {
+    if (popularityStatistics.isRecomputing()) {
+      throw new ResponseStatusException(HttpStatus.CONFLICT, "A recompute is already running");
+    }
+    popularityStatistics.recomputeInBackground();
+  }
+
+  private CarStatistics found(Optional<CarStatistics> statistics) {
+    if (!popularityStatistics.isComputed()) {
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Statistics are being computed");
+    }
+    return statistics.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Car not found"));
+  }
+}
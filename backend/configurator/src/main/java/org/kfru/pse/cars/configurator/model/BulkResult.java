@@ -0,0 +1,21 @@
+package org.kfru.pse.cars.configurator.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one item of a bulk request: index is its position in the request, status an HTTP status
+ * (201 created, 204 deleted, 400 invalid, 404 not found, 500 its chunk failed) and error the reason
+ * for any status but 201 and 204.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkResult {
+
+  int index;
+  String id;
+  int status;
+  String error;
+}
@@ -0,0 +1,48 @@
+package org.kfru.pse.cars.configurator.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * How often the variants of the features of an offered car are chosen in saved cars.
+ * share is the count relative to all saved cars of the offered car; computedAt is the time of the last
+ * full recompute, saves and deletes since then are included.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CarStatistics {
+
+  int offeredCarId;
+  long savedCars;
+  @JsonFormat(shape = JsonFormat.Shape.STRING)
+  Instant computedAt;
+  List<FeatureCounts> features;
+
+  @Data
+  @AllArgsConstructor
+  @NoArgsConstructor
+  public static class FeatureCounts {
+    int featureId;
+    String name;
+    /**
+     * Saved cars with any variant of the feature.
+     */
+    long chosen;
+    List<VariantCount> variants;
+  }
+
+  @Data
+  @AllArgsConstructor
+  @NoArgsConstructor
+  public static class VariantCount {
+    String variant;
+    long count;
+    double share;
+  }
+}
@@ -1,24 +1,20 @@
 package org.kfru.pse.cars.configurator.model;
 
-import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-@Entity
-@Table
+/**
+ * One chosen variant of a saved car; not stored by itself but part of {@link SavedCar#configuration}.
+ */
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class ChosenCarFeature {
 
-  @Id
-  @GeneratedValue(strategy = GenerationType.UUID)
   String id;
 
-  @ManyToOne
   CarFeature feature;
 
-  @Column(nullable = false)
   String variant;
 }
@@ -0,0 +1,37 @@
+package org.kfru.pse.cars.configurator.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Price and availability of a configuration of an offered car.
+ * available is false when the car is not offered or a constraint is violated;
+ * complete is false while some feature has no chosen variant.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ConfigurationEvaluation {
+
+  int offeredCarId;
+  String currency;
+  BigDecimal basePrice;
+  BigDecimal totalPrice;
+  boolean available;
+  boolean complete;
+  List<Line> lines;
+  List<String> violations;
+
+  @Data
+  @AllArgsConstructor
+  @NoArgsConstructor
+  public static class Line {
+    int featureId;
+    String variant;
+    BigDecimal price;
+  }
+}
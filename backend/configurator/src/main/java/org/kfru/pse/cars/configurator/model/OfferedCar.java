@@ -1,5 +1,6 @@
 package org.kfru.pse.cars.configurator.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -8,6 +9,7 @@ import java.util.List;
 @Entity
 @Table
 @Data
+@JsonIgnoreProperties("pricing") // read by PricingEngine from offered-cars.json
 @AllArgsConstructor
 @NoArgsConstructor
 public class OfferedCar {
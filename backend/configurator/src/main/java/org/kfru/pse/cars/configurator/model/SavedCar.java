@@ -1,5 +1,7 @@
 package org.kfru.pse.cars.configurator.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -7,8 +9,13 @@ import lombok.NoArgsConstructor;
 
 import java.util.List;
 
+/**
+ * A saved configuration is stored as a single row: the offered car and one variant ordinal per
+ * feature of that car, packed by {@link org.kfru.pse.cars.configurator.service.ConfigurationCodec}.
+ * The chosen features and the shareable code are derived from it and are not stored.
+ */
 @Entity
-@Table
+@Table(indexes = @Index(name = "idx_saved_car_offered_car_id", columnList = "offered_car_id, id"))
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -21,7 +28,19 @@ public class SavedCar {
   @Column(nullable = false)
   String name;
 
-  @OneToMany(cascade = CascadeType.ALL, orphanRemoval = true)
-  @Column(nullable = true)
+  /**
+   * Inferred from the chosen features when not given.
+   */
+  Integer offeredCarId;
+
+  @JsonIgnore
+  @Column(length = 64)
+  byte[] configuration;
+
+  @Transient
   List<ChosenCarFeature> features;
+
+  @Transient
+  @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+  String code;
 }
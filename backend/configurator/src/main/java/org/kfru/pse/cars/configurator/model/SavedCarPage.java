@@ -0,0 +1,20 @@
+package org.kfru.pse.cars.configurator.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of saved cars; nextCursor is null on the last page.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SavedCarPage {
+
+  List<SavedCar> items;
+
+  String nextCursor;
+}
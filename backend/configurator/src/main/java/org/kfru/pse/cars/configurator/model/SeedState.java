@@ -0,0 +1,31 @@
+package org.kfru.pse.cars.configurator.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Hash of a seed resource as of its last successful application.
+ */
+@Entity
+@Table
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SeedState {
+
+  @Id
+  String resource;
+
+  @Column(nullable = false)
+  String hash;
+
+  @Column(nullable = false)
+  Instant appliedAt;
+}
@@ -2,9 +2,20 @@ package org.kfru.pse.cars.configurator.repository;
 
 import jakarta.transaction.Transactional;
 import org.kfru.pse.cars.configurator.model.OfferedCar;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.ListCrudRepository;
 
+import java.util.List;
+
 
 @Transactional
 public interface OfferedCarRepository extends ListCrudRepository<OfferedCar, Integer> {
+
+  /**
+   * All offered cars with their features in one query.
+   */
+  @EntityGraph(attributePaths = "features")
+  @Query("select c from OfferedCar c order by c.id")
+  List<OfferedCar> findAllWithFeatures();
 }
@@ -2,8 +2,43 @@ package org.kfru.pse.cars.configurator.repository;
 
 import jakarta.transaction.Transactional;
 import org.kfru.pse.cars.configurator.model.SavedCar;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.repository.ListCrudRepository;
 
+import java.util.List;
+
 
 @Transactional
-public interface SavedCarRepository extends ListCrudRepository<SavedCar, String> {}
+public interface SavedCarRepository extends ListCrudRepository<SavedCar, String> {
+
+  List<SavedCar> findByOfferedCarId(Integer offeredCarId);
+
+  /**
+   * Rows of (offeredCarId, configuration, count), most saved first.
+   */
+  @Query("select s.offeredCarId, s.configuration, count(s) from SavedCar s where s.offeredCarId is not null"
+      + " group by s.offeredCarId, s.configuration order by count(s) desc")
+  List<Object[]> findPopularConfigurations(Limit limit);
+
+  // Rows of (id, offeredCarId, configuration) with from <= id < to, ordered by id, see PopularityStatistics
+
+  @Query("select s.id, s.offeredCarId, s.configuration from SavedCar s where s.offeredCarId is not null"
+      + " and s.id >= :from and s.id < :to order by s.id")
+  List<Object[]> findConfigurationsInRange(@Param("from") String from, @Param("to") String to, Limit limit);
+
+  @Query("select s.id, s.offeredCarId, s.configuration from SavedCar s where s.offeredCarId is not null"
+      + " and s.id >= :from order by s.id")
+  List<Object[]> findConfigurationsFrom(@Param("from") String from, Limit limit);
+
+  // Keyset pages ordered by id, see SavedCarsController#getSavedCarsPage
+
+  List<SavedCar> findByOrderByIdAsc(Limit limit);
+
+  List<SavedCar> findByIdGreaterThanOrderByIdAsc(String id, Limit limit);
+
+  List<SavedCar> findByOfferedCarIdOrderByIdAsc(Integer offeredCarId, Limit limit);
+
+  List<SavedCar> findByOfferedCarIdAndIdGreaterThanOrderByIdAsc(Integer offeredCarId, String id, Limit limit);
+}
@@ -0,0 +1,21 @@
+package org.kfru.pse.cars.configurator.repository;
+
+import jakarta.persistence.LockModeType;
+import jakarta.transaction.Transactional;
+import org.kfru.pse.cars.configurator.model.SeedState;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.ListCrudRepository;
+
+import java.util.Optional;
+
+@Transactional
+public interface SeedStateRepository extends ListCrudRepository<SeedState, String> {
+
+  /**
+   * Row-locks the state until the surrounding transaction ends, so instances seed one after another.
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select s from SeedState s where s.resource = :resource")
+  Optional<SeedState> findForUpdate(String resource);
+}
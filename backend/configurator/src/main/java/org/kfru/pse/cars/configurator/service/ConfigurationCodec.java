@@ -0,0 +1,175 @@
+package org.kfru.pse.cars.configurator.service;
+
+import org.kfru.pse.cars.configurator.model.CarFeature;
+import org.kfru.pse.cars.configurator.model.ChosenCarFeature;
+import org.kfru.pse.cars.configurator.model.OfferedCar;
+import org.kfru.pse.cars.configurator.model.SavedCar;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Converts between the chosen features of a saved car and its packed form.
+ * <p>
+ * The packed configuration has one byte per feature of the offered car, in feature ordinal order
+ * (see {@link OfferedCarRegistry}): 0 when the feature has no chosen variant, otherwise the index of the
+ * variant in {@link CarFeature#getVariants()} plus one. Features and variants in offered-cars.json may
+ * therefore only be appended, never reordered or removed.
+ * <p>
+ * The shareable code is the offered car id (unsigned varint) followed by the packed configuration,
+ * base64url-encoded, e.g. "AQMBAg" - the same configuration always has the same code.
+ */
+@Component
+public class ConfigurationCodec {
+
+  private static final int MAX_VARIANTS = 255;
+
+  private final OfferedCarRegistry offeredCarRegistry;
+
+  @Autowired
+  ConfigurationCodec(OfferedCarRegistry offeredCarRegistry) {
+    this.offeredCarRegistry = offeredCarRegistry;
+  }
+
+  /**
+   * Sets offeredCarId and configuration of car from its chosen features.
+   *
+   * @throws IllegalArgumentException for an unknown offered car, feature or variant
+   */
+  public SavedCar encode(SavedCar car) {
+    List<ChosenCarFeature> chosen = car.getFeatures() == null ? List.of() : car.getFeatures();
+    OfferedCar offeredCar = resolveOfferedCar(car.getOfferedCarId(), chosen);
+    car.setOfferedCarId(offeredCar == null ? null : offeredCar.getId());
+    car.setConfiguration(offeredCar == null ? new byte[0] : pack(offeredCar, chosen));
+    return car;
+  }
+
+  /**
+   * Sets features and code of car from its stored configuration.
+   */
+  public SavedCar decode(SavedCar car) {
+    OfferedCar offeredCar = car.getOfferedCarId() == null ? null
+        : offeredCarRegistry.findById(car.getOfferedCarId()).orElse(null);
+    byte[] configuration = car.getConfiguration() == null ? new byte[0] : car.getConfiguration();
+    car.setFeatures(offeredCar == null ? new ArrayList<>() : unpack(offeredCar, configuration, car.getId()));
+    car.setCode(offeredCar == null ? null : toCode(offeredCar.getId(), configuration));
+    return car;
+  }
+
+  public byte[] pack(OfferedCar offeredCar, List<ChosenCarFeature> chosen) {
+    List<CarFeature> features = offeredCar.getFeatures();
+    byte[] configuration = new byte[features.size()];
+    for (ChosenCarFeature choice : chosen) {
+      if (choice.getFeature() == null || choice.getVariant() == null) {
+        throw new IllegalArgumentException("A chosen feature needs a feature id and a variant");
+      }
+      int ordinal = featureOrdinal(features, choice.getFeature().getId());
+      if (ordinal < 0) {
+        throw new IllegalArgumentException("Car " + offeredCar.getId() + " has no feature " + choice.getFeature().getId());
+      }
+      int variant = variantOrdinal(features.get(ordinal).getVariants(), choice.getVariant());
+      if (variant < 0 || variant >= MAX_VARIANTS) {
+        throw new IllegalArgumentException("Unknown variant " + choice.getVariant() + " of feature " + choice.getFeature().getId());
+      }
+      configuration[ordinal] = (byte) (variant + 1);
+    }
+    return configuration;
+  }
+
+  /**
+   * The chosen features in feature ordinal order; ids are derived from savedCarId and the feature id.
+   */
+  public List<ChosenCarFeature> unpack(OfferedCar offeredCar, byte[] configuration, String savedCarId) {
+    List<CarFeature> features = offeredCar.getFeatures();
+    List<ChosenCarFeature> chosen = new ArrayList<>();
+    for (int ordinal = 0; ordinal < Math.min(features.size(), configuration.length); ordinal++) {
+      int variant = Byte.toUnsignedInt(configuration[ordinal]) - 1;
+      CarFeature feature = features.get(ordinal);
+      if (variant >= 0 && feature.getVariants() != null && variant < feature.getVariants().size()) {
+        String id = savedCarId == null ? null : savedCarId + "-" + feature.getId();
+        chosen.add(new ChosenCarFeature(id, feature, feature.getVariants().get(variant)));
+      }
+    }
+    return chosen;
+  }
+
+  public String toCode(int offeredCarId, byte[] configuration) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(configuration.length + 5);
+    int value = offeredCarId;
+    while ((value & ~0x7F) != 0) {
+      out.write((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+    out.writeBytes(configuration);
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(out.toByteArray());
+  }
+
+  /**
+   * An unsaved car (no id, no name) with the configuration behind code.
+   *
+   * @throws IllegalArgumentException when code is malformed or names an unknown offered car
+   */
+  public SavedCar fromCode(String code) {
+    byte[] bytes = Base64.getUrlDecoder().decode(code);
+    int offeredCarId = 0;
+    int position = 0;
+    for (int shift = 0; ; shift += 7) {
+      if (position >= bytes.length || shift > 28) {
+        throw new IllegalArgumentException("Malformed configuration code");
+      }
+      byte next = bytes[position++];
+      offeredCarId |= (next & 0x7F) << shift;
+      if ((next & 0x80) == 0) {
+        break;
+      }
+    }
+    if (offeredCarRegistry.findById(offeredCarId).isEmpty()) {
+      throw new IllegalArgumentException("Unknown car " + offeredCarId);
+    }
+    SavedCar car = new SavedCar();
+    car.setOfferedCarId(offeredCarId);
+    car.setConfiguration(Arrays.copyOfRange(bytes, position, bytes.length));
+    return decode(car);
+  }
+
+  private OfferedCar resolveOfferedCar(Integer offeredCarId, List<ChosenCarFeature> chosen) {
+    if (offeredCarId != null) {
+      return offeredCarRegistry.findById(offeredCarId)
+          .orElseThrow(() -> new IllegalArgumentException("Unknown car " + offeredCarId));
+    }
+    if (chosen.isEmpty() || chosen.get(0).getFeature() == null) {
+      return null;
+    }
+    int featureId = chosen.get(0).getFeature().getId();
+    return offeredCarRegistry.findByFeatureId(featureId)
+        .orElseThrow(() -> new IllegalArgumentException("Unknown feature " + featureId));
+  }
+
+  private static int featureOrdinal(List<CarFeature> features, int featureId) {
+    for (int ordinal = 0; ordinal < features.size(); ordinal++) {
+      if (features.get(ordinal).getId() == featureId) {
+        return ordinal;
+      }
+    }
+    return -1;
+  }
+
+  private static int variantOrdinal(List<String> variants, String variant) {
+    if (variants == null) {
+      return -1;
+    }
+    int index = variants.indexOf(variant);
+    for (int i = 0; index < 0 && i < variants.size(); i++) {
+      if (variants.get(i).equalsIgnoreCase(variant)) {
+        index = i;
+      }
+    }
+    return index;
+  }
+}
@@ -0,0 +1,94 @@
+package org.kfru.pse.cars.configurator.service;
+
+import lombok.extern.java.Log;
+import org.kfru.pse.cars.configurator.model.CarFeature;
+import org.kfru.pse.cars.configurator.model.ChosenCarFeature;
+import org.kfru.pse.cars.configurator.model.SavedCar;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes saved cars that were stored before {@link ConfigurationCodec} existed, i.e. with a
+ * chosen_car_feature row per feature. Runs once per startup and only touches rows without a
+ * configuration. The feature rows of encoded cars are removed afterwards, as their foreign key would
+ * otherwise block deleting the car; the old tables are left in place, and cars that could not be
+ * encoded keep their rows for a later run.
+ */
+@Component
+@Log
+public class LegacySavedCarMigration {
+
+  private static final String LEGACY_FEATURES = """
+      select s.id, c.feature_id, c.variant from saved_car s
+      join saved_car_features j on j.saved_car_id = s.id
+      join chosen_car_feature c on c.id = j.features_id
+      where s.configuration is null""";
+  // Idempotent, so a run interrupted between the statements is completed by the next one
+  private static final String DELETE_ENCODED_LINKS = """
+      delete from saved_car_features where saved_car_id in (
+        select id from saved_car where configuration is not null)""";
+  private static final String DELETE_UNLINKED_FEATURES = """
+      delete from chosen_car_feature where id not in (select features_id from saved_car_features)""";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final ConfigurationCodec configurationCodec;
+
+  @Autowired
+  LegacySavedCarMigration(JdbcTemplate jdbcTemplate, ConfigurationCodec configurationCodec) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.configurationCodec = configurationCodec;
+  }
+
+  // Before the listeners that read saved cars, e.g. PopularityStatistics
+  @Order(Ordered.HIGHEST_PRECEDENCE)
+  @EventListener(ApplicationReadyEvent.class)
+  public void migrate() {
+    Map<String, List<ChosenCarFeature>> legacy = new LinkedHashMap<>();
+    try {
+      jdbcTemplate.query(LEGACY_FEATURES, row -> {
+        CarFeature feature = new CarFeature(row.getInt(2), null, null);
+        legacy.computeIfAbsent(row.getString(1), id -> new ArrayList<>())
+            .add(new ChosenCarFeature(null, feature, row.getString(3)));
+      });
+    } catch (DataAccessException e) {
+      // No legacy tables - nothing to migrate
+      return;
+    }
+    if (!legacy.isEmpty()) {
+      encode(legacy);
+    }
+    int removed = jdbcTemplate.update(DELETE_ENCODED_LINKS);
+    jdbcTemplate.update(DELETE_UNLINKED_FEATURES);
+    if (removed > 0) {
+      log.info("Removed " + removed + " feature rows of encoded saved cars.");
+    }
+  }
+
+  private void encode(Map<String, List<ChosenCarFeature>> legacy) {
+    List<Object[]> updates = new ArrayList<>();
+    legacy.forEach((id, features) -> {
+      SavedCar car = new SavedCar(id, null, null, null, features, null);
+      try {
+        configurationCodec.encode(car);
+        updates.add(new Object[]{car.getOfferedCarId(), car.getConfiguration(), id});
+      } catch (IllegalArgumentException e) {
+        log.warning("Saved car " + id + " could not be migrated: " + e.getMessage());
+      }
+    });
+    if (!updates.isEmpty()) {
+      jdbcTemplate.batchUpdate("update saved_car set offered_car_id = ?, configuration = ? where id = ?", updates);
+      log.info("Migrated " + updates.size() + " saved cars to the packed configuration.");
+    }
+  }
+}
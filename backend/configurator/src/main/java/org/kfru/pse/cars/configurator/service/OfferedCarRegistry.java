@@ -0,0 +1,148 @@
+package org.kfru.pse.cars.configurator.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.java.Log;
+import org.kfru.pse.cars.configurator.model.CarFeature;
+import org.kfru.pse.cars.configurator.model.OfferedCar;
+import org.kfru.pse.cars.configurator.repository.OfferedCarRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * In-memory copy of the offered cars, read from the database in one query at startup and after every
+ * seeding attempt ({@link #reload()}, called by {@link SetupService}). Besides the cars it keeps their JSON and an ETag, so the offered
+ * cars endpoints never touch the database. The held cars are shared and must not be modified.
+ * <p>
+ * Every reload publishes a {@link Reloaded} event, so caches derived from the cars (e.g. {@link PricingEngine})
+ * are rebuilt once per change instead of checking for one on every request.
+ */
+@Service
+@Log
+public class OfferedCarRegistry {
+
+  private final OfferedCarRepository offeredCarRepository;
+  private final ObjectMapper objectMapper;
+  private final ApplicationEventPublisher eventPublisher;
+
+  private volatile Snapshot snapshot;
+
+  @Autowired
+  OfferedCarRegistry(OfferedCarRepository offeredCarRepository, ObjectMapper objectMapper,
+                     ApplicationEventPublisher eventPublisher) {
+    this.offeredCarRepository = offeredCarRepository;
+    this.objectMapper = objectMapper;
+    this.eventPublisher = eventPublisher;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void loadIfMissing() {
+    if (snapshot == null) {
+      reload();
+    }
+  }
+
+  /**
+   * Re-reads all offered cars; to be called after they were changed in the database.
+   */
+  public synchronized void reload() {
+    Map<Integer, OfferedCar> cars = new LinkedHashMap<>();
+    Map<Integer, Json> carJson = new LinkedHashMap<>();
+    Map<Integer, OfferedCar> carsByFeature = new HashMap<>();
+    for (OfferedCar car : offeredCarRepository.findAllWithFeatures()) {
+      OfferedCar copy = copyOf(car);
+      cars.put(copy.getId(), copy);
+      carJson.put(copy.getId(), toJson(copy));
+      copy.getFeatures().forEach(feature -> carsByFeature.putIfAbsent(feature.getId(), copy));
+    }
+    List<OfferedCar> all = List.copyOf(cars.values());
+    snapshot = new Snapshot(all, Map.copyOf(cars), Map.copyOf(carsByFeature), toJson(all), Map.copyOf(carJson));
+    log.info("Offered car registry loaded with " + all.size() + " cars.");
+    // Listeners run synchronously, still holding the lock: reloads reach them one at a time and in order
+    eventPublisher.publishEvent(new Reloaded(all));
+  }
+
+  public List<OfferedCar> findAll() {
+    return current().all();
+  }
+
+  public Optional<OfferedCar> findById(int id) {
+    return Optional.ofNullable(current().byId().get(id));
+  }
+
+  /**
+   * The (first) offered car that has the feature.
+   */
+  public Optional<OfferedCar> findByFeatureId(int featureId) {
+    return Optional.ofNullable(current().byFeatureId().get(featureId));
+  }
+
+  /**
+   * JSON array of all offered cars.
+   */
+  public Json getAllJson() {
+    return current().allJson();
+  }
+
+  public Optional<Json> getJsonById(int id) {
+    return Optional.ofNullable(current().jsonById().get(id));
+  }
+
+  private Snapshot current() {
+    Snapshot current = snapshot;
+    if (current == null) {
+      // A request before startup finished
+      reload();
+      current = snapshot;
+    }
+    return current;
+  }
+
+  private Json toJson(Object value) {
+    try {
+      byte[] body = objectMapper.writeValueAsBytes(value);
+      return new Json(body, "\"" + DigestUtils.md5DigestAsHex(body) + "\"");
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Failed to serialize offered cars", e);
+    }
+  }
+
+  /**
+   * Features are ordered by id - their position is the feature ordinal used by {@link ConfigurationCodec}.
+   */
+  private static OfferedCar copyOf(OfferedCar car) {
+    List<CarFeature> features = car.getFeatures() == null ? List.of() : car.getFeatures().stream()
+        .sorted(Comparator.comparingInt(CarFeature::getId))
+        .map(feature -> new CarFeature(feature.getId(), feature.getName(),
+            feature.getVariants() == null ? null : List.copyOf(feature.getVariants())))
+        .toList();
+    return new OfferedCar(car.getId(), car.getName(), car.getSlogan(), car.isAvailable(), features, car.getImageUrl());
+  }
+
+  /**
+   * Serialized JSON body and its (quoted) ETag.
+   */
+  public record Json(byte[] body, String eTag) {
+  }
+
+  /**
+   * Published after every reload, with the cars now held.
+   */
+  public record Reloaded(List<OfferedCar> cars) {
+  }
+
+  private record Snapshot(List<OfferedCar> all, Map<Integer, OfferedCar> byId, Map<Integer, OfferedCar> byFeatureId,
+                          Json allJson, Map<Integer, Json> jsonById) {
+  }
+}
@@ -0,0 +1,334 @@
+package org.kfru.pse.cars.configurator.service;
+
+import lombok.extern.java.Log;
+import org.kfru.pse.cars.configurator.model.CarFeature;
+import org.kfru.pse.cars.configurator.model.CarStatistics;
+import org.kfru.pse.cars.configurator.model.OfferedCar;
+import org.kfru.pse.cars.configurator.model.SavedCar;
+import org.kfru.pse.cars.configurator.repository.SavedCarRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Counts how often each variant of each feature is chosen in saved cars, per offered car.
+ * <p>
+ * The counts of a car are a long[feature ordinal][variant ordinal] array, the same ordinals as the packed
+ * configuration (see {@link ConfigurationCodec}), so recording a saved or deleted car is one increment per
+ * chosen feature. {@link #recompute()} rebuilds all counts from the database - at startup, every night and
+ * on demand - scanning 16 ranges of saved car ids in parallel. Saves and deletes recorded while it runs
+ * are buffered and replayed onto the new counts before they replace the current ones; one whose row the
+ * scan already saw (committed just before the scan passed its id) is counted twice until the next recompute.
+ */
+@Service
+@Log
+public class PopularityStatistics {
+
+  // Saved car ids are UUIDs, so their first hex digit splits them into even ranges
+  private static final String[] RANGE_STARTS =
+      {"", "1", "2", "3", "4", "5", "6", "7", "8", "9", "a", "b", "c", "d", "e", "f"};
+
+  private final SavedCarRepository savedCarRepository;
+  private final OfferedCarRegistry offeredCarRegistry;
+
+  @Value("${configurator.statistics.parallelism:4}")
+  int parallelism;
+
+  @Value("${configurator.statistics.page-size:1000}")
+  int pageSize;
+
+  private volatile Map<Integer, Counts> counts = new ConcurrentHashMap<>();
+  private volatile Instant computedAt;
+  private final AtomicBoolean recomputing = new AtomicBoolean();
+
+  // Deltas recorded during a recompute; records hold the read lock, the swap of the counts the write lock
+  private volatile Queue<Delta> pendingDeltas;
+  private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+  @Autowired
+  PopularityStatistics(SavedCarRepository savedCarRepository, OfferedCarRegistry offeredCarRegistry) {
+    this.savedCarRepository = savedCarRepository;
+    this.offeredCarRegistry = offeredCarRegistry;
+  }
+
+  public void recordSaved(SavedCar savedCar) {
+    record(savedCar, 1);
+  }
+
+  public void recordDeleted(SavedCar savedCar) {
+    record(savedCar, -1);
+  }
+
+  private void record(SavedCar savedCar, int delta) {
+    if (savedCar.getOfferedCarId() == null || savedCar.getConfiguration() == null) {
+      return;
+    }
+    swapLock.readLock().lock();
+    try {
+      counts.computeIfAbsent(savedCar.getOfferedCarId(), id -> new Counts())
+          .add(savedCar.getConfiguration(), delta);
+      Queue<Delta> pending = pendingDeltas;
+      if (pending != null) {
+        pending.add(new Delta(savedCar.getOfferedCarId(), savedCar.getConfiguration(), delta));
+      }
+    } finally {
+      swapLock.readLock().unlock();
+    }
+  }
+
+  public boolean isComputed() {
+    return computedAt != null;
+  }
+
+  public boolean isRecomputing() {
+    return recomputing.get();
+  }
+
+  /**
+   * Counts of all variants in variant order; empty for an unknown offered car.
+   */
+  public Optional<CarStatistics> distribution(int offeredCarId) {
+    return statistics(offeredCarId, Integer.MAX_VALUE);
+  }
+
+  /**
+   * The limit most chosen variants of each feature, most chosen first; empty for an unknown offered car.
+   */
+  public Optional<CarStatistics> top(int offeredCarId, int limit) {
+    return statistics(offeredCarId, limit);
+  }
+
+  private Optional<CarStatistics> statistics(int offeredCarId, int limit) {
+    Optional<OfferedCar> offeredCar = offeredCarRegistry.findById(offeredCarId);
+    if (offeredCar.isEmpty()) {
+      return Optional.empty();
+    }
+    Counts carCounts = counts.get(offeredCarId);
+    long savedCars;
+    long[][] variantCounts;
+    if (carCounts == null) {
+      savedCars = 0;
+      variantCounts = new long[0][];
+    } else {
+      synchronized (carCounts) {
+        savedCars = carCounts.savedCars;
+        variantCounts = carCounts.copyOfVariants();
+      }
+    }
+
+    List<CarFeature> features = offeredCar.get().getFeatures();
+    List<CarStatistics.FeatureCounts> featureCounts = new ArrayList<>(features.size());
+    for (int f = 0; f < features.size(); f++) {
+      CarFeature feature = features.get(f);
+      List<String> variants = feature.getVariants() == null ? List.of() : feature.getVariants();
+      long[] row = f < variantCounts.length && variantCounts[f] != null ? variantCounts[f] : new long[0];
+      long chosen = 0;
+      List<CarStatistics.VariantCount> variantList = new ArrayList<>(variants.size());
+      for (int v = 0; v < variants.size(); v++) {
+        long count = v < row.length ? row[v] : 0;
+        chosen += count;
+        variantList.add(new CarStatistics.VariantCount(variants.get(v), count,
+            savedCars == 0 ? 0 : (double) count / savedCars));
+      }
+      if (limit < variantList.size()) {
+        variantList = variantList.stream()
+            .sorted(Comparator.comparingLong(CarStatistics.VariantCount::getCount).reversed())
+            .limit(limit)
+            .toList();
+      }
+      featureCounts.add(new CarStatistics.FeatureCounts(feature.getId(), feature.getName(), chosen, variantList));
+    }
+    return Optional.of(new CarStatistics(offeredCarId, savedCars, computedAt, featureCounts));
+  }
+
+  @Async
+  @EventListener(ApplicationReadyEvent.class)
+  public void recomputeOnStartup() {
+    recompute();
+  }
+
+  @Scheduled(cron = "${configurator.statistics.reconcile-cron:0 30 3 * * *}")
+  public void reconcile() {
+    recompute();
+  }
+
+  @Async
+  public void recomputeInBackground() {
+    recompute();
+  }
+
+  /**
+   * Counts all saved cars from scratch and replaces the current counts; false when a recompute is
+   * already running.
+   */
+  public boolean recompute() {
+    if (!recomputing.compareAndSet(false, true)) {
+      return false;
+    }
+    long started = System.nanoTime();
+    // Before the scan starts: a delta recorded without seeing the buffer was committed before, the scan counts it
+    pendingDeltas = new ConcurrentLinkedQueue<>();
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+    try {
+      List<Future<Map<Integer, Counts>>> ranges = new ArrayList<>();
+      for (int r = 0; r < RANGE_STARTS.length; r++) {
+        String from = RANGE_STARTS[r];
+        String to = r + 1 < RANGE_STARTS.length ? RANGE_STARTS[r + 1] : null;
+        ranges.add(executor.submit(() -> countRange(from, to)));
+      }
+      Map<Integer, Counts> recomputed = new ConcurrentHashMap<>();
+      long savedCars = 0;
+      for (Future<Map<Integer, Counts>> range : ranges) {
+        for (Map.Entry<Integer, Counts> carCounts : range.get().entrySet()) {
+          recomputed.computeIfAbsent(carCounts.getKey(), id -> new Counts()).addAll(carCounts.getValue());
+          savedCars += carCounts.getValue().savedCars;
+        }
+      }
+      int replayed = swap(recomputed);
+      computedAt = Instant.now();
+      log.info("Popularity statistics recomputed from " + savedCars + " saved cars in "
+          + (System.nanoTime() - started) / 1_000_000 + " ms, " + replayed + " changes meanwhile replayed.");
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Recompute of popularity statistics was interrupted", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Recompute of popularity statistics failed", e.getCause());
+    } finally {
+      executor.shutdownNow();
+      pendingDeltas = null;
+      recomputing.set(false);
+    }
+  }
+
+  /**
+   * Replays the deltas recorded during the recompute onto recomputed and makes it the current counts;
+   * returns the number of replayed deltas.
+   */
+  private int swap(Map<Integer, Counts> recomputed) {
+    swapLock.writeLock().lock();
+    try {
+      int replayed = 0;
+      for (Delta delta : pendingDeltas) {
+        recomputed.computeIfAbsent(delta.offeredCarId(), id -> new Counts()).add(delta.configuration(), delta.delta());
+        replayed++;
+      }
+      pendingDeltas = null;
+      counts = recomputed;
+      return replayed;
+    } finally {
+      swapLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Counts the saved cars with from <= id < to (no upper bound when to is null), in keyset pages.
+   * A page starts at the last id of the previous one, which is therefore skipped once.
+   */
+  private Map<Integer, Counts> countRange(String from, String to) {
+    Map<Integer, Counts> rangeCounts = new HashMap<>();
+    Limit limit = Limit.of(Math.max(2, pageSize));
+    String cursor = from;
+    String last = null;
+    List<Object[]> rows;
+    do {
+      rows = to == null
+          ? savedCarRepository.findConfigurationsFrom(cursor, limit)
+          : savedCarRepository.findConfigurationsInRange(cursor, to, limit);
+      for (Object[] row : rows) {
+        String id = (String) row[0];
+        if (id.equals(last)) {
+          continue;
+        }
+        rangeCounts.computeIfAbsent((Integer) row[1], carId -> new Counts()).add((byte[]) row[2], 1);
+        last = id;
+      }
+      cursor = last;
+    } while (rows.size() == limit.max());
+    return rangeCounts;
+  }
+
+  private record Delta(int offeredCarId, byte[] configuration, int delta) {
+  }
+
+  /**
+   * Counts of one offered car; rows grow on demand, so configurations of cars the registry does not know
+   * (yet) are counted as well.
+   */
+  private static final class Counts {
+    private long savedCars;
+    private long[][] variants = new long[0][];
+
+    synchronized void add(byte[] configuration, int delta) {
+      savedCars += delta;
+      if (configuration.length > variants.length) {
+        variants = Arrays.copyOf(variants, configuration.length);
+      }
+      for (int f = 0; f < configuration.length; f++) {
+        int v = Byte.toUnsignedInt(configuration[f]) - 1;
+        if (v < 0) {
+          continue;
+        }
+        grow(f, v + 1)[v] += delta;
+      }
+    }
+
+    synchronized void addAll(Counts other) {
+      savedCars += other.savedCars;
+      if (other.variants.length > variants.length) {
+        variants = Arrays.copyOf(variants, other.variants.length);
+      }
+      for (int f = 0; f < other.variants.length; f++) {
+        long[] row = other.variants[f];
+        if (row == null) {
+          continue;
+        }
+        long[] target = grow(f, row.length);
+        for (int v = 0; v < row.length; v++) {
+          target[v] += row[v];
+        }
+      }
+    }
+
+    long[][] copyOfVariants() {
+      long[][] copy = new long[variants.length][];
+      for (int f = 0; f < variants.length; f++) {
+        copy[f] = variants[f] == null ? null : variants[f].clone();
+      }
+      return copy;
+    }
+
+    private long[] grow(int feature, int length) {
+      long[] row = variants[feature];
+      if (row == null || row.length < length) {
+        row = row == null ? new long[length] : Arrays.copyOf(row, length);
+        variants[feature] = row;
+      }
+      return row;
+    }
+  }
+}
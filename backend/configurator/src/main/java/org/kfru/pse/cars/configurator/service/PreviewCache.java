@@ -0,0 +1,239 @@
+package org.kfru.pse.cars.configurator.service;
+
+import lombok.extern.java.Log;
+import org.kfru.pse.cars.configurator.model.OfferedCar;
+import org.kfru.pse.cars.configurator.repository.SavedCarRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Rendered previews on disk, one PNG per (car, configuration, width, asset version).
+ * <p>
+ * A preview's file name is the hash of those inputs, so a file never changes once written and can be
+ * served as a static file with a strong ETag. The directory is bounded by configurator.previews.cache-max-bytes
+ * and evicts the least recently served preview first. The most saved configurations are rendered ahead
+ * of time by {@link #prewarm()}. Never lazily initialized, the prewarming is only scheduled once the bean exists.
+ */
+@Service
+@Lazy(false)
+@Log
+public class PreviewCache {
+
+  private final PreviewRenderer previewRenderer;
+  private final OfferedCarRegistry offeredCarRegistry;
+  private final SavedCarRepository savedCarRepository;
+  private final Path directory;
+  private final long maxBytes;
+  private final Set<Integer> widths;
+
+  @Value("${configurator.previews.default-width:640}")
+  int defaultWidth;
+
+  @Value("${configurator.previews.prewarm-top:20}")
+  int prewarmTop;
+
+  // Access-ordered: iteration starts at the least recently served preview
+  private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(256, 0.75f, true);
+  private final Map<String, Object> rendering = new ConcurrentHashMap<>();
+  private long totalBytes;
+
+  @Autowired
+  PreviewCache(PreviewRenderer previewRenderer, OfferedCarRegistry offeredCarRegistry,
+               SavedCarRepository savedCarRepository,
+               @Value("${configurator.previews.cache-dir:./data/previews}") String cacheDir,
+               @Value("${configurator.previews.cache-max-bytes:268435456}") long maxBytes,
+               @Value("${configurator.previews.widths:320,640,1280}") List<Integer> widths) {
+    this.previewRenderer = previewRenderer;
+    this.offeredCarRegistry = offeredCarRegistry;
+    this.savedCarRepository = savedCarRepository;
+    this.directory = Paths.get(cacheDir).toAbsolutePath().normalize();
+    this.maxBytes = maxBytes;
+    this.widths = Set.copyOf(widths);
+    loadExisting();
+  }
+
+  public boolean isSupportedWidth(int width) {
+    return widths.contains(width);
+  }
+
+  public int getDefaultWidth() {
+    return defaultWidth;
+  }
+
+  /**
+   * The preview of configuration, rendered on first use; empty when there are no assets for the car.
+   */
+  public Optional<Preview> get(OfferedCar offeredCar, byte[] configuration, int width) throws IOException {
+    Optional<String> assetVersion = previewRenderer.assetVersion(offeredCar.getId());
+    if (assetVersion.isEmpty()) {
+      return Optional.empty();
+    }
+    String key = DigestUtils.md5DigestAsHex((offeredCar.getId() + ":" + HexFormat.of().formatHex(configuration)
+        + ":" + width + ":" + assetVersion.get()).getBytes(StandardCharsets.UTF_8));
+    Optional<Preview> cached = lookup(key);
+    if (cached.isPresent()) {
+      return cached;
+    }
+
+    Object lock = rendering.computeIfAbsent(key, k -> new Object());
+    synchronized (lock) {
+      try {
+        cached = lookup(key);
+        if (cached.isPresent()) {
+          return cached;
+        }
+        BufferedImage image = previewRenderer.render(offeredCar, configuration, width);
+        return image == null ? Optional.empty() : Optional.of(store(key, image));
+      } finally {
+        rendering.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Renders the most saved configurations at the default width.
+   */
+  @Scheduled(initialDelayString = "${configurator.previews.prewarm-delay:PT1M}",
+      fixedDelayString = "${configurator.previews.prewarm-interval:PT1H}")
+  public void prewarm() {
+    int rendered = 0;
+    for (Object[] row : savedCarRepository.findPopularConfigurations(Limit.of(prewarmTop))) {
+      Optional<OfferedCar> offeredCar = offeredCarRegistry.findById((Integer) row[0]);
+      if (offeredCar.isEmpty()) {
+        continue;
+      }
+      try {
+        if (get(offeredCar.get(), (byte[]) row[1], defaultWidth).isPresent()) {
+          rendered++;
+        }
+      } catch (IOException e) {
+        log.warning("Could not prewarm preview of car " + row[0] + ": " + e.getMessage());
+      }
+    }
+    log.info("Prewarmed " + rendered + " configuration previews.");
+  }
+
+  private Optional<Preview> lookup(String key) {
+    synchronized (this) {
+      if (entries.get(key) == null) {
+        return Optional.empty();
+      }
+    }
+    Path file = fileOf(key);
+    if (!Files.exists(file)) {
+      remove(key);
+      return Optional.empty();
+    }
+    return Optional.of(new Preview(file, "\"" + key + "\""));
+  }
+
+  private Preview store(String key, BufferedImage image) throws IOException {
+    Path file = fileOf(key);
+    Files.createDirectories(file.getParent());
+    Path temp = Files.createTempFile(file.getParent(), key, ".tmp");
+    try {
+      ImageIO.write(image, "png", temp.toFile());
+      try {
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    add(key, Files.size(file));
+    return new Preview(file, "\"" + key + "\"");
+  }
+
+  private Path fileOf(String key) {
+    return directory.resolve(key.substring(0, 2)).resolve(key + ".png");
+  }
+
+  private synchronized void add(String key, long length) {
+    Long previous = entries.put(key, length);
+    totalBytes += length - (previous == null ? 0 : previous);
+
+    Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+    while (totalBytes > maxBytes && eldest.hasNext()) {
+      Map.Entry<String, Long> victim = eldest.next();
+      if (victim.getKey().equals(key)) {
+        continue;
+      }
+      eldest.remove();
+      totalBytes -= victim.getValue();
+      try {
+        Files.deleteIfExists(fileOf(victim.getKey()));
+      } catch (IOException e) {
+        log.warning("Could not delete evicted preview " + victim.getKey() + ": " + e.getMessage());
+      }
+    }
+  }
+
+  private synchronized void remove(String key) {
+    Long removed = entries.remove(key);
+    if (removed != null) {
+      totalBytes -= removed;
+    }
+  }
+
+  /**
+   * Picks up previews of earlier runs, least recently written first.
+   */
+  private void loadExisting() {
+    try {
+      Files.createDirectories(directory);
+      List<Path> files;
+      try (Stream<Path> walk = Files.walk(directory, 2)) {
+        files = walk.filter(file -> file.getFileName().toString().endsWith(".png"))
+            .sorted((a, b) -> lastModified(a).compareTo(lastModified(b)))
+            .toList();
+      }
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        add(name.substring(0, name.length() - ".png".length()), Files.size(file));
+      }
+      log.info("Preview cache holds " + entries.size() + " files (" + totalBytes + " bytes).");
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not open preview cache at " + directory, e);
+    }
+  }
+
+  private static Long lastModified(Path file) {
+    try {
+      return Files.getLastModifiedTime(file).toMillis();
+    } catch (IOException e) {
+      return 0L;
+    }
+  }
+
+  /**
+   * A rendered preview and its (quoted) ETag.
+   */
+  public record Preview(Path file, String eTag) {
+  }
+}
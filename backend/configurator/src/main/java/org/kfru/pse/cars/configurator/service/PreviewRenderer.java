@@ -0,0 +1,211 @@
+package org.kfru.pse.cars.configurator.service;
+
+import lombok.extern.java.Log;
+import org.kfru.pse.cars.configurator.model.CarFeature;
+import org.kfru.pse.cars.configurator.model.OfferedCar;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Renders a preview image of a configuration by recoloring layered assets with Java2D.
+ * <p>
+ * Assets of a car live in {asset-dir}/{offeredCarId}/: base.png (or base.jpg) is the car in neutral grey,
+ * feature-{featureId}.png an optional mask of the area a feature colors (alpha, or brightness when the
+ * mask has no alpha). Masked pixels are tinted with the chosen color while keeping their shading; chosen
+ * features without a mask are shown as color swatches below the car.
+ * <p>
+ * The asset version of a car is kept in memory and re-read every configurator.previews.asset-refresh-interval,
+ * so serving a cached preview does not touch the asset directory; changed assets show up after that interval.
+ */
+@Component
+@Log
+public class PreviewRenderer {
+
+  private final Path assetDirectory;
+  // Empty for cars without a base image, so those are not looked up on every request either
+  private final Map<Integer, Optional<String>> assetVersions = new ConcurrentHashMap<>();
+
+  PreviewRenderer(@Value("${configurator.previews.asset-dir:./preview-assets}") String assetDir) {
+    this.assetDirectory = Paths.get(assetDir).toAbsolutePath().normalize();
+  }
+
+  /**
+   * Changes whenever an asset of the car changes (at most asset-refresh-interval late); empty when the car
+   * has no base image.
+   */
+  public Optional<String> assetVersion(int offeredCarId) throws IOException {
+    Optional<String> version = assetVersions.get(offeredCarId);
+    if (version == null) {
+      version = readAssetVersion(offeredCarId);
+      assetVersions.put(offeredCarId, version);
+    }
+    return version;
+  }
+
+  @Scheduled(initialDelayString = "${configurator.previews.asset-refresh-interval:PT1M}",
+      fixedDelayString = "${configurator.previews.asset-refresh-interval:PT1M}")
+  public void refreshAssetVersions() {
+    for (Integer offeredCarId : assetVersions.keySet()) {
+      try {
+        assetVersions.put(offeredCarId, readAssetVersion(offeredCarId));
+      } catch (IOException e) {
+        // Read again on the next request
+        assetVersions.remove(offeredCarId);
+        log.warning("Preview assets of car " + offeredCarId + " could not be read: " + e.getMessage());
+      }
+    }
+  }
+
+  private Optional<String> readAssetVersion(int offeredCarId) throws IOException {
+    Path carDirectory = assetDirectory.resolve(Integer.toString(offeredCarId));
+    if (baseImage(carDirectory).isEmpty()) {
+      return Optional.empty();
+    }
+    StringBuilder version = new StringBuilder();
+    try (Stream<Path> files = Files.list(carDirectory)) {
+      for (Path file : files.sorted().toList()) {
+        version.append(file.getFileName()).append(':').append(Files.size(file)).append(':')
+            .append(Files.getLastModifiedTime(file).toMillis()).append(';');
+      }
+    }
+    return Optional.of(DigestUtils.md5DigestAsHex(version.toString().getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * The preview scaled to width, or null when the car has no base image.
+   */
+  public BufferedImage render(OfferedCar offeredCar, byte[] configuration, int width) throws IOException {
+    Path carDirectory = assetDirectory.resolve(Integer.toString(offeredCar.getId()));
+    Optional<Path> baseFile = baseImage(carDirectory);
+    if (baseFile.isEmpty()) {
+      return null;
+    }
+    BufferedImage base = ImageIO.read(baseFile.get().toFile());
+    int baseWidth = base.getWidth();
+    int baseHeight = base.getHeight();
+    int[] pixels = base.getRGB(0, 0, baseWidth, baseHeight, null, 0, baseWidth);
+
+    List<Color> swatches = new ArrayList<>();
+    List<CarFeature> features = offeredCar.getFeatures();
+    for (int f = 0; f < Math.min(features.size(), configuration.length); f++) {
+      int variant = Byte.toUnsignedInt(configuration[f]) - 1;
+      List<String> variants = features.get(f).getVariants();
+      if (variant < 0 || variants == null || variant >= variants.size()) {
+        continue;
+      }
+      Color color;
+      try {
+        color = Color.decode(variants.get(variant));
+      } catch (NumberFormatException e) {
+        // Not a color variant
+        continue;
+      }
+      Path mask = carDirectory.resolve("feature-" + features.get(f).getId() + ".png");
+      if (Files.exists(mask)) {
+        tint(pixels, scaled(ImageIO.read(mask.toFile()), baseWidth, baseHeight), color);
+      } else {
+        swatches.add(color);
+      }
+    }
+
+    BufferedImage composed = new BufferedImage(baseWidth, baseHeight, BufferedImage.TYPE_INT_ARGB);
+    composed.setRGB(0, 0, baseWidth, baseHeight, pixels, 0, baseWidth);
+    int height = Math.max(1, Math.round(baseHeight * (width / (float) baseWidth)));
+    BufferedImage preview = scaled(composed, width, height);
+    drawSwatches(preview, swatches);
+    return preview;
+  }
+
+  private static Optional<Path> baseImage(Path carDirectory) {
+    return Stream.of("base.png", "base.jpg")
+        .map(carDirectory::resolve)
+        .filter(Files::isRegularFile)
+        .findFirst();
+  }
+
+  /**
+   * Multiplies the brightness of masked pixels with color (mid grey gives exactly color).
+   */
+  private static void tint(int[] pixels, BufferedImage mask, Color color) {
+    boolean alphaMask = mask.getColorModel().hasAlpha();
+    int[] maskPixels = mask.getRGB(0, 0, mask.getWidth(), mask.getHeight(), null, 0, mask.getWidth());
+    for (int i = 0; i < pixels.length; i++) {
+      int m = maskPixels[i];
+      float weight = (alphaMask ? m >>> 24 : luminance(m)) / 255f;
+      if (weight == 0) {
+        continue;
+      }
+      int p = pixels[i];
+      float shade = luminance(p) * 2 / 255f;
+      int r = blend((p >> 16) & 0xFF, color.getRed() * shade, weight);
+      int g = blend((p >> 8) & 0xFF, color.getGreen() * shade, weight);
+      int b = blend(p & 0xFF, color.getBlue() * shade, weight);
+      pixels[i] = (p & 0xFF000000) | (r << 16) | (g << 8) | b;
+    }
+  }
+
+  private static int luminance(int rgb) {
+    return Math.round(0.299f * ((rgb >> 16) & 0xFF) + 0.587f * ((rgb >> 8) & 0xFF) + 0.114f * (rgb & 0xFF));
+  }
+
+  private static int blend(int from, float to, float weight) {
+    return Math.round(from + (Math.min(255f, to) - from) * weight);
+  }
+
+  private static void drawSwatches(BufferedImage preview, List<Color> swatches) {
+    if (swatches.isEmpty()) {
+      return;
+    }
+    int size = Math.max(8, preview.getWidth() / 16);
+    int gap = size / 4;
+    Graphics2D graphics = preview.createGraphics();
+    try {
+      int x = preview.getWidth() - gap - swatches.size() * (size + gap);
+      int y = preview.getHeight() - gap - size;
+      for (Color swatch : swatches) {
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(x - 1, y - 1, size + 2, size + 2);
+        graphics.setColor(swatch);
+        graphics.fillRect(x, y, size, size);
+        x += size + gap;
+      }
+    } finally {
+      graphics.dispose();
+    }
+  }
+
+  private static BufferedImage scaled(BufferedImage image, int width, int height) {
+    if (image.getWidth() == width && image.getHeight() == height) {
+      return image;
+    }
+    BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D graphics = scaled.createGraphics();
+    try {
+      graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+      graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+      graphics.drawImage(image, 0, 0, width, height, null);
+    } finally {
+      graphics.dispose();
+    }
+    return scaled;
+  }
+}
@@ -0,0 +1,271 @@
+package org.kfru.pse.cars.configurator.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.java.Log;
+import org.kfru.pse.cars.configurator.model.CarFeature;
+import org.kfru.pse.cars.configurator.model.ConfigurationEvaluation;
+import org.kfru.pse.cars.configurator.model.OfferedCar;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Prices and checks configurations of offered cars.
+ * <p>
+ * The "pricing" section of each car in offered-cars.json holds a base price, per-feature and per-variant
+ * prices and constraints ("variant X of feature A requires / excludes variants Y of feature B"). It is
+ * compiled per car into lookup tables indexed by feature and variant ordinal - prices in cents and rules
+ * with an allowed-variant bit mask - so evaluating a packed configuration (see {@link ConfigurationCodec})
+ * is a few array reads per feature. The tables are rebuilt whenever {@link OfferedCarRegistry} reloads.
+ */
+@Service
+@Log
+public class PricingEngine {
+
+  private static final String DEFAULT_CURRENCY = "EUR";
+  private static final Rule[] NO_RULES = new Rule[0];
+
+  @Value("classpath:data/offered-cars.json")
+  Resource offeredCarsFile;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final OfferedCarRegistry offeredCarRegistry;
+
+  private volatile Map<Integer, CompiledCar> tables;
+
+  @Autowired
+  PricingEngine(OfferedCarRegistry offeredCarRegistry) {
+    this.offeredCarRegistry = offeredCarRegistry;
+  }
+
+  /**
+   * Recompiles the tables for the reloaded cars. The pricing is read from offered-cars.json here too, so it
+   * always matches the features SetupService seeded from the same file; a car whose pricing does not fit its
+   * features is logged and has no pricing, the other cars are not affected.
+   */
+  @EventListener
+  public void onReload(OfferedCarRegistry.Reloaded reloaded) {
+    Map<Integer, JsonNode> pricingByCar;
+    try {
+      pricingByCar = readPricing();
+    } catch (IOException e) {
+      log.severe("Failed to load pricing from JSON, keeping the previous pricing: " + e.getMessage());
+      return;
+    }
+    Map<Integer, CompiledCar> compiled = new HashMap<>();
+    for (OfferedCar car : reloaded.cars()) {
+      JsonNode pricing = pricingByCar.get(car.getId());
+      if (pricing == null) {
+        continue;
+      }
+      try {
+        compiled.put(car.getId(), compile(car, pricing));
+      } catch (IllegalStateException | ArithmeticException e) {
+        log.warning("Pricing of car " + car.getId() + " skipped: " + e.getMessage());
+      }
+    }
+    tables = Map.copyOf(compiled);
+    log.info("Pricing compiled for " + compiled.size() + " offered cars.");
+  }
+
+  /**
+   * Evaluates a packed configuration; empty when the car is unknown or has no (valid) pricing.
+   */
+  public Optional<ConfigurationEvaluation> evaluate(int offeredCarId, byte[] configuration) {
+    Map<Integer, CompiledCar> current = tables;
+    if (current == null) {
+      // A request before startup finished: loading the registry compiles the tables
+      offeredCarRegistry.findAll();
+      current = tables == null ? Map.of() : tables;
+    }
+    CompiledCar car = current.get(offeredCarId);
+    return car == null ? Optional.empty() : Optional.of(car.evaluate(configuration));
+  }
+
+  private Map<Integer, JsonNode> readPricing() throws IOException {
+    Map<Integer, JsonNode> pricing = new HashMap<>();
+    try (InputStream inputStream = offeredCarsFile.getInputStream()) {
+      for (JsonNode offeredCarJson : objectMapper.readTree(inputStream)) {
+        if (offeredCarJson.has("pricing")) {
+          pricing.put(offeredCarJson.path("id").asInt(), offeredCarJson.get("pricing"));
+        }
+      }
+    }
+    return pricing;
+  }
+
+  /**
+   * Compiles the pricing section of one car against its features, ordered by id like the packed configuration.
+   *
+   * @throws IllegalStateException when the pricing names features or variants the car does not have
+   */
+  public static CompiledCar compile(OfferedCar car, JsonNode pricing) {
+    List<CarFeature> features = car.getFeatures() == null ? List.of() : car.getFeatures().stream()
+        .sorted(Comparator.comparingInt(CarFeature::getId))
+        .toList();
+    int featureCount = features.size();
+    int[] featureIds = new int[featureCount];
+    String[] featureNames = new String[featureCount];
+    String[][] variants = new String[featureCount][];
+    long[][] prices = new long[featureCount][];
+    for (int f = 0; f < featureCount; f++) {
+      CarFeature feature = features.get(f);
+      featureIds[f] = feature.getId();
+      featureNames[f] = feature.getName();
+      variants[f] = feature.getVariants() == null ? new String[0] : feature.getVariants().toArray(String[]::new);
+      prices[f] = new long[variants[f].length];
+    }
+
+    for (JsonNode featurePricing : pricing.path("features")) {
+      int f = featureOrdinal(car, featureIds, featurePricing.path("feature").asInt());
+      Arrays.fill(prices[f], cents(featurePricing.path("price")));
+      featurePricing.path("variantPrices").fields().forEachRemaining(variantPrice ->
+          prices[f][variantOrdinal(car, variants[f], variantPrice.getKey())] += cents(variantPrice.getValue()));
+    }
+
+    List<List<List<Rule>>> rules = new ArrayList<>();
+    for (int f = 0; f < featureCount; f++) {
+      List<List<Rule>> featureRules = new ArrayList<>();
+      for (int v = 0; v < variants[f].length; v++) {
+        featureRules.add(new ArrayList<>());
+      }
+      rules.add(featureRules);
+    }
+    for (JsonNode constraint : pricing.path("constraints")) {
+      int f = featureOrdinal(car, featureIds, constraint.path("feature").asInt());
+      int v = variantOrdinal(car, variants[f], constraint.path("variant").asText());
+      boolean requires = constraint.has("requires");
+      JsonNode target = requires ? constraint.get("requires") : constraint.path("excludes");
+      int t = featureOrdinal(car, featureIds, target.path("feature").asInt());
+      if (variants[t].length > Long.SIZE) {
+        throw new IllegalStateException("Feature " + featureIds[t] + " has too many variants for a constraint");
+      }
+      long mask = 0;
+      List<String> targetVariants = new ArrayList<>();
+      for (JsonNode targetVariant : target.path("variants")) {
+        mask |= 1L << variantOrdinal(car, variants[t], targetVariant.asText());
+        targetVariants.add(targetVariant.asText());
+      }
+      long all = variants[t].length == Long.SIZE ? -1L : (1L << variants[t].length) - 1;
+      String message = constraint.hasNonNull("message") ? constraint.get("message").asText()
+          : featureNames[f] + " " + variants[f][v] + (requires ? " requires " : " is not available with ")
+          + featureNames[t] + " " + String.join(" or ", targetVariants);
+      rules.get(f).get(v).add(requires ? new Rule(t, mask, false, message) : new Rule(t, all & ~mask, true, message));
+    }
+    Rule[][][] ruleTable = new Rule[featureCount][][];
+    for (int f = 0; f < featureCount; f++) {
+      ruleTable[f] = rules.get(f).stream()
+          .map(variantRules -> variantRules.isEmpty() ? NO_RULES : variantRules.toArray(Rule[]::new))
+          .toArray(Rule[][]::new);
+    }
+
+    return new CompiledCar(car.getId(), car.isAvailable(), pricing.path("currency").asText(DEFAULT_CURRENCY),
+        cents(pricing.path("basePrice")), featureIds, variants, prices, ruleTable);
+  }
+
+  private static int featureOrdinal(OfferedCar car, int[] featureIds, int featureId) {
+    for (int f = 0; f < featureIds.length; f++) {
+      if (featureIds[f] == featureId) {
+        return f;
+      }
+    }
+    throw new IllegalStateException("Pricing of car " + car.getId() + " names unknown feature " + featureId);
+  }
+
+  private static int variantOrdinal(OfferedCar car, String[] variants, String variant) {
+    for (int v = 0; v < variants.length; v++) {
+      if (variants[v].equalsIgnoreCase(variant)) {
+        return v;
+      }
+    }
+    throw new IllegalStateException("Pricing of car " + car.getId() + " names unknown variant " + variant);
+  }
+
+  private static long cents(JsonNode amount) {
+    if (amount.isMissingNode() || amount.isNull()) {
+      return 0;
+    }
+    return amount.decimalValue().movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+  }
+
+  private static BigDecimal money(long cents) {
+    return BigDecimal.valueOf(cents, 2);
+  }
+
+  /**
+   * A rule of a chosen variant: the chosen variant of feature target must be in allowed
+   * (bit per variant ordinal); allowsNone tells whether leaving target open is fine.
+   */
+  private record Rule(int target, long allowed, boolean allowsNone, String message) {
+  }
+
+  /**
+   * Lookup tables of one car, indexed by feature ordinal and variant ordinal.
+   */
+  public static final class CompiledCar {
+    private final int offeredCarId;
+    private final boolean available;
+    private final String currency;
+    private final long basePrice;
+    private final int[] featureIds;
+    private final String[][] variants;
+    private final long[][] prices;
+    private final Rule[][][] rules;
+
+    private CompiledCar(int offeredCarId, boolean available, String currency, long basePrice, int[] featureIds,
+                        String[][] variants, long[][] prices, Rule[][][] rules) {
+      this.offeredCarId = offeredCarId;
+      this.available = available;
+      this.currency = currency;
+      this.basePrice = basePrice;
+      this.featureIds = featureIds;
+      this.variants = variants;
+      this.prices = prices;
+      this.rules = rules;
+    }
+
+    public ConfigurationEvaluation evaluate(byte[] configuration) {
+      long total = basePrice;
+      boolean complete = true;
+      List<ConfigurationEvaluation.Line> lines = new ArrayList<>(featureIds.length);
+      List<String> violations = new ArrayList<>(0);
+      for (int f = 0; f < featureIds.length; f++) {
+        int v = chosenVariant(configuration, f);
+        if (v < 0) {
+          complete = false;
+          continue;
+        }
+        total += prices[f][v];
+        lines.add(new ConfigurationEvaluation.Line(featureIds[f], variants[f][v], money(prices[f][v])));
+        for (Rule rule : rules[f][v]) {
+          int chosen = chosenVariant(configuration, rule.target());
+          if (chosen < 0 ? !rule.allowsNone() : (rule.allowed() & (1L << chosen)) == 0) {
+            violations.add(rule.message());
+          }
+        }
+      }
+      return new ConfigurationEvaluation(offeredCarId, currency, money(basePrice), money(total),
+          available && violations.isEmpty(), complete, lines, violations);
+    }
+
+    private int chosenVariant(byte[] configuration, int feature) {
+      int v = feature < configuration.length ? Byte.toUnsignedInt(configuration[feature]) - 1 : -1;
+      return v < variants[feature].length ? v : -1;
+    }
+  }
+}
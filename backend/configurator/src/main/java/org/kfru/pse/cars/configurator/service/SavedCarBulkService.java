@@ -0,0 +1,208 @@
+package org.kfru.pse.cars.configurator.service;
+
+import lombok.extern.java.Log;
+import org.kfru.pse.cars.configurator.model.BulkResult;
+import org.kfru.pse.cars.configurator.model.SavedCar;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Creates and deletes many saved cars at once, in chunks of configurator.bulk.chunk-size items with one
+ * transaction each: a chunk is one JDBC batch insert, or a few set-based statements to delete, so a
+ * failing chunk does not roll back the ones before it. Every item gets its own {@link BulkResult}.
+ * <p>
+ * Deletes also remove the chosen_car_feature rows of old saved cars that {@link LegacySavedCarMigration}
+ * could not encode, which still reference them.
+ */
+@Service
+@Log
+public class SavedCarBulkService {
+
+  private static final String INSERT =
+      "insert into saved_car (id, name, offered_car_id, configuration) values (?, ?, ?, ?)";
+  private static final String SELECT_FOR_DELETE =
+      "select id, offered_car_id, configuration from saved_car where id in (:ids) for update";
+  private static final String DELETE = "delete from saved_car where id in (:ids)";
+
+  private final NamedParameterJdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final ConfigurationCodec configurationCodec;
+  private final PopularityStatistics popularityStatistics;
+
+  @Value("${configurator.bulk.chunk-size:500}")
+  int chunkSize;
+
+  private volatile Boolean legacyTables;
+
+  @Autowired
+  SavedCarBulkService(NamedParameterJdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                      ConfigurationCodec configurationCodec, PopularityStatistics popularityStatistics) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = transactionTemplate;
+    this.configurationCodec = configurationCodec;
+    this.popularityStatistics = popularityStatistics;
+  }
+
+  /**
+   * Saves each car as a new saved car (a given id is ignored); invalid cars are reported and skipped.
+   */
+  public List<BulkResult> saveAll(List<SavedCar> cars) {
+    BulkResult[] results = new BulkResult[cars.size()];
+    for (int start = 0; start < cars.size(); start += chunkSize) {
+      int end = Math.min(start + chunkSize, cars.size());
+      List<Integer> indexes = new ArrayList<>();
+      List<Object[]> rows = new ArrayList<>();
+      for (int i = start; i < end; i++) {
+        SavedCar car = cars.get(i);
+        if (car == null || car.getName() == null || car.getName().isBlank()) {
+          results[i] = failed(i, null, HttpStatus.BAD_REQUEST, "A saved car needs a name");
+          continue;
+        }
+        try {
+          configurationCodec.encode(car);
+        } catch (IllegalArgumentException e) {
+          results[i] = failed(i, null, HttpStatus.BAD_REQUEST, e.getMessage());
+          continue;
+        }
+        car.setId(UUID.randomUUID().toString());
+        indexes.add(i);
+        rows.add(new Object[]{car.getId(), car.getName(), car.getOfferedCarId(), car.getConfiguration()});
+      }
+      if (rows.isEmpty()) {
+        continue;
+      }
+
+      try {
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.getJdbcTemplate().batchUpdate(INSERT, rows));
+      } catch (DataAccessException e) {
+        log.warning("Bulk save of items " + start + " to " + (end - 1) + " failed: " + e.getMessage());
+        indexes.forEach(i -> results[i] = failed(i, null, HttpStatus.INTERNAL_SERVER_ERROR, "Chunk could not be saved"));
+        continue;
+      }
+      for (int i : indexes) {
+        popularityStatistics.recordSaved(cars.get(i));
+        results[i] = new BulkResult(i, cars.get(i).getId(), HttpStatus.CREATED.value(), null);
+      }
+    }
+    return Arrays.asList(results);
+  }
+
+  /**
+   * Deletes the saved cars with the given ids; unknown ids are reported as not found.
+   */
+  public List<BulkResult> deleteAll(List<String> ids) {
+    BulkResult[] results = new BulkResult[ids.size()];
+    boolean legacy = hasLegacyTables();
+    for (int start = 0; start < ids.size(); start += chunkSize) {
+      int end = Math.min(start + chunkSize, ids.size());
+      LinkedHashSet<String> chunk = new LinkedHashSet<>();
+      for (int i = start; i < end; i++) {
+        if (ids.get(i) == null) {
+          results[i] = failed(i, null, HttpStatus.BAD_REQUEST, "Missing id");
+        } else {
+          chunk.add(ids.get(i));
+        }
+      }
+      if (chunk.isEmpty()) {
+        continue;
+      }
+
+      Map<String, SavedCar> deleted;
+      try {
+        deleted = transactionTemplate.execute(status -> delete(List.copyOf(chunk), legacy));
+      } catch (DataAccessException e) {
+        log.warning("Bulk delete of items " + start + " to " + (end - 1) + " failed: " + e.getMessage());
+        for (int i = start; i < end; i++) {
+          if (results[i] == null) {
+            results[i] = failed(i, ids.get(i), HttpStatus.INTERNAL_SERVER_ERROR, "Chunk could not be deleted");
+          }
+        }
+        continue;
+      }
+      for (int i = start; i < end; i++) {
+        if (results[i] != null) {
+          continue;
+        }
+        // An id given twice is deleted once, and reported as not found the second time
+        SavedCar savedCar = deleted.remove(ids.get(i));
+        if (savedCar == null) {
+          results[i] = failed(i, ids.get(i), HttpStatus.NOT_FOUND, "Saved car not found");
+        } else {
+          popularityStatistics.recordDeleted(savedCar);
+          results[i] = new BulkResult(i, ids.get(i), HttpStatus.NO_CONTENT.value(), null);
+        }
+      }
+    }
+    return Arrays.asList(results);
+  }
+
+  /**
+   * Deletes one saved car; false when there was none with that id.
+   */
+  public boolean delete(String id) {
+    return deleteAll(List.of(id)).get(0).getStatus() == HttpStatus.NO_CONTENT.value();
+  }
+
+  /**
+   * Locks and deletes the saved cars with ids; returns the deleted ones (without name) by id, so
+   * concurrent deletes of the same car report it only once.
+   */
+  private Map<String, SavedCar> delete(List<String> ids, boolean legacy) {
+    Map<String, SavedCar> deleted = new HashMap<>();
+    jdbcTemplate.query(SELECT_FOR_DELETE, Map.of("ids", ids), row -> {
+      int offeredCarId = row.getInt(2);
+      SavedCar car = new SavedCar(row.getString(1), null, row.wasNull() ? null : offeredCarId,
+          row.getBytes(3), null, null);
+      deleted.put(car.getId(), car);
+    });
+    if (deleted.isEmpty()) {
+      return deleted;
+    }
+    Map<String, Object> found = Map.of("ids", List.copyOf(deleted.keySet()));
+    if (legacy) {
+      List<String> legacyFeatures = jdbcTemplate.queryForList(
+          "select features_id from saved_car_features where saved_car_id in (:ids)", found, String.class);
+      jdbcTemplate.update("delete from saved_car_features where saved_car_id in (:ids)", found);
+      if (!legacyFeatures.isEmpty()) {
+        jdbcTemplate.update("delete from chosen_car_feature where id in (:ids)", Map.of("ids", legacyFeatures));
+      }
+    }
+    jdbcTemplate.update(DELETE, found);
+    return deleted;
+  }
+
+  /**
+   * Whether the tables of the feature rows from before the packed configuration still exist; checked
+   * once, outside of a transaction (a failing statement aborts a PostgreSQL transaction).
+   */
+  private boolean hasLegacyTables() {
+    Boolean exists = legacyTables;
+    if (exists == null) {
+      try {
+        jdbcTemplate.getJdbcTemplate().queryForList("select saved_car_id from saved_car_features where 1 = 0");
+        exists = true;
+      } catch (DataAccessException e) {
+        exists = false;
+      }
+      legacyTables = exists;
+    }
+    return exists;
+  }
+
+  private static BulkResult failed(int index, String id, HttpStatus status, String error) {
+    return new BulkResult(index, id, status.value(), error);
+  }
+}
@@ -1,62 +1,247 @@
 package org.kfru.pse.cars.configurator.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import jakarta.annotation.PostConstruct;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import lombok.extern.java.Log;
+import org.kfru.pse.cars.configurator.model.CarFeature;
 import org.kfru.pse.cars.configurator.model.OfferedCar;
+import org.kfru.pse.cars.configurator.model.SeedState;
 import org.kfru.pse.cars.configurator.repository.CarFeatureRepository;
 import org.kfru.pse.cars.configurator.repository.OfferedCarRepository;
+import org.kfru.pse.cars.configurator.repository.SeedStateRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.io.Resource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.DigestUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
 
+/**
+ * Seeds the offered cars from offered-cars.json once the application is up, in the background.
+ * <p>
+ * The file is applied only when its hash differs from the one stored with the last run. Then it is
+ * compared with the stored cars and features, and only new or changed ones are written, in one
+ * transaction (inserts and updates are JDBC-batched). Cars that disappeared from the file are kept,
+ * saved cars may refer to them. The duration is recorded as configurator.seeding, tagged with the result
+ * (unchanged, applied or failed).
+ * <p>
+ * Instances starting together seed one after another: the seeding transaction row-locks the seed state
+ * and checks the hash again under the lock. After every attempt, whatever its result, the
+ * {@link OfferedCarRegistry} is reloaded - another instance may have applied the file meanwhile.
+ */
 @Service
 @Log
 public class SetupService {
 
+  static final String OFFERED_CARS = "offered-cars";
+
   @Value("classpath:data/offered-cars.json")
   Resource offeredCarsFile;
 
+  @PersistenceContext
+  EntityManager entityManager;
+
   private final ObjectMapper objectMapper = new ObjectMapper();
   private final OfferedCarRepository offeredCarRepository;
   private final CarFeatureRepository carFeatureRepository;
+  private final SeedStateRepository seedStateRepository;
+  private final OfferedCarRegistry offeredCarRegistry;
+  private final TransactionTemplate transactionTemplate;
+  private final MeterRegistry meterRegistry;
 
   @Autowired
-  SetupService(OfferedCarRepository offeredCarRepository, CarFeatureRepository carFeatureRepository) {
+  SetupService(OfferedCarRepository offeredCarRepository, CarFeatureRepository carFeatureRepository,
+               SeedStateRepository seedStateRepository, OfferedCarRegistry offeredCarRegistry,
+               TransactionTemplate transactionTemplate, MeterRegistry meterRegistry) {
     this.offeredCarRepository = offeredCarRepository;
     this.carFeatureRepository = carFeatureRepository;
+    this.seedStateRepository = seedStateRepository;
+    this.offeredCarRegistry = offeredCarRegistry;
+    this.transactionTemplate = transactionTemplate;
+    this.meterRegistry = meterRegistry;
   }
 
-  @PostConstruct
+  @Async
+  @EventListener(ApplicationReadyEvent.class)
   public void setupOfferedCars() {
-    if (offeredCarRepository.count() > 0) {
-      log.info("Offered cars already exist in the database, skipping setup.");
-      return;
+    Timer.Sample sample = Timer.start(meterRegistry);
+    String result = "failed";
+    try {
+      result = seed() ? "applied" : "unchanged";
+    } finally {
+      sample.stop(Timer.builder("configurator.seeding")
+          .description("Seeding of the offered cars from offered-cars.json")
+          .tag("result", result)
+          .register(meterRegistry));
+      reloadRegistry();
+    }
+  }
+
+  private void reloadRegistry() {
+    try {
+      offeredCarRegistry.reload();
+    } catch (RuntimeException e) {
+      log.log(Level.WARNING, "Failed to reload the offered car registry after seeding", e);
     }
+  }
+
+  /**
+   * Applies offered-cars.json; false when it is unchanged since the last run.
+   */
+  private boolean seed() {
+    long started = System.nanoTime();
+    byte[] content;
     try (InputStream inputStream = offeredCarsFile.getInputStream()) {
-      JsonNode offeredCarsJson = objectMapper.readTree(inputStream);
-      if (!offeredCarsJson.isArray()) {
-        throw new IllegalArgumentException("Unexpected JSON format.");
-      }
-      offeredCarsJson.forEach(offeredCarJson -> {
-        try {
-          OfferedCar newOfferedCar = objectMapper.treeToValue(offeredCarJson, OfferedCar.class);
-          if (newOfferedCar.getFeatures() != null && !newOfferedCar.getFeatures().isEmpty()) {
-            carFeatureRepository.saveAll(newOfferedCar.getFeatures());
-          }
-          offeredCarRepository.save(newOfferedCar);
-        } catch (IOException e) {
-          throw new RuntimeException("Failed to parse offered car JSON", e);
-        }
-      });
+      content = inputStream.readAllBytes();
     } catch (IOException e) {
       throw new RuntimeException("Failed to load offered cars from JSON", e);
     }
-    log.info("Offered cars setup completed successfully.");
+    String hash = DigestUtils.md5DigestAsHex(content);
+    Optional<SeedState> state = seedStateRepository.findById(OFFERED_CARS);
+    if (state.isPresent() && state.get().getHash().equals(hash)) {
+      log.info("Offered cars are up to date, skipping setup.");
+      return false;
+    }
+
+    List<OfferedCar> offeredCars = parse(content);
+    if (state.isEmpty()) {
+      createState();
+    }
+    Integer changes = transactionTemplate.execute(status -> {
+      SeedState locked = seedStateRepository.findForUpdate(OFFERED_CARS)
+          .orElseThrow(() -> new IllegalStateException("Seed state " + OFFERED_CARS + " is missing"));
+      if (locked.getHash().equals(hash)) {
+        return null;
+      }
+      int changed = apply(offeredCars);
+      locked.setHash(hash);
+      locked.setAppliedAt(Instant.now());
+      return changed;
+    });
+    if (changes == null) {
+      log.info("Offered cars were set up by another instance meanwhile, skipping setup.");
+      return false;
+    }
+    log.info("Offered cars setup completed with " + changes + " changes in "
+        + (System.nanoTime() - started) / 1_000_000 + " ms.");
+    return true;
+  }
+
+  /**
+   * Inserts an empty state to lock on; an instance inserting it at the same time wins.
+   */
+  private void createState() {
+    try {
+      transactionTemplate.executeWithoutResult(
+          status -> entityManager.persist(new SeedState(OFFERED_CARS, "", Instant.EPOCH)));
+    } catch (DataIntegrityViolationException e) {
+      log.fine("Seed state " + OFFERED_CARS + " was created by another instance.");
+    }
+  }
+
+  private List<OfferedCar> parse(byte[] content) {
+    try {
+      List<OfferedCar> offeredCars = List.of(objectMapper.readValue(content, OfferedCar[].class));
+      offeredCars.forEach(car -> car.setFeatures(car.getFeatures() == null ? new ArrayList<>() : car.getFeatures()));
+      return offeredCars;
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to parse offered car JSON", e);
+    }
+  }
+
+  /**
+   * Writes the differences between offeredCars and the database; returns the number of cars and
+   * features inserted or updated. Runs inside a transaction, so changed entities are simply modified.
+   */
+  private int apply(List<OfferedCar> offeredCars) {
+    Map<Integer, OfferedCar> storedCars = offeredCarRepository.findAllWithFeatures().stream()
+        .collect(Collectors.toMap(OfferedCar::getId, Function.identity()));
+    Map<Integer, CarFeature> storedFeatures = carFeatureRepository.findAll().stream()
+        .collect(Collectors.toMap(CarFeature::getId, Function.identity()));
+    int changes = 0;
+
+    for (OfferedCar offeredCar : offeredCars) {
+      List<CarFeature> features = new ArrayList<>();
+      for (CarFeature feature : offeredCar.getFeatures()) {
+        CarFeature stored = storedFeatures.get(feature.getId());
+        if (stored == null) {
+          entityManager.persist(feature);
+          storedFeatures.put(feature.getId(), feature);
+          stored = feature;
+          changes++;
+        } else if (!Objects.equals(stored.getName(), feature.getName())
+            || !Objects.equals(stored.getVariants(), feature.getVariants())) {
+          warnIfReordered(stored, feature);
+          stored.setName(feature.getName());
+          stored.setVariants(feature.getVariants());
+          changes++;
+        }
+        features.add(stored);
+      }
+
+      OfferedCar stored = storedCars.remove(offeredCar.getId());
+      if (stored == null) {
+        offeredCar.setFeatures(features);
+        entityManager.persist(offeredCar);
+        changes++;
+      } else if (!sameCar(stored, offeredCar)) {
+        stored.setName(offeredCar.getName());
+        stored.setSlogan(offeredCar.getSlogan());
+        stored.setAvailable(offeredCar.isAvailable());
+        stored.setImageUrl(offeredCar.getImageUrl());
+        if (!featureIds(stored.getFeatures()).equals(featureIds(features))) {
+          stored.setFeatures(features);
+        }
+        changes++;
+      }
+    }
+
+    if (!storedCars.isEmpty()) {
+      log.warning("Offered cars " + storedCars.keySet() + " are no longer in offered-cars.json and were kept.");
+    }
+    return changes;
+  }
+
+  private static boolean sameCar(OfferedCar stored, OfferedCar offeredCar) {
+    return Objects.equals(stored.getName(), offeredCar.getName())
+        && Objects.equals(stored.getSlogan(), offeredCar.getSlogan())
+        && stored.isAvailable() == offeredCar.isAvailable()
+        && Objects.equals(stored.getImageUrl(), offeredCar.getImageUrl())
+        && featureIds(stored.getFeatures()).equals(featureIds(offeredCar.getFeatures()));
+  }
+
+  private static List<Integer> featureIds(List<CarFeature> features) {
+    return features == null ? List.of() : features.stream().map(CarFeature::getId).sorted().toList();
+  }
+
+  /**
+   * Saved configurations store variant ordinals, see {@link ConfigurationCodec}.
+   */
+  private static void warnIfReordered(CarFeature stored, CarFeature feature) {
+    List<String> before = stored.getVariants() == null ? List.of() : stored.getVariants();
+    List<String> after = feature.getVariants() == null ? List.of() : feature.getVariants();
+    if (after.size() < before.size() || !after.subList(0, before.size()).equals(before)) {
+      log.warning("Variants of feature " + stored.getId() + " were reordered or removed;"
+          + " saved configurations using it now point to other variants.");
+    }
   }
 }
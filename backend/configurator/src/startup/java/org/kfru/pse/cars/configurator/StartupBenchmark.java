@@ -0,0 +1,166 @@
+package org.kfru.pse.cars.configurator;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipFile;
+
+/**
+ * Time from JVM start to the first successful GET /offered-cars (status 200 and at least one car), per start mode.
+ * <p>
+ * Starts the extracted application (see cdsExtract in build.gradle.kts) runs times per mode, alternating
+ * the modes, against an H2 file database that an unmeasured first run has created and seeded:
+ * <ul>
+ *   <li>default: the regular configuration</li>
+ *   <li>fast: the CDS archive, Spring AOT (when the jar was built with -PfastStart) and the fast profile</li>
+ * </ul>
+ * Prints min/median/max per mode and appends them to the results CSV.
+ * <p>
+ * Usage: StartupBenchmark &lt;cds directory&gt; &lt;results csv&gt; [runs]
+ */
+public class StartupBenchmark {
+
+  private static final String MAIN_CLASS = "org.kfru.pse.cars.configurator.ConfiguratorApplication";
+  private static final Duration TIMEOUT = Duration.ofMinutes(2);
+  private static final String AOT_INITIALIZER =
+      "org/kfru/pse/cars/configurator/ConfiguratorApplication__ApplicationContextInitializer.class";
+
+  private final Path directory;
+  private final Path workDirectory;
+  private final boolean aot;
+  private final Path h2Jar;
+  private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+  StartupBenchmark(Path directory, Path workDirectory) throws IOException, ReflectiveOperationException, URISyntaxException {
+    this.directory = directory;
+    this.workDirectory = workDirectory;
+    // The database driver comes from the benchmark's classpath, the application jar has no H2
+    this.h2Jar = Paths.get(Class.forName("org.h2.Driver").getProtectionDomain().getCodeSource().getLocation().toURI());
+    try (ZipFile jar = new ZipFile(directory.resolve("application.jar").toFile())) {
+      this.aot = jar.getEntry("BOOT-INF/classes/" + AOT_INITIALIZER) != null || jar.getEntry(AOT_INITIALIZER) != null;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.println("Usage: StartupBenchmark <cds directory> <results csv> [runs]");
+      System.exit(2);
+    }
+    Path directory = Paths.get(args[0]).toAbsolutePath();
+    Path results = Paths.get(args[1]).toAbsolutePath();
+    int runs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+    StartupBenchmark benchmark = new StartupBenchmark(directory, Files.createTempDirectory("startup-benchmark"));
+    System.out.println("Priming database (AOT " + (benchmark.aot ? "enabled" : "not built") + ")...");
+    benchmark.start("default");
+
+    Map<String, List<Long>> timings = new LinkedHashMap<>();
+    for (int run = 1; run <= runs; run++) {
+      for (String mode : List.of("default", "fast")) {
+        long millis = benchmark.start(mode);
+        timings.computeIfAbsent(mode, m -> new ArrayList<>()).add(millis);
+        System.out.println("Run " + run + " " + mode + ": " + millis + " ms");
+      }
+    }
+
+    Files.createDirectories(results.getParent());
+    if (!Files.exists(results)) {
+      Files.writeString(results, "timestamp,mode,aot,runs,min_ms,median_ms,max_ms\n", StandardCharsets.UTF_8);
+    }
+    String timestamp = Instant.now().toString();
+    StringBuilder lines = new StringBuilder();
+    for (Map.Entry<String, List<Long>> mode : timings.entrySet()) {
+      List<Long> sorted = mode.getValue().stream().sorted().toList();
+      long min = sorted.get(0);
+      long median = sorted.get(sorted.size() / 2);
+      long max = sorted.get(sorted.size() - 1);
+      System.out.printf("%-8s min %6d ms  median %6d ms  max %6d ms%n", mode.getKey(), min, median, max);
+      lines.append(String.join(",", timestamp, mode.getKey(), Boolean.toString(benchmark.aot),
+          Integer.toString(runs), Long.toString(min), Long.toString(median), Long.toString(max))).append('\n');
+    }
+    Files.writeString(results, lines, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    System.out.println("Results appended to " + results);
+  }
+
+  /**
+   * Starts the application in mode, waits for the first successful /offered-cars response and stops it
+   * again; returns the milliseconds from process start to that response.
+   */
+  long start(String mode) throws IOException, InterruptedException {
+    int port = freePort();
+    List<String> command = new ArrayList<>();
+    command.add(ProcessHandle.current().info().command().orElse("java"));
+    if (mode.equals("fast")) {
+      command.add("-XX:SharedArchiveFile=" + directory.resolve("application.jsa"));
+      command.add("-Dspring.aot.enabled=" + aot);
+    }
+    command.addAll(List.of(
+        "-cp", directory.resolve("application.jar") + File.pathSeparator + h2Jar,
+        MAIN_CLASS,
+        "--server.port=" + port,
+        "--spring.datasource.url=jdbc:h2:file:" + workDirectory.resolve("db") + ";FILE_LOCK=NO;DB_CLOSE_ON_EXIT=FALSE",
+        "--spring.datasource.username=sa",
+        "--spring.datasource.password=",
+        "--configurator.previews.cache-dir=" + workDirectory.resolve("previews")));
+    if (mode.equals("fast")) {
+      command.add("--spring.profiles.active=fast");
+    }
+
+    Path log = workDirectory.resolve(mode + ".log");
+    HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/offered-cars"))
+        .timeout(Duration.ofSeconds(5))
+        .build();
+    long started = System.nanoTime();
+    Process process = new ProcessBuilder(command)
+        .directory(workDirectory.toFile())
+        .redirectErrorStream(true)
+        .redirectOutput(log.toFile())
+        .start();
+    try {
+      while (System.nanoTime() - started < TIMEOUT.toNanos()) {
+        if (!process.isAlive()) {
+          throw new IllegalStateException("Application (" + mode + ") exited with " + process.exitValue()
+              + ", see " + log);
+        }
+        try {
+          HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+          if (response.statusCode() == 200 && !response.body().isBlank() && !response.body().equals("[]")) {
+            return (System.nanoTime() - started) / 1_000_000;
+          }
+        } catch (IOException e) {
+          // Not listening yet
+        }
+        Thread.sleep(10);
+      }
+      throw new IllegalStateException("No /offered-cars response (" + mode + ") within " + TIMEOUT + ", see " + log);
+    } finally {
+      process.destroy();
+      if (!process.waitFor(30, TimeUnit.SECONDS)) {
+        process.destroyForcibly().waitFor();
+      }
+    }
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
@@ -0,0 +1,187 @@
+package org.kfru.pse.cars.configurator.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kfru.pse.cars.configurator.model.CarFeature;
+import org.kfru.pse.cars.configurator.model.ChosenCarFeature;
+import org.kfru.pse.cars.configurator.model.OfferedCar;
+import org.kfru.pse.cars.configurator.model.SavedCar;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ConfigurationCodecTest {
+
+  // Features in ordinal order (sorted by id, as OfferedCarRegistry holds them)
+  static final OfferedCar TEMPEST = new OfferedCar(1, "Tempest", "Fast", true, List.of(
+      new CarFeature(10, "Color", List.of("#0E0E0E", "#BA0E1B", "#1042B5")),
+      new CarFeature(11, "Rims", List.of("#FFFFFF", "#000000")),
+      new CarFeature(12, "Glass", List.of("#FFFFFF", "#000000", "#5c391d"))), "tempest.png");
+  static final OfferedCar BOLT = new OfferedCar(300, "Bolt", "Electric", true, List.of(
+      new CarFeature(20, "Color", List.of("#FFFFFF"))), "bolt.png");
+
+  private ConfigurationCodec codec;
+
+  @BeforeEach
+  void setUp() {
+    codec = new ConfigurationCodec(registry(TEMPEST, BOLT));
+  }
+
+  static OfferedCarRegistry registry(OfferedCar... cars) {
+    OfferedCarRegistry registry = mock(OfferedCarRegistry.class);
+    when(registry.findById(anyInt())).thenReturn(Optional.empty());
+    when(registry.findByFeatureId(anyInt())).thenReturn(Optional.empty());
+    for (OfferedCar car : cars) {
+      when(registry.findById(car.getId())).thenReturn(Optional.of(car));
+      car.getFeatures().forEach(feature -> when(registry.findByFeatureId(feature.getId())).thenReturn(Optional.of(car)));
+    }
+    return registry;
+  }
+
+  @Test
+  void packAndUnpackRoundTrip() {
+    List<ChosenCarFeature> chosen = List.of(choice(12, "#5c391d"), choice(10, "#BA0E1B"));
+
+    byte[] configuration = codec.pack(TEMPEST, chosen);
+
+    // One byte per feature, variant index + 1, 0 for the feature without a choice
+    assertArrayEquals(new byte[]{2, 0, 3}, configuration);
+    List<ChosenCarFeature> unpacked = codec.unpack(TEMPEST, configuration, "car");
+    assertEquals(List.of("car-10", "car-12"), unpacked.stream().map(ChosenCarFeature::getId).toList());
+    assertEquals(List.of(10, 12), unpacked.stream().map(c -> c.getFeature().getId()).toList());
+    assertEquals(List.of("#BA0E1B", "#5c391d"), unpacked.stream().map(ChosenCarFeature::getVariant).toList());
+  }
+
+  @Test
+  void unpackIgnoresUnknownOrdinals() {
+    // A variant beyond the feature's list, and bytes of features the car no longer has
+    List<ChosenCarFeature> unpacked = codec.unpack(TEMPEST, new byte[]{(byte) 200, 1, 0, 4, 4}, null);
+
+    assertEquals(1, unpacked.size());
+    assertEquals(11, unpacked.get(0).getFeature().getId());
+    assertNull(unpacked.get(0).getId());
+  }
+
+  @Test
+  void variantsAreMatchedCaseInsensitivelyAndCanonicalised() {
+    byte[] configuration = codec.pack(TEMPEST, List.of(choice(10, "#ba0e1b"), choice(12, "#5C391D")));
+
+    assertArrayEquals(new byte[]{2, 0, 3}, configuration);
+    assertEquals(List.of("#BA0E1B", "#5c391d"),
+        codec.unpack(TEMPEST, configuration, null).stream().map(ChosenCarFeature::getVariant).toList());
+  }
+
+  @Test
+  void exactVariantWinsOverCaseInsensitiveMatch() {
+    OfferedCar car = new OfferedCar(2, "Twin", "", true,
+        List.of(new CarFeature(30, "Stripe", List.of("red", "RED"))), "twin.png");
+
+    assertArrayEquals(new byte[]{2}, codec.pack(car, List.of(choice(30, "RED"))));
+    assertArrayEquals(new byte[]{1}, codec.pack(car, List.of(choice(30, "Red"))));
+  }
+
+  @Test
+  void featureChosenTwiceKeepsTheLastChoice() {
+    byte[] configuration = codec.pack(TEMPEST, List.of(choice(11, "#FFFFFF"), choice(11, "#000000")));
+
+    assertArrayEquals(new byte[]{0, 2, 0}, configuration);
+  }
+
+  @Test
+  void packRejectsUnknownFeaturesAndVariants() {
+    assertThrows(IllegalArgumentException.class, () -> codec.pack(TEMPEST, List.of(choice(20, "#FFFFFF"))));
+    assertThrows(IllegalArgumentException.class, () -> codec.pack(TEMPEST, List.of(choice(10, "#123456"))));
+    assertThrows(IllegalArgumentException.class, () -> codec.pack(TEMPEST, List.of(choice(10, null))));
+    assertThrows(IllegalArgumentException.class,
+        () -> codec.pack(TEMPEST, List.of(new ChosenCarFeature(null, null, "#FFFFFF"))));
+  }
+
+  @Test
+  void encodeInfersTheCarFromTheFirstFeature() {
+    SavedCar car = new SavedCar(null, "Mine", null, null, List.of(choice(11, "#000000")), null);
+
+    codec.encode(car);
+
+    assertEquals(1, car.getOfferedCarId());
+    assertArrayEquals(new byte[]{0, 2, 0}, car.getConfiguration());
+  }
+
+  @Test
+  void encodeRejectsUnknownCarsAndFeatures() {
+    assertThrows(IllegalArgumentException.class,
+        () -> codec.encode(new SavedCar(null, "Mine", 99, null, List.of(), null)));
+    assertThrows(IllegalArgumentException.class,
+        () -> codec.encode(new SavedCar(null, "Mine", null, null, List.of(choice(99, "#000000")), null)));
+  }
+
+  @Test
+  void encodeWithoutFeaturesOrCarStoresAnEmptyConfiguration() {
+    SavedCar car = codec.encode(new SavedCar(null, "Mine", null, null, null, null));
+
+    assertNull(car.getOfferedCarId());
+    assertArrayEquals(new byte[0], car.getConfiguration());
+  }
+
+  @Test
+  void codeRoundTrip() {
+    SavedCar saved = codec.decode(new SavedCar("id", "Mine", 1, new byte[]{2, 0, 3}, null, null));
+
+    assertEquals("AQIAAw", saved.getCode());
+    SavedCar shared = codec.fromCode(saved.getCode());
+    assertNull(shared.getId());
+    assertEquals(1, shared.getOfferedCarId());
+    assertArrayEquals(new byte[]{2, 0, 3}, shared.getConfiguration());
+    assertEquals(List.of("#BA0E1B", "#5c391d"),
+        shared.getFeatures().stream().map(ChosenCarFeature::getVariant).toList());
+    assertEquals(saved.getCode(), shared.getCode());
+  }
+
+  @Test
+  void codeOfMultiByteCarId() {
+    // 300 = 0b10_0101100: 0xAC 0x02 as varint
+    String code = codec.toCode(300, new byte[]{1});
+
+    assertArrayEquals(new byte[]{(byte) 0xAC, 0x02, 1}, Base64.getUrlDecoder().decode(code));
+    SavedCar car = codec.fromCode(code);
+    assertEquals(300, car.getOfferedCarId());
+    assertEquals("#FFFFFF", car.getFeatures().get(0).getVariant());
+  }
+
+  @Test
+  void fromCodeRejectsMalformedCodes() {
+    // Empty, and a varint whose continuation bit runs past the end
+    assertThrows(IllegalArgumentException.class, () -> codec.fromCode(""));
+    assertThrows(IllegalArgumentException.class, () -> codec.fromCode(encode(0x81)));
+    // Over-long varint: a sixth byte would shift past 32 bits
+    assertThrows(IllegalArgumentException.class, () -> codec.fromCode(encode(0x81, 0x80, 0x80, 0x80, 0x80, 0x00)));
+    // Not base64url
+    assertThrows(IllegalArgumentException.class, () -> codec.fromCode("A+/="));
+  }
+
+  @Test
+  void fromCodeRejectsUnknownCars() {
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> codec.fromCode(encode(7, 1)));
+    assertEquals("Unknown car 7", e.getMessage());
+  }
+
+  static ChosenCarFeature choice(int featureId, String variant) {
+    return new ChosenCarFeature(null, new CarFeature(featureId, null, null), variant);
+  }
+
+  private static String encode(int... bytes) {
+    byte[] array = new byte[bytes.length];
+    for (int i = 0; i < bytes.length; i++) {
+      array[i] = (byte) bytes[i];
+    }
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(array);
+  }
+}
@@ -0,0 +1,140 @@
+package org.kfru.pse.cars.configurator.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.kfru.pse.cars.configurator.service.ConfigurationCodecTest.BOLT;
+import static org.kfru.pse.cars.configurator.service.ConfigurationCodecTest.TEMPEST;
+
+/**
+ * Runs the migration on an H2 database with the tables of saved cars from before the packed
+ * configuration: saved_car without configuration, joined to one chosen_car_feature row per feature.
+ */
+class LegacySavedCarMigrationTest {
+
+  private JdbcTemplate jdbcTemplate;
+  private LegacySavedCarMigration migration;
+
+  @BeforeEach
+  void setUp() {
+    jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:legacy;DB_CLOSE_DELAY=-1", "sa", ""));
+    jdbcTemplate.execute("create table saved_car (id varchar(255) primary key, name varchar(255) not null, "
+        + "offered_car_id integer, configuration varbinary(64))");
+    migration = new LegacySavedCarMigration(jdbcTemplate,
+        new ConfigurationCodec(ConfigurationCodecTest.registry(TEMPEST, BOLT)));
+  }
+
+  @AfterEach
+  void tearDown() {
+    jdbcTemplate.execute("shutdown");
+  }
+
+  @Test
+  void encodesCarsSavedAsFeatureRows() {
+    createLegacyTables();
+    legacyCar("a", new String[]{"c1", "10", "#1042B5"}, new String[]{"c2", "12", "#000000"});
+    // Variant stored with different case, canonicalised by the codec
+    legacyCar("b", new String[]{"c3", "20", "#ffffff"});
+
+    migration.migrate();
+
+    assertArrayEquals(new byte[]{3, 0, 2}, configuration("a"));
+    assertEquals(1, offeredCarId("a"));
+    assertArrayEquals(new byte[]{1}, configuration("b"));
+    assertEquals(300, offeredCarId("b"));
+    // The feature rows of encoded cars are removed, so their foreign keys no longer block deletes
+    assertEquals(0, count("saved_car_features"));
+    assertEquals(0, count("chosen_car_feature"));
+    assertEquals(1, jdbcTemplate.update("delete from saved_car where id = 'a'"));
+  }
+
+  @Test
+  void leavesEncodedAndInvalidCarsAlone() {
+    createLegacyTables();
+    jdbcTemplate.update("insert into saved_car (id, name, offered_car_id, configuration) values ('new', 'New', 1, ?)",
+        (Object) new byte[]{1, 1, 1});
+    // A feature row of the already encoded car must not overwrite its configuration
+    jdbcTemplate.update("insert into chosen_car_feature (id, feature_id, variant) values ('x', 10, '#BA0E1B')");
+    jdbcTemplate.update("insert into saved_car_features (saved_car_id, features_id) values ('new', 'x')");
+    legacyCar("unknown", new String[]{"c1", "10", "#999999"});
+    legacyCar("valid", new String[]{"c2", "11", "#000000"});
+
+    migration.migrate();
+
+    assertArrayEquals(new byte[]{1, 1, 1}, configuration("new"));
+    assertNull(configuration("unknown"));
+    assertNull(offeredCarId("unknown"));
+    assertArrayEquals(new byte[]{0, 2, 0}, configuration("valid"));
+    // Only the car that could not be encoded keeps its feature row
+    assertEquals(List.of("c1"), jdbcTemplate.queryForList("select features_id from saved_car_features", String.class));
+    assertEquals(1, count("chosen_car_feature"));
+  }
+
+  @Test
+  void removesFeatureRowsLeftByAnEarlierRun() {
+    createLegacyTables();
+    legacyCar("a", new String[]{"c1", "10", "#1042B5"});
+    // Encoded by a run that stopped before removing the feature rows
+    jdbcTemplate.update("update saved_car set offered_car_id = 1, configuration = ? where id = 'a'",
+        (Object) new byte[]{3, 0, 0});
+
+    migration.migrate();
+
+    assertEquals(0, count("saved_car_features"));
+    assertEquals(0, count("chosen_car_feature"));
+  }
+
+  @Test
+  void doesNothingWithoutLegacyTables() {
+    jdbcTemplate.update("insert into saved_car (id, name) values ('a', 'A')");
+
+    migration.migrate();
+
+    assertNull(configuration("a"));
+  }
+
+  private void createLegacyTables() {
+    jdbcTemplate.execute("create table chosen_car_feature (id varchar(255) primary key, feature_id integer, "
+        + "variant varchar(255))");
+    jdbcTemplate.execute("create table saved_car_features ("
+        + "saved_car_id varchar(255) not null references saved_car (id), "
+        + "features_id varchar(255) not null unique references chosen_car_feature (id))");
+  }
+
+  /**
+   * A saved car in the old layout; each feature is {chosen_car_feature id, feature id, variant}.
+   */
+  private void legacyCar(String id, String[]... features) {
+    jdbcTemplate.update("insert into saved_car (id, name) values (?, ?)", id, "Car " + id);
+    for (String[] feature : features) {
+      jdbcTemplate.update("insert into chosen_car_feature (id, feature_id, variant) values (?, ?, ?)",
+          feature[0], Integer.parseInt(feature[1]), feature[2]);
+      jdbcTemplate.update("insert into saved_car_features (saved_car_id, features_id) values (?, ?)", id, feature[0]);
+    }
+  }
+
+  private int count(String table) {
+    return jdbcTemplate.queryForObject("select count(*) from " + table, Integer.class);
+  }
+
+  private byte[] configuration(String id) {
+    return row(id).get("configuration") instanceof byte[] bytes ? bytes : null;
+  }
+
+  private Integer offeredCarId(String id) {
+    return (Integer) row(id).get("offered_car_id");
+  }
+
+  private Map<String, Object> row(String id) {
+    return jdbcTemplate.queryForMap("select offered_car_id, configuration from saved_car where id = ?", id);
+  }
+}
@@ -0,0 +1,107 @@
+package org.kfru.pse.cars.configurator.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kfru.pse.cars.configurator.model.CarStatistics;
+import org.kfru.pse.cars.configurator.model.SavedCar;
+import org.kfru.pse.cars.configurator.repository.SavedCarRepository;
+import org.springframework.data.domain.Limit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.kfru.pse.cars.configurator.service.ConfigurationCodecTest.TEMPEST;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PopularityStatisticsTest {
+
+  private SavedCarRepository savedCarRepository;
+  private PopularityStatistics statistics;
+
+  @BeforeEach
+  void setUp() {
+    savedCarRepository = mock(SavedCarRepository.class);
+    when(savedCarRepository.findConfigurationsInRange(anyString(), anyString(), any(Limit.class))).thenReturn(List.of());
+    when(savedCarRepository.findConfigurationsFrom(anyString(), any(Limit.class))).thenReturn(List.of());
+    statistics = new PopularityStatistics(savedCarRepository, ConfigurationCodecTest.registry(TEMPEST));
+    statistics.parallelism = 2;
+    statistics.pageSize = 10;
+  }
+
+  @Test
+  void recomputeCountsAllRanges() {
+    rows("", "1", row("0a", 2, 0, 1), row("0b", 2, 2, 0));
+    rows("f", null, row("fa", 1, 0, 3));
+
+    assertTrue(statistics.recompute());
+
+    CarStatistics car = statistics.distribution(1).orElseThrow();
+    assertEquals(3, car.getSavedCars());
+    assertEquals(List.of(1L, 2L, 0L), counts(car, 0));
+    assertEquals(List.of(0L, 1L), counts(car, 1));
+    assertEquals(List.of(1L, 0L, 1L), counts(car, 2));
+    assertTrue(statistics.isComputed());
+  }
+
+  @Test
+  void changesDuringTheScanSurviveTheSwap() {
+    SavedCar saved = new SavedCar("5a", "Saved", 1, new byte[]{3, 0, 0}, null, null);
+    SavedCar deleted = new SavedCar("0a", "Deleted", 1, new byte[]{2, 0, 1}, null, null);
+    List<Object[]> firstRange = new ArrayList<>();
+    firstRange.add(row("0a", 2, 0, 1));
+    // Both were recorded while the scan ran, after it had passed their ids
+    when(savedCarRepository.findConfigurationsInRange(eq(""), eq("1"), any(Limit.class))).thenAnswer(invocation -> {
+      statistics.recordSaved(saved);
+      statistics.recordDeleted(deleted);
+      return firstRange;
+    });
+
+    statistics.recompute();
+
+    CarStatistics car = statistics.distribution(1).orElseThrow();
+    assertEquals(1, car.getSavedCars());
+    assertEquals(List.of(0L, 0L, 1L), counts(car, 0));
+    assertEquals(List.of(0L, 0L, 0L), counts(car, 2));
+  }
+
+  @Test
+  void changesAfterTheRecomputeAreCountedOnce() {
+    rows("", "1", row("0a", 2, 0, 1));
+    statistics.recompute();
+
+    statistics.recordSaved(new SavedCar("9a", "New", 1, new byte[]{2, 2, 0}, null, null));
+
+    CarStatistics car = statistics.distribution(1).orElseThrow();
+    assertEquals(2, car.getSavedCars());
+    assertEquals(List.of(0L, 2L, 0L), counts(car, 0));
+    assertFalse(statistics.isRecomputing());
+  }
+
+  private void rows(String from, String to, Object[]... rows) {
+    List<Object[]> list = List.of(rows);
+    if (to == null) {
+      when(savedCarRepository.findConfigurationsFrom(eq(from), any(Limit.class))).thenReturn(list);
+    } else {
+      when(savedCarRepository.findConfigurationsInRange(eq(from), eq(to), any(Limit.class))).thenReturn(list);
+    }
+  }
+
+  private static Object[] row(String id, int... configuration) {
+    byte[] bytes = new byte[configuration.length];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) configuration[i];
+    }
+    return new Object[]{id, 1, bytes};
+  }
+
+  private static List<Long> counts(CarStatistics car, int feature) {
+    return car.getFeatures().get(feature).getVariants().stream().map(CarStatistics.VariantCount::getCount).toList();
+  }
+}
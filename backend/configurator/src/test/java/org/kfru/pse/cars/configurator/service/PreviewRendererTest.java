@@ -0,0 +1,75 @@
+package org.kfru.pse.cars.configurator.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kfru.pse.cars.configurator.model.CarFeature;
+import org.kfru.pse.cars.configurator.model.OfferedCar;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PreviewRendererTest {
+
+  @TempDir
+  Path assets;
+
+  @Test
+  void assetVersionIsCachedUntilTheRefresh() throws IOException {
+    Path car = Files.createDirectories(assets.resolve("1"));
+    writeImage(car.resolve("base.png"), Color.GRAY);
+    PreviewRenderer renderer = new PreviewRenderer(assets.toString());
+    String version = renderer.assetVersion(1).orElseThrow();
+
+    writeImage(car.resolve("feature-10.png"), Color.WHITE);
+    assertEquals(version, renderer.assetVersion(1).orElseThrow());
+
+    renderer.refreshAssetVersions();
+    assertNotEquals(version, renderer.assetVersion(1).orElseThrow());
+  }
+
+  @Test
+  void carWithoutAssetsIsPickedUpByTheRefresh() throws IOException {
+    PreviewRenderer renderer = new PreviewRenderer(assets.toString());
+    assertEquals(Optional.empty(), renderer.assetVersion(1));
+
+    writeImage(Files.createDirectories(assets.resolve("1")).resolve("base.png"), Color.GRAY);
+    assertEquals(Optional.empty(), renderer.assetVersion(1));
+
+    renderer.refreshAssetVersions();
+    assertTrue(renderer.assetVersion(1).isPresent());
+  }
+
+  @Test
+  void shippedAssetsOfTheTempestRender() throws IOException {
+    // Feature ids as in offered-cars.json, where the masks are named after them
+    OfferedCar tempest = new OfferedCar(1, "Tempest", "", true, List.of(
+        new CarFeature(0, "Color", List.of("#0E0E0E", "#BA0E1B", "#1042B5")),
+        new CarFeature(1, "Rims", List.of("#FFFFFF", "#000000")),
+        new CarFeature(2, "Glass", List.of("#FFFFFF", "#000000", "#5c391d"))), "tempest.png");
+    PreviewRenderer renderer = new PreviewRenderer("preview-assets");
+    assertTrue(renderer.assetVersion(1).isPresent());
+
+    BufferedImage preview = renderer.render(tempest, new byte[]{3, 2, 3}, 640);
+
+    assertEquals(640, preview.getWidth());
+    // A point on the door is painted blue
+    Color door = new Color(preview.getRGB(250, 190), true);
+    assertTrue(door.getBlue() > door.getRed() + 40, "door " + door);
+  }
+
+  private static void writeImage(Path file, Color color) throws IOException {
+    BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+    image.setRGB(0, 0, color.getRGB());
+    ImageIO.write(image, "png", file.toFile());
+  }
+}
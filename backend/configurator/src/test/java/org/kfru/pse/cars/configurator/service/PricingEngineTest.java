@@ -0,0 +1,143 @@
+package org.kfru.pse.cars.configurator.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.kfru.pse.cars.configurator.model.CarFeature;
+import org.kfru.pse.cars.configurator.model.ConfigurationEvaluation;
+import org.kfru.pse.cars.configurator.model.OfferedCar;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class PricingEngineTest {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  // Features deliberately out of id order: the tables follow the packed configuration, ordered by id
+  private static final OfferedCar TEMPEST = new OfferedCar(1, "Tempest", "Fast", true, List.of(
+      new CarFeature(1, "Rims", List.of("#FFFFFF", "#000000")),
+      new CarFeature(0, "Color", List.of("#0E0E0E", "#BA0E1B", "#557C01")),
+      new CarFeature(2, "Glass", List.of("#FFFFFF", "#000000", "#5c391d"))), "tempest.png");
+
+  private static final String PRICING = """
+      {
+        "basePrice": 89900.00,
+        "currency": "EUR",
+        "features": [
+          {"feature": 0, "price": 100, "variantPrices": {"#BA0E1B": 1200.50, "#557C01": 950}},
+          {"feature": 1, "variantPrices": {"#000000": 800}},
+          {"feature": 2, "variantPrices": {"#5c391d": 650}}
+        ],
+        "constraints": [
+          {"feature": 1, "variant": "#000000",
+           "requires": {"feature": 2, "variants": ["#000000", "#5c391d"]},
+           "message": "Black rims come with tinted glass"},
+          {"feature": 0, "variant": "#557c01", "excludes": {"feature": 1, "variants": ["#000000"]}}
+        ]
+      }""";
+
+  @Test
+  void totalIsBasePlusFeatureAndVariantPrices() {
+    // Color #BA0E1B, rims #FFFFFF, glass #5c391d
+    ConfigurationEvaluation evaluation = compile(TEMPEST, PRICING).evaluate(new byte[]{2, 1, 3});
+
+    assertEquals("EUR", evaluation.getCurrency());
+    assertEquals(new BigDecimal("89900.00"), evaluation.getBasePrice());
+    assertEquals(new BigDecimal("91850.50"), evaluation.getTotalPrice());
+    assertEquals(List.of(new BigDecimal("1300.50"), new BigDecimal("0.00"), new BigDecimal("650.00")),
+        evaluation.getLines().stream().map(ConfigurationEvaluation.Line::getPrice).toList());
+    assertEquals(List.of(0, 1, 2),
+        evaluation.getLines().stream().map(ConfigurationEvaluation.Line::getFeatureId).toList());
+    assertTrue(evaluation.isComplete());
+    assertTrue(evaluation.isAvailable());
+  }
+
+  @Test
+  void openFeaturesAreNotPricedAndMakeTheConfigurationIncomplete() {
+    ConfigurationEvaluation evaluation = compile(TEMPEST, PRICING).evaluate(new byte[]{1});
+
+    assertEquals(new BigDecimal("90000.00"), evaluation.getTotalPrice());
+    assertEquals(1, evaluation.getLines().size());
+    assertFalse(evaluation.isComplete());
+    assertTrue(evaluation.isAvailable());
+  }
+
+  @Test
+  void requiresAllowsOnlyTheListedVariants() {
+    PricingEngine.CompiledCar car = compile(TEMPEST, PRICING);
+
+    // Black rims with clear, dark and brown glass
+    assertEquals(List.of("Black rims come with tinted glass"), car.evaluate(new byte[]{1, 2, 1}).getViolations());
+    assertTrue(car.evaluate(new byte[]{1, 2, 2}).isAvailable());
+    assertTrue(car.evaluate(new byte[]{1, 2, 3}).isAvailable());
+    // A required feature must not be left open
+    assertFalse(car.evaluate(new byte[]{1, 2, 0}).isAvailable());
+    // White rims have no constraint
+    assertTrue(car.evaluate(new byte[]{1, 1, 1}).isAvailable());
+  }
+
+  @Test
+  void excludesForbidsTheListedVariantsButAllowsNone() {
+    PricingEngine.CompiledCar car = compile(TEMPEST, PRICING);
+
+    ConfigurationEvaluation green = car.evaluate(new byte[]{3, 2, 2});
+    assertFalse(green.isAvailable());
+    assertEquals(List.of("Color #557C01 is not available with Rims #000000"), green.getViolations());
+    assertTrue(car.evaluate(new byte[]{3, 1, 2}).isAvailable());
+    // Leaving the excluded feature open is fine
+    assertTrue(car.evaluate(new byte[]{3, 0, 2}).isAvailable());
+  }
+
+  @Test
+  void unavailableCarIsNeverAvailable() {
+    OfferedCar retired = new OfferedCar(2, "Retired", "", false, TEMPEST.getFeatures(), "retired.png");
+
+    ConfigurationEvaluation evaluation = compile(retired, PRICING).evaluate(new byte[]{1, 1, 1});
+
+    assertFalse(evaluation.isAvailable());
+    assertTrue(evaluation.getViolations().isEmpty());
+  }
+
+  @Test
+  void compileRejectsUnknownFeaturesAndVariants() {
+    assertThrows(IllegalStateException.class,
+        () -> compile(TEMPEST, "{\"features\": [{\"feature\": 9, \"price\": 1}]}"));
+    assertThrows(IllegalStateException.class,
+        () -> compile(TEMPEST, "{\"features\": [{\"feature\": 0, \"variantPrices\": {\"#123456\": 1}}]}"));
+    assertThrows(IllegalStateException.class, () -> compile(TEMPEST,
+        "{\"constraints\": [{\"feature\": 0, \"variant\": \"#0E0E0E\", \"requires\": {\"feature\": 7}}]}"));
+  }
+
+  @Test
+  void reloadSkipsCarsWithInvalidPricing() {
+    OfferedCar broken = new OfferedCar(2, "Broken", "", true, TEMPEST.getFeatures(), "broken.png");
+    OfferedCar unpriced = new OfferedCar(3, "Unpriced", "", true, TEMPEST.getFeatures(), "unpriced.png");
+    PricingEngine engine = new PricingEngine(mock(OfferedCarRegistry.class));
+    engine.offeredCarsFile = new ByteArrayResource(("[{\"id\": 1, \"pricing\": " + PRICING + "},"
+        + "{\"id\": 2, \"pricing\": {\"features\": [{\"feature\": 9, \"price\": 1}]}},"
+        + "{\"id\": 3}]").getBytes(StandardCharsets.UTF_8));
+
+    engine.onReload(new OfferedCarRegistry.Reloaded(List.of(TEMPEST, broken, unpriced)));
+
+    assertEquals(new BigDecimal("89900.00"), engine.evaluate(1, new byte[0]).orElseThrow().getTotalPrice());
+    assertTrue(engine.evaluate(2, new byte[0]).isEmpty());
+    assertTrue(engine.evaluate(3, new byte[0]).isEmpty());
+  }
+
+  private static PricingEngine.CompiledCar compile(OfferedCar car, String pricing) {
+    try {
+      return PricingEngine.compile(car, OBJECT_MAPPER.readTree(pricing));
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+}
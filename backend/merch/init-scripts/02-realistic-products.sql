@@ -6,6 +6,9 @@
 CREATE EXTENSION IF NOT EXISTS "uuid-ossp";
 
 -- Drop existing tables in correct order (foreign keys first)
+DROP TABLE IF EXISTS catalog_versions CASCADE;
+DROP TABLE IF EXISTS outbox_events CASCADE;
+DROP TABLE IF EXISTS stock_holds CASCADE;
 DROP TABLE IF EXISTS product_images CASCADE;
 DROP TABLE IF EXISTS cart_items CASCADE;
 DROP TABLE IF EXISTS order_items CASCADE;
@@ -19,6 +22,7 @@ CREATE TABLE categories (
     id BIGSERIAL PRIMARY KEY,
     name VARCHAR(100) NOT NULL UNIQUE,
     description TEXT,
+    parent_id BIGINT REFERENCES categories(id),
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
@@ -33,6 +37,7 @@ CREATE TABLE products (
     category_id BIGINT NOT NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    version BIGINT NOT NULL DEFAULT 0,
     FOREIGN KEY (category_id) REFERENCES categories(id) ON DELETE CASCADE
 );
 
@@ -54,7 +59,9 @@ CREATE TABLE carts (
     user_id VARCHAR(255),
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    expires_at TIMESTAMP
+    expires_at TIMESTAMP,
+    version BIGINT NOT NULL DEFAULT 0,
+    CONSTRAINT uk_carts_session_id UNIQUE (session_id)
 );
 
 -- Create Cart Items Table
@@ -66,9 +73,10 @@ CREATE TABLE cart_items (
     price DECIMAL(10,2) NOT NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    version BIGINT NOT NULL DEFAULT 0,
     FOREIGN KEY (cart_id) REFERENCES carts(id) ON DELETE CASCADE,
     FOREIGN KEY (product_id) REFERENCES products(id) ON DELETE CASCADE,
-    UNIQUE(cart_id, product_id)
+    CONSTRAINT uk_cart_items_cart_product UNIQUE (cart_id, product_id)
 );
 
 -- Create Orders Table
@@ -84,7 +92,8 @@ CREATE TABLE orders (
     status VARCHAR(50) NOT NULL DEFAULT 'PENDING',
     payment_status VARCHAR(50) NOT NULL DEFAULT 'PENDING',
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    version BIGINT NOT NULL DEFAULT 0
 );
 
 -- Create Order Items Table
@@ -101,15 +110,54 @@ CREATE TABLE order_items (
     FOREIGN KEY (product_id) REFERENCES products(id)
 );
 
+-- Create Stock Holds Table (persisted cart reservations, restored at startup)
+CREATE TABLE stock_holds (
+    id BIGSERIAL PRIMARY KEY,
+    instance_id VARCHAR(100) NOT NULL,
+    session_id VARCHAR(255) NOT NULL,
+    product_id BIGINT NOT NULL,
+    quantity INTEGER NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    UNIQUE(instance_id, session_id, product_id)
+);
+
+-- Create Outbox Table (order events published by the relay, in id order)
+CREATE TABLE outbox_events (
+    id BIGSERIAL PRIMARY KEY,
+    aggregate_type VARCHAR(50) NOT NULL,
+    aggregate_id BIGINT NOT NULL,
+    event_type VARCHAR(100) NOT NULL,
+    payload TEXT NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    published_at TIMESTAMP
+);
+
+-- Create Catalog Versions Table (ETag counters shared by all instances, created at startup)
+CREATE TABLE catalog_versions (
+    name VARCHAR(50) PRIMARY KEY,
+    version BIGINT NOT NULL
+);
+
 -- Create indexes for better performance
-CREATE INDEX idx_products_category_id ON products(category_id);
+-- Keep in sync with the @Table(indexes) declarations of the entities; QueryPlanTest checks
+-- that every repository query is served by one of them.
+CREATE INDEX idx_categories_parent_id ON categories(parent_id);
+CREATE INDEX idx_products_category_id ON products(category_id, stock_quantity);
+CREATE INDEX idx_products_category_price ON products(category_id, price);
+CREATE INDEX idx_products_price ON products(price);
+CREATE INDEX idx_products_stock_quantity ON products(stock_quantity);
 CREATE INDEX idx_products_name ON products(name);
 CREATE INDEX idx_product_images_product_id ON product_images(product_id);
-CREATE INDEX idx_cart_items_cart_id ON cart_items(cart_id);
+CREATE INDEX idx_carts_expires_at ON carts(expires_at);
+CREATE INDEX idx_carts_updated_at ON carts(updated_at);
 CREATE INDEX idx_cart_items_product_id ON cart_items(product_id);
 CREATE INDEX idx_order_items_order_id ON order_items(order_id);
-CREATE INDEX idx_orders_status ON orders(status);
+CREATE INDEX idx_orders_status_created_at ON orders(status, created_at);
+CREATE INDEX idx_orders_customer_email_created_at ON orders(customer_email, created_at);
 CREATE INDEX idx_orders_created_at ON orders(created_at);
+CREATE INDEX idx_stock_holds_expires_at ON stock_holds(expires_at);
+CREATE INDEX idx_stock_holds_instance ON stock_holds(instance_id);
+CREATE INDEX idx_outbox_events_unpublished ON outbox_events(id) WHERE published_at IS NULL;
 
 -- Insert Categories
 INSERT INTO categories (name, description) VALUES 
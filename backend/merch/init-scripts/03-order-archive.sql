@@ -0,0 +1,40 @@
+-- 03-order-archive.sql
+-- Archive for finished orders (DELIVERED/CANCELLED), filled by the order archival job.
+-- Both tables are range-partitioned by the order's creation time; the job creates one
+-- partition per month on demand (orders_archive_pYYYYMM / order_items_archive_pYYYYMM),
+-- so date-range queries only touch the months they ask for.
+
+DROP TABLE IF EXISTS order_items_archive CASCADE;
+DROP TABLE IF EXISTS orders_archive CASCADE;
+
+-- Create Archived Orders Table
+CREATE TABLE orders_archive (
+    id BIGINT NOT NULL,
+    customer_email VARCHAR(255) NOT NULL,
+    customer_name VARCHAR(255) NOT NULL,
+    customer_address VARCHAR(500),
+    total_amount DECIMAL(10,2) NOT NULL,
+    status VARCHAR(50) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP,
+    archived_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- Create Archived Order Items Table
+CREATE TABLE order_items_archive (
+    id BIGINT NOT NULL,
+    order_id BIGINT NOT NULL,
+    order_created_at TIMESTAMP NOT NULL,
+    product_id BIGINT NOT NULL,
+    product_name VARCHAR(255),
+    quantity INTEGER NOT NULL,
+    price DECIMAL(10,2) NOT NULL,
+    PRIMARY KEY (id, order_created_at)
+) PARTITION BY RANGE (order_created_at);
+
+-- Partitioned indexes, inherited by every monthly partition
+CREATE INDEX idx_order_items_archive_order_id ON order_items_archive(order_id);
+-- Order history listings page the archive by status or customer, newest first
+CREATE INDEX idx_orders_archive_status_created_at ON orders_archive(status, created_at);
+CREATE INDEX idx_orders_archive_customer_email_created_at ON orders_archive(customer_email, created_at);
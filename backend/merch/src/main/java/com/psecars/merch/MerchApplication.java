@@ -2,10 +2,13 @@ package com.psecars.merch;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 
-@SpringBootApplication
+// R2DBC auto-configuration is excluded: a ConnectionFactory bean would make Spring Boot back off
+// from creating the JDBC DataSource. The reactive catalog pool is set up in ReactiveCatalogConfig.
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
 @EnableJpaRepositories
 @EnableCaching
 public class MerchApplication {
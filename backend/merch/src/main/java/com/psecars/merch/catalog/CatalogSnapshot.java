@@ -0,0 +1,519 @@
+package com.psecars.merch.catalog;
+
+import com.psecars.merch.entity.Category;
+import com.psecars.merch.entity.Product;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.Collator;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable, column-oriented copy of the product catalog.
+ *
+ * One row per product, rows ordered by id. Numbers are primitive columns (price as cents, stock as
+ * int, timestamps as epoch nanos); equal strings are stored once, categories and image URLs are
+ * dictionary-encoded. Reads materialize detached Product objects for the rows of the requested page
+ * only. Changes never modify a snapshot - with()/without() return a new one. Updating a product that
+ * is already in the catalog copies only the columns that changed and shares everything else with the
+ * previous snapshot, including the cached sort orders of the unchanged columns; sort orders of changed
+ * columns are carried over by moving the one row. New products, deletes, and category or image changes
+ * rebuild all columns.
+ */
+public final class CatalogSnapshot {
+
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    // Linguistic order like the database's en_US collation used by the ORDER BY name fallback queries
+    // ("apple" < "Banana"), not String.compareTo; Collator.compare is thread-safe
+    private static final Collator NAME_ORDER = Collator.getInstance(Locale.US);
+
+    // Sortable properties; id order is the row order itself
+    private static final String[] SORT_PROPERTIES = {"name", "price", "stockQuantity", "createdAt", "updatedAt"};
+
+    private final long[] ids;
+    private final String[] names;
+    private final String[] descriptions;
+    private final long[] priceCents;
+    private final int[] stock;
+    private final long[] versions;
+    private final long[] createdAt;
+    private final long[] updatedAt;
+
+    private final int[] categoryRefs;
+    private final long[] categoryIds;
+    private final String[] categoryNames;
+
+    // Images of row r: imageRefs[imageOffsets[r] .. imageOffsets[r + 1]) into imageUrls
+    private final int[] imageOffsets;
+    private final int[] imageRefs;
+    private final String[] imageUrls;
+
+    // Row permutations per SORT_PROPERTIES entry, computed on first use
+    private final AtomicReferenceArray<int[]> sortOrders = new AtomicReferenceArray<>(SORT_PROPERTIES.length);
+
+    private CatalogSnapshot(List<Row> rows) {
+        rows.sort(Comparator.comparingLong(Row::id));
+        int size = rows.size();
+        ids = new long[size];
+        names = new String[size];
+        descriptions = new String[size];
+        priceCents = new long[size];
+        stock = new int[size];
+        versions = new long[size];
+        createdAt = new long[size];
+        updatedAt = new long[size];
+        categoryRefs = new int[size];
+        imageOffsets = new int[size + 1];
+
+        Map<String, String> strings = new HashMap<>();
+        Map<Long, Integer> categories = new HashMap<>();
+        List<Long> categoryIdList = new ArrayList<>();
+        List<String> categoryNameList = new ArrayList<>();
+        Map<String, Integer> images = new HashMap<>();
+        List<String> imageList = new ArrayList<>();
+        int[] refs = new int[16];
+        int imageCount = 0;
+
+        for (int row = 0; row < size; row++) {
+            Row r = rows.get(row);
+            ids[row] = r.id();
+            names[row] = canonical(strings, r.name());
+            descriptions[row] = canonical(strings, r.description());
+            priceCents[row] = r.priceCents();
+            stock[row] = r.stock();
+            versions[row] = r.version();
+            createdAt[row] = r.createdAt();
+            updatedAt[row] = r.updatedAt();
+
+            Integer category = categories.get(r.categoryId());
+            if (category == null) {
+                category = categoryIdList.size();
+                categories.put(r.categoryId(), category);
+                categoryIdList.add(r.categoryId());
+                categoryNameList.add(canonical(strings, r.categoryName()));
+            }
+            categoryRefs[row] = category;
+
+            imageOffsets[row] = imageCount;
+            for (String url : r.imageUrls()) {
+                if (imageCount == refs.length) {
+                    refs = Arrays.copyOf(refs, refs.length * 2);
+                }
+                refs[imageCount++] = images.computeIfAbsent(url, u -> {
+                    imageList.add(u);
+                    return imageList.size() - 1;
+                });
+            }
+        }
+        imageOffsets[size] = imageCount;
+        imageRefs = Arrays.copyOf(refs, imageCount);
+        imageUrls = imageList.toArray(new String[0]);
+        categoryIds = categoryIdList.stream().mapToLong(id -> id != null ? id : -1L).toArray();
+        categoryNames = categoryNameList.toArray(new String[0]);
+    }
+
+    private CatalogSnapshot(long[] ids, String[] names, String[] descriptions, long[] priceCents, int[] stock,
+                            long[] versions, long[] createdAt, long[] updatedAt, int[] categoryRefs,
+                            long[] categoryIds, String[] categoryNames, int[] imageOffsets, int[] imageRefs,
+                            String[] imageUrls) {
+        this.ids = ids;
+        this.names = names;
+        this.descriptions = descriptions;
+        this.priceCents = priceCents;
+        this.stock = stock;
+        this.versions = versions;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.categoryRefs = categoryRefs;
+        this.categoryIds = categoryIds;
+        this.categoryNames = categoryNames;
+        this.imageOffsets = imageOffsets;
+        this.imageRefs = imageRefs;
+        this.imageUrls = imageUrls;
+    }
+
+    public static CatalogSnapshot of(Collection<Product> products) {
+        List<Row> rows = new ArrayList<>(products.size());
+        for (Product product : products) {
+            rows.add(Row.of(product));
+        }
+        return new CatalogSnapshot(rows);
+    }
+
+    /** A snapshot with the product added or replaced (this one if the product is unchanged). */
+    public CatalogSnapshot with(Product product) {
+        Row changed = Row.of(product);
+        int row = rowOf(changed.id());
+        int category = row < 0 ? -1 : categoryRef(changed);
+        if (category < 0 || !sameImages(row, changed.imageUrls())) {
+            List<Row> rows = rows(changed.id());
+            rows.add(changed);
+            return new CatalogSnapshot(rows);
+        }
+        return patched(row, changed, category);
+    }
+
+    /** A new snapshot without the product (this one if it is not in the catalog). */
+    public CatalogSnapshot without(long productId) {
+        return rowOf(productId) < 0 ? this : new CatalogSnapshot(rows(productId));
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public Optional<Product> findById(long id) {
+        int row = rowOf(id);
+        return row < 0 ? Optional.empty() : Optional.of(toProduct(row));
+    }
+
+    /** Products in the order of the given ids; ids not in the catalog are skipped. */
+    public List<Product> findAllById(long[] productIds) {
+        List<Product> products = new ArrayList<>(productIds.length);
+        for (long id : productIds) {
+            int row = rowOf(id);
+            if (row >= 0) {
+                products.add(toProduct(row));
+            }
+        }
+        return products;
+    }
+
+    /** Matching rows in id order. */
+    public List<Product> findAll(IntPredicate filter) {
+        List<Product> products = new ArrayList<>();
+        for (int row = 0; row < ids.length; row++) {
+            if (filter.test(row)) {
+                products.add(toProduct(row));
+            }
+        }
+        return products;
+    }
+
+    /**
+     * One page of the matching rows. Empty when the sort is not supported (more than one order or
+     * a property without a column here); callers then query the database.
+     */
+    public Optional<Page<Product>> findPage(IntPredicate filter, Pageable pageable) {
+        Sort sort = pageable.getSort();
+        int[] order = null;
+        boolean descending = false;
+        if (sort.isSorted()) {
+            List<Sort.Order> orders = sort.toList();
+            if (orders.size() != 1) {
+                return Optional.empty();
+            }
+            descending = orders.get(0).isDescending();
+            String property = orders.get(0).getProperty();
+            if (!"id".equals(property)) {
+                int index = Arrays.asList(SORT_PROPERTIES).indexOf(property);
+                if (index < 0) {
+                    return Optional.empty();
+                }
+                order = sortOrder(index);
+            }
+        }
+
+        long offset = pageable.isPaged() ? pageable.getOffset() : 0;
+        int limit = pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE;
+        List<Product> content = new ArrayList<>(Math.min(limit, ids.length));
+        long total = 0;
+        for (int i = 0; i < ids.length; i++) {
+            int position = descending ? ids.length - 1 - i : i;
+            int row = order != null ? order[position] : position;
+            if (!filter.test(row)) {
+                continue;
+            }
+            if (total >= offset && content.size() < limit) {
+                content.add(toProduct(row));
+            }
+            total++;
+        }
+        return Optional.of(new PageImpl<>(content, pageable, total));
+    }
+
+    // ---- row filters ----
+
+    public IntPredicate all() {
+        return row -> true;
+    }
+
+    public IntPredicate inStock() {
+        return row -> stock[row] > 0;
+    }
+
+    public IntPredicate stockAtMost(int threshold) {
+        return row -> stock[row] <= threshold;
+    }
+
+    public IntPredicate inCategory(long categoryId) {
+        int category = -1;
+        for (int i = 0; i < categoryIds.length; i++) {
+            if (categoryIds[i] == categoryId) {
+                category = i;
+            }
+        }
+        int ref = category;
+        return row -> categoryRefs[row] == ref;
+    }
+
+    /** Case-insensitive substring match on name or description, like the keyword query. */
+    public IntPredicate matching(String keyword) {
+        return row -> containsIgnoreCase(names[row], keyword) || containsIgnoreCase(descriptions[row], keyword);
+    }
+
+    public IntPredicate withIds(Collection<Long> productIds) {
+        boolean[] selected = new boolean[ids.length];
+        for (Long id : productIds) {
+            int row = id != null ? rowOf(id) : -1;
+            if (row >= 0) {
+                selected[row] = true;
+            }
+        }
+        return row -> selected[row];
+    }
+
+    // ---- internals ----
+
+    private int rowOf(long id) {
+        return Arrays.binarySearch(ids, id);
+    }
+
+    private int[] sortOrder(int index) {
+        int[] order = sortOrders.get(index);
+        if (order == null) {
+            // Rows are in id order, so the stable sort keeps ties ordered by id
+            order = IntStream.range(0, ids.length).boxed().sorted(comparator(index)).mapToInt(Integer::intValue).toArray();
+            sortOrders.compareAndSet(index, null, order);
+        }
+        return order;
+    }
+
+    private Comparator<Integer> comparator(int index) {
+        return switch (SORT_PROPERTIES[index]) {
+            case "name" -> Comparator.comparing((Integer row) -> names[row], Comparator.nullsLast(NAME_ORDER::compare));
+            case "price" -> Comparator.comparingLong((Integer row) -> priceCents[row]);
+            case "stockQuantity" -> Comparator.comparingInt((Integer row) -> stock[row]);
+            case "createdAt" -> Comparator.comparingLong((Integer row) -> createdAt[row]);
+            default -> Comparator.comparingLong((Integer row) -> updatedAt[row]);
+        };
+    }
+
+    private Object column(int index) {
+        return switch (SORT_PROPERTIES[index]) {
+            case "name" -> names;
+            case "price" -> priceCents;
+            case "stockQuantity" -> stock;
+            case "createdAt" -> createdAt;
+            default -> updatedAt;
+        };
+    }
+
+    /** Copy of this snapshot with the row replaced; the category and images must be unchanged (see with()). */
+    private CatalogSnapshot patched(int row, Row changed, int category) {
+        CatalogSnapshot patched = new CatalogSnapshot(ids,
+                set(names, row, changed.name()), set(descriptions, row, changed.description()),
+                set(priceCents, row, changed.priceCents()), set(stock, row, changed.stock()),
+                set(versions, row, changed.version()), set(createdAt, row, changed.createdAt()),
+                set(updatedAt, row, changed.updatedAt()), set(categoryRefs, row, category),
+                categoryIds, categoryNames, imageOffsets, imageRefs, imageUrls);
+
+        boolean changedAny = false;
+        for (int i = 0; i < SORT_PROPERTIES.length; i++) {
+            boolean columnChanged = patched.column(i) != column(i);
+            changedAny |= columnChanged;
+            int[] order = sortOrders.get(i);
+            if (order != null) {
+                patched.sortOrders.set(i, columnChanged ? patched.moved(order, i, row) : order);
+            }
+        }
+        if (!changedAny && patched.descriptions == descriptions && patched.versions == versions
+                && patched.categoryRefs == categoryRefs) {
+            return this;
+        }
+        return patched;
+    }
+
+    /** The sort order with the row moved to its place; all other rows keep their relative order. */
+    private int[] moved(int[] order, int index, int row) {
+        Comparator<Integer> comparator = comparator(index).thenComparing(Comparator.naturalOrder());
+        int[] result = new int[order.length];
+        int position = 0;
+        boolean placed = false;
+        for (int other : order) {
+            if (other == row) {
+                continue;
+            }
+            if (!placed && comparator.compare(row, other) < 0) {
+                result[position++] = row;
+                placed = true;
+            }
+            result[position++] = other;
+        }
+        if (!placed) {
+            result[position] = row;
+        }
+        return result;
+    }
+
+    /** Dictionary index of the row's category, -1 if it is new or was renamed. */
+    private int categoryRef(Row row) {
+        long categoryId = row.categoryId() != null ? row.categoryId() : -1L;
+        for (int i = 0; i < categoryIds.length; i++) {
+            if (categoryIds[i] == categoryId) {
+                return Objects.equals(categoryNames[i], row.categoryName()) ? i : -1;
+            }
+        }
+        return -1;
+    }
+
+    private boolean sameImages(int row, List<String> urls) {
+        if (urls.size() != imageOffsets[row + 1] - imageOffsets[row]) {
+            return false;
+        }
+        for (int i = 0; i < urls.size(); i++) {
+            if (!urls.get(i).equals(imageUrls[imageRefs[imageOffsets[row] + i]])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Copy-on-write of one cell: the column itself if the value is unchanged
+
+    private static long[] set(long[] column, int row, long value) {
+        if (column[row] == value) {
+            return column;
+        }
+        long[] copy = column.clone();
+        copy[row] = value;
+        return copy;
+    }
+
+    private static int[] set(int[] column, int row, int value) {
+        if (column[row] == value) {
+            return column;
+        }
+        int[] copy = column.clone();
+        copy[row] = value;
+        return copy;
+    }
+
+    private static String[] set(String[] column, int row, String value) {
+        if (Objects.equals(column[row], value)) {
+            return column;
+        }
+        String[] copy = column.clone();
+        copy[row] = value;
+        return copy;
+    }
+
+    private Product toProduct(int row) {
+        Category category = new Category();
+        category.setId(categoryIds[categoryRefs[row]]);
+        category.setName(categoryNames[categoryRefs[row]]);
+
+        List<String> images = new ArrayList<>(imageOffsets[row + 1] - imageOffsets[row]);
+        for (int i = imageOffsets[row]; i < imageOffsets[row + 1]; i++) {
+            images.add(imageUrls[imageRefs[i]]);
+        }
+
+        Product product = new Product();
+        product.setId(ids[row]);
+        product.setName(names[row]);
+        product.setDescription(descriptions[row]);
+        product.setPrice(BigDecimal.valueOf(priceCents[row], 2));
+        product.setStockQuantity(stock[row]);
+        product.setCategory(category);
+        product.setImageUrls(images);
+        product.setCreatedAt(toTimestamp(createdAt[row]));
+        product.setUpdatedAt(toTimestamp(updatedAt[row]));
+        product.setVersion(versions[row]);
+        return product;
+    }
+
+    private List<Row> rows(long exceptId) {
+        List<Row> rows = new ArrayList<>(ids.length + 1);
+        for (int row = 0; row < ids.length; row++) {
+            if (ids[row] == exceptId) {
+                continue;
+            }
+            List<String> images = new ArrayList<>(imageOffsets[row + 1] - imageOffsets[row]);
+            for (int i = imageOffsets[row]; i < imageOffsets[row + 1]; i++) {
+                images.add(imageUrls[imageRefs[i]]);
+            }
+            rows.add(new Row(ids[row], names[row], descriptions[row], priceCents[row], stock[row], versions[row],
+                    createdAt[row], updatedAt[row], categoryIds[categoryRefs[row]], categoryNames[categoryRefs[row]],
+                    images));
+        }
+        return rows;
+    }
+
+    private static String canonical(Map<String, String> strings, String value) {
+        return value == null ? null : strings.computeIfAbsent(value, v -> v);
+    }
+
+    private static boolean containsIgnoreCase(String text, String keyword) {
+        if (text == null) {
+            return false;
+        }
+        int length = keyword.length();
+        for (int i = 0; i + length <= text.length(); i++) {
+            if (text.regionMatches(true, i, keyword, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long toEpochNanos(LocalDateTime timestamp) {
+        if (timestamp == null) {
+            return NO_TIMESTAMP;
+        }
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + timestamp.getNano();
+    }
+
+    private static LocalDateTime toTimestamp(long epochNanos) {
+        if (epochNanos == NO_TIMESTAMP) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L),
+                (int) Math.floorMod(epochNanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+    /** One product while a snapshot is built; not kept afterwards. */
+    private record Row(long id, String name, String description, long priceCents, int stock, long version,
+                       long createdAt, long updatedAt, Long categoryId, String categoryName, List<String> imageUrls) {
+
+        private static Row of(Product product) {
+            Category category = product.getCategory();
+            return new Row(product.getId(), product.getName(), product.getDescription(),
+                    product.getPrice().setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact(),
+                    product.getStockQuantity(),
+                    product.getVersion() != null ? product.getVersion() : 0L,
+                    toEpochNanos(product.getCreatedAt()), toEpochNanos(product.getUpdatedAt()),
+                    category != null ? category.getId() : null,
+                    category != null ? category.getName() : null,
+                    product.getImageUrls() != null ? product.getImageUrls() : List.of());
+        }
+    }
+}
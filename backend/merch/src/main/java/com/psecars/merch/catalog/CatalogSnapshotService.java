@@ -0,0 +1,155 @@
+package com.psecars.merch.catalog;
+
+import com.psecars.merch.entity.Product;
+import com.psecars.merch.event.CatalogChangedEvent;
+import com.psecars.merch.event.RemoteCatalogChangedEvent;
+import com.psecars.merch.repository.ProductRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Holds the current CatalogSnapshot and serves ProductService's catalog reads from it.
+ *
+ * The snapshot is loaded at startup and replaced after commit whenever a product changes (one row
+ * reloaded and patched into a copy-on-write snapshot, see CatalogSnapshot.with) or a category changes
+ * (full reload), and reloaded as a whole when ResourceVersionService sees that the catalog was changed
+ * through another instance. Events for a product whose row did not change, like stock hold availability flips,
+ * keep the current snapshot. Every method returns empty while no snapshot is
+ * loaded, for sorts the snapshot has no column for, and inside a transaction - a caller that is
+ * writing (e.g. OrderService placing an order) needs managed entities with current stock, so it
+ * reads from the database.
+ */
+@Service
+public class CatalogSnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogSnapshotService.class);
+
+    private final ProductRepository productRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Object writeLock = new Object();
+    private final Timer rebuilds;
+
+    private volatile CatalogSnapshot snapshot;
+
+    @Value("${app.catalog-snapshot.enabled:true}")
+    private boolean enabled;
+
+    @Autowired
+    public CatalogSnapshotService(ProductRepository productRepository,
+                                  TransactionTemplate transactionTemplate,
+                                  MeterRegistry meterRegistry) {
+        this.productRepository = productRepository;
+        this.transactionTemplate = transactionTemplate;
+        Gauge.builder("merch.catalog.snapshot.products", this, s -> s.snapshot != null ? s.snapshot.size() : 0)
+                .register(meterRegistry);
+        this.rebuilds = Timer.builder("merch.catalog.snapshot.rebuild").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (writeLock) {
+            snapshot = rebuilds.record(() -> transactionTemplate.execute(
+                    status -> CatalogSnapshot.of(productRepository.findAllWithCategoryAndImages())));
+        }
+        logger.info("Catalog snapshot loaded with {} products", snapshot.size());
+    }
+
+    // Runs before ResourceVersionService moves the catalog ETag on, so a new ETag never labels old data
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        synchronized (writeLock) {
+            CatalogSnapshot current = snapshot;
+            if (current == null) {
+                return;
+            }
+            snapshot = rebuilds.record(() -> {
+                if (event.getResourceType() == CatalogChangedEvent.ResourceType.CATEGORY) {
+                    return CatalogSnapshot.of(productRepository.findAllWithCategoryAndImages());
+                }
+                return productRepository.findByIdWithCategoryAndImages(event.getResourceId())
+                        .map(current::with)
+                        .orElseGet(() -> current.without(event.getResourceId()));
+            });
+        }
+    }
+
+    // Before the other RemoteCatalogChangedEvent listeners: PriceIndexService materializes pages from it
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void onRemoteCatalogChanged(RemoteCatalogChangedEvent event) {
+        if (snapshot != null) {
+            load();
+        }
+    }
+
+    public Optional<Product> findById(Long id) {
+        return query(s -> s.findById(id));
+    }
+
+    public Optional<List<Product>> findAllById(long[] ids) {
+        return query(s -> Optional.of(s.findAllById(ids)));
+    }
+
+    public Optional<Page<Product>> findAll(Pageable pageable) {
+        return query(s -> s.findPage(s.all(), pageable));
+    }
+
+    public Optional<Page<Product>> findAvailable(Pageable pageable) {
+        return query(s -> s.findPage(s.inStock(), pageable));
+    }
+
+    public Optional<Page<Product>> findByCategory(Long categoryId, Pageable pageable) {
+        return query(s -> s.findPage(s.inCategory(categoryId), pageable));
+    }
+
+    public Optional<Page<Product>> search(String keyword, Pageable pageable) {
+        return query(s -> s.findPage(s.matching(keyword), pageable));
+    }
+
+    public Optional<Page<Product>> findByIds(Collection<Long> ids, Pageable pageable) {
+        return query(s -> s.findPage(s.withIds(ids), pageable));
+    }
+
+    public Optional<Page<Product>> searchByIds(String keyword, Collection<Long> ids, Pageable pageable) {
+        return query(s -> s.findPage(s.withIds(ids).and(s.matching(keyword)), pageable));
+    }
+
+    public Optional<List<Product>> findLowStock(int threshold) {
+        return query(s -> Optional.of(s.findAll(s.stockAtMost(threshold))));
+    }
+
+    private <T> Optional<T> query(Function<CatalogSnapshot, Optional<T>> read) {
+        CatalogSnapshot current = snapshot;
+        if (current == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return Optional.empty();
+        }
+        return read.apply(current);
+    }
+}
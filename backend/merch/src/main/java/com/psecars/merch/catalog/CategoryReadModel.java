@@ -0,0 +1,281 @@
+package com.psecars.merch.catalog;
+
+import com.psecars.merch.dto.CategoryResponse;
+import com.psecars.merch.event.CatalogChangedEvent;
+import com.psecars.merch.event.RemoteCatalogChangedEvent;
+import com.psecars.merch.repository.CategoryRepository;
+import com.psecars.merch.repository.ProductRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * In-memory read model of the category tree with product counts.
+ *
+ * For every category it keeps the number of products filed directly under it and how many of those
+ * have stock, plus the same totals for its whole subtree, and the ancestor ids and name path from the
+ * root. The counters are maintained incrementally: the model remembers which category each product
+ * counts towards and whether it is in stock, and a product change only moves that product between
+ * counters. The finished responses are rebuilt from the counters (categories are few) and swapped as
+ * an immutable tree, so the category list is served without touching the database. Changes made
+ * through another instance are not seen one by one: the model reloads on a RemoteCatalogChangedEvent.
+ *
+ * "In stock" is stockQuantity > 0; units held in carts are not subtracted here.
+ * While no tree is loaded (disabled, or before startup finished) reads build one from two aggregate
+ * queries. Checks that guard writes (a category must be empty to be deleted) query the database.
+ */
+@Service
+public class CategoryReadModel {
+
+    private static final Logger logger = LoggerFactory.getLogger(CategoryReadModel.class);
+    private static final String PATH_SEPARATOR = " / ";
+
+    private final CategoryRepository categoryRepository;
+    private final ProductRepository productRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Object writeLock = new Object();
+
+    // Writer state, guarded by writeLock
+    private final Map<Long, ProductState> products = new HashMap<>();
+    private final Map<Long, Counts> counts = new HashMap<>();
+    private Map<Long, Row> rows = Map.of();
+
+    private volatile Tree tree;
+
+    @Value("${app.category-read-model.enabled:true}")
+    private boolean enabled;
+
+    @Autowired
+    public CategoryReadModel(CategoryRepository categoryRepository, ProductRepository productRepository,
+                             TransactionTemplate transactionTemplate, MeterRegistry meterRegistry) {
+        this.categoryRepository = categoryRepository;
+        this.productRepository = productRepository;
+        this.transactionTemplate = transactionTemplate;
+        Gauge.builder("merch.catalog.categories", this, m -> m.tree != null ? m.tree.list.size() : 0)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (writeLock) {
+            transactionTemplate.executeWithoutResult(status -> {
+                rows = loadRows();
+                products.clear();
+                counts.clear();
+                for (Object[] entry : productRepository.findAllCategoryStockEntries()) {
+                    ProductState state = new ProductState((Long) entry[1], ((Integer) entry[2]) > 0);
+                    products.put((Long) entry[0], state);
+                    apply(state, 1);
+                }
+            });
+            tree = Tree.build(rows, counts);
+        }
+        logger.info("Category read model loaded with {} categories and {} products", rows.size(), products.size());
+    }
+
+    // Runs before ResourceVersionService moves the catalog ETag on, so a new ETag never labels old data
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        synchronized (writeLock) {
+            if (tree == null) {
+                return;
+            }
+            if (event.getResourceType() == CatalogChangedEvent.ResourceType.CATEGORY) {
+                rows = loadRows();
+                counts.keySet().retainAll(rows.keySet());
+            } else if (!moveProduct(event)) {
+                return;
+            }
+            tree = Tree.build(rows, counts);
+        }
+    }
+
+    // Another instance's change does not say what changed, so the counters are rebuilt from the database
+    @EventListener
+    public void onRemoteCatalogChanged(RemoteCatalogChangedEvent event) {
+        if (tree != null) {
+            load();
+        }
+    }
+
+    /** All categories ordered by path, so children directly follow their parent. */
+    public List<CategoryResponse> findAll() {
+        return current().list;
+    }
+
+    public Optional<CategoryResponse> findById(Long id) {
+        return Optional.ofNullable(current().byId.get(id));
+    }
+
+    /** Applies a product change to the counters; false when the product still counts the same way. */
+    private boolean moveProduct(CatalogChangedEvent event) {
+        Long id = event.getResourceId();
+        ProductState updated = null;
+        if (event.getChangeType() != CatalogChangedEvent.ChangeType.DELETED) {
+            updated = productRepository.findCategoryStockEntryById(id).stream()
+                    .findFirst()
+                    .map(row -> new ProductState((Long) row[0], ((Integer) row[1]) > 0))
+                    .orElse(null);
+        }
+        ProductState previous = products.get(id);
+        if (Objects.equals(previous, updated)) {
+            return false;
+        }
+        apply(previous, -1);
+        apply(updated, 1);
+        if (updated != null) {
+            products.put(id, updated);
+        } else {
+            products.remove(id);
+        }
+        return true;
+    }
+
+    private void apply(ProductState state, int delta) {
+        if (state == null) {
+            return;
+        }
+        Counts categoryCounts = counts.computeIfAbsent(state.categoryId(), k -> new Counts());
+        categoryCounts.products += delta;
+        if (state.inStock()) {
+            categoryCounts.inStock += delta;
+        }
+    }
+
+    private Tree current() {
+        Tree current = tree;
+        return current != null ? current : transactionTemplate.execute(status -> {
+            Map<Long, Counts> totals = new HashMap<>();
+            for (Object[] row : productRepository.countProductsPerCategory()) {
+                Counts categoryCounts = new Counts();
+                categoryCounts.products = ((Number) row[1]).intValue();
+                categoryCounts.inStock = ((Number) row[2]).intValue();
+                totals.put((Long) row[0], categoryCounts);
+            }
+            return Tree.build(loadRows(), totals);
+        });
+    }
+
+    private Map<Long, Row> loadRows() {
+        Map<Long, Row> loaded = new HashMap<>();
+        for (Object[] row : categoryRepository.findAllRows()) {
+            loaded.put((Long) row[0], new Row((Long) row[0], (String) row[1], (String) row[2], (Long) row[3]));
+        }
+        return loaded;
+    }
+
+    private record ProductState(Long categoryId, boolean inStock) {
+    }
+
+    private record Row(Long id, String name, String description, Long parentId) {
+    }
+
+    private static final class Counts {
+        private int products;
+        private int inStock;
+    }
+
+    /** Immutable result handed to readers; the responses must not be modified. */
+    private static final class Tree {
+        private final List<CategoryResponse> list;
+        private final Map<Long, CategoryResponse> byId;
+
+        private Tree(List<CategoryResponse> list, Map<Long, CategoryResponse> byId) {
+            this.list = list;
+            this.byId = byId;
+        }
+
+        private static Tree build(Map<Long, Row> rows, Map<Long, Counts> counts) {
+            Map<Long, CategoryResponse> byId = new HashMap<>();
+            Map<Long, List<String>> pathNames = new HashMap<>();
+
+            for (Row row : rows.values()) {
+                List<Long> ancestors = ancestorsOf(row, rows);
+                List<String> names = new ArrayList<>(ancestors.size() + 1);
+                ancestors.forEach(ancestor -> names.add(rows.get(ancestor).name()));
+                names.add(row.name());
+
+                Counts own = counts.getOrDefault(row.id(), new Counts());
+                CategoryResponse response = new CategoryResponse();
+                response.setId(row.id());
+                response.setName(row.name());
+                response.setDescription(row.description());
+                response.setParentId(row.parentId());
+                response.setAncestorIds(List.copyOf(ancestors));
+                response.setPath(String.join(PATH_SEPARATOR, names));
+                response.setDepth(ancestors.size());
+                response.setProductCount(own.products);
+                response.setInStockCount(own.inStock);
+                response.setTotalProductCount(0);
+                response.setTotalInStockCount(0);
+                byId.put(row.id(), response);
+                pathNames.put(row.id(), names);
+            }
+
+            // Every category's own counts go into its subtree totals and those of all its ancestors
+            for (CategoryResponse response : byId.values()) {
+                List<Long> targets = new ArrayList<>(response.getAncestorIds());
+                targets.add(response.getId());
+                for (Long target : targets) {
+                    CategoryResponse total = byId.get(target);
+                    total.setTotalProductCount(total.getTotalProductCount() + response.getProductCount());
+                    total.setTotalInStockCount(total.getTotalInStockCount() + response.getInStockCount());
+                }
+            }
+
+            Comparator<CategoryResponse> byPath = (a, b) -> comparePaths(pathNames.get(a.getId()), pathNames.get(b.getId()));
+            List<CategoryResponse> list = new ArrayList<>(byId.values());
+            list.sort(byPath.thenComparing(CategoryResponse::getId));
+            return new Tree(Collections.unmodifiableList(list), Map.copyOf(byId));
+        }
+
+        /** Root first; a parent cycle or a dangling parent id ends the path there. */
+        private static List<Long> ancestorsOf(Row row, Map<Long, Row> rows) {
+            List<Long> ancestors = new ArrayList<>();
+            Long parentId = row.parentId();
+            while (parentId != null && rows.containsKey(parentId) && !parentId.equals(row.id())
+                    && !ancestors.contains(parentId)) {
+                ancestors.add(parentId);
+                parentId = rows.get(parentId).parentId();
+            }
+            Collections.reverse(ancestors);
+            return ancestors;
+        }
+
+        private static int comparePaths(List<String> a, List<String> b) {
+            for (int i = 0; i < Math.min(a.size(), b.size()); i++) {
+                int result = a.get(i).compareToIgnoreCase(b.get(i));
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return Integer.compare(a.size(), b.size());
+        }
+    }
+}
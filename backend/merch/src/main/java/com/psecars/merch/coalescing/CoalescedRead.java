@@ -0,0 +1,19 @@
+package com.psecars.merch.coalescing;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a catalog read whose concurrent identical calls (same method, equal arguments) share one
+ * execution. Handled by ReadCoalescingAspect: the result is kept for a short fresh period and then
+ * served stale while one call refreshes it, until the next catalog change clears it. Calls inside a
+ * transaction are not coalesced.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CoalescedRead {
+}
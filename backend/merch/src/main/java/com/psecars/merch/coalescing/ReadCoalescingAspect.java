@@ -0,0 +1,233 @@
+package com.psecars.merch.coalescing;
+
+import com.psecars.merch.entity.Product;
+import com.psecars.merch.event.CatalogChangedEvent;
+import com.psecars.merch.event.RemoteCatalogChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.hibernate.Hibernate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-flight engine for @CoalescedRead methods.
+ *
+ * The first caller for a key (method + arguments) runs the method; callers arriving while it runs
+ * wait for its result instead of running it again. The result stays fresh for app.read-coalescing.fresh-ms;
+ * after that, and up to app.read-coalescing.stale-ms, it is still returned immediately while one
+ * background call refreshes it (stale-while-revalidate). Any catalog change, also one made through another
+ * instance, clears all results right after the catalog snapshot was updated, and a load that started before the change is not kept.
+ *
+ * Results are shared between requests, so lazy product associations are initialized before they are
+ * handed out. Runs outside the @Transactional interceptor; calls inside a transaction proceed directly.
+ *
+ * Metrics (tag "operation" = Class.method):
+ *   merch.coalescing.calls{result=loaded}        - calls that ran the method
+ *   merch.coalescing.calls{result=deduplicated}  - calls that waited for another call's result
+ *   merch.coalescing.calls{result=fresh|stale}   - calls answered from a kept result
+ *   merch.coalescing.refreshes                   - background refreshes of stale results
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ReadCoalescingAspect {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadCoalescingAspect.class);
+
+    private final MeterRegistry meterRegistry;
+    private final TaskExecutor taskExecutor;
+    private final Map<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<Key, Result> results = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    @Value("${app.read-coalescing.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.read-coalescing.fresh-ms:2000}")
+    private long freshMs;
+
+    @Value("${app.read-coalescing.stale-ms:30000}")
+    private long staleMs;
+
+    @Value("${app.read-coalescing.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${app.read-coalescing.wait-timeout-ms:5000}")
+    private long waitTimeoutMs;
+
+    @Autowired
+    public ReadCoalescingAspect(MeterRegistry meterRegistry,
+                                @Qualifier("applicationTaskExecutor") TaskExecutor taskExecutor) {
+        this.meterRegistry = meterRegistry;
+        this.taskExecutor = taskExecutor;
+        Gauge.builder("merch.coalescing.results", results, Map::size).register(meterRegistry);
+    }
+
+    @Around("@annotation(com.psecars.merch.coalescing.CoalescedRead)")
+    public Object coalesce(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!enabled || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Key key = new Key(method, Arrays.asList(joinPoint.getArgs()));
+        String operation = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+
+        Result kept = results.get(key);
+        long now = System.nanoTime();
+        if (kept != null && kept.generation == generation.get()) {
+            if (now - kept.loadedAt < TimeUnit.MILLISECONDS.toNanos(freshMs)) {
+                counter(operation, "fresh").increment();
+                return kept.value;
+            }
+            if (now - kept.loadedAt < TimeUnit.MILLISECONDS.toNanos(staleMs)) {
+                counter(operation, "stale").increment();
+                refreshInBackground(key, operation, joinPoint);
+                return kept.value;
+            }
+        }
+        return load(key, operation, joinPoint);
+    }
+
+    // Right after CatalogSnapshotService / PriceIndexService (HIGHEST_PRECEDENCE) and before
+    // ResourceVersionService moves the catalog ETag on
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        generation.incrementAndGet();
+        results.clear();
+    }
+
+    // After the reloads of the snapshot and the price index
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    @EventListener
+    public void onRemoteCatalogChanged(RemoteCatalogChangedEvent event) {
+        generation.incrementAndGet();
+        results.clear();
+    }
+
+    private Object load(Key key, String operation, ProceedingJoinPoint joinPoint) throws Throwable {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            counter(operation, "deduplicated").increment();
+            return await(running, joinPoint);
+        }
+
+        counter(operation, "loaded").increment();
+        long startedIn = generation.get();
+        try {
+            Object value = joinPoint.proceed();
+            initialize(value);
+            keep(key, value, startedIn);
+            mine.complete(value);
+            return value;
+        } catch (Throwable e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private Object await(CompletableFuture<Object> running, ProceedingJoinPoint joinPoint) throws Throwable {
+        try {
+            return running.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } catch (TimeoutException e) {
+            // The first call is stuck - do not let everybody else hang with it
+            return joinPoint.proceed();
+        }
+    }
+
+    private void refreshInBackground(Key key, String operation, ProceedingJoinPoint joinPoint) {
+        if (inFlight.containsKey(key)) {
+            return;
+        }
+        Counter.builder("merch.coalescing.refreshes").tag("operation", operation).register(meterRegistry).increment();
+        taskExecutor.execute(() -> {
+            try {
+                load(key, operation, joinPoint);
+            } catch (Throwable e) {
+                logger.debug("Background refresh of {} failed: {}", operation, e.getMessage());
+            }
+        });
+    }
+
+    private void keep(Key key, Object value, long startedIn) {
+        if (startedIn != generation.get()) {
+            return;
+        }
+        if (results.size() >= maxEntries) {
+            long expired = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(staleMs);
+            results.values().removeIf(result -> result.loadedAt < expired);
+            if (results.size() >= maxEntries) {
+                return;
+            }
+        }
+        results.put(key, new Result(value, System.nanoTime(), startedIn));
+    }
+
+    /** Loads what ProductResponse reads, so that no request touches another request's lazy proxies. */
+    private static void initialize(Object value) {
+        Object unwrapped = value instanceof Optional<?> optional ? optional.orElse(null) : value;
+        Iterable<?> items = unwrapped instanceof Page<?> page ? page.getContent()
+                : unwrapped instanceof Iterable<?> iterable ? iterable
+                : unwrapped != null ? List.of(unwrapped) : List.of();
+        for (Object item : items) {
+            if (item instanceof Product product) {
+                Hibernate.initialize(product.getCategory());
+                Hibernate.initialize(product.getImageUrls());
+            }
+        }
+    }
+
+    private Counter counter(String operation, String result) {
+        return Counter.builder("merch.coalescing.calls").tag("operation", operation).tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private record Key(Method method, List<Object> args) {
+    }
+
+    private static final class Result {
+        private final Object value;
+        private final long loadedAt;
+        private final long generation;
+
+        private Result(Object value, long loadedAt, long generation) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.psecars.merch.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.time.Duration;
+
+/**
+ * Connection pool for the non-blocking catalog read path (/api/reactive/**).
+ * The pool is deliberately kept private instead of being exposed as a ConnectionFactory bean:
+ * Spring Boot's DataSourceAutoConfiguration backs off as soon as one exists, which would take
+ * the JPA side (all writes, cart and orders) down with it.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.reactive", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class ReactiveCatalogConfig implements DisposableBean {
+
+    @Value("${app.reactive.r2dbc.url}")
+    private String url;
+
+    @Value("${app.reactive.r2dbc.username:}")
+    private String username;
+
+    @Value("${app.reactive.r2dbc.password:}")
+    private String password;
+
+    @Value("${app.reactive.r2dbc.pool.initial-size:2}")
+    private int initialSize;
+
+    @Value("${app.reactive.r2dbc.pool.max-size:10}")
+    private int maxSize;
+
+    @Value("${app.reactive.r2dbc.pool.max-idle-time:30m}")
+    private Duration maxIdleTime;
+
+    private ConnectionPool connectionPool;
+
+    @Bean
+    public DatabaseClient reactiveCatalogDatabaseClient() {
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(url).mutate();
+        if (!username.isEmpty()) {
+            options.option(ConnectionFactoryOptions.USER, username);
+        }
+        if (!password.isEmpty()) {
+            options.option(ConnectionFactoryOptions.PASSWORD, password);
+        }
+
+        ConnectionPoolConfiguration poolConfiguration = ConnectionPoolConfiguration
+                .builder(ConnectionFactories.get(options.build()))
+                .name("merch-reactive-catalog")
+                .initialSize(initialSize)
+                .maxSize(maxSize)
+                .maxIdleTime(maxIdleTime)
+                .build();
+
+        connectionPool = new ConnectionPool(poolConfiguration);
+        return DatabaseClient.create(connectionPool);
+    }
+
+    @Override
+    public void destroy() {
+        if (connectionPool != null) {
+            connectionPool.dispose();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.psecars.merch.config;
+
+import com.psecars.merch.datasource.ReplicaRoutingDataSource;
+import com.psecars.merch.datasource.ReplicaStickinessInterceptor;
+import com.psecars.merch.datasource.SessionWriteTracker;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replica routing, only active with app.replicas.enabled=true.
+ *
+ * The primary pool is still configured through spring.datasource.*; the replicas share its driver
+ * and credentials unless app.replicas.username/password are set. Read-only transactions go to a
+ * replica (see ReplicaRoutingDataSource), a cart session that just wrote reads from the primary
+ * for app.replicas.sticky-millis.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.replicas", name = "enabled", havingValue = "true")
+public class ReplicaRoutingConfig implements WebMvcConfigurer, DisposableBean {
+
+    private final List<HikariDataSource> replicaPools = new ArrayList<>();
+    private final SessionWriteTracker sessionWriteTracker;
+    private ReplicaRoutingDataSource routingDataSource;
+
+    public ReplicaRoutingConfig(@Value("${app.replicas.sticky-millis:5000}") long stickyMillis) {
+        this.sessionWriteTracker = new SessionWriteTracker(stickyMillis);
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("merch-primary");
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource,
+                                 DataSourceProperties properties,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.replicas.urls}") List<String> urls,
+                                 @Value("${app.replicas.username:}") String username,
+                                 @Value("${app.replicas.password:}") String password,
+                                 @Value("${app.replicas.pool-size:10}") int poolSize,
+                                 @Value("${app.replicas.connection-timeout-ms:2000}") long connectionTimeoutMs,
+                                 @Value("${app.replicas.max-lag-seconds:5}") double maxLagSeconds,
+                                 @Value("${app.replicas.lag-query}") String lagQuery) {
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : urls) {
+            if (!StringUtils.hasText(url)) {
+                continue;
+            }
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("merch-replica-" + replicaPools.size());
+            replica.setJdbcUrl(url.trim());
+            replica.setDriverClassName(properties.determineDriverClassName());
+            replica.setUsername(StringUtils.hasText(username) ? username : properties.determineUsername());
+            replica.setPassword(StringUtils.hasText(password) ? password : properties.determinePassword());
+            replica.setMaximumPoolSize(poolSize);
+            replica.setConnectionTimeout(connectionTimeoutMs);
+            replica.setReadOnly(true);
+            // Do not fail startup because a replica is down - the primary covers for it
+            replica.setInitializationFailTimeout(-1);
+            replicaPools.add(replica);
+            replicas.add(replica);
+        }
+
+        routingDataSource = new ReplicaRoutingDataSource(primaryDataSource, replicas, maxLagSeconds, lagQuery,
+                meterRegistry);
+        routingDataSource.checkReplicas();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ReplicaStickinessInterceptor(sessionWriteTracker)).addPathPatterns("/api/**");
+    }
+
+    @Scheduled(fixedDelayString = "${app.replicas.lag-check-interval-ms:1000}")
+    public void checkReplicas() {
+        if (routingDataSource != null) {
+            routingDataSource.checkReplicas();
+        }
+        sessionWriteTracker.purgeExpired();
+    }
+
+    @Override
+    public void destroy() {
+        replicaPools.forEach(HikariDataSource::close);
+    }
+}
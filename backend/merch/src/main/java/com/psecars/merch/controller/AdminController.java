@@ -4,12 +4,18 @@ import com.psecars.merch.dto.ApiResponse;
 import com.psecars.merch.dto.ProductResponse;
 import com.psecars.merch.entity.Product;
 import com.psecars.merch.entity.OrderStatus;
+import com.psecars.merch.image.ImageStore;
 import com.psecars.merch.service.ProductService;
+import com.psecars.merch.service.OrderArchiveService;
 import com.psecars.merch.service.OrderService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -19,11 +25,16 @@ public class AdminController {
     
     private final ProductService productService;
     private final OrderService orderService;
+    private final OrderArchiveService orderArchiveService;
+    private final ImageStore imageStore;
     
     @Autowired
-    public AdminController(ProductService productService, OrderService orderService) {
+    public AdminController(ProductService productService, OrderService orderService,
+                           OrderArchiveService orderArchiveService, ImageStore imageStore) {
         this.productService = productService;
         this.orderService = orderService;
+        this.orderArchiveService = orderArchiveService;
+        this.imageStore = imageStore;
     }
     
     @GetMapping("/dashboard")
@@ -55,6 +66,27 @@ public class AdminController {
         return ResponseEntity.ok(ApiResponse.success(productResponses));
     }
     
+    // ADDED: Run the order archival now instead of waiting for the nightly job
+    @PostMapping("/orders/archive")
+    public ResponseEntity<ApiResponse<Integer>> archiveOrders(@RequestParam(defaultValue = "180") int olderThanDays) {
+        int archived = orderArchiveService.archiveOrdersOlderThan(LocalDateTime.now().minusDays(olderThanDays));
+        return ResponseEntity.ok(ApiResponse.success("Archived " + archived + " orders", archived));
+    }
+    
+    // ADDED: Upload an image into the content-addressed store, optionally under a catalog path
+    @PostMapping("/images")
+    public ResponseEntity<ApiResponse<String>> uploadImage(@RequestParam("file") MultipartFile file,
+                                                           @RequestParam(required = false) String path) throws IOException {
+        String extension = ImageStore.extensionOf(file.getOriginalFilename() != null ? file.getOriginalFilename() : "");
+        if (extension == null) {
+            throw new IllegalArgumentException("Unsupported image type: " + file.getOriginalFilename());
+        }
+        try (InputStream content = file.getInputStream()) {
+            ImageStore.StoredImage image = imageStore.store(path, extension, content);
+            return ResponseEntity.ok(ApiResponse.success("Image stored", "/api/images/" + image.getFileName()));
+        }
+    }
+    
     public static class DashboardStats {
         private Long pendingOrders;
         private Long processingOrders;
@@ -4,15 +4,18 @@ import com.psecars.merch.dto.*;
 import com.psecars.merch.entity.Cart;
 import com.psecars.merch.entity.CartItem;
 import com.psecars.merch.service.CartService;
+import com.psecars.merch.service.ResourceVersionService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.util.List;
 import java.util.Optional;
@@ -22,12 +25,14 @@ import java.util.Optional;
 public class CartController {
     
     private final CartService cartService;
-    private static final String CART_SESSION_COOKIE = "CART_SESSION_ID";
+    private final ResourceVersionService resourceVersionService;
+    public static final String CART_SESSION_COOKIE = "CART_SESSION_ID";
     private static final int COOKIE_MAX_AGE = 60 * 60 * 24 * 7; // 7 days
     
     @Autowired
-    public CartController(CartService cartService) {
+    public CartController(CartService cartService, ResourceVersionService resourceVersionService) {
         this.cartService = cartService;
+        this.resourceVersionService = resourceVersionService;
     }
     
     @GetMapping
@@ -45,10 +50,20 @@ public class CartController {
     }
     
     @GetMapping("/summary")
-    public ResponseEntity<ApiResponse<CartSummaryResponse>> getCartSummary(HttpServletRequest request, HttpServletResponse response) {
+    public ResponseEntity<ApiResponse<CartSummaryResponse>> getCartSummary(HttpServletRequest request, HttpServletResponse response,
+                                                                           ServletWebRequest webRequest) {
         String sessionId = getOrCreateSessionId(request, response);
         
+        // ADDED: Conditional GET for the polled cart badge - cart/item timestamps are checked before loading the cart
+        String eTag = resourceVersionService.getCartVersion(sessionId).getETag();
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+        
         Optional<Cart> cart = cartService.getCartWithItems(sessionId);
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache().cachePrivate());
         
         if (cart.isPresent()) {
             Cart c = cart.get();
@@ -58,31 +73,25 @@ public class CartController {
                 c.getTotalItemCount(),
                 c.getTotalAmount()
             );
-            return ResponseEntity.ok(ApiResponse.success(summary));
+            return ok.body(ApiResponse.success(summary));
         } else {
             CartSummaryResponse emptySummary = new CartSummaryResponse(sessionId, 0, 0, java.math.BigDecimal.ZERO);
-            return ResponseEntity.ok(ApiResponse.success(emptySummary));
+            return ok.body(ApiResponse.success(emptySummary));
         }
     }
     
+    // ADDED: No catch-all here - GlobalExceptionHandler answers concurrent updates and units held by other
+    // carts with 409, missing carts with 404 and other failures with 400
     @PostMapping("/items")
     public ResponseEntity<ApiResponse<CartResponse>> addToCart(
             @Valid @RequestBody AddToCartRequest request,
             HttpServletRequest httpRequest,
             HttpServletResponse httpResponse) {
         
-        try {
-            String sessionId = getOrCreateSessionId(httpRequest, httpResponse);
-            Cart cart = cartService.addItemToCart(sessionId, request.getProductId(), request.getQuantity());
-            
-            return ResponseEntity.ok(ApiResponse.success("Item added to cart successfully", new CartResponse(cart)));
-        } catch (RuntimeException e) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body(ApiResponse.error(e.getMessage()));
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(ApiResponse.error("Failed to add item to cart: " + e.getMessage()));
-        }
+        String sessionId = getOrCreateSessionId(httpRequest, httpResponse);
+        Cart cart = cartService.addItemToCart(sessionId, request.getProductId(), request.getQuantity());
+        
+        return ResponseEntity.ok(ApiResponse.success("Item added to cart successfully", new CartResponse(cart)));
     }
     
     @PutMapping("/items/{productId}")
@@ -92,18 +101,10 @@ public class CartController {
             HttpServletRequest httpRequest,
             HttpServletResponse httpResponse) {
         
-        try {
-            String sessionId = getOrCreateSessionId(httpRequest, httpResponse);
-            Cart cart = cartService.updateItemQuantity(sessionId, productId, request.getQuantity());
-            
-            return ResponseEntity.ok(ApiResponse.success("Cart item updated successfully", new CartResponse(cart)));
-        } catch (RuntimeException e) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body(ApiResponse.error(e.getMessage()));
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(ApiResponse.error("Failed to update cart item: " + e.getMessage()));
-        }
+        String sessionId = getOrCreateSessionId(httpRequest, httpResponse);
+        Cart cart = cartService.updateItemQuantity(sessionId, productId, request.getQuantity());
+        
+        return ResponseEntity.ok(ApiResponse.success("Cart item updated successfully", new CartResponse(cart)));
     }
     
     @DeleteMapping("/items/{productId}")
@@ -112,18 +113,10 @@ public class CartController {
             HttpServletRequest request,
             HttpServletResponse response) {
         
-        try {
-            String sessionId = getOrCreateSessionId(request, response);
-            Cart cart = cartService.removeItemFromCart(sessionId, productId);
-            
-            return ResponseEntity.ok(ApiResponse.success("Item removed from cart successfully", new CartResponse(cart)));
-        } catch (RuntimeException e) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(ApiResponse.error(e.getMessage()));
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(ApiResponse.error("Failed to remove item from cart: " + e.getMessage()));
-        }
+        String sessionId = getOrCreateSessionId(request, response);
+        Cart cart = cartService.removeItemFromCart(sessionId, productId);
+        
+        return ResponseEntity.ok(ApiResponse.success("Item removed from cart successfully", new CartResponse(cart)));
     }
     
     @DeleteMapping
@@ -4,42 +4,72 @@ import com.psecars.merch.dto.ApiResponse;
 import com.psecars.merch.dto.CategoryResponse;
 import com.psecars.merch.entity.Category;
 import com.psecars.merch.service.CategoryService;
+import com.psecars.merch.service.ResourceVersionService;
+import com.psecars.merch.web.SerializedResponseCache;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/categories")
 public class CategoryController {
     
     private final CategoryService categoryService;
+    private final ResourceVersionService resourceVersionService;
+    private final SerializedResponseCache responseCache;
     
     @Autowired
-    public CategoryController(CategoryService categoryService) {
+    public CategoryController(CategoryService categoryService, ResourceVersionService resourceVersionService,
+                              SerializedResponseCache responseCache) {
         this.categoryService = categoryService;
+        this.resourceVersionService = resourceVersionService;
+        this.responseCache = responseCache;
     }
     
     @GetMapping
-    public ResponseEntity<ApiResponse<List<CategoryResponse>>> getAllCategories() {
-        List<Category> categories = categoryService.getAllCategories();
-        List<CategoryResponse> categoryResponses = categories.stream()
-                .map(CategoryResponse::new)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(ApiResponse.success(categoryResponses));
+    public ResponseEntity<ApiResponse<List<CategoryResponse>>> getAllCategories(ServletWebRequest webRequest) {
+        // ADDED: Conditional GET - product counts are part of the payload, so any catalog change invalidates it
+        String eTag = resourceVersionService.catalogETag("categories");
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+        
+        // ADDED: Body serialized once per catalog version and written straight to the response
+        if (responseCache.isEnabled()) {
+            responseCache.write(SerializedResponseCache.CATEGORIES, eTag, 0,
+                    () -> ApiResponse.success(categoryService.getCategoryResponses()),
+                    webRequest.getRequest(), webRequest.getResponse());
+            return null;
+        }
+        
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache())
+                .body(ApiResponse.success(categoryService.getCategoryResponses()));
     }
     
     @GetMapping("/{id}")
-    public ResponseEntity<ApiResponse<CategoryResponse>> getCategoryById(@PathVariable Long id) {
-        Optional<Category> category = categoryService.getCategoryById(id);
+    public ResponseEntity<ApiResponse<CategoryResponse>> getCategoryById(@PathVariable Long id, WebRequest webRequest) {
+        String eTag = resourceVersionService.catalogETag("category-" + id);
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+        
+        Optional<CategoryResponse> category = categoryService.getCategoryResponse(id);
         
         if (category.isPresent()) {
-            return ResponseEntity.ok(ApiResponse.success(new CategoryResponse(category.get())));
+            return ResponseEntity.ok()
+                    .eTag(eTag)
+                    .cacheControl(CacheControl.noCache())
+                    .body(ApiResponse.success(category.get()));
         } else {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(ApiResponse.error("Category not found with id: " + id));
@@ -51,7 +81,7 @@ public class CategoryController {
         try {
             Category createdCategory = categoryService.createCategory(category);
             return ResponseEntity.status(HttpStatus.CREATED)
-                    .body(ApiResponse.success("Category created successfully", new CategoryResponse(createdCategory)));
+                    .body(ApiResponse.success("Category created successfully", categoryService.toResponse(createdCategory)));
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.CONFLICT)
                     .body(ApiResponse.error(e.getMessage()));
@@ -67,7 +97,7 @@ public class CategoryController {
             @Valid @RequestBody Category categoryDetails) {
         try {
             Category updatedCategory = categoryService.updateCategory(id, categoryDetails);
-            return ResponseEntity.ok(ApiResponse.success("Category updated successfully", new CategoryResponse(updatedCategory)));
+            return ResponseEntity.ok(ApiResponse.success("Category updated successfully", categoryService.toResponse(updatedCategory)));
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(ApiResponse.error(e.getMessage()));
@@ -90,4 +120,4 @@ public class CategoryController {
                     .body(ApiResponse.error("Failed to delete category: " + e.getMessage()));
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,74 @@
+package com.psecars.merch.controller;
+
+import com.psecars.merch.exception.ResourceNotFoundException;
+import com.psecars.merch.image.FileResponseWriter;
+import com.psecars.merch.image.ImageStore;
+import com.psecars.merch.image.ThumbnailCache;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.Optional;
+
+// ADDED: Images served from the content-addressed store (see ImageStore)
+@RestController
+@RequestMapping("/api/images")
+public class ImageController {
+
+    private final ImageStore imageStore;
+    private final ThumbnailCache thumbnailCache;
+    private final FileResponseWriter fileResponseWriter;
+
+    @Autowired
+    public ImageController(ImageStore imageStore, ThumbnailCache thumbnailCache, FileResponseWriter fileResponseWriter) {
+        this.imageStore = imageStore;
+        this.thumbnailCache = thumbnailCache;
+        this.fileResponseWriter = fileResponseWriter;
+    }
+
+    /**
+     * Immutable image by content hash; ?w= picks one of the configured thumbnail widths.
+     */
+    @GetMapping("/{hash:[0-9a-f]{64}}.{extension:[a-z0-9]+}")
+    public void getImage(@PathVariable String hash, @PathVariable String extension,
+                         @RequestParam(required = false) Integer w,
+                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ImageStore.StoredImage image = imageStore.find(hash, extension)
+                .orElseThrow(() -> new ResourceNotFoundException("Image", "hash", hash));
+
+        if (w != null) {
+            if (!thumbnailCache.isSupportedWidth(w)) {
+                throw new IllegalArgumentException("Unsupported thumbnail width: " + w);
+            }
+            Optional<ThumbnailCache.Thumbnail> thumbnail = thumbnailCache.get(image, w);
+            if (thumbnail.isPresent()) {
+                ThumbnailCache.Thumbnail t = thumbnail.get();
+                fileResponseWriter.write(t.getFile(), t.getLength(), t.getContentType(), "\"" + t.getKey() + "\"",
+                        request, response);
+                return;
+            }
+        }
+        fileResponseWriter.write(image.getFile(), image.getLength(), image.getContentType(), "\"" + hash + "\"",
+                request, response);
+    }
+
+    /**
+     * Logical catalog path (e.g. /images/products/hoodie.webp) -> redirect to the immutable URL of
+     * its current content. The redirect itself must be revalidated, the target can be cached forever.
+     */
+    @GetMapping("/by-path/{*path}")
+    public void getImageByPath(@PathVariable String path, @RequestParam(required = false) Integer w,
+                               HttpServletRequest request, HttpServletResponse response) {
+        String fileName = imageStore.resolve(path)
+                .orElseThrow(() -> new ResourceNotFoundException("Image", "path", path));
+
+        String location = request.getContextPath() + "/api/images/" + fileName + (w != null ? "?w=" + w : "");
+        response.setStatus(HttpServletResponse.SC_FOUND);
+        response.setHeader(HttpHeaders.LOCATION, location);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+    }
+}
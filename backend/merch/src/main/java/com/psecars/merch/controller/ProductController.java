@@ -1,32 +1,53 @@
 package com.psecars.merch.controller;
 
 import com.psecars.merch.dto.ApiResponse;
+import com.psecars.merch.dto.AvailabilityRequest;
+import com.psecars.merch.dto.AvailabilityResponse;
 import com.psecars.merch.dto.ProductResponse;
 import com.psecars.merch.dto.UpdateStockRequest;
 import com.psecars.merch.entity.Product;
+import com.psecars.merch.exception.ResourceNotFoundException;
 import com.psecars.merch.service.ProductService;
+import com.psecars.merch.service.ResourceVersionService;
+import com.psecars.merch.service.ResourceVersionService.ResourceVersion;
+import com.psecars.merch.service.StockHoldService;
+import com.psecars.merch.web.SerializedResponseCache;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/products")
 public class ProductController {
     
+    private static final String PRICE_SORT = "price";
+    
     private final ProductService productService;
+    private final ResourceVersionService resourceVersionService;
+    private final StockHoldService stockHoldService;
+    private final SerializedResponseCache responseCache;
     
     @Autowired
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, ResourceVersionService resourceVersionService,
+                             StockHoldService stockHoldService, SerializedResponseCache responseCache) {
         this.productService = productService;
+        this.resourceVersionService = resourceVersionService;
+        this.stockHoldService = stockHoldService;
+        this.responseCache = responseCache;
     }
     
     @GetMapping
@@ -37,7 +58,14 @@ public class ProductController {
             @RequestParam(defaultValue = "asc") String sortDir,
             @RequestParam(required = false) Boolean availableOnly,
             @RequestParam(required = false) BigDecimal minPrice,
-            @RequestParam(required = false) BigDecimal maxPrice) {
+            @RequestParam(required = false) BigDecimal maxPrice,
+            ServletWebRequest webRequest) {
+        
+        // ADDED: Conditional GET - unchanged catalog answers 304 before any query runs
+        String eTag = resourceVersionService.productListETag(listScope(webRequest));
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
         
         Sort sort = sortDir.equalsIgnoreCase("desc") ? 
                 Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
@@ -45,26 +73,49 @@ public class ProductController {
         
         Page<Product> products;
         
-        // Handle price filtering
+        // Handle price filtering (ADDED: plain price sorts too - the price index pages them without a DB sort)
         if (minPrice != null || maxPrice != null) {
             products = productService.getProductsByPriceRange(minPrice, maxPrice, pageable);
         } else if (availableOnly != null && availableOnly) {
             products = productService.getAvailableProducts(pageable);
+        } else if (PRICE_SORT.equals(sortBy)) {
+            products = productService.getProductsByPriceRange(null, null, pageable);
         } else {
             products = productService.getAllProducts(pageable);
         }
         
-        Page<ProductResponse> productResponses = products.map(ProductResponse::new);
+        Page<ProductResponse> productResponses = products.map(this::toResponse);
         
-        return ResponseEntity.ok(ApiResponse.success(productResponses));
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache())
+                .body(ApiResponse.success(productResponses));
     }
     
     @GetMapping("/{id}")
-    public ResponseEntity<ApiResponse<ProductResponse>> getProductById(@PathVariable Long id) {
+    public ResponseEntity<ApiResponse<ProductResponse>> getProductById(@PathVariable Long id, ServletWebRequest webRequest) {
+        // ADDED: Conditional GET driven by the product's updatedAt, checked without loading the entity
+        Optional<ResourceVersion> version = resourceVersionService.getProductVersion(id);
+        if (version.isPresent() && webRequest.checkNotModified(version.get().getETag(), version.get().getLastModified())) {
+            return null;
+        }
+        
+        // ADDED: Body serialized once per product version and written straight to the response
+        if (version.isPresent() && responseCache.isEnabled()) {
+            ResourceVersion current = version.get();
+            responseCache.write(SerializedResponseCache.productKey(id), current.getETag(), current.getLastModified(),
+                    () -> ApiResponse.success(toResponse(productService.getProductById(id)
+                            .orElseThrow(() -> new ResourceNotFoundException("Product", "id", id)))),
+                    webRequest.getRequest(), webRequest.getResponse());
+            return null;
+        }
+        
         Optional<Product> product = productService.getProductById(id);
         
         if (product.isPresent()) {
-            return ResponseEntity.ok(ApiResponse.success(new ProductResponse(product.get())));
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok().cacheControl(CacheControl.noCache());
+            version.ifPresent(v -> response.eTag(v.getETag()).lastModified(v.getLastModified()));
+            return response.body(ApiResponse.success(toResponse(product.get())));
         } else {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(ApiResponse.error("Product not found with id: " + id));
@@ -79,7 +130,14 @@ public class ProductController {
             @RequestParam(defaultValue = "name") String sortBy,
             @RequestParam(defaultValue = "asc") String sortDir,
             @RequestParam(required = false) BigDecimal minPrice,
-            @RequestParam(required = false) BigDecimal maxPrice) {
+            @RequestParam(required = false) BigDecimal maxPrice,
+            ServletWebRequest webRequest) {
+        
+        // ADDED: Conditional GET - unchanged catalog answers 304 before any query runs
+        String eTag = resourceVersionService.productListETag(listScope(webRequest));
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
         
         Sort sort = sortDir.equalsIgnoreCase("desc") ? 
                 Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
@@ -88,15 +146,18 @@ public class ProductController {
         Page<Product> products;
         
         // Handle price filtering with category
-        if (minPrice != null || maxPrice != null) {
+        if (minPrice != null || maxPrice != null || PRICE_SORT.equals(sortBy)) {
             products = productService.getProductsByCategoryAndPriceRange(categoryId, minPrice, maxPrice, pageable);
         } else {
             products = productService.getProductsByCategory(categoryId, pageable);
         }
         
-        Page<ProductResponse> productResponses = products.map(ProductResponse::new);
+        Page<ProductResponse> productResponses = products.map(this::toResponse);
         
-        return ResponseEntity.ok(ApiResponse.success(productResponses));
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache())
+                .body(ApiResponse.success(productResponses));
     }
     
     @GetMapping("/search")
@@ -107,7 +168,14 @@ public class ProductController {
             @RequestParam(defaultValue = "name") String sortBy,
             @RequestParam(defaultValue = "asc") String sortDir,
             @RequestParam(required = false) BigDecimal minPrice,
-            @RequestParam(required = false) BigDecimal maxPrice) {
+            @RequestParam(required = false) BigDecimal maxPrice,
+            ServletWebRequest webRequest) {
+        
+        // ADDED: Conditional GET - unchanged catalog answers 304 before any query runs
+        String eTag = resourceVersionService.productListETag(listScope(webRequest));
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
         
         Sort sort = sortDir.equalsIgnoreCase("desc") ? 
                 Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
@@ -122,9 +190,12 @@ public class ProductController {
             products = productService.searchProducts(keyword, pageable);
         }
         
-        Page<ProductResponse> productResponses = products.map(ProductResponse::new);
+        Page<ProductResponse> productResponses = products.map(this::toResponse);
         
-        return ResponseEntity.ok(ApiResponse.success(productResponses));
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache())
+                .body(ApiResponse.success(productResponses));
     }
     
     @PostMapping
@@ -139,36 +210,21 @@ public class ProductController {
         }
     }
     
+    // ADDED: Missing products (404) and conflicts or stale versions (409) are answered by GlobalExceptionHandler
     @PutMapping("/{id}")
     public ResponseEntity<ApiResponse<ProductResponse>> updateProduct(
             @PathVariable Long id, 
             @Valid @RequestBody Product productDetails) {
-        try {
-            Product updatedProduct = productService.updateProduct(id, productDetails);
-            return ResponseEntity.ok(ApiResponse.success("Product updated successfully", new ProductResponse(updatedProduct)));
-        } catch (RuntimeException e) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(ApiResponse.error(e.getMessage()));
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body(ApiResponse.error("Failed to update product: " + e.getMessage()));
-        }
+        Product updatedProduct = productService.updateProduct(id, productDetails);
+        return ResponseEntity.ok(ApiResponse.success("Product updated successfully", toResponse(updatedProduct)));
     }
     
     @PutMapping("/{id}/stock")
     public ResponseEntity<ApiResponse<ProductResponse>> updateStock(
             @PathVariable Long id, 
             @Valid @RequestBody UpdateStockRequest request) {
-        try {
-            Product updatedProduct = productService.updateStock(id, request.getStockQuantity());
-            return ResponseEntity.ok(ApiResponse.success("Stock updated successfully", new ProductResponse(updatedProduct)));
-        } catch (RuntimeException e) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(ApiResponse.error(e.getMessage()));
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body(ApiResponse.error("Failed to update stock: " + e.getMessage()));
-        }
+        Product updatedProduct = productService.updateStock(id, request.getStockQuantity());
+        return ResponseEntity.ok(ApiResponse.success("Stock updated successfully", toResponse(updatedProduct)));
     }
     
     @DeleteMapping("/{id}")
@@ -182,11 +238,57 @@ public class ProductController {
         }
     }
     
+    // ADDED: Multi-get - a cart, wishlist or recommendation rail in one request instead of one per product
+    @GetMapping("/batch")
+    public ResponseEntity<ApiResponse<List<ProductResponse>>> getProductsByIds(@RequestParam List<Long> ids) {
+        List<ProductResponse> products = productService.getProductsByIds(ids).stream()
+                .map(this::toResponse)
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(ApiResponse.success(products));
+    }
+    
+    // ADDED: Availability of many products at once for the caller's cart: units held by other carts are
+    // subtracted, the caller's own holds still count for it. Unknown products are reported with 0 available.
+    @PostMapping("/availability")
+    public ResponseEntity<ApiResponse<List<AvailabilityResponse>>> checkAvailability(
+            @RequestBody List<AvailabilityRequest> requests,
+            @CookieValue(value = CartController.CART_SESSION_COOKIE, required = false) String sessionId) {
+        for (AvailabilityRequest request : requests) {
+            if (request.getProductId() == null || request.getQuantity() == null || request.getQuantity() < 1) {
+                throw new IllegalArgumentException("Every item needs a productId and a quantity of at least 1");
+            }
+        }
+        Map<Long, Integer> stock = productService.getStockLevels(requests.stream()
+                .map(AvailabilityRequest::getProductId)
+                .collect(Collectors.toList()));
+        List<AvailabilityResponse> availability = requests.stream()
+                .map(request -> {
+                    Integer stockQuantity = stock.get(request.getProductId());
+                    int available = stockQuantity == null ? 0 : Math.max(0,
+                            stockHoldService.getAvailableToPromise(request.getProductId(), stockQuantity, sessionId));
+                    return new AvailabilityResponse(request.getProductId(), request.getQuantity(), available);
+                })
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(ApiResponse.success(availability));
+    }
+    
+    // ADDED: Like the batch check: units held by other carts are subtracted, the caller's own holds still count for it
     @GetMapping("/{id}/availability")
     public ResponseEntity<ApiResponse<Boolean>> checkAvailability(
             @PathVariable Long id, 
-            @RequestParam Integer quantity) {
-        boolean isAvailable = productService.isProductAvailable(id, quantity);
+            @RequestParam Integer quantity,
+            @CookieValue(value = CartController.CART_SESSION_COOKIE, required = false) String sessionId) {
+        boolean isAvailable = productService.isProductAvailable(id, quantity, sessionId);
         return ResponseEntity.ok(ApiResponse.success(isAvailable));
     }
+    
+    private ProductResponse toResponse(Product product) {
+        return new ProductResponse(product, stockHoldService.getHeldQuantity(product.getId()));
+    }
+    
+    private String listScope(ServletWebRequest webRequest) {
+        String queryString = webRequest.getRequest().getQueryString();
+        String uri = webRequest.getRequest().getRequestURI();
+        return queryString != null ? uri + "?" + queryString : uri;
+    }
 }
\ No newline at end of file
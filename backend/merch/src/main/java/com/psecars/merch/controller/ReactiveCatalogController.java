@@ -0,0 +1,73 @@
+package com.psecars.merch.controller;
+
+import com.psecars.merch.dto.ApiResponse;
+import com.psecars.merch.dto.CategoryResponse;
+import com.psecars.merch.dto.ProductResponse;
+import com.psecars.merch.service.ReactiveCatalogService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Non-blocking variants of the catalog read endpoints, served next to the MVC controllers.
+ * Spring MVC subscribes to the returned Mono/Flux and releases the request thread while the
+ * R2DBC/Redis calls are in flight; the NDJSON feed is written element by element with backpressure.
+ */
+@RestController
+@RequestMapping("/api/reactive")
+@ConditionalOnProperty(prefix = "app.reactive", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class ReactiveCatalogController {
+
+    private final ReactiveCatalogService catalogService;
+
+    @Value("${app.pagination.max-page-size:100}")
+    private int maxPageSize;
+
+    @Autowired
+    public ReactiveCatalogController(ReactiveCatalogService catalogService) {
+        this.catalogService = catalogService;
+    }
+
+    @GetMapping("/products")
+    public Mono<ResponseEntity<ApiResponse<Page<ProductResponse>>>> getAllProducts(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "name") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @RequestParam(required = false) Boolean availableOnly) {
+
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+
+        return catalogService.getProducts(Math.max(page, 0), pageSize, sortBy,
+                        sortDir.equalsIgnoreCase("desc"), availableOnly != null && availableOnly)
+                .map(products -> ResponseEntity.ok(ApiResponse.success(products)));
+    }
+
+    @GetMapping("/products/{id}")
+    public Mono<ResponseEntity<ApiResponse<ProductResponse>>> getProductById(@PathVariable Long id) {
+        return catalogService.getProductById(id)
+                .map(product -> ResponseEntity.ok(ApiResponse.success(product)))
+                .defaultIfEmpty(ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ApiResponse.error("Product not found with id: " + id)));
+    }
+
+    @GetMapping(value = "/products/feed", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ProductResponse> getProductFeed() {
+        return catalogService.streamProducts();
+    }
+
+    @GetMapping("/categories")
+    public Mono<ResponseEntity<ApiResponse<List<CategoryResponse>>>> getAllCategories() {
+        return catalogService.getCategories()
+                .map(categories -> ResponseEntity.ok(ApiResponse.success(categories)));
+    }
+}
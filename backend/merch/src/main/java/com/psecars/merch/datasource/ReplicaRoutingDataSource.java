@@ -0,0 +1,149 @@
+package com.psecars.merch.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends read-only transactions to a replica and everything else to the primary.
+ *
+ * A replica is only used while it is reachable and its replication lag is below max-lag-seconds
+ * (measured by checkReplicas()); read-your-writes requests (RoutingContext) always use the primary.
+ * When no replica qualifies, or connecting to the chosen one fails, the primary serves the read.
+ *
+ * Must be wrapped in a LazyConnectionDataSourceProxy: the read-only flag of a transaction is only
+ * known after the transaction manager asked for a connection.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final double maxLagSeconds;
+    private final String lagQuery;
+
+    private final Counter primaryReads;
+    private final Counter replicaReads;
+    private final Counter writes;
+    private final Counter fallbacks;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicaDataSources,
+                                    double maxLagSeconds, String lagQuery, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.maxLagSeconds = maxLagSeconds;
+        this.lagQuery = lagQuery;
+        for (int i = 0; i < replicaDataSources.size(); i++) {
+            Replica replica = new Replica("replica-" + i, replicaDataSources.get(i));
+            replicas.add(replica);
+            Gauge.builder("merch.datasource.replica.lag.seconds", replica, r -> r.lagSeconds)
+                    .tag("replica", replica.name).register(meterRegistry);
+            Gauge.builder("merch.datasource.replica.available", replica, r -> r.isUsable(maxLagSeconds) ? 1 : 0)
+                    .tag("replica", replica.name).register(meterRegistry);
+        }
+
+        this.primaryReads = route(meterRegistry, "read", "primary");
+        this.replicaReads = route(meterRegistry, "read", "replica");
+        this.writes = route(meterRegistry, "write", "primary");
+        this.fallbacks = Counter.builder("merch.datasource.replica.fallbacks").register(meterRegistry);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            writes.increment();
+            return primary.getConnection();
+        }
+        if (RoutingContext.isPrimaryRequired()) {
+            primaryReads.increment();
+            return primary.getConnection();
+        }
+        Replica replica = pickReplica();
+        if (replica != null) {
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                replicaReads.increment();
+                return connection;
+            } catch (SQLException e) {
+                replica.healthy = false;
+                logger.warn("Replica {} refused a connection, using the primary: {}", replica.name, e.getMessage());
+            }
+        }
+        fallbacks.increment();
+        primaryReads.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection();
+    }
+
+    /** Refreshes health and lag of every replica; called on a schedule. */
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(lagQuery)) {
+                replica.lagSeconds = rs.next() ? rs.getDouble(1) : 0;
+                if (!replica.healthy) {
+                    logger.info("Replica {} is reachable again (lag {}s)", replica.name, replica.lagSeconds);
+                }
+                replica.healthy = true;
+            } catch (SQLException e) {
+                if (replica.healthy) {
+                    logger.warn("Replica {} unavailable, reads fall back to the primary: {}", replica.name, e.getMessage());
+                }
+                replica.healthy = false;
+            }
+        }
+    }
+
+    private Replica pickReplica() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            Replica candidate = replicas.get((start + i) % size);
+            if (candidate.isUsable(maxLagSeconds)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static Counter route(MeterRegistry meterRegistry, String operation, String target) {
+        return Counter.builder("merch.datasource.route")
+                .tag("operation", operation).tag("target", target)
+                .register(meterRegistry);
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy = true;
+        private volatile double lagSeconds;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        private boolean isUsable(double maxLagSeconds) {
+            return healthy && lagSeconds <= maxLagSeconds;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.psecars.merch.datasource;
+
+import com.psecars.merch.controller.CartController;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * Read-your-writes for cart sessions: a session that changed something (any non-GET request)
+ * reads from the primary for the stickiness window afterwards.
+ *
+ * An asynchronous request leaves the container thread without afterCompletion, so the routing hint
+ * is cleared in afterConcurrentHandlingStarted as well; the async dispatch runs preHandle and
+ * afterCompletion again and records the write then.
+ */
+public class ReplicaStickinessInterceptor implements AsyncHandlerInterceptor {
+
+    private final SessionWriteTracker tracker;
+
+    public ReplicaStickinessInterceptor(SessionWriteTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String sessionId = cartSessionId(request);
+        if (isMutation(request) || (sessionId != null && tracker.isSticky(sessionId))) {
+            RoutingContext.requirePrimary();
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        try {
+            if (isMutation(request)) {
+                // A new cart session only exists in the HTTP session until the cookie comes back
+                String sessionId = cartSessionId(request);
+                if (sessionId != null) {
+                    tracker.markWrite(sessionId);
+                }
+            }
+        } finally {
+            RoutingContext.clear();
+        }
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // The pooled thread would otherwise route the next request's reads to the primary
+        RoutingContext.clear();
+    }
+
+    private static boolean isMutation(HttpServletRequest request) {
+        String method = request.getMethod();
+        return !("GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method));
+    }
+
+    private static String cartSessionId(HttpServletRequest request) {
+        if (request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if (CartController.CART_SESSION_COOKIE.equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        HttpSession session = request.getSession(false);
+        return session != null ? (String) session.getAttribute("cartSessionId") : null;
+    }
+}
@@ -0,0 +1,25 @@
+package com.psecars.merch.datasource;
+
+/**
+ * Per-thread routing hints for ReplicaRoutingDataSource.
+ */
+public final class RoutingContext {
+
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = new ThreadLocal<>();
+
+    private RoutingContext() {
+    }
+
+    /** Forces read-only transactions of the current thread onto the primary (read-your-writes). */
+    public static void requirePrimary() {
+        PRIMARY_REQUIRED.set(Boolean.TRUE);
+    }
+
+    public static boolean isPrimaryRequired() {
+        return Boolean.TRUE.equals(PRIMARY_REQUIRED.get());
+    }
+
+    public static void clear() {
+        PRIMARY_REQUIRED.remove();
+    }
+}
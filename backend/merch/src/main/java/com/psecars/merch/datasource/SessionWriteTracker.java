@@ -0,0 +1,36 @@
+package com.psecars.merch.datasource;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers when a cart session last wrote, so its reads stay on the primary until the
+ * replicas have had time to catch up.
+ */
+public class SessionWriteTracker {
+
+    private final Map<String, Long> lastWriteBySession = new ConcurrentHashMap<>();
+    private final long stickyMillis;
+
+    public SessionWriteTracker(long stickyMillis) {
+        this.stickyMillis = stickyMillis;
+    }
+
+    public void markWrite(String sessionId) {
+        lastWriteBySession.put(sessionId, System.currentTimeMillis());
+    }
+
+    public boolean isSticky(String sessionId) {
+        Long lastWrite = lastWriteBySession.get(sessionId);
+        return lastWrite != null && System.currentTimeMillis() - lastWrite < stickyMillis;
+    }
+
+    public void purgeExpired() {
+        long cutoff = System.currentTimeMillis() - stickyMillis;
+        lastWriteBySession.values().removeIf(lastWrite -> lastWrite < cutoff);
+    }
+
+    public int size() {
+        return lastWriteBySession.size();
+    }
+}
@@ -0,0 +1,22 @@
+package com.psecars.merch.dto;
+
+public class AvailabilityRequest {
+    
+    private Long productId;
+    private Integer quantity;
+    
+    // Constructors
+    public AvailabilityRequest() {}
+    
+    public AvailabilityRequest(Long productId, Integer quantity) {
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+    
+    // Getters and Setters
+    public Long getProductId() { return productId; }
+    public void setProductId(Long productId) { this.productId = productId; }
+    
+    public Integer getQuantity() { return quantity; }
+    public void setQuantity(Integer quantity) { this.quantity = quantity; }
+}
@@ -0,0 +1,32 @@
+package com.psecars.merch.dto;
+
+public class AvailabilityResponse {
+    
+    private Long productId;
+    private Integer requestedQuantity;
+    private Integer availableQuantity;
+    private Boolean available;
+    
+    // Constructors
+    public AvailabilityResponse() {}
+    
+    public AvailabilityResponse(Long productId, Integer requestedQuantity, Integer availableQuantity) {
+        this.productId = productId;
+        this.requestedQuantity = requestedQuantity;
+        this.availableQuantity = availableQuantity;
+        this.available = availableQuantity >= requestedQuantity;
+    }
+    
+    // Getters and Setters
+    public Long getProductId() { return productId; }
+    public void setProductId(Long productId) { this.productId = productId; }
+    
+    public Integer getRequestedQuantity() { return requestedQuantity; }
+    public void setRequestedQuantity(Integer requestedQuantity) { this.requestedQuantity = requestedQuantity; }
+    
+    public Integer getAvailableQuantity() { return availableQuantity; }
+    public void setAvailableQuantity(Integer availableQuantity) { this.availableQuantity = availableQuantity; }
+    
+    public Boolean getAvailable() { return available; }
+    public void setAvailable(Boolean available) { this.available = available; }
+}
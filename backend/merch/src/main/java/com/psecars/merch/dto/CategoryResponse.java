@@ -2,34 +2,69 @@ package com.psecars.merch.dto;
 
 import com.psecars.merch.entity.Category;
 
+import java.util.List;
+
 public class CategoryResponse {
     private Long id;
     private String name;
     private String description;
     private Integer productCount;
-    
+    // ADDED: Tree position and stock counts, filled in by CategoryReadModel
+    private Long parentId;
+    private List<Long> ancestorIds;
+    private String path;
+    private Integer depth;
+    private Integer inStockCount;
+    private Integer totalProductCount;
+    private Integer totalInStockCount;
+
     // Constructor from Entity
+    // FIXED: No longer counts the lazy products collection - counts come from CategoryReadModel
     public CategoryResponse(Category category) {
         this.id = category.getId();
         this.name = category.getName();
         this.description = category.getDescription();
-        // Safe product count without triggering lazy loading
-        this.productCount = (category.getProducts() != null) ? category.getProducts().size() : 0;
+        this.parentId = category.getParentId();
+        this.productCount = 0;
+        this.inStockCount = 0;
+        this.totalProductCount = 0;
+        this.totalInStockCount = 0;
     }
-    
+
     // Default constructor
     public CategoryResponse() {}
-    
+
     // Getters and Setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
-    
+
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
-    
+
     public String getDescription() { return description; }
     public void setDescription(String description) { this.description = description; }
-    
+
     public Integer getProductCount() { return productCount; }
     public void setProductCount(Integer productCount) { this.productCount = productCount; }
-}
\ No newline at end of file
+
+    public Long getParentId() { return parentId; }
+    public void setParentId(Long parentId) { this.parentId = parentId; }
+
+    public List<Long> getAncestorIds() { return ancestorIds; }
+    public void setAncestorIds(List<Long> ancestorIds) { this.ancestorIds = ancestorIds; }
+
+    public String getPath() { return path; }
+    public void setPath(String path) { this.path = path; }
+
+    public Integer getDepth() { return depth; }
+    public void setDepth(Integer depth) { this.depth = depth; }
+
+    public Integer getInStockCount() { return inStockCount; }
+    public void setInStockCount(Integer inStockCount) { this.inStockCount = inStockCount; }
+
+    public Integer getTotalProductCount() { return totalProductCount; }
+    public void setTotalProductCount(Integer totalProductCount) { this.totalProductCount = totalProductCount; }
+
+    public Integer getTotalInStockCount() { return totalInStockCount; }
+    public void setTotalInStockCount(Integer totalInStockCount) { this.totalInStockCount = totalInStockCount; }
+}
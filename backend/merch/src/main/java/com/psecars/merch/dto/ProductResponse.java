@@ -11,12 +11,14 @@ public class ProductResponse {
     private String description;
     private BigDecimal price;
     private Integer stockQuantity;
+    private Integer availableQuantity;
     private String categoryName;
     private Long categoryId;
     private List<String> imageUrls;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private boolean inStock;
+    private Long version;
     
     // Constructor from Entity
     public ProductResponse(Product product) {
@@ -33,9 +35,25 @@ public class ProductResponse {
         this.imageUrls = product.getImageUrls();
         this.createdAt = product.getCreatedAt();
         this.updatedAt = product.getUpdatedAt();
+        this.availableQuantity = product.getStockQuantity();
         this.inStock = product.getStockQuantity() > 0;
+        this.version = product.getVersion();
     }
     
+    // ADDED: Units reserved in carts are not available to other shoppers
+    public ProductResponse(Product product, int heldQuantity) {
+        this(product);
+        applyHeldQuantity(heldQuantity);
+    }
+    
+    public void applyHeldQuantity(int heldQuantity) {
+        this.availableQuantity = Math.max(stockQuantity - heldQuantity, 0);
+        this.inStock = availableQuantity > 0;
+    }
+    
+    // Default constructor (needed to read cached JSON back)
+    public ProductResponse() {}
+    
     // Getters and Setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -52,6 +70,9 @@ public class ProductResponse {
     public Integer getStockQuantity() { return stockQuantity; }
     public void setStockQuantity(Integer stockQuantity) { this.stockQuantity = stockQuantity; }
     
+    public Integer getAvailableQuantity() { return availableQuantity; }
+    public void setAvailableQuantity(Integer availableQuantity) { this.availableQuantity = availableQuantity; }
+    
     public String getCategoryName() { return categoryName; }
     public void setCategoryName(String categoryName) { this.categoryName = categoryName; }
     
@@ -69,4 +90,7 @@ public class ProductResponse {
     
     public boolean isInStock() { return inStock; }
     public void setInStock(boolean inStock) { this.inStock = inStock; }
-}
+    
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+}
\ No newline at end of file
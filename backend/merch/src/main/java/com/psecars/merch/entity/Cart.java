@@ -12,15 +12,21 @@ import java.util.List;
 
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})  // ADDED: Fix Redis serialization issues
 @Entity
-@Table(name = "carts")
+@Table(name = "carts", indexes = {
+        @Index(name = "idx_carts_expires_at", columnList = "expires_at"),
+        @Index(name = "idx_carts_updated_at", columnList = "updated_at")
+}, uniqueConstraints = @UniqueConstraint(name = Cart.SESSION_ID_CONSTRAINT, columnNames = "session_id"))
 public class Cart {
+    // Named so that concurrent inserts of the same cart can be told from other violations (CartService)
+    public static final String SESSION_ID_CONSTRAINT = "uk_carts_session_id";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
     @NotBlank(message = "Session ID is required")
     @Size(max = 255)
-    @Column(name = "session_id", nullable = false, unique = true)
+    @Column(name = "session_id", nullable = false)
     private String sessionId;
     
     @Column(name = "customer_email")
@@ -49,6 +55,11 @@ public class Cart {
     @Column(name = "expires_at")
     private LocalDateTime expiresAt;
     
+    // ADDED: Optimistic locking - concurrent writers fail instead of silently overwriting each other
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -129,4 +140,7 @@ public class Cart {
     
     public LocalDateTime getExpiresAt() { return expiresAt; }
     public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
+    
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
 }
\ No newline at end of file
@@ -10,8 +10,13 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "cart_items", 
-       uniqueConstraints = @UniqueConstraint(columnNames = {"cart_id", "product_id"}))
+       uniqueConstraints = @UniqueConstraint(name = CartItem.CART_PRODUCT_CONSTRAINT,
+               columnNames = {"cart_id", "product_id"}),  // also serves lookups by cart
+       indexes = @Index(name = "idx_cart_items_product_id", columnList = "product_id"))
 public class CartItem {
+    // Named so that concurrent inserts of the same item can be told from other violations (CartService)
+    public static final String CART_PRODUCT_CONSTRAINT = "uk_cart_items_cart_product";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -43,6 +48,11 @@ public class CartItem {
     @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt;
     
+    // ADDED: Optimistic locking - concurrent writers fail instead of silently overwriting each other
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -97,6 +107,9 @@ public class CartItem {
     public LocalDateTime getUpdatedAt() { return updatedAt; }
     public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
     
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+    
     // Convenience method to get when item was added (same as createdAt)
     public LocalDateTime getAddedAt() { return createdAt; }
 }
\ No newline at end of file
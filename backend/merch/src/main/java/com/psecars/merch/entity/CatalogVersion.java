@@ -0,0 +1,32 @@
+package com.psecars.merch.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * Counter shared by all instances for conditional GETs (see ResourceVersionService):
+ * one row per counter, incremented in place with an UPDATE.
+ */
+@Entity
+@Table(name = "catalog_versions")
+public class CatalogVersion {
+    @Id
+    @Column(length = 50)
+    private String name;
+    
+    @Column(nullable = false)
+    private Long version;
+    
+    public CatalogVersion() {}
+    
+    public CatalogVersion(String name, Long version) {
+        this.name = name;
+        this.version = version;
+    }
+    
+    // Getters and Setters
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+    
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+}
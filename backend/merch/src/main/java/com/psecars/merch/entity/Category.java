@@ -1,5 +1,6 @@
 package com.psecars.merch.entity;
 
+import com.psecars.merch.event.CatalogEntityListener;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
@@ -9,7 +10,10 @@ import java.util.List;
 
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})  // ADDED: Fix Redis serialization issues
 @Entity
-@Table(name = "categories")
+@EntityListeners(CatalogEntityListener.class)  // Publishes CatalogChangedEvent for read-side caches
+@Table(name = "categories", indexes = {
+        @Index(name = "idx_categories_parent_id", columnList = "parent_id")
+})
 public class Category {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -23,7 +27,17 @@ public class Category {
     @Size(max = 500)
     private String description;
     
-    @OneToMany(mappedBy = "category", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    // ADDED: Optional parent for nested categories; paths and counts are resolved by CategoryReadModel
+    @Column(name = "parent_id")
+    private Long parentId;
+    
+    // ADDED: Whether parentId was set (e.g. sent in an update request); JPA sets the field directly
+    @Transient
+    @JsonIgnore
+    private boolean parentIdPresent;
+    
+    // No cascade: deleting a category must never delete its products, CategoryService refuses non-empty ones
+    @OneToMany(mappedBy = "category", fetch = FetchType.LAZY)
     @JsonIgnore  // Prevent circular reference when serializing to JSON/Redis
     private List<Product> products;
     
@@ -45,6 +59,15 @@ public class Category {
     public String getDescription() { return description; }
     public void setDescription(String description) { this.description = description; }
     
+    public Long getParentId() { return parentId; }
+    public void setParentId(Long parentId) {
+        this.parentId = parentId;
+        this.parentIdPresent = true;
+    }
+    
+    @JsonIgnore
+    public boolean isParentIdPresent() { return parentIdPresent; }
+    
     public List<Product> getProducts() { return products; }
     public void setProducts(List<Product> products) { this.products = products; }
 }
\ No newline at end of file
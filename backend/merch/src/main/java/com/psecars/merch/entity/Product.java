@@ -1,5 +1,6 @@
 package com.psecars.merch.entity;
 
+import com.psecars.merch.event.CatalogEntityListener;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
@@ -10,7 +11,15 @@ import java.util.List;
 
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})  // ADDED: Fix Redis serialization issues
 @Entity
-@Table(name = "products")
+@EntityListeners(CatalogEntityListener.class)  // Publishes CatalogChangedEvent for read-side caches
+// Indexes back the ProductRepository queries (see QueryPlanTest); keep init-scripts in sync
+@Table(name = "products", indexes = {
+        @Index(name = "idx_products_category_id", columnList = "category_id, stock_quantity"),
+        @Index(name = "idx_products_category_price", columnList = "category_id, price"),
+        @Index(name = "idx_products_price", columnList = "price"),
+        @Index(name = "idx_products_stock_quantity", columnList = "stock_quantity"),
+        @Index(name = "idx_products_name", columnList = "name")
+})
 public class Product {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -50,6 +59,11 @@ public class Product {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
+    // ADDED: Optimistic locking - concurrent writers fail instead of silently overwriting each other
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -99,4 +113,7 @@ public class Product {
     
     public LocalDateTime getUpdatedAt() { return updatedAt; }
     public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+    
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
 }
\ No newline at end of file
@@ -0,0 +1,63 @@
+package com.psecars.merch.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Persisted copy of an in-memory stock reservation (see StockHoldService), written by the instance
+ * holding it. Read at startup to restore the instance's own holds, and periodically to count the
+ * holds of other instances.
+ */
+@Entity
+@Table(name = "stock_holds",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"instance_id", "session_id", "product_id"}),
+       indexes = @Index(name = "idx_stock_holds_instance", columnList = "instance_id"))
+public class StockHold {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "instance_id", nullable = false, length = 100)
+    private String instanceId;
+    
+    @Column(name = "session_id", nullable = false)
+    private String sessionId;
+    
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+    
+    @Column(nullable = false)
+    private Integer quantity;
+    
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+    
+    public StockHold() {}
+    
+    public StockHold(String instanceId, String sessionId, Long productId, Integer quantity, LocalDateTime expiresAt) {
+        this.instanceId = instanceId;
+        this.sessionId = sessionId;
+        this.productId = productId;
+        this.quantity = quantity;
+        this.expiresAt = expiresAt;
+    }
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public String getInstanceId() { return instanceId; }
+    public void setInstanceId(String instanceId) { this.instanceId = instanceId; }
+    
+    public String getSessionId() { return sessionId; }
+    public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+    
+    public Long getProductId() { return productId; }
+    public void setProductId(Long productId) { this.productId = productId; }
+    
+    public Integer getQuantity() { return quantity; }
+    public void setQuantity(Integer quantity) { this.quantity = quantity; }
+    
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
+}
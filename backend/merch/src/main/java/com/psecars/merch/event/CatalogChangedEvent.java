@@ -0,0 +1,41 @@
+package com.psecars.merch.event;
+
+/**
+ * Published whenever a product or category row is inserted, updated or deleted.
+ * Listeners that keep derived read state (caches, version counters) subscribe to it
+ * instead of every write path having to know about them.
+ */
+public class CatalogChangedEvent {
+
+    public enum ResourceType {
+        PRODUCT,
+        CATEGORY
+    }
+
+    public enum ChangeType {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final ResourceType resourceType;
+    private final ChangeType changeType;
+    private final Long resourceId;
+
+    public CatalogChangedEvent(ResourceType resourceType, ChangeType changeType, Long resourceId) {
+        this.resourceType = resourceType;
+        this.changeType = changeType;
+        this.resourceId = resourceId;
+    }
+
+    public ResourceType getResourceType() { return resourceType; }
+
+    public ChangeType getChangeType() { return changeType; }
+
+    public Long getResourceId() { return resourceId; }
+
+    @Override
+    public String toString() {
+        return "CatalogChangedEvent{" + resourceType + " " + resourceId + " " + changeType + "}";
+    }
+}
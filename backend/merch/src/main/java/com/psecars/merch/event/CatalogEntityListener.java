@@ -0,0 +1,48 @@
+package com.psecars.merch.event;
+
+import com.psecars.merch.entity.Category;
+import com.psecars.merch.entity.Product;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+
+/**
+ * JPA entity listener that turns product/category writes into {@link CatalogChangedEvent}s.
+ * Hooking in at the entity level also catches writes that never go through ProductService,
+ * e.g. stock being restored by OrderService.cancelOrder via dirty checking.
+ * Instantiated by Hibernate through Spring's bean container, so constructor injection works.
+ */
+public class CatalogEntityListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public CatalogEntityListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostPersist
+    public void onCreated(Object entity) {
+        publish(entity, CatalogChangedEvent.ChangeType.CREATED);
+    }
+
+    @PostUpdate
+    public void onUpdated(Object entity) {
+        publish(entity, CatalogChangedEvent.ChangeType.UPDATED);
+    }
+
+    @PostRemove
+    public void onDeleted(Object entity) {
+        publish(entity, CatalogChangedEvent.ChangeType.DELETED);
+    }
+
+    private void publish(Object entity, CatalogChangedEvent.ChangeType changeType) {
+        if (entity instanceof Product product) {
+            eventPublisher.publishEvent(new CatalogChangedEvent(
+                    CatalogChangedEvent.ResourceType.PRODUCT, changeType, product.getId()));
+        } else if (entity instanceof Category category) {
+            eventPublisher.publishEvent(new CatalogChangedEvent(
+                    CatalogChangedEvent.ResourceType.CATEGORY, changeType, category.getId()));
+        }
+    }
+}
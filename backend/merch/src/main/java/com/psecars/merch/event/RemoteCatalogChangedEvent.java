@@ -0,0 +1,24 @@
+package com.psecars.merch.event;
+
+/**
+ * Published by ResourceVersionService when the shared catalog version counters moved further than
+ * this instance's own changes account for, i.e. products or categories were written through another
+ * instance. Nothing says which rows changed, so listeners that keep derived read state reload or drop
+ * all of it. The event is delivered synchronously and outside a transaction; the new catalog versions
+ * are only handed out after every listener returned.
+ */
+public class RemoteCatalogChangedEvent {
+
+    private final long catalogVersion;
+
+    public RemoteCatalogChangedEvent(long catalogVersion) {
+        this.catalogVersion = catalogVersion;
+    }
+
+    public long getCatalogVersion() { return catalogVersion; }
+
+    @Override
+    public String toString() {
+        return "RemoteCatalogChangedEvent{catalog version " + catalogVersion + "}";
+    }
+}
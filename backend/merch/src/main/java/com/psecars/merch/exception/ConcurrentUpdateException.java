@@ -0,0 +1,12 @@
+package com.psecars.merch.exception;
+
+public class ConcurrentUpdateException extends RuntimeException {
+    public ConcurrentUpdateException(String message) {
+        super(message);
+    }
+    
+    public ConcurrentUpdateException(String resource, Long id, Long expectedVersion, Long currentVersion) {
+        super(String.format("%s %d was modified concurrently. Expected version: %d, Current version: %d", 
+                resource, id, expectedVersion, currentVersion));
+    }
+}
@@ -3,6 +3,7 @@ package com.psecars.merch.exception;
 import com.psecars.merch.dto.ApiResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -84,6 +85,14 @@ public class GlobalExceptionHandler {
                 .body(ApiResponse.error(ex.getMessage()));
     }
     
+    // ADDED: Conflicts that survived the retries (or a stale client version) - the client should reload
+    @ExceptionHandler({OptimisticLockingFailureException.class, ConcurrentUpdateException.class})
+    public ResponseEntity<ApiResponse<Void>> handleConcurrentUpdate(RuntimeException ex) {
+        logger.warn("Concurrent update: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(ApiResponse.error("The resource was modified concurrently, please reload and try again"));
+    }
+    
     @ExceptionHandler(InsufficientStockException.class)
     public ResponseEntity<ApiResponse<Void>> handleInsufficientStockException(InsufficientStockException ex) {
         logger.warn("Insufficient stock: {}", ex.getMessage());
@@ -0,0 +1,241 @@
+package com.psecars.merch.image;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed image store. Every image is kept once under its SHA-256
+ * (objects/ab/abcd....webp) and served as /api/images/{hash}.{ext}, so a URL never changes its
+ * content and can be cached forever.
+ *
+ * The logical paths the catalog uses (/images/products/x.webp, /cars/Apex.webp) are aliases onto
+ * hashes, persisted in aliases.properties. At startup every image below app.images.import-dir is
+ * imported under its relative path; re-importing an unchanged file only re-hashes it.
+ */
+@Service
+public class ImageStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageStore.class);
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+    private static final String ALIASES_FILE = "aliases.properties";
+
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "webp", "image/webp",
+            "jpg", "image/jpeg",
+            "jpeg", "image/jpeg",
+            "png", "image/png",
+            "gif", "image/gif",
+            "avif", "image/avif");
+
+    private final Path objectsDir;
+    private final Path aliasesFile;
+    private final String importDir;
+    private final Map<String, String> aliases = new ConcurrentHashMap<>();
+    private final Object aliasLock = new Object();
+
+    @Autowired
+    public ImageStore(@Value("${app.images.store-dir:./data/images}") String storeDir,
+                      @Value("${app.images.import-dir:}") String importDir) {
+        Path root = Paths.get(storeDir).toAbsolutePath().normalize();
+        this.objectsDir = root.resolve("objects");
+        this.aliasesFile = root.resolve(ALIASES_FILE);
+        this.importDir = importDir;
+        try {
+            Files.createDirectories(objectsDir);
+            if (Files.exists(aliasesFile)) {
+                Properties stored = new Properties();
+                try (InputStream in = Files.newInputStream(aliasesFile)) {
+                    stored.load(in);
+                }
+                stored.forEach((alias, name) -> aliases.put((String) alias, (String) name));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open image store at " + root, e);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void importDirectory() {
+        if (importDir == null || importDir.isBlank()) {
+            return;
+        }
+        Path source = Paths.get(importDir).toAbsolutePath().normalize();
+        if (!Files.isDirectory(source)) {
+            logger.warn("Image import directory {} does not exist", source);
+            return;
+        }
+        int imported = 0;
+        try (Stream<Path> files = Files.walk(source)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                String extension = extensionOf(file.getFileName().toString());
+                if (extension == null) {
+                    continue;
+                }
+                try (InputStream in = Files.newInputStream(file)) {
+                    String alias = "/" + source.relativize(file).toString().replace('\\', '/');
+                    store(alias, extension, in);
+                    imported++;
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Image import from {} failed: {}", source, e.getMessage(), e);
+        }
+        logger.info("Imported {} images from {}", imported, source);
+    }
+
+    /**
+     * Stores the image (if its content is new) and points alias at it. Returns the stored image.
+     */
+    public StoredImage store(String alias, String extension, InputStream content) throws IOException {
+        String ext = extension.toLowerCase(Locale.ROOT);
+        if (!CONTENT_TYPES.containsKey(ext)) {
+            throw new IllegalArgumentException("Unsupported image type: " + extension);
+        }
+
+        Path temp = Files.createTempFile(objectsDir, "upload-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            try (InputStream in = new DigestInputStream(content, digest);
+                 OutputStream out = Files.newOutputStream(temp)) {
+                in.transferTo(out);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path target = objectPath(hash, ext);
+            if (!Files.exists(target)) {
+                Files.createDirectories(target.getParent());
+                moveAtomically(temp, target);
+            }
+            if (alias != null) {
+                putAlias(alias, hash + "." + ext);
+            }
+            return new StoredImage(hash, ext, target, Files.size(target));
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public Optional<StoredImage> find(String hash, String extension) {
+        if (!HASH.matcher(hash).matches() || !CONTENT_TYPES.containsKey(extension)) {
+            return Optional.empty();
+        }
+        Path file = objectPath(hash, extension);
+        try {
+            return Optional.of(new StoredImage(hash, extension, file, Files.size(file)));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * The content-addressed file name ({hash}.{ext}) an alias currently points at.
+     */
+    public Optional<String> resolve(String alias) {
+        return Optional.ofNullable(aliases.get(alias));
+    }
+
+    public int size() {
+        return aliases.size();
+    }
+
+    public static String contentType(String extension) {
+        return CONTENT_TYPES.getOrDefault(extension, "application/octet-stream");
+    }
+
+    public static String extensionOf(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        String extension = fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return CONTENT_TYPES.containsKey(extension) ? extension : null;
+    }
+
+    static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void putAlias(String alias, String name) throws IOException {
+        if (name.equals(aliases.get(alias))) {
+            return;
+        }
+        synchronized (aliasLock) {
+            aliases.put(alias, name);
+            Properties stored = new Properties();
+            stored.putAll(aliases);
+            Path temp = Files.createTempFile(aliasesFile.getParent(), "aliases-", ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                stored.store(out, "image alias -> content-addressed file");
+            }
+            moveAtomically(temp, aliasesFile);
+        }
+    }
+
+    private Path objectPath(String hash, String extension) {
+        return objectsDir.resolve(hash.substring(0, 2)).resolve(hash + "." + extension);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static final class StoredImage {
+        private final String hash;
+        private final String extension;
+        private final Path file;
+        private final long length;
+
+        public StoredImage(String hash, String extension, Path file, long length) {
+            this.hash = hash;
+            this.extension = extension;
+            this.file = file;
+            this.length = length;
+        }
+
+        public String getHash() { return hash; }
+
+        public String getExtension() { return extension; }
+
+        public Path getFile() { return file; }
+
+        public long getLength() { return length; }
+
+        public String getContentType() { return contentType(extension); }
+
+        public String getFileName() { return hash + "." + extension; }
+    }
+}
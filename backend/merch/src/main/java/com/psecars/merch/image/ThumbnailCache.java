@@ -0,0 +1,319 @@
+package com.psecars.merch.image;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Resized copies of stored images, generated once per (image, width) and kept on disk.
+ *
+ * Widths are limited to app.images.thumbnail-widths so the cache cannot be filled with arbitrary
+ * sizes. The directory is bounded by app.images.thumbnail-cache-max-bytes and evicts the least
+ * recently served thumbnail first; after a restart the order is rebuilt from file modification
+ * times. Thumbnails are written as JPEG, or PNG when the source has transparency - ImageIO can
+ * decode WebP (via the TwelveMonkeys plugin) but not encode it.
+ */
+@Service
+public class ThumbnailCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThumbnailCache.class);
+
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final Set<Integer> widths;
+
+    // Access-ordered: iteration starts at the least recently served thumbnail
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Set<String> notResizable = ConcurrentHashMap.newKeySet();
+    private final Map<String, Object> generating = new ConcurrentHashMap<>();
+    private long totalBytes;
+
+    private final Counter hits;
+    private final Counter generated;
+    private final Counter evicted;
+
+    @Autowired
+    public ThumbnailCache(@Value("${app.images.store-dir:./data/images}") String storeDir,
+                          @Value("${app.images.thumbnail-cache-max-bytes:268435456}") long maxBytes,
+                          @Value("${app.images.thumbnail-widths:160,320,640,1280}") List<Integer> widths,
+                          MeterRegistry meterRegistry) {
+        this.directory = Paths.get(storeDir).toAbsolutePath().normalize().resolve("thumbnails");
+        this.maxBytes = maxBytes;
+        this.widths = Set.copyOf(widths);
+        this.hits = Counter.builder("merch.images.thumbnails").tag("result", "hit").register(meterRegistry);
+        this.generated = Counter.builder("merch.images.thumbnails").tag("result", "generated").register(meterRegistry);
+        this.evicted = Counter.builder("merch.images.thumbnails").tag("result", "evicted").register(meterRegistry);
+        Gauge.builder("merch.images.thumbnail-cache.bytes", this, ThumbnailCache::getTotalBytes).register(meterRegistry);
+        loadExisting();
+    }
+
+    public boolean isSupportedWidth(int width) {
+        return widths.contains(width);
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * The thumbnail of image at width, generated on first use. Empty when the image is already at most
+     * that wide or ImageIO cannot decode it - the original is served instead.
+     */
+    public Optional<Thumbnail> get(ImageStore.StoredImage image, int width) {
+        String key = image.getHash() + "-w" + width;
+        Optional<Thumbnail> cached = lookup(key);
+        if (cached.isPresent()) {
+            hits.increment();
+            return cached;
+        }
+        if (notResizable.contains(key)) {
+            return Optional.empty();
+        }
+
+        Object lock = generating.computeIfAbsent(key, k -> new Object());
+        synchronized (lock) {
+            try {
+                cached = lookup(key);
+                if (cached.isPresent()) {
+                    hits.increment();
+                    return cached;
+                }
+                if (notResizable.contains(key)) {
+                    return Optional.empty();
+                }
+                return generate(key, image, width);
+            } finally {
+                generating.remove(key);
+            }
+        }
+    }
+
+    private Optional<Thumbnail> lookup(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            return Optional.empty();
+        }
+        Path file = directory.resolve(entry.fileName);
+        if (!Files.exists(file)) {
+            remove(key);
+            return Optional.empty();
+        }
+        return Optional.of(new Thumbnail(key, file, entry.length, ImageStore.contentType(extensionOf(entry.fileName))));
+    }
+
+    private Optional<Thumbnail> generate(String key, ImageStore.StoredImage image, int width) {
+        try {
+            BufferedImage source = read(image.getFile(), width);
+            if (source == null || source.getWidth() <= width) {
+                notResizable.add(key);
+                return Optional.empty();
+            }
+
+            boolean alpha = source.getColorModel().hasAlpha();
+            int height = Math.max(1, Math.round(source.getHeight() * (width / (float) source.getWidth())));
+            BufferedImage scaled = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = scaled.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(source, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+
+            String extension = alpha ? "png" : "jpg";
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, key, ".tmp");
+            try {
+                write(scaled, extension, temp);
+                Path target = directory.resolve(key + "." + extension);
+                ImageStore.moveAtomically(temp, target);
+                long length = Files.size(target);
+                add(key, new Entry(target.getFileName().toString(), length));
+                generated.increment();
+                return Optional.of(new Thumbnail(key, target, length, ImageStore.contentType(extension)));
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not create {}px thumbnail of {}: {}", width, image.getFileName(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Decodes with source subsampling down to about twice the target width - decoding (WebP in pure Java)
+     * dominates thumbnail generation, and skipping pixels the scaler would drop anyway roughly halves it.
+     */
+    private static BufferedImage read(Path file, int width) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int subsampling = Math.max(1, reader.getWidth(0) / (width * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage decoded = reader.read(0, param);
+                return reader.getWidth(0) <= width ? null : decoded;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static void write(BufferedImage image, String extension, Path target) throws IOException {
+        if ("png".equals(extension)) {
+            ImageIO.write(image, "png", target.toFile());
+            return;
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private synchronized void add(String key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            totalBytes -= previous.length;
+        }
+        totalBytes += entry.length;
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Entry> victim = eldest.next();
+            if (victim.getKey().equals(key)) {
+                continue;
+            }
+            eldest.remove();
+            totalBytes -= victim.getValue().length;
+            evicted.increment();
+            try {
+                Files.deleteIfExists(directory.resolve(victim.getValue().fileName));
+            } catch (IOException e) {
+                logger.warn("Could not delete evicted thumbnail {}: {}", victim.getValue().fileName, e.getMessage());
+            }
+        }
+    }
+
+    private synchronized void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            totalBytes -= removed.length;
+        }
+    }
+
+    private void loadExisting() {
+        try {
+            Files.createDirectories(directory);
+            List<Path> files;
+            try (Stream<Path> listing = Files.list(directory)) {
+                files = listing.filter(file -> !file.getFileName().toString().endsWith(".tmp"))
+                        .sorted(Comparator.comparing(ThumbnailCache::lastModified))
+                        .collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                int dot = fileName.lastIndexOf('.');
+                if (dot > 0) {
+                    add(fileName.substring(0, dot), new Entry(fileName, Files.size(file)));
+                }
+            }
+            logger.info("Thumbnail cache holds {} files ({} bytes)", entries.size(), totalBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open thumbnail cache at " + directory, e);
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class).lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static String extensionOf(String fileName) {
+        return fileName.substring(fileName.lastIndexOf('.') + 1);
+    }
+
+    private static final class Entry {
+        private final String fileName;
+        private final long length;
+
+        private Entry(String fileName, long length) {
+            this.fileName = fileName;
+            this.length = length;
+        }
+    }
+
+    public static final class Thumbnail {
+        private final String key;
+        private final Path file;
+        private final long length;
+        private final String contentType;
+
+        public Thumbnail(String key, Path file, long length, String contentType) {
+            this.key = key;
+            this.file = file;
+            this.length = length;
+            this.contentType = contentType;
+        }
+
+        public String getKey() { return key; }
+
+        public Path getFile() { return file; }
+
+        public long getLength() { return length; }
+
+        public String getContentType() { return contentType; }
+    }
+}
@@ -0,0 +1,42 @@
+package com.psecars.merch.outbox;
+
+import com.psecars.merch.entity.OutboxEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Stand-in publisher for dev and tests: keeps the most recent events in memory.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.outbox", name = "publisher", havingValue = "memory")
+public class InMemoryOutboxPublisher implements OutboxPublisher {
+
+    private final Deque<OutboxEvent> published = new ArrayDeque<>();
+
+    @Value("${app.outbox.memory.capacity:1000}")
+    private int capacity;
+
+    @Override
+    public synchronized void publish(List<OutboxEvent> events) {
+        for (OutboxEvent event : events) {
+            published.addLast(event);
+            if (published.size() > capacity) {
+                published.removeFirst();
+            }
+        }
+    }
+
+    public synchronized List<OutboxEvent> getPublished() {
+        return new ArrayList<>(published);
+    }
+
+    public synchronized void clear() {
+        published.clear();
+    }
+}
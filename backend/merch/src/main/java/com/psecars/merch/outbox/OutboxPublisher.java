@@ -0,0 +1,15 @@
+package com.psecars.merch.outbox;
+
+import com.psecars.merch.entity.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * Destination of the outbox relay. A batch is published as a whole and in the given order;
+ * throwing leaves the whole batch pending and it is offered again (at-least-once delivery,
+ * consumers de-duplicate by event id).
+ */
+public interface OutboxPublisher {
+
+    void publish(List<OutboxEvent> events);
+}
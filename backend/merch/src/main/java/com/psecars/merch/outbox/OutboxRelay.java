@@ -0,0 +1,133 @@
+package com.psecars.merch.outbox;
+
+import com.psecars.merch.entity.OutboxEvent;
+import com.psecars.merch.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains outbox_events to the configured OutboxPublisher.
+ *
+ * Each batch is read in id order under row locks, published, and marked as published in one
+ * transaction. A failed publish rolls the batch back and stops the drain, so no later event can
+ * overtake an earlier one - events of an order always arrive in the order they were written.
+ *
+ * Metrics:
+ *   merch.outbox.pending        - events not yet published
+ *   merch.outbox.lag.seconds    - age of the oldest unpublished event
+ *   merch.outbox.published      - events handed to the publisher
+ *   merch.outbox.publish.failures
+ *   merch.outbox.delivery       - time from commit of the change to publication
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.outbox", name = "relay-enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxPublisher publisher;
+    private final TransactionTemplate transactionTemplate;
+
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong lagSeconds = new AtomicLong();
+    private final Counter published;
+    private final Counter failures;
+    private final Timer delivery;
+
+    @Value("${app.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.outbox.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    @Value("${app.outbox.retention-hours:24}")
+    private long retentionHours;
+
+    @Autowired
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       OutboxPublisher publisher,
+                       TransactionTemplate transactionTemplate,
+                       MeterRegistry meterRegistry) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.publisher = publisher;
+        this.transactionTemplate = transactionTemplate;
+
+        Gauge.builder("merch.outbox.pending", pending, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("merch.outbox.lag.seconds", lagSeconds, AtomicLong::get).register(meterRegistry);
+        this.published = Counter.builder("merch.outbox.published").register(meterRegistry);
+        this.failures = Counter.builder("merch.outbox.publish.failures").register(meterRegistry);
+        this.delivery = Timer.builder("merch.outbox.delivery").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval-ms:1000}")
+    public void drain() {
+        try {
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                if (publishBatch() < batchSize) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            failures.increment();
+            logger.warn("Outbox publish failed, will retry: {}", e.getMessage());
+        } finally {
+            refreshBacklogMetrics();
+        }
+    }
+
+    @Scheduled(cron = "${app.outbox.cleanup-cron:0 15 * * * *}")
+    public void deletePublished() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(retentionHours);
+        Integer deleted = transactionTemplate.execute(status -> outboxEventRepository.deletePublishedBefore(cutoff));
+        if (deleted != null && deleted > 0) {
+            logger.info("Deleted {} published outbox events", deleted);
+        }
+    }
+
+    private int publishBatch() {
+        Integer count = transactionTemplate.execute(status -> {
+            List<OutboxEvent> events = outboxEventRepository.findUnpublishedForUpdate(PageRequest.of(0, batchSize));
+            if (events.isEmpty()) {
+                return 0;
+            }
+            publisher.publish(events);
+
+            LocalDateTime now = LocalDateTime.now();
+            for (OutboxEvent event : events) {
+                event.setPublishedAt(now);
+                delivery.record(Duration.between(event.getCreatedAt(), now));
+            }
+            published.increment(events.size());
+            return events.size();
+        });
+        return count != null ? count : 0;
+    }
+
+    private void refreshBacklogMetrics() {
+        try {
+            pending.set(outboxEventRepository.countByPublishedAtIsNull());
+            lagSeconds.set(outboxEventRepository.findOldestUnpublishedCreatedAt()
+                    .map(oldest -> Math.max(Duration.between(oldest, LocalDateTime.now()).getSeconds(), 0))
+                    .orElse(0L));
+        } catch (RuntimeException e) {
+            logger.debug("Could not refresh outbox backlog metrics: {}", e.getMessage());
+        }
+    }
+}
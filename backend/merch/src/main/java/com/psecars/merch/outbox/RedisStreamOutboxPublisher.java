@@ -0,0 +1,66 @@
+package com.psecars.merch.outbox;
+
+import com.psecars.merch.entity.OutboxEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Appends outbox events to a Redis stream (XADD), one pipelined round trip per batch.
+ * Consumers read with XREAD / consumer groups; the stream is trimmed to roughly max-len entries.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.outbox", name = "publisher", havingValue = "redis", matchIfMissing = true)
+public class RedisStreamOutboxPublisher implements OutboxPublisher {
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${app.outbox.redis.stream:pse-merch:orders}")
+    private String stream;
+
+    @Value("${app.outbox.redis.max-len:100000}")
+    private long maxLen;
+
+    @Autowired
+    public RedisStreamOutboxPublisher(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public void publish(List<OutboxEvent> events) {
+        byte[] key = stream.getBytes(StandardCharsets.UTF_8);
+        XAddOptions options = XAddOptions.maxlen(maxLen).approximateTrimming(true);
+
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (OutboxEvent event : events) {
+                connection.streamCommands().xAdd(StreamRecords.rawBytes(fields(event)).withStreamKey(key), options);
+            }
+            return null;
+        });
+    }
+
+    private static Map<byte[], byte[]> fields(OutboxEvent event) {
+        Map<byte[], byte[]> fields = new LinkedHashMap<>();
+        put(fields, "eventId", String.valueOf(event.getId()));
+        put(fields, "aggregateType", event.getAggregateType());
+        put(fields, "aggregateId", String.valueOf(event.getAggregateId()));
+        put(fields, "eventType", event.getEventType());
+        put(fields, "createdAt", event.getCreatedAt().toString());
+        put(fields, "payload", event.getPayload());
+        return fields;
+    }
+
+    private static void put(Map<byte[], byte[]> fields, String name, String value) {
+        fields.put(name.getBytes(StandardCharsets.UTF_8), value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,83 @@
+package com.psecars.merch.repository;
+
+import com.psecars.merch.entity.ArchivedOrder;
+import com.psecars.merch.entity.ArchivedOrderItem;
+import com.psecars.merch.entity.OrderStatus;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ArchivedOrderRepository extends JpaRepository<ArchivedOrder, Long> {
+    
+    // Every archive read carries a created_at range so PostgreSQL only scans the matching partitions
+    @Query("SELECT o FROM ArchivedOrder o WHERE o.createdAt BETWEEN :startDate AND :endDate ORDER BY o.createdAt DESC")
+    List<ArchivedOrder> findOrdersBetweenDates(@Param("startDate") LocalDateTime startDate,
+                                               @Param("endDate") LocalDateTime endDate);
+    
+    // Order history listings (appended to the live orders by OrderService), limited to the partitions
+    // from :since on; the page count queries carry the same bound
+    Page<ArchivedOrder> findByCreatedAtGreaterThanEqual(LocalDateTime since, Pageable pageable);
+    
+    Page<ArchivedOrder> findByStatusAndCreatedAtGreaterThanEqual(OrderStatus status, LocalDateTime since,
+                                                                 Pageable pageable);
+    
+    Page<ArchivedOrder> findByCustomerEmailAndCreatedAtGreaterThanEqual(String customerEmail, LocalDateTime since,
+                                                                        Pageable pageable);
+    
+    long countByCreatedAtGreaterThanEqual(LocalDateTime since);
+    
+    long countByStatusAndCreatedAtGreaterThanEqual(OrderStatus status, LocalDateTime since);
+    
+    long countByCustomerEmailAndCreatedAtGreaterThanEqual(String customerEmail, LocalDateTime since);
+    
+    @Query("SELECT i FROM ArchivedOrderItem i WHERE i.orderId IN :orderIds ORDER BY i.id")
+    List<ArchivedOrderItem> findItemsByOrderIds(@Param("orderIds") Collection<Long> orderIds);
+    
+    @Query("SELECT i FROM ArchivedOrderItem i WHERE i.orderId IN :orderIds " +
+           "AND i.orderCreatedAt BETWEEN :startDate AND :endDate ORDER BY i.id")
+    List<ArchivedOrderItem> findItemsByOrderIds(@Param("orderIds") Collection<Long> orderIds,
+                                                @Param("startDate") LocalDateTime startDate,
+                                                @Param("endDate") LocalDateTime endDate);
+    
+    @Query("SELECT o.status, COUNT(o) FROM ArchivedOrder o GROUP BY o.status")
+    List<Object[]> countByStatus();
+    
+    // Archival moves rows inside the database, nothing is loaded into the persistence context
+    @Query(value = "SELECT id FROM orders WHERE status IN ('DELIVERED', 'CANCELLED') AND created_at < :cutoff " +
+                   "ORDER BY id", nativeQuery = true)
+    List<Long> findArchivableOrderIds(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+    
+    @Query("SELECT MIN(o.createdAt), MAX(o.createdAt) FROM Order o WHERE o.id IN :orderIds")
+    List<Object[]> findCreatedAtRange(@Param("orderIds") Collection<Long> orderIds);
+    
+    @Modifying
+    @Query(value = "INSERT INTO orders_archive (id, customer_email, customer_name, customer_address, total_amount, " +
+                   "status, created_at, updated_at, archived_at) " +
+                   "SELECT id, customer_email, customer_name, customer_address, total_amount, status, created_at, " +
+                   "updated_at, :archivedAt FROM orders WHERE id IN :orderIds", nativeQuery = true)
+    int copyOrders(@Param("orderIds") Collection<Long> orderIds, @Param("archivedAt") LocalDateTime archivedAt);
+    
+    @Modifying
+    @Query(value = "INSERT INTO order_items_archive (id, order_id, order_created_at, product_id, product_name, " +
+                   "quantity, price) " +
+                   "SELECT oi.id, oi.order_id, o.created_at, oi.product_id, p.name, oi.quantity, oi.price " +
+                   "FROM order_items oi JOIN orders o ON o.id = oi.order_id " +
+                   "LEFT JOIN products p ON p.id = oi.product_id WHERE oi.order_id IN :orderIds", nativeQuery = true)
+    int copyOrderItems(@Param("orderIds") Collection<Long> orderIds);
+    
+    @Modifying
+    @Query(value = "DELETE FROM order_items WHERE order_id IN :orderIds", nativeQuery = true)
+    int deleteOrderItems(@Param("orderIds") Collection<Long> orderIds);
+    
+    @Modifying
+    @Query(value = "DELETE FROM orders WHERE id IN :orderIds", nativeQuery = true)
+    int deleteOrders(@Param("orderIds") Collection<Long> orderIds);
+}
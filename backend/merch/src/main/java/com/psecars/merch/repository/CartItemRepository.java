@@ -14,7 +14,9 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     
     List<CartItem> findByCartId(Long cartId);
     
-    List<CartItem> findByCartSessionId(String sessionId);
+    // FIXED: explicit inner join - the derived query left-joined carts and scanned cart_items
+    @Query("SELECT ci FROM CartItem ci JOIN ci.cart c WHERE c.sessionId = :sessionId")
+    List<CartItem> findByCartSessionId(@Param("sessionId") String sessionId);
     
     @Query("SELECT ci FROM CartItem ci WHERE ci.cart.sessionId = :sessionId AND ci.product.id = :productId")
     Optional<CartItem> findBySessionIdAndProductId(@Param("sessionId") String sessionId, 
@@ -27,7 +29,8 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     void deleteByCartId(Long cartId);
     
     @Modifying
-    void deleteByCartSessionId(String sessionId);
+    @Query("DELETE FROM CartItem ci WHERE ci.cart.id IN (SELECT c.id FROM Cart c WHERE c.sessionId = :sessionId)")
+    void deleteByCartSessionId(@Param("sessionId") String sessionId);
     
     @Modifying
     @Query("DELETE FROM CartItem ci WHERE ci.cart.sessionId = :sessionId AND ci.product.id = :productId")
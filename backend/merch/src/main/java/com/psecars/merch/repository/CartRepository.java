@@ -34,4 +34,9 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     
     @Query("SELECT SUM(ci.quantity) FROM Cart c JOIN c.cartItems ci WHERE c.sessionId = :sessionId")
     Integer getTotalItemQuantity(@Param("sessionId") String sessionId);
+    
+    // Validator lookup for conditional GETs: cart timestamp, newest item timestamp and item count
+    @Query("SELECT c.updatedAt, MAX(ci.updatedAt), COUNT(ci) FROM Cart c LEFT JOIN c.cartItems ci " +
+           "WHERE c.sessionId = :sessionId GROUP BY c.id, c.updatedAt")
+    List<Object[]> findVersionInfoBySessionId(@Param("sessionId") String sessionId);
 }
\ No newline at end of file
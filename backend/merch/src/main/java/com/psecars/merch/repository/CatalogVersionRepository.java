@@ -0,0 +1,18 @@
+package com.psecars.merch.repository;
+
+import com.psecars.merch.entity.CatalogVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.util.Collection;
+
+@Repository
+public interface CatalogVersionRepository extends JpaRepository<CatalogVersion, String> {
+    
+    // Row lock of the UPDATE serializes increments across instances
+    @Modifying
+    @Query("UPDATE CatalogVersion v SET v.version = v.version + 1 WHERE v.name IN :names")
+    int increment(@Param("names") Collection<String> names);
+}
@@ -4,6 +4,7 @@ import com.psecars.merch.entity.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -15,4 +16,10 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
     Optional<Category> findByIdWithProducts(Long id);
     
     boolean existsByName(String name);
+    
+    boolean existsByParentId(Long parentId);
+    
+    // Category read model (CategoryReadModel): flat rows, the tree is built in memory
+    @Query("SELECT c.id, c.name, c.description, c.parentId FROM Category c")
+    List<Object[]> findAllRows();
 }
\ No newline at end of file
@@ -9,6 +9,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -33,16 +35,15 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     Page<Product> findByKeyword(@Param("keyword") String keyword, Pageable pageable);
     
     // NEW: Price filtering methods
-    @Query("SELECT p FROM Product p WHERE " +
-           "(:minPrice IS NULL OR p.price >= :minPrice) AND " +
-           "(:maxPrice IS NULL OR p.price <= :maxPrice)")
+    // FIXED: Plain range predicates so idx_products_price / idx_products_category_price apply;
+    // both bounds are required, ProductService fills in the open end
+    @Query("SELECT p FROM Product p WHERE p.price >= :minPrice AND p.price <= :maxPrice")
     Page<Product> findByPriceRange(@Param("minPrice") BigDecimal minPrice, 
                                    @Param("maxPrice") BigDecimal maxPrice, 
                                    Pageable pageable);
     
     @Query("SELECT p FROM Product p WHERE p.category.id = :categoryId AND " +
-           "(:minPrice IS NULL OR p.price >= :minPrice) AND " +
-           "(:maxPrice IS NULL OR p.price <= :maxPrice)")
+           "p.price >= :minPrice AND p.price <= :maxPrice")
     Page<Product> findByCategoryAndPriceRange(@Param("categoryId") Long categoryId,
                                               @Param("minPrice") BigDecimal minPrice, 
                                               @Param("maxPrice") BigDecimal maxPrice, 
@@ -51,8 +52,7 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     @Query("SELECT p FROM Product p WHERE " +
            "(LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%')) " +
            "OR LOWER(p.description) LIKE LOWER(CONCAT('%', :keyword, '%'))) AND " +
-           "(:minPrice IS NULL OR p.price >= :minPrice) AND " +
-           "(:maxPrice IS NULL OR p.price <= :maxPrice)")
+           "p.price >= :minPrice AND p.price <= :maxPrice")
     Page<Product> findByKeywordAndPriceRange(@Param("keyword") String keyword,
                                              @Param("minPrice") BigDecimal minPrice, 
                                              @Param("maxPrice") BigDecimal maxPrice, 
@@ -66,4 +66,48 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     
     @Query("SELECT COUNT(p) FROM Product p WHERE p.category.id = :categoryId")
     Long countByCategory(@Param("categoryId") Long categoryId);
+    
+    // Price index (PriceIndexService): projections of id, category and price, and page loads by id
+    @Query("SELECT p.id, p.category.id, p.price FROM Product p")
+    List<Object[]> findAllPriceEntries();
+    
+    @Query("SELECT p.category.id, p.price FROM Product p WHERE p.id = :id")
+    List<Object[]> findPriceEntryById(@Param("id") Long id);
+    
+    // Category read model (CategoryReadModel): what every product counts towards, and per-category totals
+    @Query("SELECT p.id, p.category.id, p.stockQuantity FROM Product p")
+    List<Object[]> findAllCategoryStockEntries();
+    
+    @Query("SELECT p.category.id, p.stockQuantity FROM Product p WHERE p.id = :id")
+    List<Object[]> findCategoryStockEntryById(@Param("id") Long id);
+    
+    @Query("SELECT p.category.id, COUNT(p), SUM(CASE WHEN p.stockQuantity > 0 THEN 1 ELSE 0 END) " +
+           "FROM Product p GROUP BY p.category.id")
+    List<Object[]> countProductsPerCategory();
+    
+    List<Product> findByIdIn(Collection<Long> ids, Pageable pageable);
+    
+    @Query("SELECT p FROM Product p WHERE p.id IN :ids AND " +
+           "(LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%')) " +
+           "OR LOWER(p.description) LIKE LOWER(CONCAT('%', :keyword, '%')))")
+    Page<Product> findByIdInAndKeyword(@Param("ids") Collection<Long> ids, @Param("keyword") String keyword,
+                                       Pageable pageable);
+    
+    // Catalog snapshot (CatalogSnapshotService): products with category and images in one query
+    @Query("SELECT DISTINCT p FROM Product p JOIN FETCH p.category LEFT JOIN FETCH p.imageUrls")
+    List<Product> findAllWithCategoryAndImages();
+    
+    @Query("SELECT p FROM Product p JOIN FETCH p.category LEFT JOIN FETCH p.imageUrls WHERE p.id = :id")
+    Optional<Product> findByIdWithCategoryAndImages(@Param("id") Long id);
+    
+    // Multi-get (ProductService.getProductsByIds / getStockLevels): one IN query per chunk of ids
+    @Query("SELECT DISTINCT p FROM Product p JOIN FETCH p.category LEFT JOIN FETCH p.imageUrls WHERE p.id IN :ids")
+    List<Product> findAllWithCategoryAndImagesByIdIn(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT p.id, p.stockQuantity FROM Product p WHERE p.id IN :ids")
+    List<Object[]> findStockByIdIn(@Param("ids") Collection<Long> ids);
+    
+    // Validator lookup for conditional GETs - avoids materializing the entity and its image collection
+    @Query("SELECT p.updatedAt FROM Product p WHERE p.id = :id")
+    Optional<LocalDateTime> findUpdatedAtById(@Param("id") Long id);
 }
\ No newline at end of file
@@ -0,0 +1,133 @@
+package com.psecars.merch.repository;
+
+import com.psecars.merch.dto.CategoryResponse;
+import com.psecars.merch.entity.Category;
+import com.psecars.merch.entity.Product;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Non-blocking, read-only access to the catalog tables through R2DBC.
+ * Rows are mapped onto detached Product/Category instances so the existing DTO constructors can be reused;
+ * nothing returned from here is managed by Hibernate.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "app.reactive", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class ReactiveCatalogRepository {
+
+    private static final String PRODUCT_COLUMNS =
+            "SELECT p.id, p.name, p.description, p.price, p.stock_quantity, p.created_at, p.updated_at, " +
+            "c.id AS category_id, c.name AS category_name " +
+            "FROM products p LEFT JOIN categories c ON c.id = p.category_id ";
+
+    // Whitelist of sortable properties -> columns, sortBy comes straight from the query string
+    private static final Map<String, String> SORT_COLUMNS = Map.of(
+            "id", "p.id",
+            "name", "p.name",
+            "price", "p.price",
+            "stockQuantity", "p.stock_quantity",
+            "createdAt", "p.created_at",
+            "updatedAt", "p.updated_at");
+
+    private final DatabaseClient databaseClient;
+
+    @Autowired
+    public ReactiveCatalogRepository(@Qualifier("reactiveCatalogDatabaseClient") DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Flux<Product> findPage(boolean availableOnly, String sortBy, boolean descending, int limit, long offset) {
+        String sql = PRODUCT_COLUMNS +
+                (availableOnly ? "WHERE p.stock_quantity > 0 " : "") +
+                "ORDER BY " + sortColumn(sortBy) + (descending ? " DESC" : " ASC") + ", p.id " +
+                "LIMIT :limit OFFSET :offset";
+
+        return databaseClient.sql(sql)
+                .bind("limit", limit)
+                .bind("offset", offset)
+                .map(this::mapProduct)
+                .all();
+    }
+
+    public Mono<Long> count(boolean availableOnly) {
+        String sql = "SELECT COUNT(*) AS total FROM products p" +
+                (availableOnly ? " WHERE p.stock_quantity > 0" : "");
+
+        return databaseClient.sql(sql)
+                .map(row -> row.get("total", Long.class))
+                .one();
+    }
+
+    public Mono<Product> findById(Long id) {
+        return databaseClient.sql(PRODUCT_COLUMNS + "WHERE p.id = :id")
+                .bind("id", id)
+                .map(this::mapProduct)
+                .one();
+    }
+
+    /**
+     * Streams the whole catalog in id order. The fetch size lets drivers that support cursors
+     * (PostgreSQL) pull rows in chunks as the subscriber requests them instead of all at once.
+     */
+    public Flux<Product> streamAll(int fetchSize) {
+        return databaseClient.sql(PRODUCT_COLUMNS + "ORDER BY p.id")
+                .filter(statement -> statement.fetchSize(fetchSize))
+                .map(this::mapProduct)
+                .all();
+    }
+
+    public Flux<Map.Entry<Long, String>> findImageUrls(Collection<Long> productIds) {
+        return databaseClient.sql("SELECT product_id, image_url FROM product_images WHERE product_id IN (:ids)")
+                .bind("ids", productIds)
+                .map(row -> Map.entry(row.get("product_id", Long.class), row.get("image_url", String.class)))
+                .all();
+    }
+
+    public Flux<CategoryResponse> findCategoriesWithProductCount() {
+        return databaseClient.sql(
+                        "SELECT c.id, c.name, c.description, COUNT(p.id) AS product_count " +
+                        "FROM categories c LEFT JOIN products p ON p.category_id = c.id " +
+                        "GROUP BY c.id, c.name, c.description ORDER BY c.name")
+                .map(row -> {
+                    CategoryResponse category = new CategoryResponse();
+                    category.setId(row.get("id", Long.class));
+                    category.setName(row.get("name", String.class));
+                    category.setDescription(row.get("description", String.class));
+                    category.setProductCount(row.get("product_count", Long.class).intValue());
+                    return category;
+                })
+                .all();
+    }
+
+    private String sortColumn(String sortBy) {
+        return SORT_COLUMNS.getOrDefault(sortBy, "p.name");
+    }
+
+    private Product mapProduct(Readable row) {
+        Category category = new Category();
+        category.setId(row.get("category_id", Long.class));
+        category.setName(row.get("category_name", String.class));
+
+        Product product = new Product();
+        product.setId(row.get("id", Long.class));
+        product.setName(row.get("name", String.class));
+        product.setDescription(row.get("description", String.class));
+        product.setPrice(row.get("price", BigDecimal.class));
+        product.setStockQuantity(row.get("stock_quantity", Integer.class));
+        product.setCreatedAt(row.get("created_at", LocalDateTime.class));
+        product.setUpdatedAt(row.get("updated_at", LocalDateTime.class));
+        product.setCategory(category);
+        return product;
+    }
+}
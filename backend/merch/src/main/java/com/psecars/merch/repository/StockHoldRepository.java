@@ -0,0 +1,25 @@
+package com.psecars.merch.repository;
+
+import com.psecars.merch.entity.StockHold;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface StockHoldRepository extends JpaRepository<StockHold, Long> {
+
+    List<StockHold> findByInstanceIdAndExpiresAtAfter(String instanceId, LocalDateTime now);
+
+    // Units held per product by the other instances; rows of an instance that went away count until they expire
+    @Query("SELECT h.productId, SUM(h.quantity) FROM StockHold h " +
+           "WHERE h.instanceId <> :instanceId AND h.expiresAt > :now GROUP BY h.productId")
+    List<Object[]> sumHeldByOtherInstances(@Param("instanceId") String instanceId, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM StockHold h WHERE h.instanceId = :instanceId OR h.expiresAt < :now")
+    int deleteOwnAndExpired(@Param("instanceId") String instanceId, @Param("now") LocalDateTime now);
+}
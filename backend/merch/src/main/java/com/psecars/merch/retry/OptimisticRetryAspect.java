@@ -0,0 +1,155 @@
+package com.psecars.merch.retry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.hibernate.exception.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry engine for @RetryOnConflict methods.
+ *
+ * Runs outside the @Transactional interceptor, so every attempt gets a fresh transaction and
+ * persistence context - version conflicts detected at flush/commit time are retried as well.
+ * Backoff is exponential with full jitter (random between 0 and the capped exponential delay)
+ * so colliding writers spread out instead of colliding again in lockstep.
+ * Integrity violations are only retried for the annotation's uniqueConstraints, matched against the
+ * constraint name Hibernate extracted (H2 reports the name of the constraint's index, which contains it).
+ *
+ * Metrics (tag "operation" = Class.method):
+ *   merch.optimistic.calls               - outermost invocations
+ *   merch.optimistic.conflicts           - attempts that failed with a conflict
+ *   merch.optimistic.retries.exhausted   - invocations that gave up and surfaced the conflict
+ *   merch.optimistic.attempts            - attempts needed per invocation
+ * conflicts / calls is the conflict rate.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class OptimisticRetryAspect {
+
+    private static final Logger logger = LoggerFactory.getLogger(OptimisticRetryAspect.class);
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.retry.max-attempts:4}")
+    private int defaultMaxAttempts;
+
+    @Value("${app.retry.initial-backoff-ms:10}")
+    private long initialBackoffMs;
+
+    @Value("${app.retry.max-backoff-ms:200}")
+    private long maxBackoffMs;
+
+    @Autowired
+    public OptimisticRetryAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("@annotation(com.psecars.merch.retry.RetryOnConflict)")
+    public Object retry(ProceedingJoinPoint joinPoint) throws Throwable {
+        // Inside an existing transaction a retry would reuse the stale persistence context;
+        // the outermost annotated call owns the retry.
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        RetryOnConflict retryOnConflict = AnnotationUtils.findAnnotation(method, RetryOnConflict.class);
+        String operation = joinPoint.getSignature().getDeclaringType().getSimpleName()
+                + "." + joinPoint.getSignature().getName();
+        int maxAttempts = retryOnConflict.maxAttempts() > 0 ? retryOnConflict.maxAttempts() : defaultMaxAttempts;
+
+        counter("merch.optimistic.calls", operation).increment();
+
+        int attempt = 1;
+        while (true) {
+            try {
+                Object result = joinPoint.proceed();
+                attempts(operation).record(attempt);
+                return result;
+            } catch (Throwable e) {
+                if (!isConflict(e, retryOnConflict)) {
+                    throw e;
+                }
+                counter("merch.optimistic.conflicts", operation).increment();
+
+                if (attempt >= maxAttempts) {
+                    counter("merch.optimistic.retries.exhausted", operation).increment();
+                    attempts(operation).record(attempt);
+                    logger.warn("Giving up on {} after {} conflicting attempts: {}", operation, attempt, e.getMessage());
+                    throw e;
+                }
+
+                long backoff = backoff(attempt);
+                logger.debug("Conflict in {} (attempt {}/{}), retrying in {} ms", operation, attempt, maxAttempts, backoff);
+                sleep(backoff);
+                attempt++;
+            }
+        }
+    }
+
+    private long backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20));
+        return ceiling > 0 ? ThreadLocalRandom.current().nextLong(ceiling + 1) : 0;
+    }
+
+    static boolean isConflict(Throwable e, RetryOnConflict retryOnConflict) {
+        for (Class<? extends Throwable> type : retryOnConflict.retryOn()) {
+            if (type.isInstance(e)) {
+                return true;
+            }
+        }
+        // Usually translated to a DataIntegrityViolationException, raw when flushed outside a repository
+        return violatesAny(e, retryOnConflict.uniqueConstraints());
+    }
+
+    private static boolean violatesAny(Throwable e, String[] constraints) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                String violated = violation.getConstraintName();
+                if (violated == null) {
+                    return false;
+                }
+                for (String constraint : constraints) {
+                    if (violated.toLowerCase(Locale.ROOT).contains(constraint.toLowerCase(Locale.ROOT))) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static void sleep(long millis) throws InterruptedException {
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    private Counter counter(String name, String operation) {
+        return Counter.builder(name).tag("operation", operation).register(meterRegistry);
+    }
+
+    private DistributionSummary attempts(String operation) {
+        return DistributionSummary.builder("merch.optimistic.attempts").tag("operation", operation)
+                .register(meterRegistry);
+    }
+}
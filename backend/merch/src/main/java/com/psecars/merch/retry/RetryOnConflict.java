@@ -0,0 +1,32 @@
+package com.psecars.merch.retry;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Re-runs a service method (including its transaction) when a concurrent writer won the race.
+ * Handled by OptimisticRetryAspect; only the outermost annotated call retries, nested calls join
+ * the caller's transaction and let the conflict propagate.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RetryOnConflict {
+
+    /** Total attempts including the first one; 0 uses app.retry.max-attempts. */
+    int maxAttempts() default 0;
+
+    /** Exceptions that count as a conflict and trigger another attempt. */
+    Class<? extends Throwable>[] retryOn() default OptimisticLockingFailureException.class;
+
+    /**
+     * Unique constraints whose violation counts as a conflict as well - a concurrent insert of the same
+     * key, which the next attempt finds. Any other DataIntegrityViolationException is not retried.
+     */
+    String[] uniqueConstraints() default {};
+}
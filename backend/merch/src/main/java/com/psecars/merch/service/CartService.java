@@ -6,6 +6,8 @@ import com.psecars.merch.entity.Product;
 import com.psecars.merch.repository.CartRepository;
 import com.psecars.merch.repository.CartItemRepository;
 import com.psecars.merch.repository.ProductRepository;
+import com.psecars.merch.exception.ResourceNotFoundException;
+import com.psecars.merch.retry.RetryOnConflict;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -23,14 +25,17 @@ public class CartService {
     private final CartRepository cartRepository;
     private final CartItemRepository cartItemRepository;
     private final ProductRepository productRepository;
+    private final StockHoldService stockHoldService;
     
     @Autowired
     public CartService(CartRepository cartRepository, 
                       CartItemRepository cartItemRepository,
-                      ProductRepository productRepository) {
+                      ProductRepository productRepository,
+                      StockHoldService stockHoldService) {
         this.cartRepository = cartRepository;
         this.cartItemRepository = cartItemRepository;
         this.productRepository = productRepository;
+        this.stockHoldService = stockHoldService;
     }
     
     public Cart getOrCreateCart(String sessionId) {
@@ -55,6 +60,8 @@ public class CartService {
     }
     
     // REMOVED @CacheEvict - no longer caching entities
+    // ADDED: Two tabs adding the first item race on the cart/item insert as well, retry those too
+    @RetryOnConflict(uniqueConstraints = {Cart.SESSION_ID_CONSTRAINT, CartItem.CART_PRODUCT_CONSTRAINT})
     public Cart addItemToCart(String sessionId, Long productId, Integer quantity) {
         if (quantity <= 0) {
             throw new IllegalArgumentException("Quantity must be greater than 0");
@@ -80,9 +87,12 @@ public class CartService {
                 throw new RuntimeException("Insufficient stock for product: " + product.getName());
             }
             
+            // ADDED: Reserve the units for this cart - fails if other carts already hold them
+            stockHoldService.reserve(cart.getSessionId(), product, newQuantity);
             cartItem.setQuantity(newQuantity);
             cartItemRepository.save(cartItem);
         } else {
+            stockHoldService.reserve(cart.getSessionId(), product, quantity);
             CartItem cartItem = new CartItem(cart, product, quantity);
             cart.addItem(cartItem);
             cartItemRepository.save(cartItem);
@@ -93,6 +103,7 @@ public class CartService {
     }
     
     // REMOVED @CacheEvict - no longer caching entities
+    @RetryOnConflict
     public Cart updateItemQuantity(String sessionId, Long productId, Integer quantity) {
         if (quantity <= 0) {
             return removeItemFromCart(sessionId, productId);
@@ -109,6 +120,7 @@ public class CartService {
             throw new RuntimeException("Insufficient stock for product: " + product.getName());
         }
         
+        stockHoldService.reserve(sessionId, product, quantity);
         cartItem.setQuantity(quantity);
         cartItemRepository.save(cartItem);
         
@@ -117,11 +129,13 @@ public class CartService {
     }
     
     // REMOVED @CacheEvict - no longer caching entities
+    @RetryOnConflict
     public Cart removeItemFromCart(String sessionId, Long productId) {
         Cart cart = cartRepository.findBySessionIdWithItems(sessionId)
-                .orElseThrow(() -> new RuntimeException("Cart not found for session: " + sessionId));
+                .orElseThrow(() -> new ResourceNotFoundException("Cart not found for session: " + sessionId));
         
         cartItemRepository.deleteBySessionIdAndProductId(sessionId, productId);
+        stockHoldService.release(sessionId, productId);
         
         cart = cartRepository.findBySessionIdWithItems(sessionId).orElse(cart);
         cart.calculateTotalAmount();
@@ -132,6 +146,7 @@ public class CartService {
     public void clearCart(String sessionId) {
         cartItemRepository.deleteByCartSessionId(sessionId);
         cartRepository.deleteBySessionId(sessionId);
+        stockHoldService.releaseAll(sessionId);
     }
     
     @Transactional(readOnly = true)
@@ -150,6 +165,7 @@ public class CartService {
     }
     
     // REMOVED @CacheEvict - no longer caching entities
+    @RetryOnConflict
     public Cart updateCustomerInfo(String sessionId, String customerEmail, String customerName) {
         Cart cart = getOrCreateCart(sessionId);
         cart.setCustomerEmail(customerEmail);
@@ -157,6 +173,7 @@ public class CartService {
         return cartRepository.save(cart);
     }
     
+    @RetryOnConflict
     public Cart updateCustomerInfo(String sessionId, String customerEmail, String customerName, String customerAddress) {
         Cart cart = getOrCreateCart(sessionId);
         cart.setCustomerEmail(customerEmail);
@@ -194,6 +211,7 @@ public class CartService {
         
         for (Cart cart : expiredCarts) {
             cartItemRepository.deleteByCartId(cart.getId());
+            stockHoldService.releaseAll(cart.getSessionId());
         }
         
         cartRepository.deleteByExpiresAtBefore(now);
@@ -211,6 +229,7 @@ public class CartService {
         for (Cart cart : inactiveCarts) {
             cartItemRepository.deleteByCartId(cart.getId());
             cartRepository.delete(cart);
+            stockHoldService.releaseAll(cart.getSessionId());
         }
         
         return inactiveCarts.size();
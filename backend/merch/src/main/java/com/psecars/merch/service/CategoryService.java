@@ -1,10 +1,14 @@
 package com.psecars.merch.service;
 
+import com.psecars.merch.catalog.CategoryReadModel;
+import com.psecars.merch.dto.CategoryResponse;
 import com.psecars.merch.entity.Category;
 import com.psecars.merch.repository.CategoryRepository;
+import com.psecars.merch.repository.ProductRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
 import java.util.Optional;
@@ -14,10 +18,32 @@ import java.util.Optional;
 public class CategoryService {
     
     private final CategoryRepository categoryRepository;
+    private final ProductRepository productRepository;
+    private final CategoryReadModel categoryReadModel;
     
     @Autowired
-    public CategoryService(CategoryRepository categoryRepository) {
+    public CategoryService(CategoryRepository categoryRepository, ProductRepository productRepository,
+                           CategoryReadModel categoryReadModel) {
         this.categoryRepository = categoryRepository;
+        this.productRepository = productRepository;
+        this.categoryReadModel = categoryReadModel;
+    }
+    
+    // ADDED: Category list and details with paths and counts, served from CategoryReadModel
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<CategoryResponse> getCategoryResponses() {
+        return categoryReadModel.findAll();
+    }
+    
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Optional<CategoryResponse> getCategoryResponse(Long id) {
+        return categoryReadModel.findById(id);
+    }
+    
+    /** Response for a category that was just written; the read model is updated once its transaction committed. */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public CategoryResponse toResponse(Category category) {
+        return categoryReadModel.findById(category.getId()).orElseGet(() -> new CategoryResponse(category));
     }
     
     // REMOVED @Cacheable - caching entities causes circular reference issues
@@ -42,6 +68,7 @@ public class CategoryService {
         if (categoryRepository.existsByName(category.getName())) {
             throw new RuntimeException("Category with name '" + category.getName() + "' already exists");
         }
+        validateParent(null, category.getParentId());
         return categoryRepository.save(category);
     }
     
@@ -52,6 +79,11 @@ public class CategoryService {
         
         category.setName(categoryDetails.getName());
         category.setDescription(categoryDetails.getDescription());
+        // ADDED: A request without parentId keeps the current parent; an explicit null moves it to the root
+        if (categoryDetails.isParentIdPresent()) {
+            validateParent(id, categoryDetails.getParentId());
+            category.setParentId(categoryDetails.getParentId());
+        }
         
         return categoryRepository.save(category);
     }
@@ -61,11 +93,31 @@ public class CategoryService {
         Category category = categoryRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Category not found with id: " + id));
         
-        // Check if category has products
-        if (category.getProducts() != null && !category.getProducts().isEmpty()) {
+        // FIXED: Count/exists queries in the delete's transaction instead of loading the products collection;
+        // the read model's counters lag behind writes made through other instances. A product added
+        // concurrently still fails the delete on the products.category_id foreign key.
+        Long products = productRepository.countByCategory(id);
+        if (products != null && products > 0) {
             throw new RuntimeException("Cannot delete category with existing products");
         }
+        if (categoryRepository.existsByParentId(id)) {
+            throw new RuntimeException("Cannot delete category with subcategories");
+        }
         
-        categoryRepository.deleteById(id);
+        categoryRepository.delete(category);
+    }
+    
+    // ADDED: The parent must exist and must not be the category itself or one of its descendants
+    private void validateParent(Long id, Long parentId) {
+        Long ancestorId = parentId;
+        while (ancestorId != null) {
+            if (ancestorId.equals(id)) {
+                throw new RuntimeException("Category cannot be moved below itself");
+            }
+            Long missingId = ancestorId;
+            ancestorId = categoryRepository.findById(ancestorId)
+                    .orElseThrow(() -> new RuntimeException("Parent category not found with id: " + missingId))
+                    .getParentId();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,311 @@
+package com.psecars.merch.service;
+
+import com.psecars.merch.entity.ArchivedOrder;
+import com.psecars.merch.entity.ArchivedOrderItem;
+import com.psecars.merch.entity.Order;
+import com.psecars.merch.entity.OrderItem;
+import com.psecars.merch.entity.OrderStatus;
+import com.psecars.merch.entity.Product;
+import com.psecars.merch.repository.ArchivedOrderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the orders table small: DELIVERED/CANCELLED orders older than app.archive.min-age-days
+ * are moved (in batches, each batch one transaction) to orders_archive / order_items_archive.
+ *
+ * In PostgreSQL both archive tables are range-partitioned by the order's created_at, one partition
+ * per month, created here on demand. Archive reads always carry a created_at range (except the
+ * lookup by id), so only the matching partitions are scanned.
+ *
+ * OrderService falls back to the archive for lookups by id, date-range queries and status counts of
+ * finished orders, and appends the archived orders of the last app.archive.listing-window-days to the
+ * paged order listings.
+ *
+ * On PostgreSQL a run holds a session advisory lock, so with several instances only one of them moves
+ * rows; the others skip the run. The archived counts are cached for app.archive.count-ttl-ms, which
+ * bounds how long an instance reports counts from before another instance's run.
+ */
+@Service
+public class OrderArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderArchiveService.class);
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final Set<OrderStatus> ARCHIVED_STATUSES = EnumSet.of(OrderStatus.DELIVERED, OrderStatus.CANCELLED);
+    // pg_try_advisory_lock key of the archival run, shared by all instances
+    private static final long LOCK_KEY = 0x6d657263682d6172L;
+
+    private final ArchivedOrderRepository archivedOrderRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile ArchivedCounts archivedCounts;
+    private volatile String databaseProduct;
+    private volatile Boolean partitioned;
+
+    @Value("${app.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.archive.min-age-days:180}")
+    private int minAgeDays;
+
+    @Value("${app.archive.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.archive.listing-window-days:730}")
+    private int listingWindowDays;
+
+    @Value("${app.archive.count-ttl-ms:300000}")
+    private long countTtlMs;
+
+    @Autowired
+    public OrderArchiveService(ArchivedOrderRepository archivedOrderRepository,
+                               TransactionTemplate transactionTemplate,
+                               JdbcTemplate jdbcTemplate) {
+        this.archivedOrderRepository = archivedOrderRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Scheduled(cron = "${app.archive.cron:0 30 3 * * *}")
+    public void archiveFinishedOrders() {
+        if (enabled) {
+            archiveOrdersOlderThan(LocalDateTime.now().minusDays(minAgeDays));
+        }
+    }
+
+    /** Only finished orders are archived; listings and counts of other statuses never read the archive. */
+    public static boolean isArchived(OrderStatus status) {
+        return ARCHIVED_STATUSES.contains(status);
+    }
+
+    /** Archives the finished orders created before cutoff; 0 when another instance is archiving. */
+    public int archiveOrdersOlderThan(LocalDateTime cutoff) {
+        if (!isPostgres()) {
+            // H2 (dev/test) has no advisory locks and a single instance
+            return archiveBatches(cutoff);
+        }
+        Integer archived = jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+            if (!advisoryLock(connection, "pg_try_advisory_lock")) {
+                logger.info("Order archiving skipped, another instance holds the archive lock");
+                return 0;
+            }
+            try {
+                return archiveBatches(cutoff);
+            } finally {
+                advisoryLock(connection, "pg_advisory_unlock");
+            }
+        });
+        return archived != null ? archived : 0;
+    }
+
+    private int archiveBatches(LocalDateTime cutoff) {
+        int archived = 0;
+        while (true) {
+            Integer moved = transactionTemplate.execute(status -> archiveBatch(cutoff));
+            archived += moved != null ? moved : 0;
+            if (moved == null || moved < batchSize) {
+                break;
+            }
+        }
+        if (archived > 0) {
+            archivedCounts = null;
+            logger.info("Archived {} orders created before {}", archived, cutoff);
+        }
+        return archived;
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<Order> findArchivedOrder(Long id) {
+        return archivedOrderRepository.findById(id)
+                .map(order -> toOrder(order, archivedOrderRepository.findItemsByOrderIds(List.of(id))));
+    }
+
+    @Transactional(readOnly = true)
+    public List<Order> findArchivedOrdersBetweenDates(LocalDateTime startDate, LocalDateTime endDate) {
+        List<ArchivedOrder> orders = archivedOrderRepository.findOrdersBetweenDates(startDate, endDate);
+        if (orders.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, List<ArchivedOrderItem>> itemsByOrder = archivedOrderRepository
+                .findItemsByOrderIds(orders.stream().map(ArchivedOrder::getId).toList(), startDate, endDate)
+                .stream()
+                .collect(Collectors.groupingBy(ArchivedOrderItem::getOrderId));
+        return orders.stream()
+                .map(order -> toOrder(order, itemsByOrder.getOrDefault(order.getId(), List.of())))
+                .toList();
+    }
+
+    /**
+     * A page of the archived orders created in the listing window, all of them or only those with the given
+     * status or customer (at most one of both), with their items. The page is sorted by Order properties,
+     * which the archive shares.
+     */
+    @Transactional(readOnly = true)
+    public Page<Order> findArchivedOrders(OrderStatus status, String customerEmail, Pageable pageable) {
+        LocalDateTime since = listingSince();
+        Page<ArchivedOrder> orders = status != null
+                ? archivedOrderRepository.findByStatusAndCreatedAtGreaterThanEqual(status, since, pageable)
+                : customerEmail != null
+                ? archivedOrderRepository.findByCustomerEmailAndCreatedAtGreaterThanEqual(customerEmail, since, pageable)
+                : archivedOrderRepository.findByCreatedAtGreaterThanEqual(since, pageable);
+        if (!orders.hasContent()) {
+            return orders.map(order -> toOrder(order, List.of()));
+        }
+        // The page's creation times bound the item lookup to the partitions the page came from
+        LocalDateTime from = orders.stream().map(ArchivedOrder::getCreatedAt).min(Comparator.naturalOrder()).get();
+        LocalDateTime to = orders.stream().map(ArchivedOrder::getCreatedAt).max(Comparator.naturalOrder()).get();
+        Map<Long, List<ArchivedOrderItem>> itemsByOrder = archivedOrderRepository
+                .findItemsByOrderIds(orders.map(ArchivedOrder::getId).getContent(), from, to)
+                .stream()
+                .collect(Collectors.groupingBy(ArchivedOrderItem::getOrderId));
+        return orders.map(order -> toOrder(order, itemsByOrder.getOrDefault(order.getId(), List.of())));
+    }
+
+    /** Number of archived orders findArchivedOrders pages through, for the totals of live-only pages. */
+    @Transactional(readOnly = true)
+    public long countArchivedOrders(OrderStatus status, String customerEmail) {
+        LocalDateTime since = listingSince();
+        return status != null ? archivedOrderRepository.countByStatusAndCreatedAtGreaterThanEqual(status, since)
+                : customerEmail != null
+                ? archivedOrderRepository.countByCustomerEmailAndCreatedAtGreaterThanEqual(customerEmail, since)
+                : archivedOrderRepository.countByCreatedAtGreaterThanEqual(since);
+    }
+
+    /**
+     * The archive only grows during archival runs, so its counts are cached - dropped after a local run
+     * and expired after app.archive.count-ttl-ms for runs on other instances.
+     */
+    @Transactional(readOnly = true)
+    public long countArchivedByStatus(OrderStatus status) {
+        if (!isArchived(status)) {
+            return 0;
+        }
+        ArchivedCounts counts = archivedCounts;
+        if (counts == null || System.currentTimeMillis() - counts.loadedAt() > countTtlMs) {
+            Map<OrderStatus, Long> byStatus = new EnumMap<>(OrderStatus.class);
+            for (Object[] row : archivedOrderRepository.countByStatus()) {
+                byStatus.put((OrderStatus) row[0], ((Number) row[1]).longValue());
+            }
+            counts = new ArchivedCounts(byStatus, System.currentTimeMillis());
+            archivedCounts = counts;
+        }
+        return counts.byStatus().getOrDefault(status, 0L);
+    }
+
+    private LocalDateTime listingSince() {
+        return LocalDate.now().minusDays(listingWindowDays).atStartOfDay();
+    }
+
+    private int archiveBatch(LocalDateTime cutoff) {
+        List<Long> orderIds = archivedOrderRepository.findArchivableOrderIds(cutoff, PageRequest.of(0, batchSize));
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+        ensurePartitions(orderIds);
+
+        archivedOrderRepository.copyOrders(orderIds, LocalDateTime.now());
+        archivedOrderRepository.copyOrderItems(orderIds);
+        archivedOrderRepository.deleteOrderItems(orderIds);
+        archivedOrderRepository.deleteOrders(orderIds);
+        return orderIds.size();
+    }
+
+    private void ensurePartitions(List<Long> orderIds) {
+        if (!isPartitioned()) {
+            return;
+        }
+        Object[] range = archivedOrderRepository.findCreatedAtRange(orderIds).get(0);
+        YearMonth month = YearMonth.from((LocalDateTime) range[0]);
+        YearMonth last = YearMonth.from((LocalDateTime) range[1]);
+        for (; !month.isAfter(last); month = month.plusMonths(1)) {
+            String from = month.atDay(1).toString();
+            String to = month.plusMonths(1).atDay(1).toString();
+            String suffix = month.format(PARTITION_SUFFIX);
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS orders_archive_p" + suffix
+                    + " PARTITION OF orders_archive FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS order_items_archive_p" + suffix
+                    + " PARTITION OF order_items_archive FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+        }
+    }
+
+    private static boolean advisoryLock(Connection connection, String function) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT " + function + "(?)")) {
+            statement.setLong(1, LOCK_KEY);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() && result.getBoolean(1);
+            }
+        }
+    }
+
+    private boolean isPostgres() {
+        String database = databaseProduct;
+        if (database == null) {
+            database = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+            databaseProduct = database;
+        }
+        return "PostgreSQL".equals(database);
+    }
+
+    // Partitions are a PostgreSQL feature; on H2 (dev/test) the archive tables are plain tables
+    private boolean isPartitioned() {
+        Boolean result = partitioned;
+        if (result == null) {
+            result = isPostgres() && Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table pt JOIN pg_class c ON c.oid = pt.partrelid "
+                            + "WHERE c.relname = 'orders_archive')", Boolean.class));
+            partitioned = result;
+        }
+        return result;
+    }
+
+    private record ArchivedCounts(Map<OrderStatus, Long> byStatus, long loadedAt) {
+    }
+
+    /** Detached Order for the existing DTOs; never persisted. */
+    private static Order toOrder(ArchivedOrder archived, List<ArchivedOrderItem> items) {
+        Order order = new Order(archived.getCustomerEmail(), archived.getCustomerName(), archived.getCustomerAddress());
+        order.setId(archived.getId());
+        order.setTotalAmount(archived.getTotalAmount());
+        order.setStatus(archived.getStatus());
+        order.setCreatedAt(archived.getCreatedAt());
+        order.setUpdatedAt(archived.getUpdatedAt());
+        for (ArchivedOrderItem item : items) {
+            Product product = new Product();
+            product.setId(item.getProductId());
+            product.setName(item.getProductName());
+            OrderItem orderItem = new OrderItem(order, product, item.getQuantity(), item.getPrice());
+            orderItem.setId(item.getId());
+            order.getOrderItems().add(orderItem);
+        }
+        return order;
+    }
+}
@@ -10,15 +10,23 @@ import com.psecars.merch.repository.OrderRepository;
 import com.psecars.merch.repository.OrderItemRepository;
 import com.psecars.merch.dto.CreateOrderRequest;
 import com.psecars.merch.dto.OrderItemRequest;
+import com.psecars.merch.retry.RetryOnConflict;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
 
 @Service
 @Transactional
@@ -28,38 +36,62 @@ public class OrderService {
     private final OrderItemRepository orderItemRepository;
     private final ProductService productService;
     private final CartService cartService;
+    private final StockHoldService stockHoldService;
+    private final OutboxService outboxService;
+    private final OrderArchiveService orderArchiveService;
     
     @Autowired
     public OrderService(OrderRepository orderRepository, 
                        OrderItemRepository orderItemRepository,
                        ProductService productService,
-                       CartService cartService) {
+                       CartService cartService,
+                       StockHoldService stockHoldService,
+                       OutboxService outboxService,
+                       OrderArchiveService orderArchiveService) {
         this.orderRepository = orderRepository;
         this.orderItemRepository = orderItemRepository;
         this.productService = productService;
         this.cartService = cartService;
+        this.stockHoldService = stockHoldService;
+        this.outboxService = outboxService;
+        this.orderArchiveService = orderArchiveService;
     }
     
+    // ADDED: Listings continue with the archived orders after the live ones, see withArchive
     @Transactional(readOnly = true)
     public Page<Order> getAllOrders(Pageable pageable) {
-        return orderRepository.findAll(pageable);
+        return withArchive(pageable, orderRepository::findAll,
+                archivePage -> orderArchiveService.findArchivedOrders(null, null, archivePage),
+                () -> orderArchiveService.countArchivedOrders(null, null));
     }
     
     @Transactional(readOnly = true)
     public Page<Order> getOrdersByStatus(OrderStatus status, Pageable pageable) {
-        return orderRepository.findByStatusOrderByCreatedAtDesc(status, pageable);
+        if (!OrderArchiveService.isArchived(status)) {
+            return orderRepository.findByStatusOrderByCreatedAtDesc(status, pageable);
+        }
+        return withArchive(byCreatedAtDesc(pageable),
+                livePage -> orderRepository.findByStatusOrderByCreatedAtDesc(status, livePage),
+                archivePage -> orderArchiveService.findArchivedOrders(status, null, archivePage),
+                () -> orderArchiveService.countArchivedOrders(status, null));
     }
     
     @Transactional(readOnly = true)
     public Page<Order> getOrdersByCustomer(String customerEmail, Pageable pageable) {
-        return orderRepository.findByCustomerEmailOrderByCreatedAtDesc(customerEmail, pageable);
+        return withArchive(byCreatedAtDesc(pageable),
+                livePage -> orderRepository.findByCustomerEmailOrderByCreatedAtDesc(customerEmail, livePage),
+                archivePage -> orderArchiveService.findArchivedOrders(null, customerEmail, archivePage),
+                () -> orderArchiveService.countArchivedOrders(null, customerEmail));
     }
     
     @Transactional(readOnly = true)
     public Optional<Order> getOrderById(Long id) {
-        return orderRepository.findByIdWithItems(id);
+        // ADDED: Finished orders may have been moved to the archive
+        return orderRepository.findByIdWithItems(id)
+                .or(() -> orderArchiveService.findArchivedOrder(id));
     }
     
+    @RetryOnConflict
     public Order createOrderFromCart(String sessionId) {
         Cart cart = cartService.getCartForCheckout(sessionId);
         
@@ -76,7 +108,8 @@ public class OrderService {
         for (CartItem cartItem : cart.getCartItems()) {
             Product product = cartItem.getProduct();
             
-            if (!productService.isProductAvailable(product.getId(), cartItem.getQuantity())) {
+            // FIXED: Units held by other carts are not available to this checkout
+            if (stockHoldService.getAvailableToPromise(product, sessionId) < cartItem.getQuantity()) {
                 throw new RuntimeException("Insufficient stock for product: " + product.getName());
             }
             
@@ -92,12 +125,15 @@ public class OrderService {
         
         order.setTotalAmount(totalAmount);
         Order savedOrder = orderRepository.save(order);
+        // ADDED: Downstream systems learn about the order through the outbox (same transaction)
+        outboxService.recordOrderEvent(savedOrder, OutboxService.ORDER_CREATED);
         
         cartService.clearCart(sessionId);
         
         return savedOrder;
     }
     
+    @RetryOnConflict
     public Order createOrder(CreateOrderRequest request) {
         Order order = new Order(request.getCustomerEmail(), 
                                request.getCustomerName(), 
@@ -109,7 +145,8 @@ public class OrderService {
             Product product = productService.getProductById(itemRequest.getProductId())
                     .orElseThrow(() -> new RuntimeException("Product not found: " + itemRequest.getProductId()));
             
-            if (!productService.isProductAvailable(itemRequest.getProductId(), itemRequest.getQuantity())) {
+            // FIXED: Direct orders have no cart, so every hold counts against them
+            if (product.getStockQuantity() - stockHoldService.getHeldQuantity(product.getId()) < itemRequest.getQuantity()) {
                 throw new RuntimeException("Insufficient stock for product: " + product.getName());
             }
             
@@ -124,17 +161,23 @@ public class OrderService {
         }
         
         order.setTotalAmount(totalAmount);
-        return orderRepository.save(order);
+        Order savedOrder = orderRepository.save(order);
+        outboxService.recordOrderEvent(savedOrder, OutboxService.ORDER_CREATED);
+        return savedOrder;
     }
     
+    @RetryOnConflict
     public Order updateOrderStatus(Long orderId, OrderStatus newStatus) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found with id: " + orderId));
         
         order.setStatus(newStatus);
-        return orderRepository.save(order);
+        Order savedOrder = orderRepository.save(order);
+        outboxService.recordOrderEvent(savedOrder, OutboxService.ORDER_STATUS_CHANGED);
+        return savedOrder;
     }
     
+    @RetryOnConflict
     public void cancelOrder(Long orderId) {
         Order order = orderRepository.findByIdWithItems(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found with id: " + orderId));
@@ -150,15 +193,62 @@ public class OrderService {
         
         order.setStatus(OrderStatus.CANCELLED);
         orderRepository.save(order);
+        outboxService.recordOrderEvent(order, OutboxService.ORDER_CANCELLED);
     }
     
     @Transactional(readOnly = true)
     public List<Order> getOrdersBetweenDates(LocalDateTime startDate, LocalDateTime endDate) {
-        return orderRepository.findOrdersBetweenDates(startDate, endDate);
+        List<Order> orders = new ArrayList<>(orderRepository.findOrdersBetweenDates(startDate, endDate));
+        orders.addAll(orderArchiveService.findArchivedOrdersBetweenDates(startDate, endDate));
+        orders.sort(Comparator.comparing(Order::getCreatedAt).reversed());
+        return orders;
     }
     
     @Transactional(readOnly = true)
     public Long getOrderCountByStatus(OrderStatus status) {
-        return orderRepository.countByStatus(status);
+        // The archive only holds finished orders, countArchivedByStatus is 0 for the others without a query
+        return orderRepository.countByStatus(status) + orderArchiveService.countArchivedByStatus(status);
+    }
+    
+    /**
+     * A listing of the live orders followed by the archived ones, each sorted on its own. Pages within the
+     * live rows cost the live query plus the archive count; only pages past them read archived orders, at
+     * most two archive pages of the page size (the archive offset is not aligned to pages).
+     * Archived orders are finished and older than app.archive.min-age-days, so for the newest-first
+     * listings this is the merged order except for unfinished orders older than the archived ones.
+     */
+    private static Page<Order> withArchive(Pageable pageable, Function<Pageable, Page<Order>> live,
+                                           Function<Pageable, Page<Order>> archived, LongSupplier archivedCount) {
+        if (pageable.isUnpaged()) {
+            List<Order> orders = new ArrayList<>(live.apply(pageable).getContent());
+            orders.addAll(archived.apply(pageable).getContent());
+            return new PageImpl<>(orders);
+        }
+        Page<Order> livePage = live.apply(pageable);
+        long liveTotal = livePage.getTotalElements();
+        long end = pageable.getOffset() + pageable.getPageSize();
+        if (end <= liveTotal) {
+            return new PageImpl<>(livePage.getContent(), pageable, liveTotal + archivedCount.getAsLong());
+        }
+        
+        List<Order> orders = new ArrayList<>(livePage.getContent());
+        int size = pageable.getPageSize();
+        long archiveFrom = Math.max(0, pageable.getOffset() - liveTotal);
+        long archiveTo = end - liveTotal;
+        Page<Order> first = archived.apply(PageRequest.of((int) (archiveFrom / size), size, pageable.getSort()));
+        List<Order> archivedOrders = new ArrayList<>(first.getContent());
+        if (archiveFrom / size != (archiveTo - 1) / size && first.hasNext()) {
+            archivedOrders.addAll(archived.apply(first.nextPageable()).getContent());
+        }
+        int from = (int) Math.min(archiveFrom - first.getPageable().getOffset(), archivedOrders.size());
+        int to = (int) Math.min(archiveTo - first.getPageable().getOffset(), archivedOrders.size());
+        orders.addAll(archivedOrders.subList(from, to));
+        return new PageImpl<>(orders, pageable, liveTotal + first.getTotalElements());
+    }
+    
+    // The status and customer queries always sort newest first; the archive part uses the same order
+    private static Pageable byCreatedAtDesc(Pageable pageable) {
+        Sort sort = Sort.by("createdAt").descending();
+        return pageable.isPaged() ? PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort) : pageable;
     }
 }
\ No newline at end of file
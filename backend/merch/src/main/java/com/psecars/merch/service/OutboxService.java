@@ -0,0 +1,72 @@
+package com.psecars.merch.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.psecars.merch.entity.Order;
+import com.psecars.merch.entity.OrderItem;
+import com.psecars.merch.entity.OutboxEvent;
+import com.psecars.merch.repository.OutboxEventRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes order lifecycle events to the outbox table. Must join the transaction that changes the
+ * order (and its stock), so the event exists exactly when the change was committed;
+ * OutboxRelay publishes it afterwards.
+ */
+@Service
+@Transactional(propagation = Propagation.MANDATORY)
+public class OutboxService {
+    
+    public static final String AGGREGATE_ORDER = "ORDER";
+    
+    public static final String ORDER_CREATED = "ORDER_CREATED";
+    public static final String ORDER_STATUS_CHANGED = "ORDER_STATUS_CHANGED";
+    public static final String ORDER_CANCELLED = "ORDER_CANCELLED";
+    
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+    
+    @Autowired
+    public OutboxService(OutboxEventRepository outboxEventRepository, ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+    }
+    
+    public OutboxEvent recordOrderEvent(Order order, String eventType) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("orderId", order.getId());
+        payload.put("status", order.getStatus());
+        payload.put("customerEmail", order.getCustomerEmail());
+        payload.put("customerName", order.getCustomerName());
+        payload.put("totalAmount", order.getTotalAmount());
+        payload.put("items", order.getOrderItems().stream().map(OutboxService::toItem).toList());
+        payload.put("occurredAt", LocalDateTime.now());
+        
+        return outboxEventRepository.save(new OutboxEvent(AGGREGATE_ORDER, order.getId(), eventType, toJson(payload)));
+    }
+    
+    private static Map<String, Object> toItem(OrderItem item) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("productId", item.getProduct().getId());
+        line.put("quantity", item.getQuantity());
+        line.put("price", item.getPrice());
+        return line;
+    }
+    
+    private String toJson(Map<String, Object> payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            // Rolls back the order change as well - an order must never change without its event
+            throw new IllegalStateException("Failed to serialize outbox payload", e);
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package com.psecars.merch.service;
+
+import com.psecars.merch.catalog.CatalogSnapshotService;
+import com.psecars.merch.entity.Product;
+import com.psecars.merch.event.CatalogChangedEvent;
+import com.psecars.merch.event.RemoteCatalogChangedEvent;
+import com.psecars.merch.repository.ProductRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory price index of the catalog. For every category, and for the catalog as a whole, the
+ * prices are kept as unscaled cents in a sorted long[] with the product ids in a parallel long[],
+ * ordered by (price, id).
+ *
+ * Price ranges, sort-by-price and top-N-cheapest pages are answered with two binary searches and an
+ * array slice; only the products of the requested page are materialized (from the CatalogSnapshot
+ * when it is loaded). For other sort orders the index narrows the range to an id list when it has
+ * at most app.price-index.max-candidates entries. Anything else returns empty and ProductService
+ * uses the range queries instead.
+ *
+ * The index is immutable and swapped as a whole when a product's price or category changes. It is
+ * loaded at startup, updated after commit from CatalogChangedEvent and reloaded as a whole on a
+ * RemoteCatalogChangedEvent (a change made through another instance).
+ */
+@Service
+public class PriceIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PriceIndexService.class);
+    private static final String PRICE = "price";
+
+    private final ProductRepository productRepository;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final Object writeLock = new Object();
+    private final Counter indexQueries;
+    private final Counter fallbacks;
+
+    private volatile Snapshot snapshot;
+
+    @Value("${app.price-index.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.price-index.max-candidates:1000}")
+    private int maxCandidates;
+
+    @Autowired
+    public PriceIndexService(ProductRepository productRepository, CatalogSnapshotService catalogSnapshotService,
+                             MeterRegistry meterRegistry) {
+        this.productRepository = productRepository;
+        this.catalogSnapshotService = catalogSnapshotService;
+        Gauge.builder("merch.price-index.products", this, s -> s.snapshot != null ? s.snapshot.all.size() : 0)
+                .register(meterRegistry);
+        this.indexQueries = Counter.builder("merch.price-index.queries").tag("result", "index").register(meterRegistry);
+        this.fallbacks = Counter.builder("merch.price-index.queries").tag("result", "fallback").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (writeLock) {
+            Map<Long, Entry> entries = new HashMap<>();
+            for (Object[] row : productRepository.findAllPriceEntries()) {
+                entries.put((Long) row[0], new Entry((Long) row[1], toCents((BigDecimal) row[2], RoundingMode.HALF_UP)));
+            }
+            snapshot = Snapshot.of(entries);
+        }
+        logger.info("Price index loaded with {} products", snapshot.all.size());
+    }
+
+    /**
+     * Products of the category (the whole catalog when categoryId is null) priced within
+     * [minPrice, maxPrice]; both bounds are optional. Empty when the index cannot answer the query.
+     */
+    public Optional<Page<Product>> findByPriceRange(Long categoryId, BigDecimal minPrice, BigDecimal maxPrice,
+                                                    Pageable pageable) {
+        Range range = range(categoryId, minPrice, maxPrice);
+        if (range == null) {
+            return fallback();
+        }
+        Boolean descending = priceDirection(pageable.getSort());
+        if (descending != null) {
+            long[] ids = range.slice(pageable.getOffset(), pageable.getPageSize(), descending);
+            return answered(new PageImpl<>(loadInOrder(ids), pageable, range.size()));
+        }
+        if (range.size() > maxCandidates) {
+            return fallback();
+        }
+        if (range.size() == 0) {
+            return answered(Page.empty(pageable));
+        }
+        List<Long> ids = range.ids();
+        Page<Product> page = catalogSnapshotService.findByIds(ids, pageable)
+                .orElseGet(() -> new PageImpl<>(productRepository.findByIdIn(ids, pageable), pageable, ids.size()));
+        return answered(page);
+    }
+
+    /** Keyword search restricted to the price range, when the range is small enough to pass as ids. */
+    public Optional<Page<Product>> searchByPriceRange(String keyword, BigDecimal minPrice, BigDecimal maxPrice,
+                                                      Pageable pageable) {
+        Range range = range(null, minPrice, maxPrice);
+        if (range == null || range.size() > maxCandidates) {
+            return fallback();
+        }
+        if (range.size() == 0) {
+            return answered(Page.empty(pageable));
+        }
+        List<Long> ids = range.ids();
+        return answered(catalogSnapshotService.searchByIds(keyword, ids, pageable)
+                .orElseGet(() -> productRepository.findByIdInAndKeyword(ids, keyword, pageable)));
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void onRemoteCatalogChanged(RemoteCatalogChangedEvent event) {
+        if (snapshot != null) {
+            load();
+        }
+    }
+
+    // Runs before ResourceVersionService moves the catalog ETag on, so a new ETag never labels old data.
+    // Stock changes arrive here as well; they only cost the lookup, the index is left alone.
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.getResourceType() != CatalogChangedEvent.ResourceType.PRODUCT) {
+            return;
+        }
+        Long id = event.getResourceId();
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            if (current == null) {
+                return;
+            }
+            Entry updated = null;
+            if (event.getChangeType() != CatalogChangedEvent.ChangeType.DELETED) {
+                updated = productRepository.findPriceEntryById(id).stream()
+                        .findFirst()
+                        .map(row -> new Entry((Long) row[0], toCents((BigDecimal) row[1], RoundingMode.HALF_UP)))
+                        .orElse(null);
+            }
+            Entry previous = current.entries.get(id);
+            if (!Objects.equals(previous, updated)) {
+                snapshot = current.replace(id, previous, updated);
+            }
+        }
+    }
+
+    private Range range(Long categoryId, BigDecimal minPrice, BigDecimal maxPrice) {
+        Snapshot current = snapshot;
+        if (!enabled || current == null) {
+            return null;
+        }
+        Prices prices = categoryId == null ? current.all : current.byCategory.getOrDefault(categoryId, Prices.EMPTY);
+        int from = minPrice == null ? 0 : prices.lowerBound(toCents(minPrice, RoundingMode.CEILING));
+        int to = maxPrice == null ? prices.size() : prices.upperBound(toCents(maxPrice, RoundingMode.FLOOR));
+        return new Range(prices, from, Math.max(from, to));
+    }
+
+    /** TRUE/FALSE for a descending/ascending price sort, null when sorted by anything else. */
+    private static Boolean priceDirection(Sort sort) {
+        if (sort.isUnsorted()) {
+            return Boolean.FALSE;
+        }
+        List<Sort.Order> orders = sort.toList();
+        if (orders.size() == 1 && PRICE.equals(orders.get(0).getProperty())) {
+            return orders.get(0).isDescending();
+        }
+        return null;
+    }
+
+    private List<Product> loadInOrder(long[] ids) {
+        if (ids.length == 0) {
+            return List.of();
+        }
+        Optional<List<Product>> fromSnapshot = catalogSnapshotService.findAllById(ids);
+        if (fromSnapshot.isPresent()) {
+            return fromSnapshot.get();
+        }
+        Map<Long, Product> byId = productRepository.findAllById(Arrays.stream(ids).boxed().toList()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        List<Product> ordered = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            Product product = byId.get(id);
+            if (product != null) {
+                ordered.add(product);
+            }
+        }
+        return ordered;
+    }
+
+    private Optional<Page<Product>> answered(Page<Product> page) {
+        indexQueries.increment();
+        return Optional.of(page);
+    }
+
+    private Optional<Page<Product>> fallback() {
+        fallbacks.increment();
+        return Optional.empty();
+    }
+
+    private static long toCents(BigDecimal price, RoundingMode rounding) {
+        return price.setScale(2, rounding).unscaledValue().longValueExact();
+    }
+
+    private record Entry(Long categoryId, long cents) {
+    }
+
+    /** Immutable view of the whole index; replaced, never modified. */
+    private static final class Snapshot {
+        private final Map<Long, Entry> entries;
+        private final Prices all;
+        private final Map<Long, Prices> byCategory;
+
+        private Snapshot(Map<Long, Entry> entries, Prices all, Map<Long, Prices> byCategory) {
+            this.entries = entries;
+            this.all = all;
+            this.byCategory = byCategory;
+        }
+
+        private static Snapshot of(Map<Long, Entry> entries) {
+            Comparator<Map.Entry<Long, Entry>> byPrice = Comparator
+                    .comparingLong((Map.Entry<Long, Entry> e) -> e.getValue().cents())
+                    .thenComparingLong(Map.Entry::getKey);
+            List<Map.Entry<Long, Entry>> sorted = entries.entrySet().stream().sorted(byPrice).toList();
+
+            Map<Long, List<Map.Entry<Long, Entry>>> grouped = new HashMap<>();
+            for (Map.Entry<Long, Entry> entry : sorted) {
+                grouped.computeIfAbsent(entry.getValue().categoryId(), k -> new ArrayList<>()).add(entry);
+            }
+            Map<Long, Prices> byCategory = new HashMap<>();
+            grouped.forEach((categoryId, list) -> byCategory.put(categoryId, Prices.of(list)));
+            return new Snapshot(entries, Prices.of(sorted), byCategory);
+        }
+
+        private Snapshot replace(Long id, Entry previous, Entry updated) {
+            Map<Long, Entry> newEntries = new HashMap<>(entries);
+            Map<Long, Prices> newByCategory = new HashMap<>(byCategory);
+            Prices newAll = all;
+            if (previous != null) {
+                newEntries.remove(id);
+                newAll = newAll.without(previous.cents(), id);
+                newByCategory.computeIfPresent(previous.categoryId(), (k, prices) -> prices.without(previous.cents(), id));
+            }
+            if (updated != null) {
+                newEntries.put(id, updated);
+                newAll = newAll.with(updated.cents(), id);
+                newByCategory.put(updated.categoryId(),
+                        newByCategory.getOrDefault(updated.categoryId(), Prices.EMPTY).with(updated.cents(), id));
+            }
+            return new Snapshot(newEntries, newAll, newByCategory);
+        }
+    }
+
+    /** Prices in cents with their product ids, sorted by (cents, id). */
+    private static final class Prices {
+        private static final Prices EMPTY = new Prices(new long[0], new long[0]);
+
+        private final long[] cents;
+        private final long[] ids;
+
+        private Prices(long[] cents, long[] ids) {
+            this.cents = cents;
+            this.ids = ids;
+        }
+
+        private static Prices of(List<Map.Entry<Long, Entry>> sorted) {
+            long[] cents = new long[sorted.size()];
+            long[] ids = new long[sorted.size()];
+            for (int i = 0; i < cents.length; i++) {
+                cents[i] = sorted.get(i).getValue().cents();
+                ids[i] = sorted.get(i).getKey();
+            }
+            return new Prices(cents, ids);
+        }
+
+        private int size() {
+            return cents.length;
+        }
+
+        /** First position priced at or above the given cents. */
+        private int lowerBound(long value) {
+            int low = 0;
+            int high = cents.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cents[mid] < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /** First position priced above the given cents. */
+        private int upperBound(long value) {
+            int low = 0;
+            int high = cents.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cents[mid] <= value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /** First position at or after (value, id). */
+        private int position(long value, long id) {
+            int low = lowerBound(value);
+            int high = upperBound(value);
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (ids[mid] < id) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private Prices with(long value, long id) {
+            int pos = position(value, id);
+            long[] newCents = new long[cents.length + 1];
+            long[] newIds = new long[ids.length + 1];
+            System.arraycopy(cents, 0, newCents, 0, pos);
+            System.arraycopy(ids, 0, newIds, 0, pos);
+            newCents[pos] = value;
+            newIds[pos] = id;
+            System.arraycopy(cents, pos, newCents, pos + 1, cents.length - pos);
+            System.arraycopy(ids, pos, newIds, pos + 1, ids.length - pos);
+            return new Prices(newCents, newIds);
+        }
+
+        private Prices without(long value, long id) {
+            int pos = position(value, id);
+            if (pos == cents.length || cents[pos] != value || ids[pos] != id) {
+                return this;
+            }
+            long[] newCents = new long[cents.length - 1];
+            long[] newIds = new long[ids.length - 1];
+            System.arraycopy(cents, 0, newCents, 0, pos);
+            System.arraycopy(ids, 0, newIds, 0, pos);
+            System.arraycopy(cents, pos + 1, newCents, pos, cents.length - pos - 1);
+            System.arraycopy(ids, pos + 1, newIds, pos, ids.length - pos - 1);
+            return new Prices(newCents, newIds);
+        }
+    }
+
+    /** Positions [from, to) of a Prices array. */
+    private static final class Range {
+        private final Prices prices;
+        private final int from;
+        private final int to;
+
+        private Range(Prices prices, int from, int to) {
+            this.prices = prices;
+            this.from = from;
+            this.to = to;
+        }
+
+        private int size() {
+            return to - from;
+        }
+
+        private long[] slice(long offset, int limit, boolean descending) {
+            if (offset >= size()) {
+                return new long[0];
+            }
+            int count = (int) Math.min(limit, size() - offset);
+            long[] result = new long[count];
+            for (int i = 0; i < count; i++) {
+                result[i] = descending ? prices.ids[(int) (to - 1 - offset - i)] : prices.ids[(int) (from + offset + i)];
+            }
+            return result;
+        }
+
+        private List<Long> ids() {
+            List<Long> ids = new ArrayList<>(size());
+            for (int i = from; i < to; i++) {
+                ids.add(prices.ids[i]);
+            }
+            return ids;
+        }
+    }
+}
@@ -1,87 +1,185 @@
 package com.psecars.merch.service;
 
+import com.psecars.merch.catalog.CatalogSnapshotService;
+import com.psecars.merch.coalescing.CoalescedRead;
 import com.psecars.merch.entity.Product;
 import com.psecars.merch.entity.Category;
 import com.psecars.merch.repository.ProductRepository;
 import com.psecars.merch.repository.CategoryRepository;
+import com.psecars.merch.exception.ConcurrentUpdateException;
+import com.psecars.merch.exception.ResourceNotFoundException;
+import com.psecars.merch.retry.RetryOnConflict;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 @Transactional
 public class ProductService {
     
+    // Open ends of a price range for the repository queries (products.price is NUMERIC(10,2))
+    private static final BigDecimal MIN_PRICE = BigDecimal.ZERO;
+    private static final BigDecimal MAX_PRICE = new BigDecimal("99999999.99");
+    
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
+    private final PriceIndexService priceIndexService;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final StockHoldService stockHoldService;
+    
+    @Value("${app.batch.max-ids:200}")
+    private int maxBatchIds;
+    
+    @Value("${app.batch.chunk-size:100}")
+    private int batchChunkSize;
     
     @Autowired
-    public ProductService(ProductRepository productRepository, CategoryRepository categoryRepository) {
+    public ProductService(ProductRepository productRepository, CategoryRepository categoryRepository,
+                          PriceIndexService priceIndexService, CatalogSnapshotService catalogSnapshotService,
+                          StockHoldService stockHoldService) {
         this.productRepository = productRepository;
         this.categoryRepository = categoryRepository;
+        this.priceIndexService = priceIndexService;
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.stockHoldService = stockHoldService;
     }
     
     // Existing core methods
-    @Transactional(readOnly = true)
+    // ADDED: Catalog reads come from the in-memory snapshot; SUPPORTS so that no transaction (and no
+    // connection) is opened for them. Callers inside a transaction still get managed entities.
+    // Concurrent identical reads outside a transaction share one execution (@CoalescedRead).
+    @CoalescedRead
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Page<Product> getAllProducts(Pageable pageable) {
-        return productRepository.findAll(pageable);
+        return catalogSnapshotService.findAll(pageable)
+                .orElseGet(() -> productRepository.findAll(pageable));
     }
     
-    @Transactional(readOnly = true)
+    @CoalescedRead
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Page<Product> getAvailableProducts(Pageable pageable) {
-        return productRepository.findAvailableProducts(pageable);
+        return catalogSnapshotService.findAvailable(pageable)
+                .orElseGet(() -> productRepository.findAvailableProducts(pageable));
     }
     
-    @Transactional(readOnly = true)
+    @CoalescedRead
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Page<Product> getProductsByCategory(Long categoryId, Pageable pageable) {
-        return productRepository.findByCategoryId(categoryId, pageable);
+        return catalogSnapshotService.findByCategory(categoryId, pageable)
+                .orElseGet(() -> productRepository.findByCategoryId(categoryId, pageable));
     }
     
-    @Transactional(readOnly = true)
+    @CoalescedRead
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Page<Product> searchProducts(String keyword, Pageable pageable) {
-        return productRepository.findByKeyword(keyword, pageable);
+        return catalogSnapshotService.search(keyword, pageable)
+                .orElseGet(() -> productRepository.findByKeyword(keyword, pageable));
     }
     
-    @Transactional(readOnly = true)
+    @CoalescedRead
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Optional<Product> getProductById(Long id) {
-        return productRepository.findById(id);
+        Optional<Product> product = catalogSnapshotService.findById(id);
+        return product.isPresent() ? product : productRepository.findById(id);
+    }
+    
+    // ADDED: Multi-get for carts, wishlists and recommendation rails. Products come from the snapshot,
+    // only ids it does not have go to the database - one IN query (with category and images) per chunk.
+    // The result follows the order of the ids; duplicates and unknown ids are dropped.
+    @CoalescedRead
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<Product> getProductsByIds(List<Long> ids) {
+        List<Long> distinct = distinctBatchIds(ids);
+        Map<Long, Product> found = new HashMap<>();
+        catalogSnapshotService.findAllById(distinct.stream().mapToLong(Long::longValue).toArray())
+                .ifPresent(products -> products.forEach(product -> found.put(product.getId(), product)));
+        
+        List<Long> misses = distinct.stream().filter(id -> !found.containsKey(id)).toList();
+        inChunks(misses, chunk -> productRepository.findAllWithCategoryAndImagesByIdIn(chunk)
+                .forEach(product -> found.put(product.getId(), product)));
+        
+        return distinct.stream().map(found::get).filter(Objects::nonNull).toList();
+    }
+    
+    /** Stock quantity per product id, same lookup order as getProductsByIds; unknown ids are absent. */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Map<Long, Integer> getStockLevels(List<Long> ids) {
+        List<Long> distinct = distinctBatchIds(ids);
+        Map<Long, Integer> stock = new HashMap<>();
+        catalogSnapshotService.findAllById(distinct.stream().mapToLong(Long::longValue).toArray())
+                .ifPresent(products -> products.forEach(product -> stock.put(product.getId(), product.getStockQuantity())));
+        
+        List<Long> misses = distinct.stream().filter(id -> !stock.containsKey(id)).toList();
+        inChunks(misses, chunk -> productRepository.findStockByIdIn(chunk)
+                .forEach(row -> stock.put((Long) row[0], (Integer) row[1])));
+        return stock;
     }
     
     // NEW: Price filtering methods
-    @Transactional(readOnly = true)
+    // ADDED: Answered from the in-memory price index when it can, otherwise by the range queries
+    @CoalescedRead
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Page<Product> getProductsByPriceRange(BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable) {
-        return productRepository.findByPriceRange(minPrice, maxPrice, pageable);
+        return priceIndexService.findByPriceRange(null, minPrice, maxPrice, pageable)
+                .orElseGet(() -> productRepository.findByPriceRange(
+                        lowerBound(minPrice), upperBound(maxPrice), pageable));
     }
     
-    @Transactional(readOnly = true)
+    @CoalescedRead
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Page<Product> getProductsByCategoryAndPriceRange(Long categoryId, BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable) {
-        return productRepository.findByCategoryAndPriceRange(categoryId, minPrice, maxPrice, pageable);
+        return priceIndexService.findByPriceRange(categoryId, minPrice, maxPrice, pageable)
+                .orElseGet(() -> productRepository.findByCategoryAndPriceRange(
+                        categoryId, lowerBound(minPrice), upperBound(maxPrice), pageable));
     }
     
-    @Transactional(readOnly = true)
+    @CoalescedRead
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Page<Product> searchProductsByPriceRange(String keyword, BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable) {
-        return productRepository.findByKeywordAndPriceRange(keyword, minPrice, maxPrice, pageable);
+        return priceIndexService.searchByPriceRange(keyword, minPrice, maxPrice, pageable)
+                .orElseGet(() -> productRepository.findByKeywordAndPriceRange(
+                        keyword, lowerBound(minPrice), upperBound(maxPrice), pageable));
     }
     
     // Existing utility methods
-    @Transactional(readOnly = true)
-    public boolean isProductAvailable(Long productId, Integer quantity) {
-        return productRepository.findByIdAndStockQuantityGreaterThan(productId, quantity - 1).isPresent();
+    // ADDED: Checked against the available-to-promise stock, as at checkout - units held by other carts
+    // (all carts without a session) are not available
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public boolean isProductAvailable(Long productId, Integer quantity, String sessionId) {
+        return catalogSnapshotService.findById(productId)
+                .or(() -> productRepository.findById(productId))
+                .map(product -> stockHoldService.getAvailableToPromise(product, sessionId) >= quantity)
+                .orElse(false);
     }
     
     public Product createProduct(Product product) {
+        // ADDED: A client-supplied version would make Hibernate treat the new product as detached
+        product.setVersion(null);
         return productRepository.save(product);
     }
     
+    // ADDED: Clients that send the version they edited get a 409 instead of silently overwriting
+    // a newer edit; without a version the update is last-writer-wins but still retried on conflicts
+    @RetryOnConflict
     public Product updateProduct(Long id, Product productDetails) {
         Product product = productRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
+                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", id));
+        
+        if (productDetails.getVersion() != null && !productDetails.getVersion().equals(product.getVersion())) {
+            throw new ConcurrentUpdateException("Product", id, productDetails.getVersion(), product.getVersion());
+        }
         
         product.setName(productDetails.getName());
         product.setDescription(productDetails.getDescription());
@@ -99,14 +197,16 @@ public class ProductService {
         return productRepository.save(product);
     }
     
+    @RetryOnConflict
     public Product updateStock(Long productId, Integer newStock) {
         Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new RuntimeException("Product not found with id: " + productId));
+                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
         
         product.setStockQuantity(newStock);
         return productRepository.save(product);
     }
     
+    @RetryOnConflict
     public boolean reduceStock(Long productId, Integer quantity) {
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + productId));
@@ -123,8 +223,31 @@ public class ProductService {
         productRepository.deleteById(id);
     }
     
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<Product> getLowStockProducts(Integer threshold) {
-        return productRepository.findLowStockProducts(threshold);
+        return catalogSnapshotService.findLowStock(threshold)
+                .orElseGet(() -> productRepository.findLowStockProducts(threshold));
+    }
+    
+    private List<Long> distinctBatchIds(List<Long> ids) {
+        List<Long> distinct = ids.stream().filter(Objects::nonNull).distinct().toList();
+        if (distinct.size() > maxBatchIds) {
+            throw new IllegalArgumentException("At most " + maxBatchIds + " product ids per request");
+        }
+        return distinct;
+    }
+    
+    private void inChunks(List<Long> ids, Consumer<List<Long>> query) {
+        for (int from = 0; from < ids.size(); from += batchChunkSize) {
+            query.accept(ids.subList(from, Math.min(ids.size(), from + batchChunkSize)));
+        }
+    }
+    
+    private static BigDecimal lowerBound(BigDecimal minPrice) {
+        return minPrice != null ? minPrice : MIN_PRICE;
+    }
+    
+    private static BigDecimal upperBound(BigDecimal maxPrice) {
+        return maxPrice != null ? maxPrice : MAX_PRICE;
     }
 }
\ No newline at end of file
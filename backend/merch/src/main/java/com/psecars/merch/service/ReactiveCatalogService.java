@@ -0,0 +1,197 @@
+package com.psecars.merch.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.psecars.merch.dto.CategoryResponse;
+import com.psecars.merch.dto.ProductResponse;
+import com.psecars.merch.entity.Product;
+import com.psecars.merch.event.CatalogChangedEvent;
+import com.psecars.merch.repository.ReactiveCatalogRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Non-blocking catalog reads backing ReactiveCatalogController.
+ * Single products and the category list are cached as JSON in Redis through the reactive client;
+ * Redis being slow or down only costs a cache miss, never the request.
+ */
+@Service
+@ConditionalOnProperty(prefix = "app.reactive", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class ReactiveCatalogService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveCatalogService.class);
+
+    private static final String PRODUCT_KEY_PREFIX = "pse-merch:reactive:product:";
+    private static final String CATEGORIES_KEY = "pse-merch:reactive:categories";
+    private static final Duration REDIS_TIMEOUT = Duration.ofMillis(250);
+
+    private final ReactiveCatalogRepository catalogRepository;
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final StockHoldService stockHoldService;
+
+    @Value("${app.reactive.redis-cache-enabled:true}")
+    private boolean redisCacheEnabled;
+
+    @Value("${app.cache.products-ttl:600}")
+    private long productsTtlSeconds;
+
+    @Value("${app.cache.categories-ttl:1800}")
+    private long categoriesTtlSeconds;
+
+    @Value("${app.reactive.feed.fetch-size:250}")
+    private int feedFetchSize;
+
+    @Value("${app.reactive.feed.image-batch-size:100}")
+    private int imageBatchSize;
+
+    @Autowired
+    public ReactiveCatalogService(ReactiveCatalogRepository catalogRepository,
+                                  ReactiveStringRedisTemplate redisTemplate,
+                                  ObjectMapper objectMapper,
+                                  StockHoldService stockHoldService) {
+        this.catalogRepository = catalogRepository;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.stockHoldService = stockHoldService;
+    }
+
+    public Mono<Page<ProductResponse>> getProducts(int page, int size, String sortBy, boolean descending,
+                                                   boolean availableOnly) {
+        PageRequest pageRequest = PageRequest.of(page, size);
+
+        Mono<List<ProductResponse>> content = catalogRepository
+                .findPage(availableOnly, sortBy, descending, size, pageRequest.getOffset())
+                .collectList()
+                .flatMap(this::withImages);
+
+        return Mono.zip(content, catalogRepository.count(availableOnly))
+                .map(tuple -> new PageImpl<>(tuple.getT1(), pageRequest, tuple.getT2()));
+    }
+
+    public Mono<ProductResponse> getProductById(Long id) {
+        String key = PRODUCT_KEY_PREFIX + id;
+        return readCached(key, ProductResponse.class)
+                .switchIfEmpty(Mono.defer(() -> catalogRepository.findById(id)
+                        .flatMap(product -> withImages(List.of(product)))
+                        .map(products -> products.get(0))
+                        .flatMap(response -> writeCached(key, response, productsTtlSeconds))))
+                // Holds change often and live in memory - applied after the cache, never stored in it
+                .doOnNext(response -> response.applyHeldQuantity(stockHoldService.getHeldQuantity(id)));
+    }
+
+    public Mono<List<CategoryResponse>> getCategories() {
+        return readCached(CATEGORIES_KEY, new TypeReference<List<CategoryResponse>>() {})
+                .switchIfEmpty(Mono.defer(() -> catalogRepository.findCategoriesWithProductCount()
+                        .collectList()
+                        .flatMap(categories -> writeCached(CATEGORIES_KEY, categories, categoriesTtlSeconds))));
+    }
+
+    /**
+     * Full catalog as a stream. Rows are pulled from the database only as fast as the client consumes them;
+     * images are attached per batch with a single IN query instead of one query per product.
+     */
+    public Flux<ProductResponse> streamProducts() {
+        return catalogRepository.streamAll(feedFetchSize)
+                .buffer(imageBatchSize)
+                .concatMap(this::withImages)
+                .concatMapIterable(products -> products);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (!redisCacheEnabled) {
+            return;
+        }
+        List<String> keys = new ArrayList<>();
+        keys.add(CATEGORIES_KEY);
+        if (event.getResourceType() == CatalogChangedEvent.ResourceType.PRODUCT && event.getResourceId() != null) {
+            keys.add(PRODUCT_KEY_PREFIX + event.getResourceId());
+        }
+        redisTemplate.delete(keys.toArray(new String[0]))
+                .timeout(REDIS_TIMEOUT)
+                .subscribe(deleted -> { }, e -> logger.warn("Failed to evict reactive catalog cache for {}: {}",
+                        event, e.getMessage()));
+    }
+
+    private Mono<List<ProductResponse>> withImages(List<Product> products) {
+        if (products.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        List<Long> ids = products.stream().map(Product::getId).toList();
+        return catalogRepository.findImageUrls(ids)
+                .collectMultimap(Map.Entry::getKey, Map.Entry::getValue, HashMap::new)
+                .map(imagesByProduct -> products.stream()
+                        .map(product -> {
+                            product.setImageUrls(new ArrayList<>(
+                                    imagesByProduct.getOrDefault(product.getId(), List.of())));
+                            return new ProductResponse(product, stockHoldService.getHeldQuantity(product.getId()));
+                        })
+                        .toList());
+    }
+
+    private <T> Mono<T> readCached(String key, Class<T> type) {
+        return readCached(key, objectMapper.getTypeFactory().constructType(type));
+    }
+
+    private <T> Mono<T> readCached(String key, TypeReference<T> type) {
+        return readCached(key, objectMapper.getTypeFactory().constructType(type));
+    }
+
+    private <T> Mono<T> readCached(String key, JavaType type) {
+        if (!redisCacheEnabled) {
+            return Mono.empty();
+        }
+        return redisTemplate.opsForValue().get(key)
+                .timeout(REDIS_TIMEOUT)
+                .<T>handle((json, sink) -> {
+                    try {
+                        sink.next(objectMapper.readValue(json, type));
+                    } catch (JsonProcessingException e) {
+                        logger.warn("Discarding unreadable cache entry {}: {}", key, e.getMessage());
+                    }
+                })
+                .onErrorResume(e -> {
+                    logger.debug("Reactive cache read failed for {}: {}", key, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private <T> Mono<T> writeCached(String key, T value, long ttlSeconds) {
+        if (!redisCacheEnabled) {
+            return Mono.just(value);
+        }
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            return Mono.just(value);
+        }
+        return redisTemplate.opsForValue().set(key, json, Duration.ofSeconds(ttlSeconds))
+                .timeout(REDIS_TIMEOUT)
+                .onErrorResume(e -> {
+                    logger.debug("Reactive cache write failed for {}: {}", key, e.getMessage());
+                    return Mono.just(false);
+                })
+                .thenReturn(value);
+    }
+}
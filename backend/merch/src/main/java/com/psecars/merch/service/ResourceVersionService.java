@@ -0,0 +1,290 @@
+package com.psecars.merch.service;
+
+import com.psecars.merch.catalog.CatalogSnapshotService;
+import com.psecars.merch.entity.CatalogVersion;
+import com.psecars.merch.entity.Product;
+import com.psecars.merch.event.CatalogChangedEvent;
+import com.psecars.merch.event.RemoteCatalogChangedEvent;
+import com.psecars.merch.repository.CartRepository;
+import com.psecars.merch.repository.CatalogVersionRepository;
+import com.psecars.merch.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Validators (ETag / Last-Modified) for conditional GETs. Controllers ask this service first and only
+ * call ProductService/CategoryService/CartService when the client's copy is outdated.
+ *
+ * Single resources are validated against their updatedAt column with a one-column lookup, plus the
+ * category version for products (their responses embed the category name).
+ * List pages use the catalog version: a counter bumped after every committed product/category change.
+ * Both counters are rows of catalog_versions, shared by all instances: a change is counted with an
+ * UPDATE in the database, and the values are read back every app.catalog-version.refresh-interval-ms,
+ * so an instance sees the changes made through another one that much later at most. A counter that
+ * moved further than this instance's own changes account for was moved by another instance: the local
+ * catalog read state (snapshot, price index, category tree, response cache) is reloaded on a
+ * RemoteCatalogChangedEvent before the new versions are handed out, so a version never labels data
+ * older than it.
+ * Held units change the available quantities in product lists without a catalog change, so a third
+ * counter, stock, is incremented on the refresh after this instance's holds (or its view of the other
+ * instances' holds) changed; product list ETags carry it next to the catalog version. Like the others
+ * it is the same on every instance, so an ETag stays valid when a client is routed to another one.
+ */
+@Service
+@Transactional(readOnly = true)
+public class ResourceVersionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResourceVersionService.class);
+
+    static final String CATALOG = "catalog";
+    static final String CATEGORIES = "categories";
+    static final String STOCK = "stock";
+
+    private final ProductRepository productRepository;
+    private final CartRepository cartRepository;
+    private final CatalogVersionRepository catalogVersionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate ownTransaction;
+    private final StockHoldService stockHoldService;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Set<String> pendingIncrements = ConcurrentHashMap.newKeySet();
+    private volatile long catalogVersion;
+    private volatile long categoryVersion;
+    private volatile long stockVersion;
+    // StockHoldService.getVersion() when the stock counter was last incremented
+    private volatile long countedHoldVersion;
+
+    @Autowired
+    public ResourceVersionService(ProductRepository productRepository, CartRepository cartRepository,
+                                  CatalogVersionRepository catalogVersionRepository,
+                                  TransactionTemplate transactionTemplate,
+                                  StockHoldService stockHoldService, CatalogSnapshotService catalogSnapshotService,
+                                  ApplicationEventPublisher eventPublisher) {
+        this.productRepository = productRepository;
+        this.cartRepository = cartRepository;
+        this.catalogVersionRepository = catalogVersionRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.ownTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.ownTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.stockHoldService = stockHoldService;
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public long getCatalogVersion() {
+        return catalogVersion;
+    }
+
+    /**
+     * Strong ETag for catalog list pages (product pages, search results, categories).
+     * The scope keeps ETags of different lists apart, e.g. the request path plus query string.
+     */
+    public String catalogETag(String scope) {
+        return "\"c" + catalogVersion + "-" + Integer.toHexString(scope.hashCode()) + "\"";
+    }
+
+    /**
+     * Like {@link #catalogETag}, for lists of products: their availableQuantity subtracts the units held in
+     * carts, which change without a catalog event, so the shared stock version is part of the ETag as well.
+     * Hold changes are counted on the next refresh, so a list may be answered with 304 for that long.
+     */
+    public String productListETag(String scope) {
+        return "\"c" + catalogVersion + "-s" + stockVersion + "-" + Integer.toHexString(scope.hashCode()) + "\"";
+    }
+
+    /**
+     * Held units change the product's availability, and category renames its categoryName, without touching
+     * updatedAt, so both are part of the ETag.
+     * updatedAt comes from the catalog snapshot when one is loaded, so a cached response needs no query.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Optional<ResourceVersion> getProductVersion(Long productId) {
+        Optional<LocalDateTime> snapshotUpdatedAt = catalogSnapshotService.findById(productId).map(Product::getUpdatedAt);
+        Optional<LocalDateTime> current = snapshotUpdatedAt.isPresent()
+                ? snapshotUpdatedAt
+                : productRepository.findUpdatedAtById(productId);
+        return current
+                .map(updatedAt -> {
+                    long lastModified = toEpochMillis(updatedAt);
+                    int held = stockHoldService.getHeldQuantity(productId);
+                    String eTag = "W/\"p" + productId + "-" + lastModified + "-k" + categoryVersion
+                            + (held > 0 ? "-h" + held : "") + "\"";
+                    return new ResourceVersion(eTag, lastModified);
+                });
+    }
+
+    /**
+     * The cart summary embeds the session id, so the ETag is scoped to it as well;
+     * a session without a cart still gets a (stable) validator.
+     */
+    public ResourceVersion getCartVersion(String sessionId) {
+        String session = Integer.toHexString(sessionId.hashCode());
+        List<Object[]> rows = cartRepository.findVersionInfoBySessionId(sessionId);
+        if (rows.isEmpty()) {
+            return new ResourceVersion("W/\"cart-" + session + "-empty\"", 0);
+        }
+        Object[] row = rows.get(0);
+        long cartUpdated = toEpochMillis((LocalDateTime) row[0]);
+        long itemsUpdated = toEpochMillis((LocalDateTime) row[1]);
+        long itemCount = row[2] != null ? ((Number) row[2]).longValue() : 0;
+
+        long lastModified = Math.max(cartUpdated, itemsUpdated);
+        return new ResourceVersion("W/\"cart-" + session + "-" + lastModified + "-" + itemCount + "\"", lastModified);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        Set<String> names = event.getResourceType() == CatalogChangedEvent.ResourceType.CATEGORY
+                ? Set.of(CATALOG, CATEGORIES)
+                : Set.of(CATALOG);
+        try {
+            updateVersions(names);
+        } catch (RuntimeException e) {
+            // Counted on the next refresh - until then this instance may still answer 304 for the change
+            pendingIncrements.addAll(names);
+            logger.warn("Failed to count catalog change {}: {}", event, e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the counters if this is the first instance on the database. They start at the current
+     * time, so resetting the database does not bring back ETags handed out before.
+     * Not inside the class's read-only transaction: every step commits on its own.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void initVersions() {
+        for (String name : List.of(CATALOG, CATEGORIES, STOCK)) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (!catalogVersionRepository.existsById(name)) {
+                        catalogVersionRepository.save(new CatalogVersion(name, System.currentTimeMillis()));
+                    }
+                });
+            } catch (DataIntegrityViolationException e) {
+                // Created by another instance at the same time
+            }
+        }
+        refreshVersions();
+    }
+
+    @Scheduled(fixedDelayString = "${app.catalog-version.refresh-interval-ms:1000}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void refreshVersions() {
+        Set<String> pending = new HashSet<>(pendingIncrements);
+        long holdVersion = stockHoldService.getVersion();
+        if (holdVersion != countedHoldVersion) {
+            pending.add(STOCK);
+        }
+        try {
+            updateVersions(pending);
+            pendingIncrements.removeAll(pending);
+            countedHoldVersion = holdVersion;
+        } catch (RuntimeException e) {
+            logger.warn("Failed to refresh catalog versions: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Increments the given counters and reads all of them back. Versions that only moved by this
+     * instance's own increments are handed out before the commit, while the row lock still keeps other
+     * increments out; otherwise they are handed out after the RemoteCatalogChangedEvent listeners
+     * reloaded. A local increment whose versions were not yet read counts as remote - one reload too many.
+     * Runs in a transaction of its own, so the row locks are released before a reload.
+     */
+    private void updateVersions(Set<String> incremented) {
+        Optional<Versions> remote = ownTransaction.execute(status -> {
+            if (!incremented.isEmpty()) {
+                catalogVersionRepository.increment(incremented);
+            }
+            return readVersions(incremented);
+        });
+        if (remote != null && remote.isPresent()) {
+            Versions versions = remote.get();
+            logger.debug("Catalog changed through another instance, reloading at version {}", versions.catalog());
+            eventPublisher.publishEvent(new RemoteCatalogChangedEvent(versions.catalog()));
+            publish(versions);
+        }
+    }
+
+    /** Empty when the versions were handed out right away, else the versions to hand out after a reload. */
+    private synchronized Optional<Versions> readVersions(Set<String> incremented) {
+        long catalog = catalogVersion;
+        long categories = categoryVersion;
+        long stock = stockVersion;
+        for (CatalogVersion version : catalogVersionRepository.findAll()) {
+            if (CATALOG.equals(version.getName())) {
+                catalog = version.getVersion();
+            } else if (CATEGORIES.equals(version.getName())) {
+                categories = version.getVersion();
+            } else if (STOCK.equals(version.getName())) {
+                stock = version.getVersion();
+            }
+        }
+        Versions versions = new Versions(catalog, categories, stock);
+        // Nothing was read before (startup): the caches load at startup themselves. Other instances'
+        // holds are read by StockHoldService on its own schedule, so the stock counter never reloads.
+        boolean remote = catalogVersion > 0
+                && (catalog > catalogVersion + (incremented.contains(CATALOG) ? 1 : 0)
+                || categories > categoryVersion + (incremented.contains(CATEGORIES) ? 1 : 0));
+        if (remote) {
+            return Optional.of(versions);
+        }
+        publish(versions);
+        return Optional.empty();
+    }
+
+    // Counters only grow; a refresh that read before a concurrent increment must not move them back
+    private synchronized void publish(Versions versions) {
+        catalogVersion = Math.max(catalogVersion, versions.catalog());
+        categoryVersion = Math.max(categoryVersion, versions.categories());
+        stockVersion = Math.max(stockVersion, versions.stock());
+    }
+
+    private static long toEpochMillis(LocalDateTime timestamp) {
+        if (timestamp == null) {
+            return 0;
+        }
+        return timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private record Versions(long catalog, long categories, long stock) {
+    }
+
+    public static final class ResourceVersion {
+        private final String eTag;
+        private final long lastModified;
+
+        public ResourceVersion(String eTag, long lastModified) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+
+        public String getETag() { return eTag; }
+
+        public long getLastModified() { return lastModified; }
+    }
+}
@@ -0,0 +1,410 @@
+package com.psecars.merch.service;
+
+import com.psecars.merch.entity.Product;
+import com.psecars.merch.entity.StockHold;
+import com.psecars.merch.event.CatalogChangedEvent;
+import com.psecars.merch.exception.InsufficientStockException;
+import com.psecars.merch.repository.StockHoldRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stock reservations ("holds") for carts.
+ *
+ * Adding an item to the cart reserves that quantity for the session for app.stock-hold.ttl-minutes;
+ * other sessions only see the available-to-promise (ATP) count, stock minus everything held by others.
+ * So the last unit goes to one cart instead of failing at checkout for everyone but the first buyer.
+ *
+ * Holds live in memory, sharded by product id - each shard has its own monitor, so carts touching
+ * different products never contend. Expired holds are swept periodically, and the ledger is written
+ * to stock_holds when it changed so a restart does not hand reserved units out twice.
+ * Each instance writes only its own rows (app.stock-hold.instance-id, stable across restarts) and reads
+ * the other instances' holds back on the same schedule, so their reservations are subtracted as well -
+ * up to app.stock-hold.persist-interval-ms late. Cart sessions should still be sticky to one instance.
+ *
+ * Changes made inside a transaction follow it: a reservation is undone on rollback,
+ * a release only happens after commit.
+ */
+@Service
+public class StockHoldService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockHoldService.class);
+
+    private final StockHoldRepository stockHoldRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Shard[] shards;
+    private final Map<String, Set<Long>> productsBySession = new ConcurrentHashMap<>();
+    private volatile Map<Long, Integer> heldByOtherInstances = Map.of();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final AtomicInteger activeHolds = new AtomicInteger();
+    private final AtomicLong version = new AtomicLong();
+
+    @Value("${app.stock-hold.ttl-minutes:15}")
+    private long ttlMinutes;
+
+    @Value("${app.stock-hold.instance-id:${HOSTNAME:local}}")
+    private String instanceId;
+
+    @Autowired
+    public StockHoldService(StockHoldRepository stockHoldRepository,
+                            TransactionTemplate transactionTemplate,
+                            ApplicationEventPublisher eventPublisher,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.stock-hold.shards:16}") int shardCount) {
+        this.stockHoldRepository = stockHoldRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.shards = new Shard[Math.max(1, shardCount)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard();
+        }
+        Gauge.builder("merch.stock.holds.active", activeHolds, AtomicInteger::get).register(meterRegistry);
+    }
+
+    /**
+     * Sets the session's hold on a product to the given quantity (not cumulative - callers pass the
+     * new cart quantity) and refreshes its TTL.
+     *
+     * @throws InsufficientStockException if stock minus other sessions' holds cannot cover the quantity
+     */
+    public void reserve(String sessionId, Product product, int quantity) {
+        Long productId = product.getId();
+        int stock = product.getStockQuantity();
+        LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(ttlMinutes);
+        Shard shard = shardFor(productId);
+
+        Hold previous;
+        boolean availabilityChanged;
+        synchronized (shard) {
+            ProductHolds holds = shard.holds.computeIfAbsent(productId, id -> new ProductHolds());
+            int unheld = stock - heldByOtherInstances(productId);
+            int own = holds.quantityOf(sessionId);
+            int available = unheld - (holds.held - own);
+            if (available < quantity) {
+                if (holds.bySession.isEmpty()) {
+                    shard.holds.remove(productId);
+                }
+                throw new InsufficientStockException(product.getName(), quantity, Math.max(available, 0));
+            }
+            boolean wasAvailable = unheld - holds.held > 0;
+            previous = put(holds, sessionId, quantity, expiresAt);
+            availabilityChanged = wasAvailable != unheld - holds.held > 0;
+        }
+        productsBySession.computeIfAbsent(sessionId, s -> ConcurrentHashMap.newKeySet()).add(productId);
+        changed();
+
+        if (availabilityChanged) {
+            publishAvailabilityChange(productId);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        if (previous == null) {
+                            removeHold(sessionId, productId);
+                        } else {
+                            restore(sessionId, productId, previous.quantity, previous.expiresAt);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    public void release(String sessionId, Long productId) {
+        afterCommit(() -> {
+            removeHold(sessionId, productId);
+            Set<Long> products = productsBySession.get(sessionId);
+            if (products != null) {
+                products.remove(productId);
+            }
+        });
+    }
+
+    public void releaseAll(String sessionId) {
+        afterCommit(() -> {
+            Set<Long> products = productsBySession.remove(sessionId);
+            if (products != null) {
+                products.forEach(productId -> removeHold(sessionId, productId));
+            }
+        });
+    }
+
+    /** Units of the product currently held by all carts, on every instance. */
+    public int getHeldQuantity(Long productId) {
+        Shard shard = shardFor(productId);
+        synchronized (shard) {
+            ProductHolds holds = shard.holds.get(productId);
+            return (holds != null ? holds.held : 0) + heldByOtherInstances(productId);
+        }
+    }
+
+    /** Stock the given session can still count on: stock minus the holds of every other session. */
+    public int getAvailableToPromise(Product product, String sessionId) {
+        return getAvailableToPromise(product.getId(), product.getStockQuantity(), sessionId);
+    }
+
+    /** Like {@link #getAvailableToPromise(Product, String)}, for a stock level read without the entity. */
+    public int getAvailableToPromise(Long productId, int stockQuantity, String sessionId) {
+        Shard shard = shardFor(productId);
+        synchronized (shard) {
+            ProductHolds holds = shard.holds.get(productId);
+            int available = stockQuantity - heldByOtherInstances(productId);
+            if (holds == null) {
+                return available;
+            }
+            return available - (holds.held - holds.quantityOf(sessionId));
+        }
+    }
+
+    /**
+     * Changes with every held quantity. Catalog events are only published when a product flips between
+     * available and sold out, so ResourceVersionService counts this into the shared stock version that
+     * product list ETags carry.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    @Scheduled(fixedDelayString = "${app.stock-hold.sweep-interval-ms:30000}")
+    public void expireHolds() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> released = new ArrayList<>();
+        int expired = 0;
+
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                Iterator<Map.Entry<Long, ProductHolds>> products = shard.holds.entrySet().iterator();
+                while (products.hasNext()) {
+                    Map.Entry<Long, ProductHolds> entry = products.next();
+                    ProductHolds holds = entry.getValue();
+                    Iterator<Map.Entry<String, Hold>> sessions = holds.bySession.entrySet().iterator();
+                    while (sessions.hasNext()) {
+                        Map.Entry<String, Hold> session = sessions.next();
+                        if (session.getValue().expiresAt.isBefore(now)) {
+                            holds.held -= session.getValue().quantity;
+                            sessions.remove();
+                            activeHolds.decrementAndGet();
+                            unindex(session.getKey(), entry.getKey());
+                            expired++;
+                        }
+                    }
+                    if (holds.bySession.isEmpty()) {
+                        products.remove();
+                        released.add(entry.getKey());
+                    }
+                }
+            }
+        }
+
+        if (expired > 0) {
+            changed();
+            logger.debug("Released {} expired stock holds", expired);
+        }
+        // The product is no longer held at all - publish so list ETags and caches pick up the new stock flag
+        released.forEach(this::publishAvailabilityChange);
+    }
+
+    /**
+     * Replaces this instance's rows in stock_holds (and drops expired rows of any instance), then reads
+     * the holds of the other instances.
+     */
+    @Scheduled(fixedDelayString = "${app.stock-hold.persist-interval-ms:10000}")
+    public void persistHolds() {
+        if (dirty.getAndSet(false)) {
+            List<StockHold> snapshot = new ArrayList<>();
+            for (Shard shard : shards) {
+                synchronized (shard) {
+                    shard.holds.forEach((productId, holds) -> holds.bySession.forEach((sessionId, hold) ->
+                            snapshot.add(new StockHold(instanceId, sessionId, productId, hold.quantity, hold.expiresAt))));
+                }
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    stockHoldRepository.deleteOwnAndExpired(instanceId, LocalDateTime.now());
+                    stockHoldRepository.saveAll(snapshot);
+                });
+            } catch (RuntimeException e) {
+                dirty.set(true);
+                logger.warn("Failed to persist {} stock holds: {}", snapshot.size(), e.getMessage());
+            }
+        }
+        refreshOtherInstances();
+    }
+
+    private void refreshOtherInstances() {
+        Map<Long, Integer> held = new HashMap<>();
+        try {
+            for (Object[] row : stockHoldRepository.sumHeldByOtherInstances(instanceId, LocalDateTime.now())) {
+                held.put((Long) row[0], ((Number) row[1]).intValue());
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Failed to read the stock holds of other instances: {}", e.getMessage());
+            return;
+        }
+        if (!held.equals(heldByOtherInstances)) {
+            heldByOtherInstances = held;
+            version.incrementAndGet();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadHolds() {
+        List<StockHold> persisted = stockHoldRepository.findByInstanceIdAndExpiresAtAfter(instanceId, LocalDateTime.now());
+        for (StockHold hold : persisted) {
+            restore(hold.getSessionId(), hold.getProductId(), hold.getQuantity(), hold.getExpiresAt());
+        }
+        if (!persisted.isEmpty()) {
+            logger.info("Restored {} stock holds", persisted.size());
+        }
+        refreshOtherInstances();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        persistHolds();
+    }
+
+    private void restore(String sessionId, Long productId, int quantity, LocalDateTime expiresAt) {
+        if (quantity <= 0) {
+            removeHold(sessionId, productId);
+            return;
+        }
+        Shard shard = shardFor(productId);
+        synchronized (shard) {
+            put(shard.holds.computeIfAbsent(productId, id -> new ProductHolds()), sessionId, quantity, expiresAt);
+        }
+        productsBySession.computeIfAbsent(sessionId, s -> ConcurrentHashMap.newKeySet()).add(productId);
+        changed();
+    }
+
+    private void removeHold(String sessionId, Long productId) {
+        Shard shard = shardFor(productId);
+        boolean lastHold = false;
+        synchronized (shard) {
+            ProductHolds holds = shard.holds.get(productId);
+            if (holds == null) {
+                return;
+            }
+            Hold removed = holds.bySession.remove(sessionId);
+            if (removed == null) {
+                return;
+            }
+            holds.held -= removed.quantity;
+            activeHolds.decrementAndGet();
+            if (holds.bySession.isEmpty()) {
+                shard.holds.remove(productId);
+                lastHold = true;
+            }
+        }
+        changed();
+        if (lastHold) {
+            publishAvailabilityChange(productId);
+        }
+    }
+
+    /** Must be called with the shard monitor held. Returns the session's previous hold, if any. */
+    private Hold put(ProductHolds holds, String sessionId, int quantity, LocalDateTime expiresAt) {
+        Hold previous = holds.bySession.put(sessionId, new Hold(quantity, expiresAt));
+        if (previous == null) {
+            activeHolds.incrementAndGet();
+            holds.held += quantity;
+        } else {
+            holds.held += quantity - previous.quantity;
+        }
+        return previous;
+    }
+
+    private int heldByOtherInstances(Long productId) {
+        return heldByOtherInstances.getOrDefault(productId, 0);
+    }
+
+    private void changed() {
+        version.incrementAndGet();
+        dirty.set(true);
+    }
+
+    private void unindex(String sessionId, Long productId) {
+        Set<Long> products = productsBySession.get(sessionId);
+        if (products != null) {
+            products.remove(productId);
+            if (products.isEmpty()) {
+                productsBySession.remove(sessionId, products);
+            }
+        }
+    }
+
+    private void publishAvailabilityChange(Long productId) {
+        eventPublisher.publishEvent(new CatalogChangedEvent(
+                CatalogChangedEvent.ResourceType.PRODUCT, CatalogChangedEvent.ChangeType.UPDATED, productId));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private Shard shardFor(Long productId) {
+        return shards[(int) Math.floorMod(productId, (long) shards.length)];
+    }
+
+    private static final class Shard {
+        private final Map<Long, ProductHolds> holds = new HashMap<>();
+    }
+
+    private static final class ProductHolds {
+        private final Map<String, Hold> bySession = new HashMap<>();
+        private int held;
+
+        private int quantityOf(String sessionId) {
+            Hold hold = bySession.get(sessionId);
+            return hold != null ? hold.quantity : 0;
+        }
+    }
+
+    private static final class Hold {
+        private final int quantity;
+        private final LocalDateTime expiresAt;
+
+        private Hold(int quantity, LocalDateTime expiresAt) {
+            this.quantity = quantity;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.psecars.merch.web;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.psecars.merch.event.CatalogChangedEvent;
+import com.psecars.merch.event.RemoteCatalogChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Fully serialized (and gzipped) JSON bodies of hot catalog responses, keyed by resource and tagged
+ * with the ETag they were built for. A hit is a map lookup plus a copy of the bytes to the servlet
+ * output stream - no DTO, no Jackson, no compression per request.
+ *
+ * An entry is only served for the exact ETag it was built for, so a stale entry is rebuilt on the
+ * next request even if an invalidation was missed; product and category writes also evict entries
+ * so that memory does not hold dead payloads, and writes made through another instance clear them all. There is at most one entry per product plus one for
+ * the category list, so the map needs no size bound.
+ *
+ * Note: the ApiResponse timestamp of a cached body is the time it was built.
+ */
+@Component
+public class SerializedResponseCache {
+
+    public static final String CATEGORIES = "categories";
+
+    private static final String PRODUCT_PREFIX = "product:";
+    private static final String CACHE_CONTROL = CacheControl.noCache().getHeaderValue();
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, Payload> payloads = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+
+    @Value("${app.response-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.response-cache.precompress:true}")
+    private boolean precompress;
+
+    @Value("${server.compression.min-response-size:1024}")
+    private int compressionThreshold;
+
+    @Autowired
+    public SerializedResponseCache(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.hits = Counter.builder("merch.response-cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("merch.response-cache.requests").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("merch.response-cache.bytes", payloads, map -> map.values().stream().mapToLong(Payload::size).sum())
+                .register(meterRegistry);
+    }
+
+    public static String productKey(Long productId) {
+        return PRODUCT_PREFIX + productId;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Writes the cached body for key/eTag, building it from body() first when it is missing or was
+     * built for another ETag. lastModified is sent when positive.
+     */
+    public void write(String key, String eTag, long lastModified, Supplier<Object> body,
+                      HttpServletRequest request, HttpServletResponse response) {
+        Payload payload = payloads.get(key);
+        if (payload != null && payload.eTag.equals(eTag)) {
+            hits.increment();
+        } else {
+            misses.increment();
+            payload = serialize(eTag, body.get());
+            payloads.put(key, payload);
+        }
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        if (lastModified > 0) {
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        }
+
+        byte[] bytes = payload.json;
+        if (payload.gzip != null) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (acceptsGzip(request)) {
+                // With Content-Encoding already set, Tomcat does not compress the body again
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+                bytes = payload.gzip;
+            }
+        }
+        response.setContentLength(bytes.length);
+        try {
+            response.getOutputStream().write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.getResourceType() == CatalogChangedEvent.ResourceType.PRODUCT) {
+            payloads.remove(productKey(event.getResourceId()));
+            payloads.remove(CATEGORIES);
+        } else {
+            // Product bodies embed the category name
+            payloads.clear();
+        }
+    }
+
+    // A change made through another instance does not say which product changed
+    @EventListener
+    public void onRemoteCatalogChanged(RemoteCatalogChangedEvent event) {
+        payloads.clear();
+    }
+
+    private Payload serialize(String eTag, Object body) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(body);
+            byte[] gzip = precompress && json.length >= compressionThreshold ? gzip(json) : null;
+            return new Payload(eTag, json, gzip);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize response body", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    private static final class Payload {
+        private final String eTag;
+        private final byte[] json;
+        private final byte[] gzip;
+
+        private Payload(String eTag, byte[] json, byte[] gzip) {
+            this.eTag = eTag;
+            this.json = json;
+            this.gzip = gzip;
+        }
+
+        private long size() {
+            return json.length + (gzip != null ? gzip.length : 0);
+        }
+    }
+}
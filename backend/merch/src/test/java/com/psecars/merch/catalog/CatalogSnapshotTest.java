@@ -0,0 +1,193 @@
+package com.psecars.merch.catalog;
+
+import com.psecars.merch.entity.Category;
+import com.psecars.merch.entity.Product;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Copy-on-write changes of CatalogSnapshot. The sort orders are computed before a change, so the
+ * patched snapshot carries them over by moving the changed row; every page of it must equal the page
+ * of a snapshot built from scratch with the same products.
+ */
+class CatalogSnapshotTest {
+
+    private static final Category MUGS = category(1L, "Mugs");
+    private static final Category SHIRTS = category(2L, "Shirts");
+    private static final LocalDateTime CREATED = LocalDateTime.of(2024, 1, 1, 12, 0);
+    private static final List<String> SORTS = List.of("name", "price", "stockQuantity", "createdAt", "updatedAt");
+
+    @Test
+    void patchMovesTheRowAcrossPageBoundaries() {
+        List<Product> products = catalog();
+        CatalogSnapshot snapshot = primed(CatalogSnapshot.of(products));
+
+        // Cheapest product becomes the most expensive one: from page 0 to the last page of the price order
+        Product updated = product(1L, "Anchor mug", "99.00", 5, MUGS);
+        CatalogSnapshot patched = snapshot.with(updated);
+
+        assertEquals(List.of(2L, 3L), ids(patched, Sort.by("price"), 0, 2));
+        assertEquals(List.of(6L, 1L), ids(patched, Sort.by("price"), 2, 2));
+        assertSameAsRebuilt(patched, replace(products, updated));
+    }
+
+    @Test
+    void patchMovesTheRowBackwardsAndKeepsTiesInIdOrder() {
+        List<Product> products = catalog();
+        CatalogSnapshot snapshot = primed(CatalogSnapshot.of(products));
+
+        // Same stock as products 2 and 4: the tie is broken by id like the rebuilt order
+        Product updated = product(6L, "Zebra shirt", "30.00", 3, SHIRTS);
+        CatalogSnapshot patched = snapshot.with(updated);
+
+        assertEquals(List.of(3L, 2L, 4L, 6L), ids(patched, Sort.by("stockQuantity"), 0, 4));
+        assertSameAsRebuilt(patched, replace(products, updated));
+    }
+
+    @Test
+    void renameMovesTheRowInTheNameOrder() {
+        List<Product> products = catalog();
+        CatalogSnapshot snapshot = primed(CatalogSnapshot.of(products));
+
+        Product updated = product(5L, "aardvark shirt", "25.00", 8, SHIRTS);
+        CatalogSnapshot patched = snapshot.with(updated);
+
+        assertEquals(List.of(5L, 1L), ids(patched, Sort.by("name"), 0, 2));
+        assertEquals(List.of(1L, 5L), ids(patched, Sort.by("name").descending(), 2, 2));
+        assertSameAsRebuilt(patched, replace(products, updated));
+    }
+
+    @Test
+    void removeShiftsTheFollowingPages() {
+        List<Product> products = catalog();
+        CatalogSnapshot snapshot = primed(CatalogSnapshot.of(products));
+
+        CatalogSnapshot removed = snapshot.without(2L);
+
+        assertEquals(5, removed.size());
+        assertTrue(removed.findById(2L).isEmpty());
+        assertEquals(List.of(1L, 3L), ids(removed, Sort.by("price"), 0, 2));
+        assertEquals(List.of(4L, 5L), ids(removed, Sort.by("price"), 1, 2));
+        assertEquals(5, page(removed, Sort.by("price"), 2, 2).getTotalElements());
+        List<Product> remaining = new ArrayList<>(products);
+        remaining.removeIf(product -> product.getId() == 2L);
+        assertSameAsRebuilt(removed, remaining);
+        assertSame(removed, removed.without(2L));
+    }
+
+    @Test
+    void addedProductsAndCategoryMovesMatchTheRebuiltSnapshot() {
+        List<Product> products = catalog();
+        CatalogSnapshot snapshot = primed(CatalogSnapshot.of(products));
+
+        Product added = product(7L, "Mug", "1.00", 1, MUGS);
+        CatalogSnapshot withAdded = snapshot.with(added);
+        List<Product> expected = new ArrayList<>(products);
+        expected.add(added);
+        assertSameAsRebuilt(withAdded, expected);
+
+        Product moved = product(3L, "Blue mug", "15.00", 0, SHIRTS);
+        CatalogSnapshot withMoved = withAdded.with(moved);
+        assertEquals(List.of(3L, 4L, 5L, 6L), ids(withMoved, Sort.unsorted(), 0, 10, SHIRTS.getId()));
+        assertSameAsRebuilt(withMoved, replace(expected, moved));
+    }
+
+    @Test
+    void unchangedProductKeepsTheSnapshot() {
+        List<Product> products = catalog();
+        CatalogSnapshot snapshot = primed(CatalogSnapshot.of(products));
+
+        assertSame(snapshot, snapshot.with(product(3L, "Blue mug", "15.00", 0, MUGS)));
+    }
+
+    @Test
+    void namesSortLinguisticallyNotByCodePoint() {
+        CatalogSnapshot snapshot = CatalogSnapshot.of(List.of(
+                product(1L, "banana", "1.00", 1, MUGS),
+                product(2L, "Cherry", "1.00", 1, MUGS),
+                product(3L, "apple", "1.00", 1, MUGS),
+                product(4L, "Apple", "1.00", 1, MUGS),
+                product(5L, "Éclair", "1.00", 1, MUGS),
+                product(6L, "eagle", "1.00", 1, MUGS)));
+
+        // String.compareTo would put "Apple", "Cherry" and "Éclair" apart from their lowercase neighbours
+        assertEquals(List.of(3L, 4L, 1L, 2L, 6L, 5L), ids(snapshot, Sort.by("name"), 0, 10));
+    }
+
+    private static void assertSameAsRebuilt(CatalogSnapshot patched, List<Product> products) {
+        CatalogSnapshot rebuilt = CatalogSnapshot.of(products);
+        assertEquals(rebuilt.size(), patched.size());
+        for (String property : SORTS) {
+            for (Sort sort : List.of(Sort.by(property), Sort.by(property).descending())) {
+                for (int page = 0; page * 2 < products.size(); page++) {
+                    assertEquals(ids(rebuilt, sort, page, 2), ids(patched, sort, page, 2), sort + ", page " + page);
+                }
+            }
+        }
+    }
+
+    /** Computes every sort order, so that changes have to carry them over. */
+    private static CatalogSnapshot primed(CatalogSnapshot snapshot) {
+        for (String property : SORTS) {
+            page(snapshot, Sort.by(property), 0, 1);
+        }
+        return snapshot;
+    }
+
+    private static List<Long> ids(CatalogSnapshot snapshot, Sort sort, int page, int size) {
+        return page(snapshot, sort, page, size).map(Product::getId).getContent();
+    }
+
+    private static List<Long> ids(CatalogSnapshot snapshot, Sort sort, int page, int size, long categoryId) {
+        return snapshot.findPage(snapshot.inCategory(categoryId), PageRequest.of(page, size, sort)).orElseThrow()
+                .map(Product::getId).getContent();
+    }
+
+    private static Page<Product> page(CatalogSnapshot snapshot, Sort sort, int page, int size) {
+        return snapshot.findPage(snapshot.all(), PageRequest.of(page, size, sort)).orElseThrow();
+    }
+
+    // Price order 1..6, names out of id order, stock with ties
+    private static List<Product> catalog() {
+        return List.of(
+                product(1L, "Anchor mug", "5.00", 5, MUGS),
+                product(2L, "white mug", "10.00", 3, MUGS),
+                product(3L, "Blue mug", "15.00", 0, MUGS),
+                product(4L, "Red shirt", "20.00", 3, SHIRTS),
+                product(5L, "green shirt", "25.00", 8, SHIRTS),
+                product(6L, "Black shirt", "30.00", 1, SHIRTS));
+    }
+
+    private static List<Product> replace(List<Product> products, Product updated) {
+        List<Product> result = new ArrayList<>(products);
+        result.replaceAll(product -> product.getId().equals(updated.getId()) ? updated : product);
+        return result;
+    }
+
+    private static Product product(long id, String name, String price, int stock, Category category) {
+        Product product = new Product(name, name + " description", new BigDecimal(price), stock, category);
+        product.setId(id);
+        product.setVersion(0L);
+        product.setCreatedAt(CREATED.plusMinutes(id));
+        product.setUpdatedAt(CREATED.plusMinutes(id));
+        product.setImageUrls(List.of("/images/" + id + ".png"));
+        return product;
+    }
+
+    private static Category category(long id, String name) {
+        Category category = new Category(name, null);
+        category.setId(id);
+        return category;
+    }
+}
@@ -0,0 +1,215 @@
+package com.psecars.merch.datasource;
+
+import com.psecars.merch.controller.CartController;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Routing of ReplicaRoutingDataSource against two H2 databases, wired the way ReplicaRoutingConfig
+ * does it (behind a LazyConnectionDataSourceProxy, with a transaction manager on top).
+ *
+ * Each database has a one-row "node" table naming itself, so a query shows where it ran. The replica
+ * reads its lag from a table the tests can change instead of pg_last_xact_replay_timestamp().
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private static final String LAG_QUERY = "SELECT lag_seconds FROM replica_lag";
+
+    private DataSource primary;
+    private DataSource replica;
+    private ReplicaRoutingDataSource routingDataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate writeTransaction;
+    private TransactionTemplate readOnlyTransaction;
+    private SessionWriteTracker tracker;
+    private ReplicaStickinessInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        replica = database("replica");
+        new JdbcTemplate(replica).execute("CREATE TABLE replica_lag (lag_seconds DOUBLE)");
+        new JdbcTemplate(replica).update("INSERT INTO replica_lag VALUES (0)");
+
+        routingDataSource = new ReplicaRoutingDataSource(primary, List.of(replica), 5, LAG_QUERY,
+                new SimpleMeterRegistry());
+        routingDataSource.checkReplicas();
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        writeTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+
+        tracker = new SessionWriteTracker(60_000);
+        interceptor = new ReplicaStickinessInterceptor(tracker);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RoutingContext.clear();
+        new JdbcTemplate(primary).execute("SHUTDOWN");
+        new JdbcTemplate(replica).execute("SHUTDOWN");
+    }
+
+    @Test
+    void readOnlyTransactionsUseTheReplica() {
+        assertEquals("replica", readOnlyTransaction.execute(status -> node()));
+    }
+
+    @Test
+    void writeTransactionsUseThePrimary() {
+        assertEquals("primary", writeTransaction.execute(status -> node()));
+
+        writeTransaction.executeWithoutResult(status -> jdbcTemplate.update("INSERT INTO item (name) VALUES ('mug')"));
+        assertEquals(1, count(primary));
+        assertEquals(0, count(replica));
+    }
+
+    @Test
+    void readsWithoutATransactionUseThePrimary() {
+        assertEquals("primary", node());
+    }
+
+    @Test
+    void laggingReplicaIsSkipped() {
+        new JdbcTemplate(replica).update("UPDATE replica_lag SET lag_seconds = 30");
+        routingDataSource.checkReplicas();
+
+        assertEquals("primary", readOnlyTransaction.execute(status -> node()));
+
+        new JdbcTemplate(replica).update("UPDATE replica_lag SET lag_seconds = 1");
+        routingDataSource.checkReplicas();
+
+        assertEquals("replica", readOnlyTransaction.execute(status -> node()));
+    }
+
+    @Test
+    void unreachableReplicaFallsBackToThePrimary() {
+        DataSource broken = new DriverManagerDataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                throw new SQLException("Connection refused");
+            }
+        };
+        DataSource dataSource = new LazyConnectionDataSourceProxy(
+                new ReplicaRoutingDataSource(primary, List.of(broken), 5, LAG_QUERY, new SimpleMeterRegistry()));
+        TransactionTemplate readOnly = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        readOnly.setReadOnly(true);
+
+        // Before the first health check the replica counts as healthy, the refused connection falls back
+        assertEquals("primary", readOnly.execute(status ->
+                new JdbcTemplate(dataSource).queryForObject("SELECT name FROM node", String.class)));
+    }
+
+    @Test
+    void sessionReadsItsOwnWritesFromThePrimary() {
+        // POST /cart/items: the mutation itself runs on the primary and marks the session
+        MockHttpServletRequest post = request("POST", "session-a");
+        assertTrue(interceptor.preHandle(post, new MockHttpServletResponse(), null));
+        assertEquals("primary", readOnlyTransaction.execute(status -> node()));
+        interceptor.afterCompletion(post, new MockHttpServletResponse(), null, null);
+        assertFalse(RoutingContext.isPrimaryRequired());
+        assertTrue(tracker.isSticky("session-a"));
+
+        // The next GET of the same session still reads from the primary ...
+        assertEquals("primary", get("session-a"));
+        // ... another session, or a request without a cart, reads from the replica
+        assertEquals("replica", get("session-b"));
+        assertEquals("replica", get(null));
+    }
+
+    @Test
+    void stickinessEndsAfterTheWindow() throws InterruptedException {
+        tracker = new SessionWriteTracker(500);
+        interceptor = new ReplicaStickinessInterceptor(tracker);
+
+        MockHttpServletRequest put = request("PUT", "session-a");
+        interceptor.preHandle(put, new MockHttpServletResponse(), null);
+        interceptor.afterCompletion(put, new MockHttpServletResponse(), null, null);
+        assertEquals("primary", get("session-a"));
+
+        Thread.sleep(600);
+        assertEquals("replica", get("session-a"));
+        tracker.purgeExpired();
+        assertEquals(0, tracker.size());
+    }
+
+    @Test
+    void asyncRequestReleasesTheThreadWithoutTheRoutingHint() {
+        // POST handled asynchronously: the container thread is released after the handler returned
+        MockHttpServletRequest post = request("POST", "session-a");
+        interceptor.preHandle(post, new MockHttpServletResponse(), null);
+        assertTrue(RoutingContext.isPrimaryRequired());
+        interceptor.afterConcurrentHandlingStarted(post, new MockHttpServletResponse(), null);
+        assertFalse(RoutingContext.isPrimaryRequired());
+
+        // The next request on that pooled thread, from another session, reads from the replica again
+        assertEquals("replica", get("session-b"));
+
+        // The async dispatch completes the request and only then counts the write
+        assertFalse(tracker.isSticky("session-a"));
+        post.setDispatcherType(DispatcherType.ASYNC);
+        interceptor.preHandle(post, new MockHttpServletResponse(), null);
+        interceptor.afterCompletion(post, new MockHttpServletResponse(), null, null);
+        assertFalse(RoutingContext.isPrimaryRequired());
+        assertEquals("primary", get("session-a"));
+    }
+
+    private String get(String sessionId) {
+        MockHttpServletRequest get = request("GET", sessionId);
+        interceptor.preHandle(get, new MockHttpServletResponse(), null);
+        try {
+            return readOnlyTransaction.execute(status -> node());
+        } finally {
+            interceptor.afterCompletion(get, new MockHttpServletResponse(), null, null);
+        }
+    }
+
+    private String node() {
+        return jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+    }
+
+    private static int count(DataSource dataSource) {
+        return new JdbcTemplate(dataSource).queryForObject("SELECT COUNT(*) FROM item", Integer.class);
+    }
+
+    private static MockHttpServletRequest request(String method, String sessionId) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/api/cart");
+        if (sessionId != null) {
+            request.setCookies(new Cookie(CartController.CART_SESSION_COOKIE, sessionId));
+        }
+        return request;
+    }
+
+    private static DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.execute("CREATE TABLE node (name VARCHAR(20))");
+        template.update("INSERT INTO node VALUES (?)", name);
+        template.execute("CREATE TABLE item (id IDENTITY PRIMARY KEY, name VARCHAR(50))");
+        return dataSource;
+    }
+}
@@ -0,0 +1,166 @@
+package com.psecars.merch.outbox;
+
+import com.psecars.merch.dto.CreateOrderRequest;
+import com.psecars.merch.dto.OrderItemRequest;
+import com.psecars.merch.entity.Category;
+import com.psecars.merch.entity.Order;
+import com.psecars.merch.entity.OutboxEvent;
+import com.psecars.merch.entity.Product;
+import com.psecars.merch.repository.CategoryRepository;
+import com.psecars.merch.repository.OrderRepository;
+import com.psecars.merch.repository.OutboxEventRepository;
+import com.psecars.merch.repository.ProductRepository;
+import com.psecars.merch.service.OrderService;
+import com.psecars.merch.service.OutboxService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.reset;
+
+/**
+ * Transactional outbox end to end: OutboxService writes the event in the order's transaction,
+ * OutboxRelay claims pending events in id order, hands them to the (in-memory) publisher and marks
+ * them published; a failing publisher leaves the batch pending for the next run.
+ *
+ * The scheduled drain is pushed out of the way (poll interval of an hour), tests call drain() themselves.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:outboxtest;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "app.archive.enabled=false",
+        "app.outbox.relay-enabled=true",
+        "app.outbox.poll-interval-ms=3600000",
+        "app.outbox.batch-size=2"
+})
+@ActiveProfiles("test")
+class OutboxRelayTest {
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @SpyBean
+    private InMemoryOutboxPublisher publisher;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Long productId;
+
+    @BeforeEach
+    void setUp() {
+        outboxRelay.drain();
+        outboxEventRepository.deleteAll();
+        reset(publisher);
+        publisher.clear();
+
+        Category category = categoryRepository.save(new Category("Outbox " + System.nanoTime(), "Relay test"));
+        productId = productRepository.save(new Product("Relay mug", "Mug", new BigDecimal("12.50"), 100, category)).getId();
+    }
+
+    @Test
+    void orderEventIsWrittenInTheOrdersTransaction() {
+        Order order = orderService.createOrder(orderRequest());
+
+        List<OutboxEvent> events = outboxEventRepository.findAll();
+        assertEquals(1, events.size());
+        assertEquals(OutboxService.AGGREGATE_ORDER, events.get(0).getAggregateType());
+        assertEquals(order.getId(), events.get(0).getAggregateId());
+        assertEquals(OutboxService.ORDER_CREATED, events.get(0).getEventType());
+        assertNull(events.get(0).getPublishedAt());
+    }
+
+    @Test
+    void rolledBackOrderLeavesNoEvent() {
+        long orders = orderRepository.count();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Order order = orderService.createOrder(orderRequest());
+            assertEquals(1, outboxEventRepository.findAll().stream()
+                    .filter(event -> event.getAggregateId().equals(order.getId()))
+                    .count());
+            status.setRollbackOnly();
+        });
+
+        assertEquals(orders, orderRepository.count());
+        assertEquals(0, outboxEventRepository.count());
+    }
+
+    @Test
+    void outboxServiceRequiresATransaction() {
+        Order order = orderService.createOrder(orderRequest());
+
+        assertThrows(IllegalTransactionStateException.class,
+                () -> outboxService.recordOrderEvent(order, OutboxService.ORDER_STATUS_CHANGED));
+    }
+
+    @Test
+    void drainClaimsPendingEventsInBatchesAndMarksThemPublished() {
+        List<Long> orderIds = List.of(
+                orderService.createOrder(orderRequest()).getId(),
+                orderService.createOrder(orderRequest()).getId(),
+                orderService.createOrder(orderRequest()).getId());
+
+        outboxRelay.drain();
+
+        // Three events with a batch size of two: two claims in one run, in id (= commit) order
+        assertEquals(orderIds, publisher.getPublished().stream().map(OutboxEvent::getAggregateId).toList());
+        assertEquals(0, outboxEventRepository.countByPublishedAtIsNull());
+        assertTrue(outboxEventRepository.findAll().stream().allMatch(event -> event.getPublishedAt() != null));
+
+        outboxRelay.drain();
+        assertEquals(3, publisher.getPublished().size());
+    }
+
+    @Test
+    void failedPublishLeavesTheBatchPendingAndIsRetried() {
+        Long orderId = orderService.createOrder(orderRequest()).getId();
+        doThrow(new IllegalStateException("stream unavailable")).doCallRealMethod().when(publisher).publish(anyList());
+
+        outboxRelay.drain();
+
+        assertTrue(publisher.getPublished().isEmpty());
+        assertEquals(1, outboxEventRepository.countByPublishedAtIsNull());
+
+        outboxRelay.drain();
+
+        assertEquals(List.of(orderId), publisher.getPublished().stream().map(OutboxEvent::getAggregateId).toList());
+        assertEquals(0, outboxEventRepository.countByPublishedAtIsNull());
+    }
+
+    private CreateOrderRequest orderRequest() {
+        return new CreateOrderRequest("relay@example.com", "Relay Test", "Street 1",
+                List.of(new OrderItemRequest(productId, 1)));
+    }
+}
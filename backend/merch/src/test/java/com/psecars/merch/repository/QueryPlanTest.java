@@ -0,0 +1,422 @@
+package com.psecars.merch.repository;
+
+import com.psecars.merch.entity.OrderStatus;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Query plan regression suite for the repository queries.
+ *
+ * Seeds the H2 test database with a few thousand rows per table, runs each repository method while
+ * capturing the SQL Hibernate generates, and EXPLAINs every captured statement. A full scan of one of
+ * the large tables fails the test - add the missing @Index to the entity (and init-scripts) instead
+ * of relaxing the assertion.
+ *
+ * Known scans are passed explicitly per query: leading-wildcard LIKE searches cannot use a b-tree
+ * index, and the price index, catalog snapshot and category read model loads read the whole catalog
+ * on purpose.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.psecars.merch.repository.QueryPlanTest$CapturingInspector",
+        "app.archive.enabled=false",
+        "app.outbox.relay-enabled=false"
+})
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@Transactional
+class QueryPlanTest {
+
+    private static final Set<String> LARGE_TABLES = Set.of("PRODUCTS", "CARTS", "CART_ITEMS", "ORDERS", "ORDER_ITEMS");
+
+    // H2 marks full scans as "/* PUBLIC.ORDERS.tableScan */"
+    private static final Pattern TABLE_SCAN = Pattern.compile("/\\* PUBLIC\\.(\\w+)\\.tableScan");
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 6, 1, 12, 0);
+    private static final PageRequest PAGE = PageRequest.of(0, 20);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long categoryId;
+
+    @BeforeAll
+    void seed() {
+        jdbcTemplate.execute("INSERT INTO categories (name, description) "
+                + "SELECT 'Category ' || X, 'Seeded' FROM SYSTEM_RANGE(1, 20)");
+        categoryId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM categories", Long.class);
+
+        jdbcTemplate.update("INSERT INTO products (name, description, price, stock_quantity, category_id, created_at, updated_at, version) "
+                + "SELECT 'Product ' || X, 'Seeded product ' || X, (MOD(X * 37, 20000) + 100) / 100.0, MOD(X, 60), "
+                + "? + MOD(X, 20), ?, ?, 0 FROM SYSTEM_RANGE(1, 5000)", categoryId, NOW, NOW);
+        long firstProduct = jdbcTemplate.queryForObject("SELECT MIN(id) FROM products", Long.class);
+
+        jdbcTemplate.update("INSERT INTO carts (session_id, total_amount, created_at, updated_at, expires_at, version) "
+                + "SELECT 'session-' || X, 0, DATEADD('MINUTE', -X, CAST(?1 AS TIMESTAMP)), "
+                + "DATEADD('MINUTE', -X, CAST(?1 AS TIMESTAMP)), DATEADD('MINUTE', 10080 - X, CAST(?1 AS TIMESTAMP)), 0 "
+                + "FROM SYSTEM_RANGE(1, 20000)", NOW);
+        jdbcTemplate.update("INSERT INTO cart_items (cart_id, product_id, quantity, price, created_at, updated_at, version) "
+                + "SELECT c.id, ? + MOD(c.id * 7 + r.X * 1013, 5000), r.X, 10.00, c.created_at, c.updated_at, 0 "
+                + "FROM carts c CROSS JOIN SYSTEM_RANGE(1, 3) r", firstProduct);
+
+        jdbcTemplate.update("INSERT INTO orders (customer_email, customer_name, customer_address, total_amount, status, created_at, updated_at, version) "
+                + "SELECT 'customer' || MOD(X, 2000) || '@example.com', 'Customer ' || MOD(X, 2000), 'Street ' || X, 25.00, "
+                + "CASEWHEN(MOD(X, 6) = 0, 'PENDING', CASEWHEN(MOD(X, 6) = 1, 'CONFIRMED', CASEWHEN(MOD(X, 6) = 2, 'PROCESSING', "
+                + "CASEWHEN(MOD(X, 6) = 3, 'SHIPPED', CASEWHEN(MOD(X, 6) = 4, 'DELIVERED', 'CANCELLED'))))), "
+                + "DATEADD('MINUTE', -X * 30, CAST(?1 AS TIMESTAMP)), DATEADD('MINUTE', -X * 30, CAST(?1 AS TIMESTAMP)), 0 "
+                + "FROM SYSTEM_RANGE(1, 30000)", NOW);
+        jdbcTemplate.update("INSERT INTO order_items (order_id, product_id, quantity, price) "
+                + "SELECT o.id, ? + MOD(o.id * 13 + r.X, 5000), 1, 12.50 FROM orders o CROSS JOIN SYSTEM_RANGE(1, 2) r",
+                firstProduct);
+
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    // ---- ProductRepository ----
+
+    @Test
+    void findByCategoryId() {
+        assertNoFullScan(() -> productRepository.findByCategoryId(categoryId, PAGE));
+    }
+
+    @Test
+    void findAvailableProducts() {
+        assertNoFullScan(() -> productRepository.findAvailableProducts(PAGE));
+    }
+
+    @Test
+    void findAvailableProductsByCategory() {
+        assertNoFullScan(() -> productRepository.findAvailableProductsByCategory(categoryId, PAGE));
+    }
+
+    @Test
+    void findByKeyword() {
+        assertNoFullScan(() -> productRepository.findByKeyword("product 42", PAGE), "PRODUCTS");
+    }
+
+    @Test
+    void findByPriceRange() {
+        assertNoFullScan(() -> productRepository.findByPriceRange(
+                new BigDecimal("10.00"), new BigDecimal("20.00"), PAGE));
+    }
+
+    @Test
+    void findByCategoryAndPriceRange() {
+        assertNoFullScan(() -> productRepository.findByCategoryAndPriceRange(
+                categoryId, new BigDecimal("10.00"), new BigDecimal("20.00"), PAGE));
+    }
+
+    @Test
+    void findByKeywordAndPriceRange() {
+        assertNoFullScan(() -> productRepository.findByKeywordAndPriceRange(
+                "product 42", new BigDecimal("10.00"), new BigDecimal("20.00"), PAGE), "PRODUCTS");
+    }
+
+    @Test
+    void findLowStockProducts() {
+        assertNoFullScan(() -> productRepository.findLowStockProducts(2));
+    }
+
+    @Test
+    void findByIdAndStockQuantityGreaterThan() {
+        assertNoFullScan(() -> productRepository.findByIdAndStockQuantityGreaterThan(firstProductId(), 0));
+    }
+
+    @Test
+    void countByCategory() {
+        assertNoFullScan(() -> productRepository.countByCategory(categoryId));
+    }
+
+    @Test
+    void findUpdatedAtById() {
+        assertNoFullScan(() -> productRepository.findUpdatedAtById(firstProductId()));
+    }
+
+    @Test
+    void findAllPriceEntries() {
+        assertNoFullScan(() -> productRepository.findAllPriceEntries(), "PRODUCTS");
+    }
+
+    @Test
+    void findPriceEntryById() {
+        assertNoFullScan(() -> productRepository.findPriceEntryById(firstProductId()));
+    }
+
+    @Test
+    void findAllCategoryStockEntries() {
+        assertNoFullScan(() -> productRepository.findAllCategoryStockEntries(), "PRODUCTS");
+    }
+
+    @Test
+    void findCategoryStockEntryById() {
+        assertNoFullScan(() -> productRepository.findCategoryStockEntryById(firstProductId()));
+    }
+
+    @Test
+    void countProductsPerCategory() {
+        assertNoFullScan(() -> productRepository.countProductsPerCategory(), "PRODUCTS");
+    }
+
+    @Test
+    void findAllWithCategoryAndImagesByIdIn() {
+        assertNoFullScan(() -> productRepository.findAllWithCategoryAndImagesByIdIn(
+                List.of(firstProductId(), firstProductId() + 1, firstProductId() + 2)));
+    }
+
+    @Test
+    void findStockByIdIn() {
+        assertNoFullScan(() -> productRepository.findStockByIdIn(List.of(firstProductId(), firstProductId() + 1)));
+    }
+
+    @Test
+    void findByIdIn() {
+        assertNoFullScan(() -> productRepository.findByIdIn(List.of(firstProductId(), firstProductId() + 1), PAGE));
+    }
+
+    @Test
+    void findByIdInAndKeyword() {
+        assertNoFullScan(() -> productRepository.findByIdInAndKeyword(
+                List.of(firstProductId(), firstProductId() + 1), "product", PAGE));
+    }
+
+    @Test
+    void findAllWithCategoryAndImages() {
+        assertNoFullScan(() -> productRepository.findAllWithCategoryAndImages(), "PRODUCTS");
+    }
+
+    @Test
+    void findByIdWithCategoryAndImages() {
+        assertNoFullScan(() -> productRepository.findByIdWithCategoryAndImages(firstProductId()));
+    }
+
+    // ---- CartRepository ----
+
+    @Test
+    void findBySessionId() {
+        assertNoFullScan(() -> cartRepository.findBySessionId("session-42"));
+    }
+
+    @Test
+    void findBySessionIdWithItems() {
+        assertNoFullScan(() -> cartRepository.findBySessionIdWithItems("session-42"));
+    }
+
+    @Test
+    void findExpiredCarts() {
+        assertNoFullScan(() -> cartRepository.findExpiredCarts(NOW.minusDays(6)));
+    }
+
+    @Test
+    void findInactiveCarts() {
+        assertNoFullScan(() -> cartRepository.findInactiveCarts(NOW.minusDays(13)));
+    }
+
+    @Test
+    void existsBySessionId() {
+        assertNoFullScan(() -> cartRepository.existsBySessionId("session-42"));
+    }
+
+    @Test
+    void getCartItemCount() {
+        assertNoFullScan(() -> cartRepository.getCartItemCount("session-42"));
+    }
+
+    @Test
+    void getTotalItemQuantity() {
+        assertNoFullScan(() -> cartRepository.getTotalItemQuantity("session-42"));
+    }
+
+    @Test
+    void findVersionInfoBySessionId() {
+        assertNoFullScan(() -> cartRepository.findVersionInfoBySessionId("session-42"));
+    }
+
+    @Test
+    void deleteByExpiresAtBefore() {
+        assertNoFullScan(() -> cartRepository.deleteByExpiresAtBefore(NOW.minusDays(6)));
+    }
+
+    // ---- CartItemRepository ----
+
+    @Test
+    void findByCartId() {
+        assertNoFullScan(() -> cartItemRepository.findByCartId(firstCartId()));
+    }
+
+    @Test
+    void deleteByCartId() {
+        assertNoFullScan(() -> cartItemRepository.deleteByCartId(firstCartId()));
+    }
+
+    @Test
+    void deleteByCartSessionId() {
+        assertNoFullScan(() -> cartItemRepository.deleteByCartSessionId("session-42"));
+    }
+
+    @Test
+    void findByCartSessionId() {
+        assertNoFullScan(() -> cartItemRepository.findByCartSessionId("session-42"));
+    }
+
+    @Test
+    void findBySessionIdAndProductId() {
+        assertNoFullScan(() -> cartItemRepository.findBySessionIdAndProductId("session-42", firstProductId()));
+    }
+
+    @Test
+    void findUnavailableItemsBySessionId() {
+        assertNoFullScan(() -> cartItemRepository.findUnavailableItemsBySessionId("session-42"));
+    }
+
+    @Test
+    void deleteBySessionIdAndProductId() {
+        assertNoFullScan(() -> cartItemRepository.deleteBySessionIdAndProductId("session-42", firstProductId()));
+    }
+
+    @Test
+    void countBySessionId() {
+        assertNoFullScan(() -> cartItemRepository.countBySessionId("session-42"));
+    }
+
+    @Test
+    void sumQuantityBySessionId() {
+        assertNoFullScan(() -> cartItemRepository.sumQuantityBySessionId("session-42"));
+    }
+
+    // ---- OrderRepository ----
+
+    @Test
+    void findByCustomerEmailOrderByCreatedAtDesc() {
+        assertNoFullScan(() -> orderRepository.findByCustomerEmailOrderByCreatedAtDesc("customer42@example.com", PAGE));
+    }
+
+    @Test
+    void findByStatusOrderByCreatedAtDesc() {
+        assertNoFullScan(() -> orderRepository.findByStatusOrderByCreatedAtDesc(OrderStatus.SHIPPED, PAGE));
+    }
+
+    @Test
+    void findByIdWithItems() {
+        Long orderId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM orders", Long.class);
+        assertNoFullScan(() -> orderRepository.findByIdWithItems(orderId));
+    }
+
+    @Test
+    void findOrdersBetweenDates() {
+        assertNoFullScan(() -> orderRepository.findOrdersBetweenDates(NOW.minusDays(3), NOW));
+    }
+
+    @Test
+    void countByStatus() {
+        assertNoFullScan(() -> orderRepository.countByStatus(OrderStatus.PENDING));
+    }
+
+    @Test
+    void getTotalRevenueBetweenDates() {
+        assertNoFullScan(() -> orderRepository.getTotalRevenueBetweenDates(NOW.minusDays(30), NOW));
+    }
+
+    private Long firstCartId() {
+        return jdbcTemplate.queryForObject("SELECT MIN(id) FROM carts", Long.class);
+    }
+
+    private Long firstProductId() {
+        return jdbcTemplate.queryForObject("SELECT MIN(id) FROM products", Long.class);
+    }
+
+    /**
+     * Runs the query, then EXPLAINs every statement it issued. Tables listed in allowedScans may be
+     * scanned (documented exceptions); any other scan of a large table fails.
+     */
+    private void assertNoFullScan(Runnable query, String... allowedScans) {
+        List<String> statements = CapturingInspector.capture(query);
+        assertFalse(statements.isEmpty(), "query issued no SQL");
+
+        Set<String> allowed = Set.of(allowedScans);
+        for (String sql : statements) {
+            String plan = explain(sql);
+            Matcher matcher = TABLE_SCAN.matcher(plan);
+            while (matcher.find()) {
+                String table = matcher.group(1).toUpperCase(Locale.ROOT);
+                if (LARGE_TABLES.contains(table) && !allowed.contains(table)) {
+                    fail("Full scan of " + table + "\nSQL:  " + sql + "\nPlan: " + plan);
+                }
+            }
+        }
+    }
+
+    // Parameters stay unbound - H2 plans a prepared statement without their values
+    private String explain(String sql) {
+        return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql);
+                 ResultSet rs = statement.executeQuery()) {
+                StringBuilder plan = new StringBuilder();
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+                return plan.toString();
+            }
+        });
+    }
+
+    /** Records the SQL of the current thread while capture() runs; scheduled jobs are ignored. */
+    public static class CapturingInspector implements StatementInspector {
+
+        private static final ThreadLocal<List<String>> CAPTURED = new ThreadLocal<>();
+
+        static List<String> capture(Runnable action) {
+            List<String> statements = new ArrayList<>();
+            CAPTURED.set(statements);
+            try {
+                action.run();
+            } finally {
+                CAPTURED.remove();
+            }
+            return statements;
+        }
+
+        @Override
+        public String inspect(String sql) {
+            List<String> statements = CAPTURED.get();
+            if (statements != null) {
+                statements.add(sql);
+            }
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.psecars.merch.retry;
+
+import com.psecars.merch.entity.Cart;
+import com.psecars.merch.entity.CartItem;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Which failures OptimisticRetryAspect treats as a conflict. Constraint names are given the way
+ * Hibernate extracts them: PostgreSQL reports the constraint, H2 the index created for it.
+ */
+class OptimisticRetryAspectTest {
+
+    @RetryOnConflict(uniqueConstraints = {Cart.SESSION_ID_CONSTRAINT, CartItem.CART_PRODUCT_CONSTRAINT})
+    void insertsCartItems() {
+    }
+
+    @RetryOnConflict
+    void updatesProducts() {
+    }
+
+    @Test
+    void violationOfAListedUniqueConstraintIsAConflict() {
+        RetryOnConflict retry = annotation("insertsCartItems");
+
+        assertTrue(OptimisticRetryAspect.isConflict(violation("uk_cart_items_cart_product"), retry));
+        assertTrue(OptimisticRetryAspect.isConflict(violation("PUBLIC.UK_CARTS_SESSION_ID_INDEX_3"), retry));
+        // Not translated by Spring when flushed outside a repository
+        assertTrue(OptimisticRetryAspect.isConflict(hibernateViolation("uk_carts_session_id"), retry));
+        assertTrue(OptimisticRetryAspect.isConflict(new OptimisticLockingFailureException("stale"), retry));
+    }
+
+    @Test
+    void otherIntegrityViolationsAreNotRetried() {
+        RetryOnConflict retry = annotation("insertsCartItems");
+
+        // Foreign key, and a not null violation without a constraint name
+        assertFalse(OptimisticRetryAspect.isConflict(violation("fk_cart_items_product"), retry));
+        assertFalse(OptimisticRetryAspect.isConflict(violation(null), retry));
+        assertFalse(OptimisticRetryAspect.isConflict(new DataIntegrityViolationException("value too long"), retry));
+        assertFalse(OptimisticRetryAspect.isConflict(violation("uk_carts_session_id"), annotation("updatesProducts")));
+    }
+
+    private static DataIntegrityViolationException violation(String constraintName) {
+        return new DataIntegrityViolationException("could not execute statement", hibernateViolation(constraintName));
+    }
+
+    private static ConstraintViolationException hibernateViolation(String constraintName) {
+        return new ConstraintViolationException("could not execute statement", new SQLException("violation", "23505"),
+                constraintName);
+    }
+
+    private static RetryOnConflict annotation(String method) {
+        try {
+            return OptimisticRetryAspectTest.class.getDeclaredMethod(method).getAnnotation(RetryOnConflict.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}